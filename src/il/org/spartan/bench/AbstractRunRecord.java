@@ -6,6 +6,19 @@ public class AbstractRunRecord {
   protected int runs;
   protected long grossTime;
   protected long netTime;
+  /** Bytes allocated by the measuring thread during the runs; negative if
+   * this is unknown */
+  protected long allocatedBytes;
+  /** Milliseconds spent in garbage collection during the runs */
+  protected long gcTime;
+
+  public long allocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long gcTime() {
+    return gcTime;
+  }
 
   public long grossTime() {
     return grossTime;
@@ -0,0 +1,188 @@
+package il.org.spartan.bench;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.bench.operations.*;
+
+/** Benchmarking of a {@link Bencheon} in a fresh child JVM, so that it is not
+ * affected by the profile, e.g., megamorphic call sites, and the heap, left by
+ * benchmarks which preceded it.
+ * <p>
+ * The child is given the class of the {@link Bencheon}, which is instantiated
+ * by its public constructor with no arguments, or, if the {@link Bencheon} is
+ * {@link Serializable}, the instance itself, in serialized form. It is also
+ * given the current setting of the parent's {@link LogBook.Mutable}, the
+ * {@linkplain BenchingPolicy#getBenchingTime() benching time} and
+ * {@linkplain BenchingPolicy#minWarmup warmup time} of the parent, and whether
+ * the parent {@linkplain BenchingPolicy#checksConstantTime() checks} for
+ * eliminated computations. The child benchmarks the {@link Bencheon} with
+ * {@link BenchingPolicy#go}, and writes its log book to a file, whose
+ * measurements are then added to the parent's log book by
+ * {@link LogBook.Mutable#absorb}. The output of the child is kept in a file,
+ * and reported only if the child fails. */
+public final class BenchFork {
+  private static final String BENCHING_TIME = "spartan.bench.time";
+  private static final String MIN_WARMUP = "spartan.bench.warmup";
+  private static final String CHECK_CONSTANT_TIME = "spartan.bench.check";
+
+  /** Entry point of the child JVM.
+   * @param args the file to write the results to, the class of the
+   *        {@link Bencheon}, the file of its serialized instance, or
+   *        <code>-</code> if there is none, followed by the settings, each as
+   *        a key argument followed by a value argument, so that neither needs
+   *        escaping
+   * @throws Exception in case anything goes wrong, terminating the child with
+   *         an error */
+  public static void main(@NotNull final String[] args) throws Exception {
+    BenchingPolicy.setBenchingTime(Long.getLong(BENCHING_TIME, BenchingPolicy.getBenchingTime()).longValue());
+    BenchingPolicy.setMIN_WARMUP(Long.getLong(MIN_WARMUP, BenchingPolicy.minWarmup).longValue());
+    BenchingPolicy.setCheckConstantTime(Boolean.getBoolean(CHECK_CONSTANT_TIME));
+    @NotNull final Bencheon b = "-".equals(args[2]) ? (Bencheon) Class.forName(args[1]).getConstructor().newInstance() : (Bencheon) read(args[2]);
+    @NotNull final LogBook.Mutable $ = new LogBook.Mutable(null);
+    for (int ¢ = 3; ¢ + 1 < args.length; ¢ += 2)
+      $.set(args[¢], args[¢ + 1]);
+    BenchingPolicy.go($, b);
+    $.save(new File(args[0]));
+    System.exit(0);
+  }
+
+  @NotNull private static Object read(@NotNull final String fileName) throws IOException, ClassNotFoundException {
+    try (ObjectInputStream $ = new ObjectInputStream(new FileInputStream(fileName))) {
+      return $.readObject();
+    }
+  }
+
+  @NotNull private final List<String> jvmFlags;
+
+  /** @param jvmFlags flags for the child JVM, e.g., <code>-Xmx1g</code> */
+  public BenchFork(@NotNull final String... jvmFlags) {
+    this.jvmFlags = Arrays.asList(jvmFlags);
+  }
+
+  /** Benchmark a {@link Bencheon} in a child JVM, waiting for it to finish.
+   * @param b what to benchmark
+   * @param s the setting under which results are recorded
+   * @return the log book written by the child
+   * @throws IOException in case the child could not be run, or failed */
+  @NotNull public LogBook go(@NotNull final Bencheon b, @NotNull final LogBook.Setting s) throws IOException {
+    @NotNull final File results = File.createTempFile("bench", ".lgb"), output = File.createTempFile("bench", ".log");
+    @Nullable File instance = null;
+    try {
+      if (b instanceof Serializable)
+        try (ObjectOutputStream $ = new ObjectOutputStream(new FileOutputStream(instance = File.createTempFile("bench", ".ser")))) {
+          $.writeObject(b);
+        }
+      else
+        try {
+          b.getClass().getConstructor();
+        } catch (@NotNull final NoSuchMethodException ¢) {
+          throw new IllegalArgumentException(b.getClass() + " is neither serializable, nor has a public constructor with no arguments", ¢);
+        }
+      @NotNull final Process p = new ProcessBuilder(command(b, s, results, instance)).redirectErrorStream(true).redirectOutput(output).start();
+      final int status;
+      try {
+        status = p.waitFor();
+      } catch (@NotNull final InterruptedException ¢) {
+        p.destroyForcibly();
+        throw ¢;
+      }
+      if (status != 0)
+        throw new IOException(b.name + " failed in child JVM with status " + status + ":\n" + tail(output));
+      return LogBook.Mutable.readFrom(results);
+    } catch (@NotNull final InterruptedException ¢) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(¢ + "");
+    } catch (@NotNull final ClassNotFoundException ¢) {
+      throw new IOException(¢);
+    } finally {
+      results.delete();
+      output.delete();
+      if (instance != null)
+        instance.delete();
+    }
+  }
+
+  @NotNull private List<String> command(@NotNull final Bencheon b, @NotNull final Map<String, String> s, @NotNull final File results,
+      @Nullable final File instance) {
+    @NotNull final List<String> $ = new ArrayList<>();
+    $.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+    $.add("-Dfile.encoding=UTF-8");
+    $.addAll(jvmFlags);
+    $.add("-D" + BENCHING_TIME + "=" + BenchingPolicy.getBenchingTime());
+    $.add("-D" + MIN_WARMUP + "=" + BenchingPolicy.minWarmup);
+    $.add("-D" + CHECK_CONSTANT_TIME + "=" + BenchingPolicy.checksConstantTime());
+    $.add("-cp");
+    $.add(System.getProperty("java.class.path"));
+    $.add(BenchFork.class.getName());
+    $.add(results.getPath());
+    $.add(b.getClass().getName());
+    $.add(instance == null ? "-" : instance.getPath());
+    for (@NotNull final Map.Entry<String, String> ¢ : s.entrySet()) {
+      $.add(¢.getKey());
+      $.add(¢.getValue());
+    }
+    return $;
+  }
+
+  @NotNull private static String tail(@NotNull final File f) throws IOException {
+    try (RandomAccessFile $ = new RandomAccessFile(f, "r")) {
+      @NotNull final byte[] bs = new byte[(int) Math.min($.length(), 4096)];
+      $.seek($.length() - bs.length);
+      $.readFully(bs);
+      return new String(bs, StandardCharsets.UTF_8);
+    }
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @Test public void fork() throws IOException {
+      final long benchingTime = BenchingPolicy.getBenchingTime(), minWarmup = BenchingPolicy.minWarmup;
+      BenchingPolicy.setBenchingTime(Unit.SECOND / 100);
+      BenchingPolicy.setMIN_WARMUP(Unit.SECOND / 100);
+      try {
+        @NotNull final Bencher $ = new Bencher(this);
+        $.fork("-Xmx64m").set("Type", "forked");
+        $.go(new Bencheon.Hash());
+        $.go(new Bencheon.Hash());
+        assert $.values("Type").contains("forked");
+        assert $.values("operation").contains("Hash");
+        $.set("operation", "Hash").set("size", 1);
+        assertEquals(2, $.find().records.n());
+        assertEquals(2, $.find().columns().get("GC time").records.n());
+      } finally {
+        BenchingPolicy.setBenchingTime(benchingTime);
+        BenchingPolicy.setMIN_WARMUP(minWarmup);
+      }
+    }
+
+    @Test public void parallelForks() throws IOException {
+      final long benchingTime = BenchingPolicy.getBenchingTime(), minWarmup = BenchingPolicy.minWarmup;
+      BenchingPolicy.setBenchingTime(Unit.SECOND / 100);
+      BenchingPolicy.setMIN_WARMUP(Unit.SECOND / 100);
+      try {
+        @NotNull final Bencher $ = new Bencher(this);
+        $.fork().parallelForks(2);
+        for (int ¢ = 0; ¢ < 3; ++¢) {
+          $.set("Fork", "a=" + ¢);
+          $.go(new Bencheon.Hash());
+        }
+        $.join();
+        assertEquals(3, $.values("Fork").size());
+        assert $.values("Fork").contains("a=2");
+      } finally {
+        BenchingPolicy.setBenchingTime(benchingTime);
+        BenchingPolicy.setMIN_WARMUP(minWarmup);
+      }
+    }
+
+    @Test(expected = IllegalArgumentException.class) public void notInstantiable() throws IOException {
+      new BenchFork().go(new Bencheon.Exact(0, 0, 0), new LogBook.Setting());
+    }
+  }
+}
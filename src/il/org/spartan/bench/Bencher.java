@@ -1,5 +1,9 @@
 package il.org.spartan.bench;
 
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
 import org.jetbrains.annotations.*;
 
 import il.org.spartan.bench.operations.*;
@@ -7,6 +11,11 @@ import il.org.spartan.bench.operations.*;
 public class Bencher extends LogBook.Mutable {
   private static final long serialVersionUID = 1;
   private transient Operation after;
+  @Nullable private transient BenchFork fork;
+  @Nullable private transient ExecutorService forks;
+  /** Log books of child JVMs, which are absorbed, in order, by {@link #join()},
+   * so that only the calling thread touches this log book */
+  @Nullable private transient List<Future<LogBook>> pending;
 
   public Bencher(final Object initiator) {
     super(initiator);
@@ -23,11 +32,91 @@ public class Bencher extends LogBook.Mutable {
     return this;
   }
 
+  /** Run each subsequent {@link Bencheon} in a child JVM of its own, see
+   * {@link BenchFork}.
+   * @param jvmFlags flags for the child JVMs, e.g., <code>-Xmx1g</code>
+   * @return <code><b>this</b></code> */
+  @NotNull public Bencher fork(@NotNull final String... jvmFlags) {
+    fork = new BenchFork(jvmFlags);
+    return this;
+  }
+
+  /** Run up to the given number of child JVMs at the same time, each on a core
+   * of its own; use only if the machine has enough idle cores, and call
+   * {@link #join()} to wait for the results.
+   * @param n maximal number of concurrent child JVMs, truncated to the number
+   *        of available processors
+   * @return <code><b>this</b></code> */
+  @NotNull public Bencher parallelForks(final int n) {
+    join();
+    if (forks != null)
+      forks.shutdown();
+    forks = n <= 1 ? null : Executors.newFixedThreadPool(Math.min(n, Runtime.getRuntime().availableProcessors()), λ -> {
+      @NotNull final Thread $ = new Thread(λ, "BenchFork");
+      $.setDaemon(true);
+      return $;
+    });
+    return this;
+  }
+
+  /** Wait for all pending child JVMs to finish, and add their results to this
+   * log book. Once a child JVM fails, or the wait is interrupted, the results
+   * of those which already finished are still added, the others are
+   * cancelled, and then the first failure is thrown. */
+  public void join() {
+    if (pending == null)
+      return;
+    @Nullable RuntimeException $ = null;
+    for (@NotNull final Future<LogBook> ¢ : pending)
+      if ($ != null && !¢.isDone())
+        ¢.cancel(true);
+      else
+        try {
+          absorb(¢.get());
+          BenchingPolicy.after(after);
+        } catch (@NotNull final CancellationException x) {
+          if ($ == null)
+            $ = x;
+        } catch (@NotNull final InterruptedException x) {
+          Thread.currentThread().interrupt();
+          if ($ == null)
+            $ = new IllegalStateException(x);
+        } catch (@NotNull final ExecutionException x) {
+          if ($ == null)
+            $ = x.getCause() instanceof RuntimeException ? (RuntimeException) x.getCause() : new IllegalStateException(x.getCause());
+        }
+    pending.clear();
+    if ($ != null)
+      throw $;
+  }
+
   public void go(@NotNull final Bencheon ¢) {
-    BenchingPolicy.go(this, ¢);
+    if (fork == null) {
+      BenchingPolicy.go(this, ¢);
+      BenchingPolicy.after(after);
+      return;
+    }
+    @NotNull final BenchFork f = fork;
+    @NotNull final Setting s = new Setting();
+    s.putAll(current);
+    if (forks != null) {
+      if (pending == null)
+        pending = new ArrayList<>();
+      pending.add(forks.submit(() -> run(f, ¢, s)));
+      return;
+    }
+    absorb(run(f, ¢, s));
     BenchingPolicy.after(after);
   }
 
+  @NotNull private static LogBook run(@NotNull final BenchFork f, @NotNull final Bencheon b, @NotNull final Setting s) {
+    try {
+      return f.go(b, s);
+    } catch (@NotNull final IOException ¢) {
+      throw new UncheckedIOException(¢);
+    }
+  }
+
   public void go(final long size, @NotNull final NamedOperation o) {
     BenchingPolicy.go(this, size, o);
     BenchingPolicy.after(after);
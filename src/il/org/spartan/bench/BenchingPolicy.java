@@ -1,7 +1,11 @@
 package il.org.spartan.bench;
 
+import static il.org.spartan.azzert.*;
 import static il.org.spartan.bench.Unit.*;
 
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
 import org.jetbrains.annotations.*;
 import org.junit.*;
 
@@ -12,19 +16,28 @@ import il.org.spartan.sequence.*;
 import il.org.spartan.utils.*;
 
 /** Defines a set of policies for timing an operation.
+ * <p>
+ * Operations are timed on the calling thread by {@link #go}, or, by
+ * {@link #concurrent}, on several threads at once, to measure throughput.
+ * {@link #scalability} repeats the concurrent measurement with one thread, two
+ * threads, four threads, etc., up to the number of available processors.
  * @author Yossi Gil
  * @since 30/05/2011 */
 public enum BenchingPolicy {
   ;
   public static long minWarmup = SECOND / 2;
   private static long benchingTime = SECOND / 10;
+  /** Whether {@link #go} warns of operations whose time hardly grows with the
+   * number of runs; off by default, since {@link #constantTime} takes several
+   * times as long as the measurement itself */
+  private static boolean checkConstantTime;
   public static final long MAX_TIME = MINUTE;
   public static final int MIN_RUNS = 17;
   public static final int MAX_RUNS = 1 << 30;
 
   public static void after(@Nullable final Operation after) {
     if (after != null)
-      after.call();
+      Blackhole.local().consume(after.call());
   }
 
   /** Execute a given operation
@@ -41,15 +54,75 @@ public enum BenchingPolicy {
     }
   }
 
+  /** @return whether {@link #go} checks, by {@link #constantTime}, that the
+   *         computation of the operation was not eliminated */
+  public static boolean checksConstantTime() {
+    return checkConstantTime;
+  }
+
+  /** Detect measurements of an operation whose computation was probably
+   * eliminated by the JIT compiler: the time of such a measurement hardly grows
+   * with the number of runs. Each of the compared times is the minimum of a few
+   * measurements, to filter out noise.
+   * @param o an arbitrary operation
+   * @param runs a number of runs of this operation which takes a measurable
+   *        time
+   * @return <code><b>true</b></code> <i>iff</i> the time of the given number of
+   *         runs is less than twice that of a quarter of this number */
+  public static boolean constantTime(@NotNull final Operation o, final int runs) {
+    final int quarter = Math.max(1, runs / 4);
+    long small = Long.MAX_VALUE, large = Long.MAX_VALUE;
+    for (int ¢ = 0; ¢ < 3; ++¢) {
+      small = Math.min(small, o.netTime(quarter).time());
+      large = Math.min(large, o.netTime(4 * quarter).time());
+    }
+    return large < 2 * small;
+  }
+
+  /** Time an operation executed concurrently by a number of threads, each
+   * executing it the number of runs which a single thread executes in the
+   * {@linkplain #getBenchingTime() benching time}, after a single threaded
+   * calibration and warmup. The threads start together, released by a barrier.
+   * Records, in the given log book, with setting <code>threads</code>, the
+   * aggregate throughput, in operations per second, with setting
+   * <code>Mode</code> being <code>throughput</code>, and the number of bytes
+   * allocated per operation, if the JVM can tell, in column
+   * <code>allocation</code> of the same entry, and the latency of each thread,
+   * with <code>Mode</code> being <code>latency</code>. The previous values of
+   * settings <code>threads</code> and <code>Mode</code> are restored when
+   * done.
+   * @param m where to record the results
+   * @param name name of the operation
+   * @param size size of the operation
+   * @param o what to execute; must be thread safe
+   * @param threads number of threads
+   * @return the aggregate number of operations per second */
+  public static double concurrent(@NotNull final LogBook.Mutable m, final String name, final long size, @NotNull final Operation o,
+      final int threads) {
+    ___.positive(threads);
+    @Nullable final String previousThreads = m.current().get("threads"), previousMode = m.current().get("Mode");
+    try {
+      return throughput(m.set("operation", name).set("size", size).set("threads", threads), name, size, o, threads);
+    } finally {
+      restore(m, "threads", previousThreads);
+      restore(m, "Mode", previousMode);
+    }
+  }
+
+  public static double concurrent(@NotNull final LogBook.Mutable m, @NotNull final Bencheon b, final int threads) {
+    return concurrent(m, b.name, b.size, b, threads);
+  }
+
   public static long gcCylces(@NotNull final LogBook.Mutable m, @NotNull final Bencheon b, final int runs) {
     m.set("operation", b.name).set("size", b.size);
     return gcCylces(m, (Operation) b, runs);
   }
 
   public static long gcCylces(@NotNull final LogBook.Mutable m, @NotNull final Operation o, final int runs) {
+    @NotNull final Blackhole b = Blackhole.local();
     @NotNull final JVM before = new JVM();
     for (int ¢ = 0; ¢ < runs; ++¢)
-      o.call();
+      b.consume(o.call());
     final long $ = new JVM().gcCycles - before.gcCycles;
     m.set("runs", runs).record($);
     return $;
@@ -75,6 +148,8 @@ public enum BenchingPolicy {
     int runs = runs(e.estimate());
     if (JVM.hasCompiler())
       runs = warmup(e, runs);
+    if (checkConstantTime && constantTime(o, runs))
+      Log.ln("Warning: time of", name, "hardly grows with the number of runs; its computation was probably eliminated");
     measure(m, size, o, runs);
     Log.endStage();
   }
@@ -98,6 +173,24 @@ public enum BenchingPolicy {
     return runs(approximateSteadyStateTime(¢));
   }
 
+  /** Time an operation {@linkplain #concurrent concurrently} by one thread,
+   * two threads, four threads, etc., and finally, by as many threads as there
+   * are available processors, producing a scalability curve.
+   * @param m where to record the results
+   * @param name name of the operation
+   * @param size size of the operation
+   * @param o what to execute; must be thread safe */
+  public static void scalability(@NotNull final LogBook.Mutable m, final String name, final long size, @NotNull final Operation o) {
+    final int processors = Runtime.getRuntime().availableProcessors();
+    for (int $ = 1; $ < processors; $ <<= 1)
+      concurrent(m, name, size, o, $);
+    concurrent(m, name, size, o, processors);
+  }
+
+  public static void scalability(@NotNull final LogBook.Mutable m, @NotNull final Bencheon b) {
+    scalability(m, b.name, b.size, b);
+  }
+
   public static void setBenchingTime(final double benchingTime) {
     setBenchingTime(1L * benchingTime);
   }
@@ -106,6 +199,12 @@ public enum BenchingPolicy {
     BenchingPolicy.benchingTime = benchingTime;
   }
 
+  /** @param ¢ whether {@link #go} should check, by {@link #constantTime},
+   *        that the computation of the operation was not eliminated */
+  public static void setCheckConstantTime(final boolean ¢) {
+    checkConstantTime = ¢;
+  }
+
   public static void setMIN_WARMUP(final float minWarmup) {
     setMIN_WARMUP(1L * minWarmup);
   }
@@ -138,14 +237,26 @@ public enum BenchingPolicy {
     return $;
   }
 
+  /** Time an operation, repeating the measurement until it is not disturbed
+   * by the JIT compiler or the garbage collector. Records, in the current entry
+   * of the given log book, the time per operation, and, in additional
+   * {@linkplain LogBook.Column columns} of this entry, the number of bytes it
+   * allocates, in column <code>allocation</code>, if the JVM can tell, and the
+   * time spent in garbage collection per operation in all runs of its
+   * {@link TimingEstimator}, in column <code>GC time</code>. */
   static void measure(@NotNull final LogBook.Mutable m, final long size, @NotNull final Operation o, final int initialRuns) {
     for (int runs = initialRuns;;) {
       Log.print("Silence, measuring " + Unit.INTEGER.format(runs) + " runs ... ");
       @NotNull final JVM before = new JVM();
+      final long allocated = JVM.allocatedBytes();
       final long time = o.netTime(runs).time();
+      final long allocatedBytes = JVM.allocatedSince(allocated);
       @NotNull final JVM after = new JVM();
       if (before.equals(after)) {
         m.recordNanoseconds(time, runs * size);
+        if (allocatedBytes >= 0)
+          m.recordColumn("allocation", 1. * allocatedBytes / (runs * size), BYTES);
+        m.recordColumn("GC time", TimingEstimator.estimator(o).gcTime() / size, NANOSECONDS);
         Log.print(Unit.formatNanoseconds(1.0 * time / (runs * size)) + "\n");
         Log.ln("Measurement: " + Unit.formatNanoseconds(time));
         break;
@@ -176,6 +287,76 @@ public enum BenchingPolicy {
     Log.endCompoundStage();
   }
 
+  /** @param m a log book
+   * @param key a setting of this log book
+   * @param value the value this setting had, or <code><b>null</b></code> if it
+   *        had none */
+  private static void restore(@NotNull final LogBook.Mutable m, final String key, @Nullable final String value) {
+    if (value == null)
+      m.current().remove(key);
+    else
+      m.set(key, value);
+  }
+
+  /** The measurement of {@link #concurrent}, recording with the settings of
+   * the log book it is given */
+  private static double throughput(@NotNull final LogBook.Mutable m, final String name, final long size, @NotNull final Operation o,
+      final int threads) {
+    Log.beginStage("Benchmarking", name + ":" + size, "on " + threads + " threads");
+    @NotNull final TimingEstimator e = TimingEstimator.estimator(o);
+    calibrate(e);
+    int initialRuns = runs(e.estimate());
+    if (JVM.hasCompiler())
+      initialRuns = warmup(e, initialRuns);
+    final int runs = initialRuns;
+    @NotNull final long[] latencies = new long[threads], ends = new long[threads], allocations = new long[threads];
+    @NotNull final AtomicLong begin = new AtomicLong();
+    @NotNull final AtomicReference<Throwable> failure = new AtomicReference<>();
+    @NotNull final CyclicBarrier start = new CyclicBarrier(threads, () -> begin.set(System.nanoTime()));
+    @NotNull final Thread[] ts = new Thread[threads];
+    for (int ¢ = 0; ¢ < threads; ++¢) {
+      final int i = ¢;
+      ts[¢] = new Thread(() -> {
+        try {
+          start.await();
+          final long allocated = JVM.allocatedBytes();
+          latencies[i] = o.netTime(runs).time();
+          ends[i] = System.nanoTime();
+          allocations[i] = JVM.allocatedSince(allocated);
+        } catch (@NotNull final Throwable x) {
+          failure.compareAndSet(null, x);
+          start.reset();
+        }
+      }, name + "#" + ¢);
+      ts[¢].start();
+    }
+    for (@NotNull final Thread ¢ : ts)
+      try {
+        ¢.join();
+      } catch (@NotNull final InterruptedException x) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException(x);
+      }
+    if (failure.get() != null)
+      throw new IllegalStateException(failure.get());
+    long end = 0;
+    for (final long ¢ : ends)
+      end = Math.max(end, ¢);
+    final double $ = 1E9 * threads * runs * size / Math.max(1, end - begin.get());
+    m.set("Mode", "throughput").record($);
+    long allocatedBytes = 0;
+    for (final long ¢ : allocations)
+      allocatedBytes = allocatedBytes < 0 || ¢ < 0 ? -1 : allocatedBytes + ¢;
+    if (allocatedBytes >= 0)
+      m.recordColumn("allocation", 1. * allocatedBytes / (threads * runs * size), BYTES);
+    for (final long ¢ : latencies)
+      m.set("Mode", "latency").recordNanoseconds(1. * ¢ / (runs * size));
+    Log.ln("Throughput: " + Unit.INTEGER.format($) + " operations per second");
+    Log.endStage();
+    return $;
+  }
+
+
   private static double tuneupSteadyState(@NotNull final TimingEstimator $) {
     for (int estimatedRuns = runs($.estimate()); estimatedRuns > 1; estimatedRuns /= 2)
       if ($.run(estimatedRuns) != null)
@@ -201,6 +382,33 @@ public enum BenchingPolicy {
       l.printBy(Consolidation.LIST);
     }
 
+    @Test public void concurrentExact() {
+      @NotNull final LogBook.Mutable l = new LogBook.Mutable(this).set("Mode", "setup");
+      final double throughput = concurrent(l, new Bencheon.Exact(0, 0, 1000), 2);
+      assert throughput > 0;
+      assert l.values("threads").contains("2");
+      azzert.that(l.current().get("Mode"), is("setup"));
+      assert !l.current().containsKey("threads");
+      azzert.that(l.size(), is(2));
+      azzert.that(l.entries().iterator().next().columns().containsKey("allocation"), is(JVM.allocatedBytes() >= 0));
+      l.printBy(Consolidation.LIST);
+    }
+
+    @Test public void measureAllocation() {
+      Assume.assumeTrue(JVM.allocatedBytes() >= 0);
+      @NotNull final LogBook.Mutable l = new LogBook.Mutable(this);
+      measure(l, 1, new Operation() {
+        @Override public Object call() {
+          return new byte[1000];
+        }
+      }, 1000);
+      assert !l.current().containsKey("Mode");
+      azzert.that(l.size(), is(1));
+      final double $ = l.currentEntry().columns().get("allocation").recorded()[0];
+      assert $ >= 1000 : $;
+      assert $ < 1100 : $;
+    }
+
     @Test public void compareEmptyHeavyInit() {
       timeBencheon(new Bencheon.Exact(1000, 1000, 0));
     }
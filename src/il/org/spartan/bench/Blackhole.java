@@ -0,0 +1,94 @@
+package il.org.spartan.bench;
+
+import static org.junit.Assert.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.bench.operations.*;
+
+/** A sink for the results of measured code, which the JIT compiler cannot
+ * prove to be useless, and hence cannot eliminate the computation of these
+ * results, even after inlining this computation into a measurement loop.
+ * <p>
+ * Primitive values are compared with two <code><b>volatile</b></code> fields
+ * holding distinct values, so the comparison must be carried out, but is never
+ * true. Objects are published, once in a while, to a
+ * <code><b>volatile</b></code> field; the intervals between publications grow
+ * exponentially, using a pseudo random generator kept in plain fields, so that
+ * consuming costs a few cycles, and no memory traffic. Instances are not
+ * thread safe; use {@link #local()} to obtain the one of the current thread. */
+public final class Blackhole {
+  private static final ThreadLocal<Blackhole> locals = ThreadLocal.withInitial(Blackhole::new);
+
+  /** @return the {@link Blackhole} of the current thread */
+  @NotNull public static Blackhole local() {
+    return locals.get();
+  }
+
+  private volatile int int1 = 1;
+  private volatile int int2 = 2;
+  private volatile long long1 = 1;
+  private volatile long long2 = 2;
+  private volatile double double1 = 1;
+  private volatile double double2 = 2;
+  @Nullable private volatile Object sink;
+  private int random = (int) System.nanoTime();
+  private int mask = 1;
+
+  /** @param ¢ an arbitrary value, whose computation must not be eliminated */
+  public void consume(final double ¢) {
+    if (¢ == double1 & ¢ == double2)
+      sink = this; // Never happens
+  }
+
+  /** @param ¢ an arbitrary value, whose computation must not be eliminated */
+  public void consume(final int ¢) {
+    if (¢ == int1 & ¢ == int2)
+      sink = this; // Never happens
+  }
+
+  /** @param ¢ an arbitrary value, whose computation must not be eliminated */
+  public void consume(final long ¢) {
+    if (¢ == long1 & ¢ == long2)
+      sink = this; // Never happens
+  }
+
+  /** @param ¢ an arbitrary object, whose computation must not be
+   *        eliminated */
+  public void consume(@Nullable final Object ¢) {
+    random = random * 1664525 + 1013904223;
+    if ((random & mask) != 0)
+      return;
+    sink = ¢;
+    mask = mask << 1 | 1;
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @Test public void neverTrue() {
+      @NotNull final Blackhole b = new Blackhole();
+      for (int ¢ = 0; ¢ < 1000; ++¢) {
+        b.consume(¢);
+        b.consume((long) ¢);
+        b.consume((double) ¢);
+      }
+      assertNull(b.sink);
+    }
+
+    @Test public void publishesRarely() {
+      @NotNull final Blackhole b = new Blackhole();
+      for (int ¢ = 0; ¢ < 1 << 20; ++¢)
+        b.consume("");
+      assert b.mask > 1;
+      assert b.mask < 1 << 24;
+    }
+
+    @Test public void growingTimeIsNotConstant() {
+      assert !BenchingPolicy.constantTime(new Bencheon.Exact(0, 0, 10_000), 64);
+    }
+
+    @Test public void local() {
+      assert Blackhole.local() == Blackhole.local();
+    }
+  }
+}
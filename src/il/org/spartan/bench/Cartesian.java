@@ -3,6 +3,8 @@ package il.org.spartan.bench;
 import static il.org.spartan.azzert.*;
 import static il.org.spartan.utils.___.*;
 
+import java.util.*;
+
 import org.jetbrains.annotations.*;
 import org.junit.*;
 
@@ -101,7 +103,109 @@ public class Cartesian {
     return $;
   }
 
+  /** Generalizes {@link #makeObliqueProduct(Object[], Object[])} to any
+   * number of dimensions.
+   * @param sizes number of values along each dimension
+   * @return all tuples of indices into these dimensions, by diagonals, i.e.,
+   *         in increasing order of the sum of indices, so that the sums of
+   *         consecutive tuples differ by at most one; diagonals are
+   *         alternately traversed in opposite directions. Unlike
+   *         {@link #reflectedIndices(int...)}, consecutive tuples of a diagonal
+   *         differ in at least two indices */
+  @NotNull public static int[][] obliqueIndices(@NotNull final int... sizes) {
+    @NotNull final int[][] $ = reflectedIndices(sizes);
+    Arrays.sort($, (is1, is2) -> Integer.compare(sum(is1), sum(is2)) != 0 ? Integer.compare(sum(is1), sum(is2)) : compare(is1, is2));
+    for (int from = 0, to; from < $.length; from = to) {
+      for (to = from + 1; to < $.length && sum($[to]) == sum($[from]);)
+        ++to;
+      if (sum($[from]) % 2 == 1)
+        Collections.reverse(Arrays.asList($).subList(from, to));
+    }
+    return $;
+  }
+
+  /** Generalizes {@link #makeProduct(Object[], Object[])} to any number of
+   * dimensions.
+   * @param sizes number of values along each dimension
+   * @return all tuples of indices into these dimensions, in a reflected
+   *         order, i.e., as in a Gray code, consecutive tuples differ by one,
+   *         in exactly one index; the first index changes least often */
+  @NotNull public static int[][] reflectedIndices(@NotNull final int... sizes) {
+    int n = 1;
+    for (final int ¢ : sizes) {
+      nonnegative(¢);
+      n = Math.multiplyExact(n, ¢);
+    }
+    @NotNull final int[][] $ = new int[n][sizes.length];
+    for (int ¢ = 0; ¢ < n; ++¢)
+      for (int i = 0, weight = n, rest = ¢; i < sizes.length; ++i) {
+        weight /= sizes[i];
+        $[¢][i] = rest / weight;
+        rest %= weight;
+        if ($[¢][i] % 2 == 1)
+          rest = weight - 1 - rest;
+      }
+    return $;
+  }
+
+  private static int compare(@NotNull final int[] is1, @NotNull final int[] is2) {
+    for (int ¢ = 0; ¢ < is1.length; ++¢)
+      if (is1[¢] != is2[¢])
+        return Integer.compare(is1[¢], is2[¢]);
+    return 0;
+  }
+
+  private static int sum(@NotNull final int[] is) {
+    int $ = 0;
+    for (final int ¢ : is)
+      $ += ¢;
+    return $;
+  }
+
   @SuppressWarnings("static-method") public static class TEST {
+    private static int distance(@NotNull final int[] is1, @NotNull final int[] is2) {
+      int $ = 0;
+      for (int ¢ = 0; ¢ < is1.length; ++¢)
+        $ += Math.abs(is1[¢] - is2[¢]);
+      return $;
+    }
+
+    @Test public void reflected() {
+      @NotNull final int[][] $ = reflectedIndices(3, 4, 5);
+      azzert.that($.length, is(60));
+      azzert.that(new HashSet<>(Arrays.asList(Arrays.stream($).map(Arrays::toString).toArray())).size(), is(60));
+      for (int ¢ = 1; ¢ < $.length; ++¢)
+        azzert.that(distance($[¢ - 1], $[¢]), is(1));
+      azzert.that(Arrays.toString($[5]), is("[0, 1, 4]"));
+    }
+
+    @Test public void oblique() {
+      @NotNull final int[][] $ = obliqueIndices(3, 4, 5);
+      azzert.that($.length, is(60));
+      azzert.that(Arrays.toString($[0]), is("[0, 0, 0]"));
+      for (int ¢ = 1; ¢ < $.length; ++¢)
+        azzert.that(sum($[¢]) - sum($[¢ - 1]), anyOf(is(0), is(1)));
+      azzert.that(Arrays.toString($[$.length - 1]), is("[2, 3, 4]"));
+    }
+
+    @Test public void obliquePlane() {
+      @NotNull final int[][] $ = obliqueIndices(4, 5);
+      for (int ¢ = 1; ¢ < $.length; ++¢)
+        if (sum($[¢]) == sum($[¢ - 1])) {
+          azzert.that(Math.abs($[¢][0] - $[¢ - 1][0]), is(1));
+          azzert.that(Math.abs($[¢][1] - $[¢ - 1][1]), is(1));
+        }
+    }
+
+    @Test(expected = ArithmeticException.class) public void reflectedOverflow() {
+      reflectedIndices(1 << 16, 1 << 16);
+    }
+
+    @Test public void reflectedEmpty() {
+      azzert.that(reflectedIndices(3, 0).length, is(0));
+      azzert.that(reflectedIndices().length, is(1));
+    }
+
     @Test public void makeArray000() {
       azzert.that(makeObliqueProduct(new Object[0], new Object[0], new Object[0]).length, is(0));
     }
@@ -0,0 +1,247 @@
+package il.org.spartan.bench;
+
+import static il.org.spartan.azzert.*;
+import static il.org.spartan.utils.___.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+/** A histogram of non-negative <code><b>long</b></code> values, e.g.,
+ * latencies measured in nano-seconds, in the style of HdrHistogram: values
+ * are counted in buckets whose width grows with the magnitude of the values
+ * they hold, so that the relative error of any reported value is at most
+ * <code>2<sup>1-{@value #PRECISION}</sup></code>, i.e., less than 1%,
+ * regardless of the range of values.
+ * <p>
+ * Values less than <code>2<sup>{@value #PRECISION}</sup></code> have a bucket
+ * of their own; larger values share a bucket with values that agree with them
+ * on their {@value #PRECISION} most significant bits. Memory is therefore
+ * bounded by a few thousands of counters, whatever the number of recorded
+ * values; counters are allocated only up to the bucket of the largest value
+ * seen. Recording is a constant time operation, and histograms of the same
+ * quantity can be {@linkplain #add(Histogram) merged}. */
+public final class Histogram implements Serializable {
+  /** Number of significant bits of each value which are kept */
+  public static final int PRECISION = 8;
+  private static final long serialVersionUID = 1;
+  private static final int SUB_BUCKETS = 1 << PRECISION;
+  private static final int HALF = SUB_BUCKETS / 2;
+
+  /** @param ¢ a non-negative value
+   * @return the number of the bucket of this value */
+  static int bucket(final long ¢) {
+    final int shift = 64 - Long.numberOfLeadingZeros(¢) - PRECISION;
+    return shift <= 0 ? (int) ¢ : SUB_BUCKETS + (shift - 1) * HALF + (int) (¢ >>> shift) - HALF;
+  }
+
+  /** @param bucket a bucket number
+   * @return the smallest value in this bucket */
+  static long lowest(final int bucket) {
+    if (bucket < SUB_BUCKETS)
+      return bucket;
+    final int shift = (bucket - SUB_BUCKETS) / HALF + 1;
+    return (long) ((bucket - SUB_BUCKETS) % HALF + HALF) << shift;
+  }
+
+  /** @param bucket a bucket number
+   * @return the largest value in this bucket */
+  static long highest(final int bucket) {
+    return bucket < SUB_BUCKETS ? bucket : lowest(bucket + 1) - 1;
+  }
+
+  /** Inverse of {@link #write(DataOutput)}
+   * @param ¢ a buffer, positioned at the beginning of a histogram
+   * @return the histogram read from this buffer, which is positioned after
+   *         it */
+  @NotNull static Histogram read(@NotNull final ByteBuffer ¢) {
+    @NotNull final Histogram $ = new Histogram();
+    $.n = ¢.getLong();
+    $.min = ¢.getLong();
+    $.max = ¢.getLong();
+    $.sum = ¢.getDouble();
+    for (int i = ¢.getInt(); i > 0; --i) {
+      final int bucket = ¢.getInt();
+      if (bucket >= $.counts.length)
+        $.counts = Arrays.copyOf($.counts, bucket + 1);
+      $.counts[bucket] = ¢.getLong();
+    }
+    return $;
+  }
+
+  @NotNull private long[] counts = new long[SUB_BUCKETS];
+  private long n;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+  private double sum;
+
+  /** Merge the values of another histogram into this one.
+   * @param other an arbitrary histogram
+   * @return <code><b>this</b></code> */
+  @NotNull public Histogram add(@NotNull final Histogram other) {
+    if (other.counts.length > counts.length)
+      counts = Arrays.copyOf(counts, other.counts.length);
+    for (int ¢ = 0; ¢ < other.counts.length; ++¢)
+      counts[¢] += other.counts[¢];
+    n += other.n;
+    sum += other.sum;
+    min = Math.min(min, other.min);
+    max = Math.max(max, other.max);
+    return this;
+  }
+
+  /** @return the largest value recorded, or 0 if there are none */
+  public long max() {
+    return n == 0 ? 0 : max;
+  }
+
+  /** @return the average of all recorded values, or {@link Double#NaN} if
+   *         there are none */
+  public double mean() {
+    return n == 0 ? Double.NaN : sum / n;
+  }
+
+  /** @return the smallest value recorded, or 0 if there are none */
+  public long min() {
+    return n == 0 ? 0 : min;
+  }
+
+  /** @return the number of values recorded */
+  public long n() {
+    return n;
+  }
+
+  /** @param percentile a number between 0 and 100
+   * @return a value such that at least the given percentage of recorded values
+   *         are not greater than it, accurate up to the precision of this
+   *         histogram, or 0 if there are no values */
+  public long percentile(final double percentile) {
+    require(percentile >= 0 && percentile <= 100);
+    if (n == 0)
+      return 0;
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+    long seen = 0;
+    for (int ¢ = 0; ¢ < counts.length; ++¢)
+      if ((seen += counts[¢]) >= rank)
+        return Math.max(min, Math.min(max, highest(¢)));
+    return max;
+  }
+
+  /** @param ¢ a non-negative value
+   * @return <code><b>this</b></code> */
+  @NotNull public Histogram record(final long ¢) {
+    return record(¢, 1);
+  }
+
+  /** @param value a non-negative value
+   * @param count number of times this value occurred
+   * @return <code><b>this</b></code> */
+  @NotNull public Histogram record(final long value, final long count) {
+    nonnegative(value);
+    final int b = bucket(value);
+    if (b >= counts.length)
+      counts = Arrays.copyOf(counts, Math.max(b + 1, Math.min(2 * counts.length, bucket(Long.MAX_VALUE) + 1)));
+    counts[b] += count;
+    n += count;
+    sum += 1. * value * count;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+    return this;
+  }
+
+  /** @param u the unit of the recorded values
+   * @return the 50th, 90th, 99th and 99.9th percentiles, and the maximum, of
+   *         the recorded values */
+  @NotNull public String format(@Nullable final Unit u) {
+    return "p50=" + format(u, percentile(50)) + " p90=" + format(u, percentile(90)) + " p99=" + format(u, percentile(99)) + " p99.9="
+        + format(u, percentile(99.9)) + " max=" + format(u, max()) + " n=" + n;
+  }
+
+  @Override @NotNull public String toString() {
+    return format(null);
+  }
+
+  /** Write this histogram compactly, i.e., only buckets which are not empty
+   * @param ¢ where to write
+   * @throws IOException in case of failure */
+  void write(@NotNull final DataOutput ¢) throws IOException {
+    int buckets = 0;
+    for (final long count : counts)
+      buckets += count == 0 ? 0 : 1;
+    ¢.writeLong(n);
+    ¢.writeLong(min);
+    ¢.writeLong(max);
+    ¢.writeDouble(sum);
+    ¢.writeInt(buckets);
+    for (int i = 0; i < counts.length; ++i)
+      if (counts[i] != 0) {
+        ¢.writeInt(i);
+        ¢.writeLong(counts[i]);
+      }
+  }
+
+  @NotNull private static String format(@Nullable final Unit u, final long ¢) {
+    return u == null ? ¢ + "" : u.format(¢);
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @Test public void bucketsAreContiguous() {
+      for (int ¢ = 0; ¢ < bucket(Long.MAX_VALUE); ++¢) {
+        azzert.that(bucket(lowest(¢)), is(¢));
+        azzert.that(bucket(highest(¢)), is(¢));
+        azzert.that(highest(¢) + 1, is(lowest(¢ + 1)));
+      }
+      azzert.that(highest(bucket(Long.MAX_VALUE)), is(Long.MAX_VALUE));
+    }
+
+    @Test public void relativeError() {
+      for (long ¢ = 1; ¢ > 0; ¢ = 3 * ¢ / 2 + 1)
+        assert highest(bucket(¢)) - lowest(bucket(¢)) <= ¢ >> PRECISION - 1;
+    }
+
+    @Test public void smallValuesAreExact() {
+      @NotNull final Histogram h = new Histogram();
+      for (int ¢ = 1; ¢ <= 100; ++¢)
+        h.record(¢);
+      azzert.that(h.percentile(50), is(50L));
+      azzert.that(h.percentile(90), is(90L));
+      azzert.that(h.percentile(99), is(99L));
+      azzert.that(h.percentile(100), is(100L));
+      azzert.that(h.percentile(0), is(1L));
+      assertEquals(50.5, h.mean(), 1E-9);
+    }
+
+    @Test public void largeValuesAreApproximate() {
+      @NotNull final Histogram h = new Histogram();
+      for (long ¢ = 1; ¢ <= 1_000_000; ++¢)
+        h.record(1000 * ¢);
+      assertEquals(500_000_000, h.percentile(50), 500_000_000 >> PRECISION - 1);
+      assertEquals(999_000_000, h.percentile(99.9), 999_000_000 >> PRECISION - 1);
+      azzert.that(h.max(), is(1_000_000_000L));
+      assert h.counts.length <= 2 * (bucket(1_000_000_000L) + 1);
+    }
+
+    @Test public void merge() {
+      @NotNull final Histogram h1 = new Histogram(), h2 = new Histogram(), h = new Histogram();
+      for (long ¢ = 0; ¢ < 10_000; ++¢) {
+        (¢ % 3 == 0 ? h1 : h2).record(¢ * ¢);
+        h.record(¢ * ¢);
+      }
+      h1.add(h2);
+      azzert.that(h1.n(), is(h.n()));
+      for (final double ¢ : new double[] { 0, 50, 90, 99, 99.9, 100 })
+        azzert.that(h1.percentile(¢), is(h.percentile(¢)));
+    }
+
+    @Test public void empty() {
+      azzert.that(new Histogram().percentile(99), is(0L));
+      assert Double.isNaN(new Histogram().mean());
+    }
+  }
+}
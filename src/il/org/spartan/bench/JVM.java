@@ -16,6 +16,26 @@ import il.org.spartan.utils.Separator;
  * @since 03/06/2011 */
 public final class JVM {
   private static final boolean hasCompiler = ManagementFactory.getCompilationMXBean() != null;
+  /** Per thread allocation accounting, or <code><b>null</b></code> if this
+   * JVM does not support it */
+  @Nullable private static final com.sun.management.ThreadMXBean threads = threads();
+  /** Number of bytes allocated by {@link #allocatedBytes()} itself */
+  private static final long allocationOverhead = allocationOverhead();
+
+  /** @return the total number of bytes allocated so far by the current
+   *         thread, or -1 if this JVM cannot tell */
+  public static long allocatedBytes() {
+    return threads == null ? -1 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  /** @param before a previous value of {@link #allocatedBytes()}, obtained by
+   *        the current thread
+   * @return the number of bytes allocated by the current thread since, or -1
+   *         if this JVM cannot tell */
+  public static long allocatedSince(final long before) {
+    final long $ = allocatedBytes();
+    return $ < 0 || before < 0 ? -1 : Math.max(0, $ - before - allocationOverhead);
+  }
 
   public static void gc() {
     final long initially = TotalMemory.heapSize();
@@ -118,6 +138,25 @@ public final class JVM {
     return compileTime != o.compileTime;
   }
 
+  private static long allocationOverhead() {
+    long $ = Long.MAX_VALUE;
+    for (int ¢ = 0; ¢ < 10; ++¢)
+      $ = Math.min($, -allocatedBytes() + allocatedBytes());
+    return $;
+  }
+
+  @Nullable private static com.sun.management.ThreadMXBean threads() {
+    try {
+      final ThreadMXBean $ = ManagementFactory.getThreadMXBean();
+      if (!($ instanceof com.sun.management.ThreadMXBean) || !((com.sun.management.ThreadMXBean) $).isThreadAllocatedMemorySupported())
+        return null;
+      ((com.sun.management.ThreadMXBean) $).setThreadAllocatedMemoryEnabled(true);
+      return (com.sun.management.ThreadMXBean) $;
+    } catch (@NotNull final LinkageError | UnsupportedOperationException | SecurityException ¢) {
+      return null;
+    }
+  }
+
   @Override @NotNull public String toString() {
     return new StringBuilder().append("JIT𝝉=" + Unit.MILLISECONDS.format(compileTime))
         .append(" #Classes=" + loadedClasses + "(current) " + removedClasses + "(removed) " + seenClasses + "(seen)")
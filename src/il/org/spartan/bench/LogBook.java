@@ -30,8 +30,12 @@ import il.org.spatan.iteration.*;
  * <li>Experimental settings, represented as class {@link Setting}, which is
  * simply a set of "Key=Value" strings.
  * <li>Measurements, which are a set of <code><b>double</b></code> values,
- * represented as class {@link RealStatistics}.
+ * represented as class {@link RealStatistics}, or, for long campaigns, a
+ * {@link Histogram} of <code><b>long</b></code> values, whose size does not
+ * grow with the number of measurements.
  * <li>Unit of measurement, defined by class {@link Unit}.
+ * <li>Additional measurements, such as the bytes allocated by the measured
+ * operation, each in a named {@link Column} with its own unit.
  * <p>
  * Multiple measurements are typically stored with each settings.
  * <p>
@@ -58,6 +62,19 @@ public abstract class LogBook implements Serializable {
     return $;
   }
 
+  /** Order of values of a key, by which entries are sorted: numbers precede
+   * other strings, and are compared by their value, while a missing value is
+   * last */
+  static int compareValues(@Nullable final String s1, @NotNull final String s2) {
+    return s1 == null ? s2 == null ? 0 : 1 : compareNumeric(s1, s2);
+  }
+
+  private static int compareNumeric(@NotNull final String s1, @NotNull final String s2) {
+    return isInt(s1) && isInt(s2) ? atoi(s1) - atoi(s2)
+        : isDouble(s1) && isDouble(s2) ? signum(atod(s1) - atod(s2))
+            : isInt(s1) || isDouble(s1) ? -1 : isInt(s2) || isDouble(s2) ? 1 : s1.compareTo(s2);
+  }
+
   @NotNull static Keys values(@NotNull final Iterable<Entry> es, final String key) {
     @NotNull final Keys $ = new Keys();
     for (@NotNull final Entry e : es) {
@@ -132,10 +149,13 @@ public abstract class LogBook implements Serializable {
     return true;
   }
 
+  /** @param f a file written by {@link #save(File)}, or by
+   *        {@link #writeTo(File)}
+   * @throws IOException in case of failure
+   * @throws ClassNotFoundException in case the file is serialized, and its
+   *         classes could not be found */
   public void merge(@NotNull final File f) throws IOException, ClassNotFoundException {
-    @NotNull final ObjectInputStream in = new ObjectInputStream(new FileInputStream(f));
-    merge((LogBook) in.readObject());
-    in.close();
+    merge(Mutable.readFrom(f));
   }
 
   public void merge(@NotNull final LogBook other) {
@@ -163,6 +183,15 @@ public abstract class LogBook implements Serializable {
     commonKeys().forEach(this::remove);
   }
 
+  /** @param ¢ a file to write to, in the compact format of
+   *        {@link LogBookFile}
+   * @return <code><b>this</b></code>
+   * @throws IOException in case of failure */
+  @NotNull public LogBook save(@NotNull final File ¢) throws IOException {
+    LogBookFile.write(this, ¢);
+    return this;
+  }
+
   @NotNull public final LogBook setFormat(final String format) {
     this.format = format;
     return this;
@@ -181,24 +210,12 @@ public abstract class LogBook implements Serializable {
 
   @NotNull public final LogBook sortBy(@NotNull final String... keys) {
     @NotNull final Entry[] es = Iterables.toArray(book, LogBook.Entry.class);
-    Arrays.sort(es, new Comparator<Entry>() {
-      @Override public int compare(@NotNull final Entry e1, @NotNull final Entry e2) {
-        int $;
-        for (final String key : keys)
-          if (($ = compare(e1.get(key), e2.get(key))) != 0)
-            return $;
-        return 0;
-      }
-
-      int compare(@Nullable final String s1, @NotNull final String s2) {
-        return s1 == null ? s2 == null ? 0 : 1 : compareNumeric(s1, s2);
-      }
-
-      int compareNumeric(@NotNull final String s1, @NotNull final String s2) {
-        return isInt(s1) && isInt(s2) ? atoi(s1) - atoi(s2)
-            : isDouble(s1) && isDouble(s2) ? signum(atod(s1) - atod(s2))
-                : isInt(s1) || isDouble(s1) ? -1 : isInt(s2) || isDouble(s2) ? 1 : s1.compareTo(s2);
-      }
+    Arrays.sort(es, (e1, e2) -> {
+      int $;
+      for (final String key : keys)
+        if (($ = compareValues(e1.get(key), e2.get(key))) != 0)
+          return $;
+      return 0;
     });
     book.clear();
     Iterables.addAll(book, es);
@@ -209,14 +226,14 @@ public abstract class LogBook implements Serializable {
     return values(book, key);
   }
 
-  /** @param ¢ a file to write to
+  /** @param ¢ a file to write to, using Java serialization
    * @return <code><b>this</b></code>
    * @throws IOException in case of failure */
   @NotNull public LogBook writeTo(@NotNull final File ¢) throws IOException {
     return writeTo(new FileOutputStream(¢));
   }
 
-  /** @param s a file to write to
+  /** @param s a file to write to, using Java serialization
    * @return <code><b>this</b></code>
    * @throws IOException in case of failure */
   @NotNull public LogBook writeTo(final FileOutputStream s) throws IOException {
@@ -240,8 +257,59 @@ public abstract class LogBook implements Serializable {
 
   @NotNull abstract LogBook close();
 
+  /** Measurements of an {@link Entry}, in addition to its main ones, e.g., the
+   * number of bytes allocated by the operation whose time the entry records */
+  public static final class Column implements Serializable {
+    /** A field for identifying a streamed version of objects of this class; we
+     * use the values of <code>1L</code> to maintain upward compatibility. */
+    private static final long serialVersionUID = 1;
+    public Unit unit;
+    public final RealStatistics records = new RealStatistics();
+
+    public String format(final String format) {
+      return records.format(unit, format);
+    }
+
+    public double[] recorded() {
+      return records.all();
+    }
+
+    @Override public String toString() {
+      return records.format(unit);
+    }
+
+    public Unit unit() {
+      return unit;
+    }
+
+    void add(final double ¢) {
+      records.record(box(¢));
+    }
+
+    @NotNull Column setUnit(final Unit ¢) {
+      require(unit == null || ¢ == unit);
+      unit = ¢;
+      return this;
+    }
+
+    /** As in {@link Entry}, measurements are written explicitly */
+    private void writeObject(@NotNull final ObjectOutputStream ¢) throws IOException {
+      ¢.defaultWriteObject();
+      ¢.writeObject(recorded());
+    }
+
+    private void readObject(@NotNull final ObjectInputStream ¢) throws IOException, ClassNotFoundException {
+      ¢.defaultReadObject();
+      for (final double d : (double[]) ¢.readObject())
+        records.record(d);
+    }
+  }
+
   public enum Consolidation {
-    LIST, SUMMARY, BOTH, ENDS
+    LIST, SUMMARY, BOTH, ENDS,
+    /** List the 50th, 90th, 99th and 99.9th percentiles, and the maximum, of
+     * each entry */
+    PERCENTILES
   }
 
   public static class Entries extends ArrayList<LogBook.Entry> {
@@ -260,17 +328,45 @@ public abstract class LogBook implements Serializable {
     private static final long serialVersionUID = 1;
     public Unit unit;
     public final RealStatistics records = new RealStatistics();
+    /** Measurements recorded in a histogram, rather than in {@link #records};
+     * <code><b>null</b></code> if there are none */
+    @Nullable Histogram histogram;
+    /** Additional measurements of this entry, by name, each with its own
+     * {@link Unit}; <code><b>null</b></code> if there are none */
+    @Nullable Map<String, Column> columns;
 
     Entry(@NotNull final Setting s) {
       putAll(s);
     }
 
+    /** @return the additional measurements of this entry, by name */
+    @NotNull public Map<String, Column> columns() {
+      return columns == null ? Collections.emptyMap() : Collections.unmodifiableMap(columns);
+    }
+
     public String format() {
       return format(format);
     }
 
     public String format(final String newFormat) {
-      return records.format(unit, newFormat);
+      @NotNull final StringBuilder $ = new StringBuilder(
+          records.n() == 0 && histogram != null ? histogram.format(unit) : records.format(unit, newFormat));
+      for (@NotNull final Map.Entry<String, Column> ¢ : columns().entrySet())
+        $.append(", ").append(¢.getKey()).append(": ").append(¢.getValue().format(newFormat));
+      return $ + "";
+    }
+
+    /** @return a histogram of all measurements of this entry, i.e., those
+     *         recorded in a histogram, merged with those in {@link #records},
+     *         rounded */
+    @NotNull public Histogram histogram() {
+      @NotNull final Histogram $ = new Histogram();
+      if (histogram != null)
+        $.add(histogram);
+      for (final double ¢ : recorded())
+        if (¢ >= 0)
+          $.record(Math.round(¢));
+      return $;
     }
 
     public double[] recorded() {
@@ -297,12 +393,48 @@ public abstract class LogBook implements Serializable {
       add(1. * ¢);
     }
 
+    void addToHistogram(final long ¢) {
+      if (histogram == null)
+        histogram = new Histogram();
+      histogram.record(¢);
+    }
+
+    /** @param name name of an additional column of this entry
+     * @param u the unit of its measurements
+     * @return this column, created if there is none */
+    @NotNull Column column(final String name, final Unit u) {
+      if (columns == null)
+        columns = new LinkedHashMap<>();
+      return columns.computeIfAbsent(name, λ -> new Column()).setUnit(u);
+    }
+
     @NotNull Entry setUnit(final Unit ¢) {
       require(unit == null || ¢ == unit);
       unit = ¢;
       ensure(¢ == unit);
       return this;
     }
+
+    /** The counters of {@link #records} are kept in a super class which is not
+     * {@link Serializable}, so measurements are written explicitly, and
+     * recorded again when read; books written without them are still read,
+     * albeit with empty {@link #records}. */
+    private void writeObject(@NotNull final ObjectOutputStream ¢) throws IOException {
+      ¢.defaultWriteObject();
+      ¢.writeObject(recorded());
+    }
+
+    private void readObject(@NotNull final ObjectInputStream ¢) throws IOException, ClassNotFoundException {
+      ¢.defaultReadObject();
+      try {
+        for (final double d : (double[]) ¢.readObject())
+          records.record(d);
+      } catch (@NotNull final OptionalDataException e) {
+        if (!e.eof)
+          throw e;
+        // Written before measurements were written explicitly
+      }
+    }
   }
 
   public static final class Keys extends LinkedHashSet<String> {
@@ -318,11 +450,20 @@ public abstract class LogBook implements Serializable {
      * use the values of <code>1L</code> to maintain upward compatibility. */
     private static final long serialVersionUID = 1;
 
+    /** @param f a file written by {@link #save(File)}, or by
+     *        {@link #writeTo(File)}
+     * @return the log book in this file
+     * @throws IOException in case of failure
+     * @throws ClassNotFoundException in case the file is serialized, and its
+     *         classes could not be found */
     @NotNull public static Mutable readFrom(@NotNull final File f) throws IOException, ClassNotFoundException {
-      @NotNull final ObjectInputStream in = new ObjectInputStream(new FileInputStream(f));
-      @NotNull final Mutable $ = (Mutable) in.readObject();
-      in.close();
-      return $;
+      if (LogBookFile.recognizes(f))
+        try (LogBookFile $ = new LogBookFile(f)) {
+          return $.toLogBook();
+        }
+      try (ObjectInputStream $ = new ObjectInputStream(new FileInputStream(f))) {
+        return (Mutable) $.readObject();
+      }
     }
 
     @NotNull public static Mutable readFrom(@NotNull final String fileName) throws IOException, ClassNotFoundException {
@@ -368,13 +509,29 @@ public abstract class LogBook implements Serializable {
       return this;
     }
 
+    /** Add all measurements of another log book to this one, each to the
+     * entry of this book with the same settings, without affecting the
+     * current setting.
+     * @param other an arbitrary log book
+     * @return <code><b>this</b></code> */
+    @NotNull public Mutable absorb(@NotNull final LogBook other) {
+      for (@NotNull final Entry e : other.entries()) {
+        @NotNull final Entry $ = find(e);
+        if (e.unit != null)
+          $.setUnit(e.unit);
+        for (final double ¢ : e.recorded())
+          $.add(¢);
+        if (e.histogram != null)
+          ($.histogram != null ? $.histogram : ($.histogram = new Histogram())).add(e.histogram);
+        for (@NotNull final Map.Entry<String, Column> c : e.columns().entrySet())
+          for (final double ¢ : c.getValue().recorded())
+            $.column(c.getKey(), c.getValue().unit).add(¢);
+      }
+      return this;
+    }
+
     public Entry find() {
-      for (final Entry ¢ : entries())
-        if (current.equals(¢))
-          return ¢;
-      @NotNull final Entry $ = new Entry(current);
-      book.add($);
-      return $;
+      return find(current);
     }
 
     @NotNull public Mutable record(final double ¢) {
@@ -396,6 +553,25 @@ public abstract class LogBook implements Serializable {
       return recordNanoseconds(s.time(), l);
     }
 
+    /** Record a measurement in a fixed size {@link Histogram} of the current
+     * entry, rather than storing it
+     * @param value a non-negative measurement
+     * @param u its unit
+     * @return <code><b>this</b></code> */
+    @NotNull public Mutable recordInHistogram(final long value, final Unit u) {
+      find().setUnit(u).addToHistogram(value);
+      if (dotter != null)
+        dotter.click();
+      return this;
+    }
+
+    /** @param nanoseconds a latency
+     * @return <code><b>this</b></code>
+     * @see #recordInHistogram(long, Unit) */
+    @NotNull public Mutable recordLatency(final long nanoseconds) {
+      return recordInHistogram(nanoseconds, NANOSECONDS);
+    }
+
     @NotNull public LogBook recordBytes(final double bytes) {
       return record(bytes, BYTES);
     }
@@ -404,6 +580,17 @@ public abstract class LogBook implements Serializable {
       return recordBytes(1. * bytes);
     }
 
+    /** Record a measurement in an additional column of the current entry,
+     * e.g., the bytes allocated by the operation whose time it records
+     * @param column name of the column
+     * @param d a measurement
+     * @param u its unit
+     * @return <code><b>this</b></code> */
+    @NotNull public Mutable recordColumn(final String column, final double d, final Unit u) {
+      find().column(column, u).add(d);
+      return this;
+    }
+
     @NotNull public LogBook recordMilliseconds(final double ¢) {
       return record(¢, MILLISECONDS);
     }
@@ -463,6 +650,15 @@ public abstract class LogBook implements Serializable {
       return this;
     }
 
+    @NotNull private Entry find(@NotNull final Setting s) {
+      for (final Entry ¢ : entries())
+        if (s.equals(¢))
+          return ¢;
+      @NotNull final Entry $ = new Entry(s);
+      book.add($);
+      return $;
+    }
+
     public static final class TEST {
       @NotNull final Accumulator c = new Counter();
       final Mutable myBook = new Mutable(this).set("day", "Tuesday").record(13).set("B", c.value()).record(13).set("day", "Tuesday").record(13)
@@ -536,6 +732,19 @@ public abstract class LogBook implements Serializable {
         azzert.that(l.find().records.n(), is(3));
       }
 
+      @Test public void histogram() {
+        @NotNull final Mutable l = new Mutable(this).set("day", "Tuesday");
+        for (int ¢ = 1; ¢ <= 1000; ++¢)
+          l.recordLatency(¢);
+        azzert.that(l.find().records.n(), is(0));
+        azzert.that(l.find().histogram().n(), is(1000L));
+        assert Math.abs(l.find().histogram().percentile(50) - 500) <= 500 >> Histogram.PRECISION - 1;
+        l.record(5000, NANOSECONDS);
+        azzert.that(l.find().histogram().max(), is(5000L));
+        l.set("day", "Wednesday").recordLatency(1);
+        l.printBy(PERCENTILES);
+      }
+
       @Test public void findNotNullEntry() {
         assert new Mutable(this).set("day", "Tuesday").set("time", 12).find().records != null;
       }
@@ -682,12 +891,17 @@ public abstract class LogBook implements Serializable {
     @NotNull public final LogBook go(@NotNull final Collection<Entry> $) {
       if (!stagger.isEmpty())
         return go($, Iterables.first(stagger));
+      if (mode == PERCENTILES) {
+        for (@NotNull final Entry ¢ : $)
+          println(prefix(removeKeys(¢, exclude)) + ¢.histogram().format(¢.unit));
+        return LogBook.this;
+      }
       if (mode == LIST || mode == BOTH)
         for (@NotNull final Entry ¢ : $)
           println(prefix(removeKeys(¢, exclude)) + ¢.format());
       if (mode == SUMMARY || mode == BOTH || mode == ENDS && $.size() > 1)
         summary($);
-      if (mode != ENDS && $.size() <= 1)
+      if (mode != ENDS && $.size() <= 1 || $.stream().anyMatch(λ -> λ.records.n() == 0))
         return LogBook.this;
       final Entry min = min($), max = max($);
       System.out.println(shortForm(min) + compare(min, max) + ratio(min, max) + shortForm(max));
@@ -699,7 +913,8 @@ public abstract class LogBook implements Serializable {
     }
 
     @NotNull private String compare(final Statistics s1, final Statistics s2) {
-      return new WelchT(s1, s2).p < 0.001 ? "==" : "~" + (new WelchT(s1, s2).p > 0.1 ? "" : RELATIVE.format(new WelchT(s1, s2).p) + "") + "~";
+      final double $ = new WelchT(s1, s2).p;
+      return $ < 0.001 ? "<>" : $ > 0.1 ? "==" : "~" + RELATIVE.format($) + "~";
     }
 
     private boolean equals(@Nullable final String s1, @Nullable final String s2) {
@@ -765,9 +980,9 @@ public abstract class LogBook implements Serializable {
           s.append(" ");
           final double p = new WelchT(s1, s2).p;
           if (p < 0.001)
-            s.append("== ");
+            s.append("<> ");
           else if (p > 0.1)
-            s.append("~~ ");
+            s.append("== ");
           else
             s.append("~").append(RELATIVE.format(p)).append("~ ");
           s.append(String.format("%.2f*", box(s1.median() / s2.median())));
@@ -0,0 +1,768 @@
+package il.org.spartan.bench;
+
+import static il.org.spartan.azzert.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+/** A compact binary file of {@link LogBook} entries, which, unlike Java
+ * serialization, does not depend on the layout of classes, and can be read,
+ * appended to, and merged, without decoding its entries.
+ * <p>
+ * A file begins with a four bytes magic number, followed by a sequence of
+ * records, each made of a tag byte, the length of its content, and the content
+ * itself. A record is either
+ * <ol>
+ * <li>a string, in UTF-8, which is given the next number in the dictionary of
+ * all strings of the file, or
+ * <li>a block of up to {@value #BLOCK} entries, laid out by columns: the number
+ * of entries, and the number of keys, of the block; for each key, its
+ * dictionary number, followed by the dictionary number of its value in each
+ * entry, or -1 if the entry has no such key; the dictionary number of the name
+ * of the {@link Unit} of each entry; the number of measurements of each entry;
+ * the measurements of all entries, packed as <code><b>double</b></code>s; the
+ * length of the {@link Histogram} of each entry, 0 if it has none; these
+ * histograms; and the number of {@linkplain LogBook.Column additional columns}
+ * of the block, each made of the dictionary number of its name, the dictionary
+ * number of the name of its unit in each entry, the number of its measurements
+ * in each entry, or -1 if the entry does not have this column, and these
+ * measurements.
+ * </ol>
+ * Strings are therefore stored once, however many entries use them, and a
+ * string record always precedes the first block which uses it. A
+ * {@link Writer} collects entries into a block until it is
+ * {@linkplain Writer#flush() flushed}, so a file is written in a single pass,
+ * and appended to by more runs. The keys of a decoded entry are ordered as the
+ * columns of its block, i.e., by their first appearance in the block.
+ * <p>
+ * Files are read by mapping them into memory, in chunks of up to
+ * {@value #CHUNK} bytes, each made of whole records, until
+ * {@linkplain #close() closed}. Looking up the value of a key scans a single column of a block, so
+ * {@link #values(String)} and {@link #sortBy(String...)} do not create any
+ * {@link LogBook.Setting}, and {@link #merge(File, File...)} copies
+ * measurements as they are. */
+public final class LogBookFile implements Closeable {
+  /** The first four bytes of every file in this format, i.e., "LGB2" */
+  static final int MAGIC = 0x4C474232;
+  /** Maximal number of entries in a block */
+  static final int BLOCK = 1 << 10;
+  private static final byte STRING = 'S';
+  private static final byte ENTRIES = 'B';
+  private static final int HEADER = 5;
+  private static final int NONE = -1;
+  /** Number of bytes mapped at once, unless a single record is longer */
+  static final int CHUNK = 1 << 30;
+
+  /** @param ¢ an arbitrary file
+   * @return whether this file is in this format
+   * @throws IOException in case the file could not be read */
+  public static boolean recognizes(@NotNull final File ¢) throws IOException {
+    if (¢.length() < 4)
+      return false;
+    try (DataInputStream $ = new DataInputStream(new FileInputStream(¢))) {
+      return $.readInt() == MAGIC;
+    }
+  }
+
+  /** Merge files of this format, without decoding their entries.
+   * @param to a file, to which the entries of all other files are appended;
+   *        created if it does not exist
+   * @param froms files in this format
+   * @throws IOException in case of failure */
+  public static void merge(@NotNull final File to, @NotNull final File... froms) throws IOException {
+    try (Writer $ = new Writer(to, true)) {
+      for (@NotNull final File ¢ : froms)
+        try (LogBookFile f = new LogBookFile(¢)) {
+          $.write(f);
+        }
+    }
+  }
+
+  /** @param b a log book
+   * @param f a file, to be overwritten with the entries of this book
+   * @throws IOException in case of failure */
+  public static void write(@NotNull final LogBook b, @NotNull final File f) throws IOException {
+    try (Writer $ = new Writer(f, false)) {
+      $.write(b);
+    }
+  }
+
+  @NotNull private final List<String> strings = new ArrayList<>();
+  @NotNull private final Map<String, Integer> ids = new HashMap<>();
+  /** The contents of all block records; offsets below are relative to these */
+  @NotNull private ByteBuffer[] blocks = new ByteBuffer[16];
+  private int blockCount;
+  /** The block of each entry, by its index in {@link #blocks} */
+  @NotNull private int[] block = new int[16];
+  /** The row of each entry in its block */
+  @NotNull private int[] row = new int[16];
+  /** Offset of the first measurement of each entry */
+  @NotNull private int[] samples = new int[16];
+  /** Offset of the histogram of each entry, or -1 if it has none */
+  @NotNull private int[] histograms = new int[16];
+  /** Offset of the additional columns of the block of each entry */
+  @NotNull private int[] columns = new int[16];
+  /** The entries, in the order of iteration */
+  @NotNull private int[] order = new int[0];
+  private int size;
+
+  /** @param f a file in this format
+   * @throws IOException in case the file could not be read, or is not in this
+   *         format */
+  public LogBookFile(@NotNull final File f) throws IOException {
+    this(f, CHUNK);
+  }
+
+  /** @param f a file in this format
+   * @param chunk number of bytes to map at once
+   * @throws IOException in case the file could not be read, or is not in this
+   *         format */
+  LogBookFile(@NotNull final File f, final int chunk) throws IOException {
+    try (FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+      final long end = c.size();
+      if (end < 4 || c.map(FileChannel.MapMode.READ_ONLY, 0, 4).getInt() != MAGIC)
+        throw new IOException(f + ": not a log book file");
+      @NotNull ByteBuffer buffer = ByteBuffer.allocate(0);
+      for (long base = 0, position = 4; position < end;) {
+        if (position + HEADER > end)
+          throw new IOException(f + ": truncated record at offset " + position);
+        if (position + HEADER > base + buffer.limit())
+          buffer = c.map(FileChannel.MapMode.READ_ONLY, base = position, Math.min(end - position, chunk));
+        final long length = HEADER + (long) buffer.getInt((int) (position - base) + 1);
+        if (length < HEADER || position + length > end)
+          throw new IOException(f + ": truncated record at offset " + position);
+        if (length > Integer.MAX_VALUE)
+          throw new IOException(f + ": record too long at offset " + position);
+        if (position + length > base + buffer.limit())
+          buffer = c.map(FileChannel.MapMode.READ_ONLY, base = position, Math.min(end - position, Math.max(length, chunk)));
+        @NotNull final ByteBuffer content = ((ByteBuffer) buffer.duplicate().position((int) (position - base) + HEADER)
+            .limit((int) (position - base + length))).slice();
+        switch (buffer.get((int) (position - base))) {
+          case STRING:
+            @NotNull final byte[] bs = new byte[content.limit()];
+            content.get(bs);
+            ids.put(new String(bs, StandardCharsets.UTF_8), Integer.valueOf(strings.size()));
+            strings.add(new String(bs, StandardCharsets.UTF_8));
+            break;
+          case ENTRIES:
+            if (!block(content))
+              throw new IOException(f + ": corrupt block at offset " + position);
+            break;
+          default:
+            throw new IOException(f + ": unknown record at offset " + position);
+        }
+        position += length;
+      }
+    }
+    order = new int[size];
+    for (int ¢ = 0; ¢ < size; ++¢)
+      order[¢] = ¢;
+  }
+
+  /** Release the mapping of the file, once it is no longer referenced; this
+   * instance cannot be used anymore */
+  @Override public void close() {
+    blocks = new ByteBuffer[0];
+  }
+
+  /** @param entry the index of an entry
+   * @param key an arbitrary key
+   * @return the value of this key in this entry, or <code><b>null</b></code>
+   *         if there is none */
+  @Nullable public String get(final int entry, @NotNull final String key) {
+    @Nullable final Integer k = ids.get(key);
+    if (k == null)
+      return null;
+    final int e = order[entry];
+    @NotNull final ByteBuffer b = blocks[block[e]];
+    final int n = b.getInt(0);
+    for (int ¢ = 0, column = 8; ¢ < b.getInt(4); ++¢, column += 4 + 4 * n)
+      if (b.getInt(column) == k.intValue())
+        return string(b.getInt(column + 4 + 4 * row[e]));
+    return null;
+  }
+
+  /** @param entry the index of an entry
+   * @return the measurements of this entry, read directly from the file */
+  @NotNull public DoubleBuffer samples(final int entry) {
+    final int e = order[entry], offset = samples[e];
+    return ((ByteBuffer) blocks[block[e]].duplicate().position(offset).limit(offset + 8 * count(e))).slice().asDoubleBuffer();
+  }
+
+  /** @return the number of entries in this file */
+  public int size() {
+    return size;
+  }
+
+  /** Reorder the entries, as done by {@link LogBook#sortBy(String...)}
+   * @param keys keys by whose values entries are sorted
+   * @return <code><b>this</b></code> */
+  @NotNull public LogBookFile sortBy(@NotNull final String... keys) {
+    @NotNull final Integer[] $ = new Integer[size];
+    for (int ¢ = 0; ¢ < size; ++¢)
+      $[¢] = Integer.valueOf(¢);
+    Arrays.sort($, (i1, i2) -> {
+      int compare;
+      for (@NotNull final String key : keys)
+        if ((compare = LogBook.compareValues(get(i1.intValue(), key), get(i2.intValue(), key))) != 0)
+          return compare;
+      return 0;
+    });
+    @NotNull final int[] sorted = new int[size];
+    for (int ¢ = 0; ¢ < size; ++¢)
+      sorted[¢] = order[$[¢].intValue()];
+    order = sorted;
+    return this;
+  }
+
+  /** Decode all entries of this file, e.g., for {@link LogBook#printBy}
+   * @return a log book with these entries */
+  @NotNull public LogBook.Mutable toLogBook() {
+    @NotNull final LogBook.Mutable $ = new LogBook.Mutable(null);
+    for (int ¢ = 0; ¢ < size; ++¢)
+      $.book.add(entry($, ¢));
+    return $;
+  }
+
+  /** @param key an arbitrary key
+   * @return all values of this key in all entries, as in
+   *         {@link LogBook#values(String)} */
+  @NotNull public LogBook.Keys values(@NotNull final String key) {
+    @NotNull final LogBook.Keys $ = new LogBook.Keys();
+    for (int ¢ = 0; ¢ < size; ++¢) {
+      @Nullable final String value = get(¢, key);
+      if (value != null)
+        $.add(value);
+    }
+    return $;
+  }
+
+  /** @param b the content of a block
+   * @param column 0 for the units of the entries of the block, 1 for the
+   *        number of their measurements
+   * @return the offset of this column */
+  private static int after(@NotNull final ByteBuffer b, final int column) {
+    final int n = b.getInt(0);
+    return 8 + b.getInt(4) * (4 + 4 * n) + column * 4 * n;
+  }
+
+  /** Add the entries of a block
+   * @param buffer the content of the block
+   * @return whether the block is well formed */
+  private boolean block(@NotNull final ByteBuffer buffer) {
+    final int end = buffer.limit();
+    if (end < 8 || buffer.getInt(0) < 0 || buffer.getInt(4) < 0)
+      return false;
+    final long n = buffer.getInt(0), keys = 8 + buffer.getInt(4) * (4 + 4 * n);
+    if (keys + 12 * n > end)
+      return false;
+    long offset = keys + 8 * n;
+    for (int ¢ = 0; ¢ < n; ++¢)
+      offset += 8L * buffer.getInt((int) (keys + 4 * n + 4 * ¢));
+    if (offset + 4 * n > end)
+      return false;
+    final int lengths = (int) offset;
+    offset += 4 * n;
+    for (int ¢ = 0; ¢ < n; ++¢)
+      offset += buffer.getInt(lengths + 4 * ¢);
+    if (offset + 4 > end || buffer.getInt((int) offset) < 0)
+      return false;
+    final int extras = (int) offset;
+    offset += 4;
+    for (int c = buffer.getInt(extras); c > 0; --c) {
+      if (offset + 4 + 8 * n > end)
+        return false;
+      final long counts = offset + 4 + 4 * n;
+      offset = counts + 4 * n;
+      for (int ¢ = 0; ¢ < n; ++¢) {
+        final int count = buffer.getInt((int) (counts + 4 * ¢));
+        if (count < NONE)
+          return false;
+        offset += 8L * Math.max(0, count);
+      }
+      if (offset > end)
+        return false;
+    }
+    if (offset != end)
+      return false;
+    if (blockCount == blocks.length)
+      blocks = Arrays.copyOf(blocks, 2 * blockCount);
+    blocks[blockCount++] = buffer;
+    for (int ¢ = 0, sample = (int) (keys + 8 * n), histogram = lengths + 4 * (int) n; ¢ < n; ++¢) {
+      if (size == block.length) {
+        block = Arrays.copyOf(block, 2 * size);
+        row = Arrays.copyOf(row, 2 * size);
+        samples = Arrays.copyOf(samples, 2 * size);
+        histograms = Arrays.copyOf(histograms, 2 * size);
+        columns = Arrays.copyOf(columns, 2 * size);
+      }
+      columns[size] = extras;
+      block[size] = blockCount - 1;
+      row[size] = ¢;
+      samples[size] = sample;
+      histograms[size++] = buffer.getInt(lengths + 4 * ¢) == 0 ? NONE : histogram;
+      sample += 8 * buffer.getInt((int) (keys + 4 * n + 4 * ¢));
+      histogram += buffer.getInt(lengths + 4 * ¢);
+    }
+    return true;
+  }
+
+  /** @param e an entry, in the order of the file
+   * @return the number of its measurements */
+  private int count(final int e) {
+    @NotNull final ByteBuffer b = blocks[block[e]];
+    return b.getInt(after(b, 1) + 4 * row[e]);
+  }
+
+  @NotNull private LogBook.Entry entry(@NotNull final LogBook l, final int entry) {
+    final int e = order[entry];
+    @NotNull final ByteBuffer b = blocks[block[e]];
+    final int n = b.getInt(0);
+    @NotNull final LogBook.Setting s = new LogBook.Setting();
+    for (int ¢ = 0, column = 8; ¢ < b.getInt(4); ++¢, column += 4 + 4 * n)
+      if (b.getInt(column + 4 + 4 * row[e]) != NONE)
+        s.put(strings.get(b.getInt(column)), strings.get(b.getInt(column + 4 + 4 * row[e])));
+    @NotNull final LogBook.Entry $ = l.new Entry(s);
+    @Nullable final String unit = string(b.getInt(after(b, 0) + 4 * row[e]));
+    if (unit != null)
+      $.setUnit(Unit.valueOf(unit));
+    for (@NotNull final DoubleBuffer ds = samples(entry); ds.hasRemaining();)
+      $.add(ds.get());
+    if (histograms[e] != NONE)
+      $.histogram = Histogram.read((ByteBuffer) b.duplicate().position(histograms[e]));
+    for (int c = 0, column = columns[e] + 4; c < b.getInt(columns[e]); ++c, column = skip(b, column, n, n)) {
+      final int count = b.getInt(column + 4 + 4 * n + 4 * row[e]);
+      if (count == NONE)
+        continue;
+      @Nullable final String u = string(b.getInt(column + 4 + 4 * row[e]));
+      @NotNull final LogBook.Column measurements = $.column(strings.get(b.getInt(column)), u == null ? null : Unit.valueOf(u));
+      for (int ¢ = 0, sample = skip(b, column, n, row[e]); ¢ < count; ++¢)
+        measurements.add(b.getDouble(sample + 8 * ¢));
+    }
+    return $;
+  }
+
+  /** @param b the content of a block
+   * @param column the offset of an additional column of this block
+   * @param n the number of entries of this block
+   * @param rows the number of entries to skip
+   * @return the offset of the measurements of entry number <code>rows</code>
+   *         in this column, or, if it is <code>n</code>, of the next column */
+  private static int skip(@NotNull final ByteBuffer b, final int column, final int n, final int rows) {
+    int $ = column + 4 + 8 * n;
+    for (int ¢ = 0; ¢ < rows; ++¢)
+      $ += 8 * Math.max(0, b.getInt(column + 4 + 4 * n + 4 * ¢));
+    return $;
+  }
+
+  @Nullable private String string(final int ¢) {
+    return ¢ == NONE ? null : strings.get(¢);
+  }
+
+  /** Writes entries to a file in this format, one by one, e.g., as they are
+   * measured; entries are kept in memory until a block is full, or until the
+   * writer is {@linkplain #flush() flushed}. */
+  public static final class Writer implements Closeable {
+    @NotNull private final DataOutputStream out;
+    @NotNull private final Map<String, Integer> ids = new HashMap<>();
+    @NotNull private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    @NotNull private final DataOutputStream content = new DataOutputStream(bytes);
+    /** Entries written, which are not in the file yet */
+    @NotNull private final List<Row> pending = new ArrayList<>();
+
+    /** @param f the file to write to
+     * @param append whether entries are appended to this file, if it exists,
+     *        rather than overwrite it
+     * @throws IOException in case of failure, e.g., the file to append to is
+     *         not in this format */
+    public Writer(@NotNull final File f, final boolean append) throws IOException {
+      final boolean fresh = !append || f.length() == 0;
+      if (!fresh)
+        try (LogBookFile $ = new LogBookFile(f)) {
+          ids.putAll($.ids);
+        }
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f, !fresh)));
+      if (fresh)
+        out.writeInt(MAGIC);
+    }
+
+    @Override public void close() throws IOException {
+      try {
+        block();
+      } finally {
+        out.close();
+      }
+    }
+
+    /** Make sure all entries written so far are in the file
+     * @throws IOException in case of failure */
+    public void flush() throws IOException {
+      block();
+      out.flush();
+    }
+
+    /** @param ¢ an entry of a log book, whose current content is written
+     * @return <code><b>this</b></code>
+     * @throws IOException in case of failure */
+    @NotNull public Writer write(@NotNull final LogBook.Entry ¢) throws IOException {
+      pending.add(new Row(¢));
+      if (pending.size() == BLOCK)
+        block();
+      return this;
+    }
+
+    /** @param ¢ a log book
+     * @return <code><b>this</b></code>
+     * @throws IOException in case of failure */
+    @NotNull public Writer write(@NotNull final LogBook ¢) throws IOException {
+      for (@NotNull final LogBook.Entry e : ¢.entries())
+        write(e);
+      return this;
+    }
+
+    /** Copy all blocks of a file in this format, without decoding their
+     * measurements
+     * @param f a file in this format
+     * @return <code><b>this</b></code>
+     * @throws IOException in case of failure */
+    @NotNull public Writer write(@NotNull final LogBookFile f) throws IOException {
+      block();
+      @NotNull final int[] map = new int[f.strings.size()];
+      Arrays.fill(map, NONE);
+      for (int i = 0, e = 0; i < f.blockCount; e += f.blocks[i++].getInt(0)) {
+        @NotNull final ByteBuffer b = f.blocks[i];
+        final int n = b.getInt(0), keys = b.getInt(4);
+        if (n == 0)
+          continue;
+        content.writeInt(n);
+        content.writeInt(keys);
+        for (int ¢ = 0; ¢ < keys * (1 + n) + n; ++¢)
+          content.writeInt(id(f, map, b.getInt(8 + 4 * ¢)));
+        copy(b, after(b, 1), f.columns[e]);
+        content.writeInt(b.getInt(f.columns[e]));
+        for (int c = 0, column = f.columns[e] + 4; c < b.getInt(f.columns[e]); ++c, column = skip(b, column, n, n)) {
+          for (int ¢ = 0; ¢ <= n; ++¢)
+            content.writeInt(id(f, map, b.getInt(column + 4 * ¢)));
+          copy(b, column + 4 + 4 * n, skip(b, column, n, n));
+        }
+        record(ENTRIES);
+      }
+      return this;
+    }
+
+    /** Write all pending entries as a block */
+    private void block() throws IOException {
+      if (pending.isEmpty())
+        return;
+      @NotNull final Set<String> keys = new LinkedHashSet<>();
+      for (@NotNull final Row ¢ : pending)
+        keys.addAll(¢.setting.keySet());
+      content.writeInt(pending.size());
+      content.writeInt(keys.size());
+      for (@NotNull final String key : keys) {
+        content.writeInt(id(key));
+        for (@NotNull final Row ¢ : pending)
+          content.writeInt(id(¢.setting.get(key)));
+      }
+      for (@NotNull final Row ¢ : pending)
+        content.writeInt(id(¢.unit));
+      for (@NotNull final Row ¢ : pending)
+        content.writeInt(¢.samples.length);
+      for (@NotNull final Row r : pending)
+        for (final double ¢ : r.samples)
+          content.writeDouble(¢);
+      for (@NotNull final Row ¢ : pending)
+        content.writeInt(¢.histogram == null ? 0 : ¢.histogram.length);
+      for (@NotNull final Row ¢ : pending)
+        if (¢.histogram != null)
+          content.write(¢.histogram);
+      @NotNull final Set<String> columns = new LinkedHashSet<>();
+      for (@NotNull final Row ¢ : pending)
+        columns.addAll(¢.columns.keySet());
+      content.writeInt(columns.size());
+      for (@NotNull final String column : columns) {
+        content.writeInt(id(column));
+        for (@NotNull final Row ¢ : pending)
+          content.writeInt(¢.columns.containsKey(column) ? id(¢.columns.get(column).unit) : NONE);
+        for (@NotNull final Row ¢ : pending)
+          content.writeInt(¢.columns.containsKey(column) ? ¢.columns.get(column).samples.length : NONE);
+        for (@NotNull final Row r : pending)
+          if (r.columns.containsKey(column))
+            for (final double ¢ : r.columns.get(column).samples)
+              content.writeDouble(¢);
+      }
+      pending.clear();
+      record(ENTRIES);
+    }
+
+    private void copy(@NotNull final ByteBuffer b, final int from, final int to) throws IOException {
+      @NotNull final byte[] $ = new byte[to - from];
+      ((ByteBuffer) b.duplicate().position(from)).get($);
+      content.write($);
+    }
+
+    private int id(@NotNull final LogBookFile f, @NotNull final int[] map, final int ¢) throws IOException {
+      return ¢ == NONE ? NONE : map[¢] != NONE ? map[¢] : (map[¢] = id(f.strings.get(¢)));
+    }
+
+    private int id(@Nullable final String s) throws IOException {
+      if (s == null)
+        return NONE;
+      @Nullable final Integer $ = ids.get(s);
+      if ($ != null)
+        return $.intValue();
+      @NotNull final byte[] bs = s.getBytes(StandardCharsets.UTF_8);
+      out.writeByte(STRING);
+      out.writeInt(bs.length);
+      out.write(bs);
+      ids.put(s, Integer.valueOf(ids.size()));
+      return ids.size() - 1;
+    }
+
+    @NotNull private Writer record(final byte tag) throws IOException {
+      content.flush();
+      out.writeByte(tag);
+      out.writeInt(bytes.size());
+      bytes.writeTo(out);
+      bytes.reset();
+      return this;
+    }
+
+    /** The content of an entry, as it was when written */
+    private static final class Row {
+      @NotNull final Map<String, String> setting;
+      @Nullable final String unit;
+      @NotNull final double[] samples;
+      @Nullable final byte[] histogram;
+      /** The additional columns of the entry, each with no setting, nor
+       * histogram */
+      @NotNull final Map<String, Row> columns = new LinkedHashMap<>();
+
+      Row(@NotNull final LogBook.Column c) {
+        setting = Collections.emptyMap();
+        unit = c.unit == null ? null : c.unit.name();
+        samples = c.recorded();
+        histogram = null;
+      }
+
+      Row(@NotNull final LogBook.Entry e) throws IOException {
+        setting = new LinkedHashMap<>(e);
+        unit = e.unit == null ? null : e.unit.name();
+        samples = e.recorded();
+        for (@NotNull final Map.Entry<String, LogBook.Column> ¢ : e.columns().entrySet())
+          columns.put(¢.getKey(), new Row(¢.getValue()));
+        if (e.histogram == null) {
+          histogram = null;
+          return;
+        }
+        @NotNull final ByteArrayOutputStream $ = new ByteArrayOutputStream();
+        try (DataOutputStream s = new DataOutputStream($)) {
+          e.histogram.write(s);
+        }
+        histogram = $.toByteArray();
+      }
+    }
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @NotNull private static LogBook.Mutable book(final int size) {
+      @NotNull final LogBook.Mutable $ = new LogBook.Mutable(null);
+      for (int ¢ = size; ¢ > 0; --¢) {
+        $.set("size", ¢).set("operation", "add").recordNanoseconds(1.5 * ¢);
+        $.recordNanoseconds(2.5 * ¢);
+        $.set("operation", "remove").recordBytes(¢);
+      }
+      $.set("size", 0).set("operation", "חיפוש").recordLatency(1000).recordLatency(2000);
+      return $;
+    }
+
+    @NotNull private static File temporary() throws IOException {
+      @NotNull final File $ = File.createTempFile("logbook", ".lgb");
+      $.deleteOnExit();
+      return $;
+    }
+
+    @Test public void roundTrip() throws Exception {
+      @NotNull final File f = temporary();
+      @NotNull final LogBook.Mutable b = book(10);
+      b.save(f);
+      assert LogBookFile.recognizes(f);
+      @NotNull final LogBook.Mutable $ = LogBook.Mutable.readFrom(f);
+      azzert.that($.size(), is(b.size()));
+      @NotNull final Iterator<LogBook.Entry> i = $.entries().iterator();
+      for (@NotNull final LogBook.Entry e : b.entries()) {
+        @NotNull final LogBook.Entry ¢ = i.next();
+        azzert.that(¢.settings(), is(e.settings()));
+        assert ¢.unit == e.unit;
+        assertArrayEquals(e.recorded(), ¢.recorded(), 0);
+        azzert.that(¢.histogram().format(¢.unit), is(e.histogram().format(e.unit)));
+      }
+    }
+
+    @Test public void stringsAreShared() throws IOException {
+      @NotNull final File f = temporary();
+      book(1000).save(f);
+      try (LogBookFile $ = new LogBookFile(f)) {
+        azzert.that($.strings.size(), is(1001 + 7));
+        azzert.that($.blockCount, is(2));
+      }
+      @NotNull final File serialized = temporary();
+      try (FileOutputStream ¢ = new FileOutputStream(serialized)) {
+        book(1000).writeTo(¢);
+      }
+      assert 2 * f.length() < serialized.length();
+    }
+
+    @Test public void blocks() throws IOException {
+      @NotNull final File f = temporary();
+      @NotNull final LogBook.Mutable b = book(BLOCK);
+      b.save(f);
+      try (LogBookFile $ = new LogBookFile(f)) {
+        azzert.that($.size(), is(b.size()));
+        azzert.that($.blockCount, is((b.size() + BLOCK - 1) / BLOCK));
+        @NotNull final Iterator<LogBook.Entry> i = $.toLogBook().entries().iterator();
+        for (@NotNull final LogBook.Entry e : b.entries()) {
+          @NotNull final LogBook.Entry ¢ = i.next();
+          azzert.that(¢.settings(), is(e.settings()));
+          assertArrayEquals(e.recorded(), ¢.recorded(), 0);
+        }
+      }
+    }
+
+    @Test public void chunks() throws IOException {
+      @NotNull final File f = temporary();
+      @NotNull final LogBook.Mutable b = book(BLOCK);
+      b.recordColumn("allocation", 24, Unit.BYTES);
+      b.save(f);
+      try (LogBookFile $ = new LogBookFile(f, 64)) {
+        azzert.that($.size(), is(b.size()));
+        azzert.that($.strings.size(), is(BLOCK + 9));
+        @NotNull final Iterator<LogBook.Entry> i = $.toLogBook().entries().iterator();
+        for (@NotNull final LogBook.Entry e : b.entries()) {
+          @NotNull final LogBook.Entry ¢ = i.next();
+          azzert.that(¢.settings(), is(e.settings()));
+          assertArrayEquals(e.recorded(), ¢.recorded(), 0);
+          azzert.that(¢.columns().keySet(), is(e.columns().keySet()));
+        }
+      }
+    }
+
+    @Test public void columns() throws Exception {
+      @NotNull final LogBook.Mutable b = book(2);
+      b.set("size", 1).set("operation", "add").recordColumn("allocation", 24, Unit.BYTES).recordColumn("allocation", 32, Unit.BYTES);
+      b.set("operation", "remove").recordColumn("GC time", 7, Unit.NANOSECONDS);
+      @NotNull final File f = temporary(), merged = temporary(), serialized = temporary();
+      b.save(f);
+      merged.delete();
+      LogBookFile.merge(merged, f);
+      b.writeTo(serialized);
+      for (@NotNull final File ¢ : new File[] { f, merged, serialized }) {
+        @NotNull final LogBook.Mutable $ = LogBook.Mutable.readFrom(¢);
+        azzert.that($.size(), is(5));
+        $.set("size", 1).set("operation", "add");
+        assertArrayEquals(new double[] { 24, 32 }, $.find().columns().get("allocation").recorded(), 0);
+        assert $.find().columns().get("allocation").unit == Unit.BYTES;
+        assertNull($.find().columns().get("GC time"));
+        $.set("operation", "remove");
+        assertArrayEquals(new double[] { 7 }, $.find().columns().get("GC time").recorded(), 0);
+        assertArrayEquals(new double[] { 1 }, $.find().recorded(), 0);
+        $.set("size", 2);
+        assert $.find().columns().isEmpty();
+      }
+    }
+
+    @Test public void mapped() throws IOException {
+      @NotNull final File f = temporary();
+      book(5).save(f);
+      try (LogBookFile $ = new LogBookFile(f)) {
+        azzert.that($.size(), is(11));
+        azzert.that($.get(0, "size"), is("5"));
+        azzert.that($.get(0, "operation"), is("add"));
+        assertNull($.get(0, "Mode"));
+        azzert.that($.samples(0).remaining(), is(2));
+        assertEquals(12.5, $.samples(0).get(1), 0);
+        azzert.that($.values("operation").size(), is(3));
+      }
+    }
+
+    @Test public void sortBy() throws IOException {
+      @NotNull final File f = temporary();
+      book(12).save(f);
+      try (LogBookFile $ = new LogBookFile(f)) {
+        $.sortBy("size", "operation");
+        azzert.that($.get(0, "size"), is("0"));
+        azzert.that($.get(1, "size"), is("1"));
+        azzert.that($.get($.size() - 1, "size"), is("12"));
+        azzert.that($.get($.size() - 1, "operation"), is("remove"));
+        @NotNull final LogBook b = book(12).sortBy("size", "operation");
+        @NotNull final Iterator<LogBook.Entry> i = $.toLogBook().entries().iterator();
+        for (@NotNull final LogBook.Entry ¢ : b.entries())
+          azzert.that(i.next().settings(), is(¢.settings()));
+      }
+    }
+
+    @Test public void append() throws IOException {
+      @NotNull final File f = temporary();
+      try (Writer $ = new Writer(f, true)) {
+        $.write(book(3));
+      }
+      try (Writer $ = new Writer(f, true)) {
+        $.write(book(4));
+      }
+      try (LogBookFile $ = new LogBookFile(f)) {
+        azzert.that($.size(), is(7 + 9));
+        azzert.that($.strings.size(), is(new HashSet<>($.strings).size()));
+        azzert.that($.get(7, "size"), is("4"));
+      }
+    }
+
+    @Test public void merge() throws Exception {
+      @NotNull final File f1 = temporary(), f2 = temporary(), to = temporary();
+      book(3).save(f1);
+      @NotNull final LogBook.Mutable b = new LogBook.Mutable(null);
+      b.set("Mode", "other").recordBytes(7);
+      b.save(f2);
+      to.delete();
+      LogBookFile.merge(to, f1, f2);
+      @NotNull final LogBook.Mutable $ = LogBook.Mutable.readFrom(to);
+      azzert.that($.size(), is(8));
+      @NotNull final LogBook.Entry last = $.book.get($.size() - 1);
+      azzert.that(last.get("Mode"), is("other"));
+      assert last.unit == Unit.BYTES;
+      assertArrayEquals(new double[] { 7 }, last.recorded(), 0);
+    }
+
+    @Test public void serializedFilesAreStillRead() throws Exception {
+      @NotNull final File f = temporary();
+      try (FileOutputStream ¢ = new FileOutputStream(f)) {
+        book(3).writeTo(¢);
+      }
+      assert !LogBookFile.recognizes(f);
+      azzert.that(LogBook.Mutable.readFrom(f).size(), is(7));
+      book(3).writeTo(f);
+      assert !LogBookFile.recognizes(f);
+      azzert.that(LogBook.Mutable.readFrom(f).size(), is(7));
+    }
+
+    @Test(expected = IOException.class) public void truncated() throws IOException {
+      @NotNull final File f = temporary();
+      book(3).save(f);
+      try (RandomAccessFile $ = new RandomAccessFile(f, "rw")) {
+        $.setLength($.length() - 3);
+      }
+      try (LogBookFile ¢ = new LogBookFile(f)) {
+        ¢.size();
+      }
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package il.org.spartan.bench;
+
+import static il.org.spartan.azzert.*;
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+import il.org.spartan.statistics.*;
+
+/** Comparison of an entry of a {@link LogBook} with the entry of the same
+ * {@link LogBook.Setting} in a baseline {@link LogBook}, e.g., one written by
+ * a previous run of the same benchmarks. Measurements are assumed to be costs,
+ * such as run times, so that a slowdown is an increase of the measured values.
+ * A slowdown is flagged if it is statistically significant by {@link WelchT};
+ * its magnitude is reported both as the ratio of the medians, and as the
+ * effect size, i.e., in units of the standard deviation of the measurements. */
+public final class Regression {
+  /** @param baseline an arbitrary log book
+   * @param current another log book
+   * @return the comparison of all entries of the current book with the
+   *         entries of the baseline book which have the same setting and
+   *         unit */
+  @NotNull public static List<Regression> compare(@NotNull final LogBook baseline, @NotNull final LogBook current) {
+    @NotNull final List<Regression> $ = new ArrayList<>();
+    for (@NotNull final LogBook.Entry c : current.entries())
+      for (@NotNull final LogBook.Entry b : baseline.entries())
+        if (b.equals(c) && b.unit == c.unit && b.records.n() > 0 && c.records.n() > 0) {
+          $.add(new Regression(b, c));
+          break;
+        }
+    return $;
+  }
+
+  /** @param baseline an arbitrary log book
+   * @param current another log book
+   * @param alpha significance level, e.g., 0.01
+   * @return the comparisons of entries in which the current book is
+   *         significantly slower than the baseline */
+  @NotNull public static List<Regression> slowdowns(@NotNull final LogBook baseline, @NotNull final LogBook current, final double alpha) {
+    @NotNull final List<Regression> $ = new ArrayList<>();
+    for (@NotNull final Regression ¢ : compare(baseline, current))
+      if (¢.slowdown(alpha))
+        $.add(¢);
+    return $;
+  }
+
+  /** The entry of the baseline log book */
+  @NotNull public final LogBook.Entry baseline;
+  /** The entry of the current log book, with the same setting */
+  @NotNull public final LogBook.Entry current;
+  /** Welch's t-test of the current measurements against the baseline ones;
+   * its statistic, and effect size, are positive if the current measurements
+   * are greater */
+  @NotNull public final WelchT test;
+  /** Ratio of the median of current measurements to that of the baseline */
+  public final double ratio;
+
+  Regression(@NotNull final LogBook.Entry baseline, @NotNull final LogBook.Entry current) {
+    this.baseline = baseline;
+    this.current = current;
+    test = new WelchT(current.records, baseline.records);
+    ratio = current.records.median() / baseline.records.median();
+  }
+
+  /** @param resamples number of bootstrap samples, e.g., 1000
+   * @param confidence level of confidence, e.g., 0.95
+   * @param r a source of randomness
+   * @return a bootstrap confidence interval of {@link #ratio}
+   * @see WelchT#bootstrap(double[], double[], int, double, Random) */
+  @NotNull public double[] interval(final int resamples, final double confidence, @NotNull final Random r) {
+    return WelchT.bootstrap(baseline.recorded(), current.recorded(), resamples, confidence, r);
+  }
+
+  /** @param alpha significance level, e.g., 0.01
+   * @return whether the current measurements are significantly greater than
+   *         the baseline ones */
+  public boolean slowdown(final double alpha) {
+    return test.t > 0 && test.p < alpha;
+  }
+
+  @Override @NotNull public String toString() {
+    return current.settings() + String.format(" %.2f* ", Double.valueOf(ratio)) + test;
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @NotNull private static LogBook book(final double slowdown) {
+      @NotNull final LogBook.Mutable $ = new LogBook.Mutable(null);
+      @NotNull final Random r = new Random(1);
+      for (int ¢ = 0; ¢ < 30; ++¢) {
+        $.set("operation", "fast").recordNanoseconds(100 + r.nextGaussian());
+        $.set("operation", "slow").recordNanoseconds(slowdown * (100 + r.nextGaussian()));
+      }
+      if (slowdown > 1)
+        $.set("operation", "new").recordNanoseconds(1000);
+      return $;
+    }
+
+    @Test public void compare() {
+      @NotNull final List<Regression> $ = Regression.compare(book(1), book(1.2));
+      azzert.that($.size(), is(2));
+      for (@NotNull final Regression ¢ : $)
+        assert ¢.current.get("operation").equals(¢.baseline.get("operation"));
+    }
+
+    @Test public void slowdowns() {
+      @NotNull final List<Regression> $ = Regression.slowdowns(book(1), book(1.2), 0.001);
+      azzert.that($.size(), is(1));
+      azzert.that($.get(0).current.get("operation"), is("slow"));
+      assertEquals(1.2, $.get(0).ratio, 0.01);
+      assert $.get(0).test.effect > 1;
+      @NotNull final double[] interval = $.get(0).interval(1000, 0.95, new Random(2));
+      assert interval[0] < 1.2 && interval[1] > 1.2;
+    }
+
+    @Test public void speedupIsNotSlowdown() {
+      assert Regression.slowdowns(book(1.2), book(1), 0.001).isEmpty();
+      assert Regression.slowdowns(book(1), book(1), 0.001).isEmpty();
+    }
+  }
+}
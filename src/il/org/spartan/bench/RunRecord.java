@@ -8,7 +8,20 @@ import nano.ly.*;
 
 public class RunRecord extends AbstractRunRecord {
   public RunRecord(final int runs, @NotNull final Stopwatch grossTime, @NotNull final Stopwatch netTime) {
+    this(runs, grossTime, netTime, -1, 0);
+  }
+
+  /** Instantiate {@link RunRecord}.
+   * @param runs number of runs
+   * @param grossTime time of the runs, including overheads
+   * @param netTime time of the runs
+   * @param allocatedBytes bytes allocated during the runs, or -1 if unknown
+   * @param gcTime milliseconds spent in garbage collection during the
+   *        runs */
+  public RunRecord(final int runs, @NotNull final Stopwatch grossTime, @NotNull final Stopwatch netTime, final long allocatedBytes, final long gcTime) {
     this.runs = runs;
+    this.allocatedBytes = allocatedBytes;
+    this.gcTime = gcTime;
     this.grossTime = grossTime.time();
     this.netTime = netTime.time();
     ___.positive(this.netTime);
@@ -7,5 +7,7 @@ public class RunRecordAccumulator extends AbstractRunRecord {
     runs += ¢.runs;
     netTime += ¢.netTime;
     grossTime += ¢.grossTime;
+    gcTime += ¢.gcTime;
+    allocatedBytes = allocatedBytes < 0 || ¢.allocatedBytes < 0 ? -1 : allocatedBytes + ¢.allocatedBytes;
   }
 }
\ No newline at end of file
@@ -0,0 +1,181 @@
+package il.org.spartan.bench;
+
+import static il.org.spartan.azzert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+import il.org.spartan.bench.operations.*;
+
+/** A campaign of benchmarks over a grid of parameters: each parameter, or
+ * axis, has a name and a list of values, and each point of the grid, i.e., a
+ * choice of one value of each axis, is made into a {@link Bencheon} which is
+ * benchmarked by {@link BenchingPolicy}. Measurements are logged with the
+ * values of all axes added to the current setting.
+ * <p>
+ * Points are visited in an order in which consecutive points differ in a
+ * single axis, by a single step, see {@link Cartesian#reflectedIndices(int...)},
+ * so that code, compiled and cached while warming up for one point, is mostly
+ * that of the next point; axes are thus best given from the one most expensive
+ * to change, e.g., the implementation, to the least, e.g., the input size. An
+ * {@link #oblique()} sweep gives up this property, for visiting points by
+ * diagonals, see {@link Cartesian#obliqueIndices(int...)}.
+ * <p>
+ * If a checkpoint file is given, the measurements of every point are
+ * appended to it, in the format of {@link LogBookFile}, as soon as the point
+ * is done. A campaign which was interrupted is then resumed by running it
+ * again, with the same checkpoint: points found in the checkpoint are not
+ * measured again, and their measurements are added to the log book. */
+public final class Sweep {
+  @NotNull private final List<String> names = new ArrayList<>();
+  @NotNull private final List<Object[]> values = new ArrayList<>();
+  private boolean oblique;
+  @Nullable private File checkpoint;
+
+  /** Add an axis to the grid
+   * @param name name of the axis, used as a key of the log book
+   * @param vs values of this axis
+   * @return <code><b>this</b></code> */
+  @NotNull public Sweep axis(@NotNull final String name, @NotNull final Object... vs) {
+    names.add(name);
+    values.add(vs);
+    return this;
+  }
+
+  /** @param ¢ a file in which measured points are kept, and from which they
+   *        are recovered when the campaign is run again
+   * @return <code><b>this</b></code> */
+  @NotNull public Sweep checkpoint(@NotNull final File ¢) {
+    checkpoint = ¢;
+    return this;
+  }
+
+  /** Visit the grid by diagonals, i.e., points whose values are first in
+   * their axes, and hence usually cheapest, are visited first
+   * @return <code><b>this</b></code> */
+  @NotNull public Sweep oblique() {
+    oblique = true;
+    return this;
+  }
+
+  /** @return the points of the grid, each being an array of values, one for
+   *         each axis, in the order they are visited */
+  @NotNull public Object[][] points() {
+    @NotNull final int[] sizes = new int[values.size()];
+    for (int ¢ = 0; ¢ < sizes.length; ++¢)
+      sizes[¢] = values.get(¢).length;
+    @NotNull final int[][] indices = oblique ? Cartesian.obliqueIndices(sizes) : Cartesian.reflectedIndices(sizes);
+    @NotNull final Object[][] $ = new Object[indices.length][sizes.length];
+    for (int i = 0; i < indices.length; ++i)
+      for (int j = 0; j < sizes.length; ++j)
+        $[i][j] = values.get(j)[indices[i][j]];
+    return $;
+  }
+
+  /** Benchmark all points of the grid which were not measured before
+   * @param m where measurements are logged
+   * @param f makes the {@link Bencheon} of each point
+   * @return the number of points benchmarked, i.e., not recovered from the
+   *         checkpoint
+   * @throws IOException in case the checkpoint could not be read or
+   *         written */
+  public int run(@NotNull final LogBook.Mutable m, @NotNull final Factory f) throws IOException {
+    @NotNull final Set<LogBook.Setting> done = recover(m);
+    int $ = 0;
+    try (LogBookFile.Writer w = checkpoint == null ? null : new LogBookFile.Writer(checkpoint, true)) {
+      for (@NotNull final Object[] point : points()) {
+        @NotNull final LogBook.Setting s = setting(point);
+        if (done.contains(s))
+          continue;
+        @NotNull final LogBook.Mutable book = new LogBook.Mutable(null);
+        for (@NotNull final Map.Entry<String, String> ¢ : m.current().entrySet())
+          book.set(¢.getKey(), ¢.getValue());
+        for (@NotNull final Map.Entry<String, String> ¢ : s.entrySet())
+          book.set(¢.getKey(), ¢.getValue());
+        BenchingPolicy.go(book, f.make(point));
+        m.absorb(book);
+        if (w != null) {
+          w.write(book);
+          w.flush();
+        }
+        ++$;
+      }
+    }
+    return $;
+  }
+
+  @NotNull private Set<LogBook.Setting> recover(@NotNull final LogBook.Mutable m) throws IOException {
+    @NotNull final Set<LogBook.Setting> $ = new HashSet<>();
+    if (checkpoint == null || !checkpoint.exists() || checkpoint.length() == 0)
+      return $;
+    @NotNull final LogBook b;
+    try (LogBookFile ¢ = new LogBookFile(checkpoint)) {
+      b = ¢.toLogBook();
+    }
+    for (@NotNull final LogBook.Entry e : b.entries()) {
+      @NotNull final LogBook.Setting s = new LogBook.Setting();
+      for (@NotNull final String ¢ : names)
+        if (e.containsKey(¢))
+          s.put(¢, e.get(¢));
+      $.add(s);
+    }
+    m.absorb(b);
+    return $;
+  }
+
+  @NotNull private LogBook.Setting setting(@NotNull final Object[] point) {
+    @NotNull final LogBook.Setting $ = new LogBook.Setting();
+    for (int ¢ = 0; ¢ < point.length; ++¢)
+      $.put(names.get(¢), point[¢] + "");
+    return $;
+  }
+
+  /** Makes the {@link Bencheon} of a point of a {@link Sweep} */
+  @FunctionalInterface public interface Factory {
+    /** @param point a value of each axis, in the order axes were added
+     * @return a {@link Bencheon} to benchmark at this point */
+    @NotNull Bencheon make(@NotNull Object[] point);
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    static final Factory empty = λ -> new Bencheon.Empty();
+
+    @Test public void points() {
+      @NotNull final Object[][] $ = new Sweep().axis("kind", "a", "b").axis("size", 1, 10, 100).points();
+      azzert.that($.length, is(6));
+      azzert.that(Arrays.toString($[2]), is("[a, 100]"));
+      azzert.that(Arrays.toString($[3]), is("[b, 100]"));
+      @NotNull final Object[][] oblique = new Sweep().axis("kind", "a", "b").axis("size", 1, 10, 100).oblique().points();
+      azzert.that(Arrays.toString(oblique[1]), is("[b, 1]"));
+      azzert.that(Arrays.toString(oblique[2]), is("[a, 10]"));
+      azzert.that(Arrays.toString(oblique[5]), is("[b, 100]"));
+    }
+
+    @Test public void resume() throws IOException {
+      final long benchingTime = BenchingPolicy.getBenchingTime(), minWarmup = BenchingPolicy.minWarmup;
+      BenchingPolicy.setBenchingTime(Unit.SECOND / 1000);
+      BenchingPolicy.setMIN_WARMUP(Unit.SECOND / 1000);
+      @NotNull final File f = File.createTempFile("sweep", ".lgb");
+      f.delete();
+      try {
+        @NotNull final LogBook.Mutable m1 = new LogBook.Mutable(this);
+        azzert.that(new Sweep().axis("kind", "a", "b").axis("n", 1, 2).checkpoint(f).run(m1, empty), is(4));
+        azzert.that(m1.values("n").size(), is(2));
+        @NotNull final LogBook.Mutable m2 = new LogBook.Mutable(this);
+        azzert.that(new Sweep().axis("kind", "a", "b").axis("n", 1, 2, 3).checkpoint(f).run(m2, empty), is(2));
+        azzert.that(m2.values("n").size(), is(3));
+        azzert.that(m2.values("kind").size(), is(2));
+        azzert.that(m2.size(), is(m1.size() * 3 / 2));
+        azzert.that(new Sweep().axis("kind", "a", "b").axis("n", 1, 2, 3).checkpoint(f).run(new LogBook.Mutable(this), empty), is(0));
+      } finally {
+        f.delete();
+        BenchingPolicy.setBenchingTime(benchingTime);
+        BenchingPolicy.setMIN_WARMUP(minWarmup);
+      }
+    }
+  }
+}
@@ -64,6 +64,13 @@ public class TimingEstimator {
     this.o = o;
   }
 
+  /** @return the average number of bytes allocated by a run of the underlying
+   *         operation, in runs which were not discarded; negative if this is
+   *         unknown */
+  public double allocatedBytes() {
+    return usefulRuns.runs() == 0 || usefulRuns.allocatedBytes() < 0 ? -1 : 1. * usefulRuns.allocatedBytes() / usefulRuns.runs();
+  }
+
   /** @return current estimate, measured in nano-seconds, of the runtime of the
    *         underlying operation. */
   public double estimate() {
@@ -83,11 +90,13 @@ public class TimingEstimator {
     for (;;) {
       Log.print("Running " + thousands(runs) + " times...");
       @NotNull final JVM before = new JVM();
+      final long allocated = JVM.allocatedBytes();
       @NotNull final Stopwatch grossTime = new Stopwatch().start(), netTime = o.netTime(runs);
       grossTime.stop();
+      final long allocatedBytes = JVM.allocatedSince(allocated);
       @NotNull final JVM after = new JVM();
       nonnegative(netTime.time());
-      @NotNull final RunRecord $ = new RunRecord(runs, grossTime, netTime);
+      @NotNull final RunRecord $ = new RunRecord(runs, grossTime, netTime, allocatedBytes, after.gcTime - before.gcTime);
       totalRuns.add($);
       if (!after.equals(before)) {
         Log.print("oops, JVM state changed... " + netTime);
@@ -144,6 +153,13 @@ public class TimingEstimator {
     return null;
   }
 
+  /** @return the average time, in nano-seconds, spent in garbage collection
+   *         cycles per run of the underlying operation, in all runs, including
+   *         these discarded for the sake of garbage collection */
+  public double gcTime() {
+    return totalRuns.runs() == 0 ? 0 : 1E6 * totalRuns.gcTime() / totalRuns.runs();
+  }
+
   /** @return <code><b>true</b></code> <i>iff</i> recent runs indicate that the
    *         current estimate is stable. */
   public boolean steady() {
@@ -1,18 +1,234 @@
 /* Part of the "Spartan Blog"; mutate the rest, but leave this line as is */
 package il.org.spartan.bench;
 
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
 import il.org.spartan.statistics.*;
 
-/** Ad hoc implementation before we use Apache common
+/** Welch's t-test for the difference of the means of two samples, which, unlike
+ * Student's t-test, does not assume the samples have the same variance. The
+ * statistic is compared with Student's t distribution, whose degrees of
+ * freedom are approximated by the Welch-Satterthwaite equation; the cumulative
+ * distribution function of the latter is computed by the continued fraction of
+ * the regularized incomplete beta function.
+ * <p>
+ * Since run times are hardly ever normally distributed, a test which makes no
+ * such assumption is also offered: a bootstrap
+ * {@linkplain #bootstrap(double[], double[], int, double, Random) confidence
+ * interval} of the ratio between the medians of the samples.
  * @author Yossi Gil <tt>yossi.gil@gmail.com</tt>
  * @since 2016-09-10 */
 public class WelchT {
-  public double p;
+  private static final double EPSILON = 1E-15;
+  private static final double TINY = 1E-300;
+  private static final int MAX_ITERATIONS = 1000;
+  private static final double[] LANCZOS = { 0.99999999999980993, 676.5203681218851, -1259.1392167224028, 771.32342877765313,
+      -176.61502916214059, 12.507343278686905, -0.13857109526572012, 9.9843695780195716E-6, 1.5056327351493116E-7 };
+
+  /** @param t an arbitrary value
+   * @param df degrees of freedom, a positive, not necessarily integral, number
+   * @return the probability that a variable drawn from Student's t
+   *         distribution with the given degrees of freedom is not greater than
+   *         <code>t</code> */
+  public static double cdf(final double t, final double df) {
+    if (Double.isInfinite(t))
+      return t > 0 ? 1 : 0;
+    final double $ = regularizedBeta(df / (df + t * t), df / 2, 0.5) / 2;
+    return t > 0 ? 1 - $ : $;
+  }
+
+  /** Bootstrap confidence interval of the ratio of the median of the second
+   * sample to the median of the first, obtained by computing this ratio for
+   * samples drawn, with replacement, from each of the given samples.
+   * @param xs first sample, e.g., the run times of a baseline
+   * @param ys second sample, e.g., the run times of a candidate
+   * @param resamples number of times both samples are drawn
+   * @param confidence level of the confidence interval, e.g., 0.95
+   * @param r a source of randomness
+   * @return an interval which contains the ratio with the given confidence */
+  @NotNull public static double[] bootstrap(@NotNull final double[] xs, @NotNull final double[] ys, final int resamples,
+      final double confidence, @NotNull final Random r) {
+    @NotNull final double[] ratios = new double[resamples], x = new double[xs.length], y = new double[ys.length];
+    for (int ¢ = 0; ¢ < resamples; ++¢)
+      ratios[¢] = Median.destructiveMedian(resample(xs, x, r)) == 0 ? Double.NaN
+          : Median.destructiveMedian(resample(ys, y, r)) / Median.destructiveMedian(x);
+    Arrays.sort(ratios);
+    final double tail = (1 - confidence) / 2;
+    return new double[] { ratios[(int) (tail * (resamples - 1))], ratios[(int) Math.ceil((1 - tail) * (resamples - 1))] };
+  }
+
+  /** @param x a number between 0 and 1
+   * @param a a positive number
+   * @param b a positive number
+   * @return the regularized incomplete beta function
+   *         <i>I<sub>x</sub>(a,b)</i> */
+  static double regularizedBeta(final double x, final double a, final double b) {
+    if (x <= 0)
+      return 0;
+    if (x >= 1)
+      return 1;
+    final double $ = Math.exp(lnGamma(a + b) - lnGamma(a) - lnGamma(b) + a * Math.log(x) + b * Math.log1p(-x));
+    return x < (a + 1) / (a + b + 2) ? $ * continuedFraction(x, a, b) / a : 1 - $ * continuedFraction(1 - x, b, a) / b;
+  }
+
+  /** @param ¢ a number not smaller than 1/2
+   * @return the natural logarithm of the gamma function of this number, by
+   *         Lanczos' approximation */
+  static double lnGamma(final double ¢) {
+    final double x = ¢ - 1, t = x + 7.5;
+    double $ = LANCZOS[0];
+    for (int i = 1; i < LANCZOS.length; ++i)
+      $ += LANCZOS[i] / (x + i);
+    return 0.5 * Math.log(2 * Math.PI) + (x + 0.5) * Math.log(t) - t + Math.log($);
+  }
+
+  /** Evaluates the continued fraction of the incomplete beta function by the
+   * modified Lentz's method */
+  private static double continuedFraction(final double x, final double a, final double b) {
+    double c = 1, d = nonZero(1 - (a + b) * x / (a + 1));
+    d = 1 / d;
+    double $ = d;
+    for (int m = 1; m <= MAX_ITERATIONS; ++m) {
+      final double even = m * (b - m) * x / ((a + 2 * m - 1) * (a + 2 * m));
+      d = 1 / nonZero(1 + even * d);
+      c = nonZero(1 + even / c);
+      $ *= d * c;
+      final double odd = -(a + m) * (a + b + m) * x / ((a + 2 * m) * (a + 2 * m + 1));
+      d = 1 / nonZero(1 + odd * d);
+      c = nonZero(1 + odd / c);
+      $ *= d * c;
+      if (Math.abs(d * c - 1) < EPSILON)
+        break;
+    }
+    return $;
+  }
+
+  private static double nonZero(final double ¢) {
+    return Math.abs(¢) < TINY ? TINY : ¢;
+  }
+
+  @NotNull private static double[] resample(@NotNull final double[] from, @NotNull final double[] to, @NotNull final Random r) {
+    for (int ¢ = 0; ¢ < to.length; ++¢)
+      to[¢] = from[r.nextInt(from.length)];
+    return to;
+  }
+
+  private static double sampleVariance(@NotNull final Statistics ¢) {
+    return Math.max(0, ¢.variance()) * ¢.n() / (¢.n() - 1);
+  }
+
+  /** The t statistic; positive if the mean of the first sample is greater */
+  public final double t;
+  /** Degrees of freedom of the t statistic */
+  public final double df;
+  /** Two sided p-value, i.e., the probability of a t statistic at least as
+   * extreme as {@link #t}, if the means were the same; 1 if either sample has
+   * less than two values */
+  public final double p;
+  /** Cohen's d, i.e., the difference between the means, in units of the pooled
+   * standard deviation of the samples */
+  public final double effect;
+
+  /** Instantiates this class.
+   * @param s1 first sample
+   * @param s2 second sample */
+  public WelchT(@NotNull final Statistics s1, @NotNull final Statistics s2) {
+    this(s1.n(), s1.n() < 2 ? 0 : s1.mean(), s1.n() < 2 ? 0 : sampleVariance(s1), s2.n(), s2.n() < 2 ? 0 : s2.mean(),
+        s2.n() < 2 ? 0 : sampleVariance(s2));
+  }
+
+  /** Instantiates this class.
+   * @param n1 size of the first sample
+   * @param mean1 mean of the first sample
+   * @param variance1 (unbiased) variance of the first sample
+   * @param n2 size of the second sample
+   * @param mean2 mean of the second sample
+   * @param variance2 (unbiased) variance of the second sample */
+  public WelchT(final int n1, final double mean1, final double variance1, final int n2, final double mean2, final double variance2) {
+    if (n1 < 2 || n2 < 2) {
+      t = effect = 0;
+      df = Double.NaN;
+      p = 1;
+      return;
+    }
+    final double e1 = variance1 / n1, e2 = variance2 / n2, e = e1 + e2;
+    df = e == 0 ? n1 + n2 - 2 : e * e / (e1 * e1 / (n1 - 1) + e2 * e2 / (n2 - 1));
+    t = e == 0 ? mean1 == mean2 ? 0 : Math.copySign(Double.POSITIVE_INFINITY, mean1 - mean2) : (mean1 - mean2) / Math.sqrt(e);
+    p = Double.isInfinite(t) ? 0 : regularizedBeta(df / (df + t * t), df / 2, 0.5);
+    final double pooled = ((n1 - 1) * variance1 + (n2 - 1) * variance2) / (n1 + n2 - 2);
+    effect = pooled == 0 ? t : (mean1 - mean2) / Math.sqrt(pooled);
+  }
+
+  @Override @NotNull public String toString() {
+    return String.format("t=%.3f df=%.1f p=%.4f d=%.2f", Double.valueOf(t), Double.valueOf(df), Double.valueOf(p), Double.valueOf(effect));
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @Test public void lnGamma() {
+      assertEquals(0, WelchT.lnGamma(1), 1E-12);
+      assertEquals(0, WelchT.lnGamma(2), 1E-12);
+      assertEquals(Math.log(24), WelchT.lnGamma(5), 1E-12);
+      assertEquals(Math.log(Math.sqrt(Math.PI)), WelchT.lnGamma(0.5), 1E-12);
+    }
+
+    @Test public void cdfCriticalValues() {
+      assertEquals(0.975, cdf(12.706, 1), 1E-5);
+      assertEquals(0.975, cdf(2.228, 10), 1E-4);
+      assertEquals(0.995, cdf(2.845, 20), 1E-4);
+      assertEquals(0.975, cdf(1.960, 1E6), 1E-4);
+      assertEquals(0.025, cdf(-2.228, 10), 1E-4);
+      assertEquals(0.5, cdf(0, 3.7), 1E-12);
+    }
+
+    @Test public void cdfCauchy() {
+      for (double ¢ = -5; ¢ <= 5; ¢ += 0.25)
+        assertEquals(0.5 + Math.atan(¢) / Math.PI, cdf(¢, 1), 1E-10);
+    }
+
+    @Test public void welch() {
+      @NotNull final WelchT $ = new WelchT(15, 20.6, 9.3, 10, 22.2, 2.1);
+      assertEquals(-1.6 / Math.sqrt(0.62 + 0.21), $.t, 1E-12);
+      assertEquals(0.83 * 0.83 / (0.62 * 0.62 / 14 + 0.21 * 0.21 / 9), $.df, 1E-9);
+      assertEquals(2 * cdf($.t, $.df), $.p, 1E-12);
+      assert $.p > 0.05 && $.p < 0.1;
+    }
+
+    @Test public void samples() {
+      @NotNull final RealStatistics s1 = new RealStatistics(), s2 = new RealStatistics(), s3 = new RealStatistics();
+      for (int ¢ = 0; ¢ < 100; ++¢) {
+        s1.record(100 + ¢ % 10);
+        s2.record(100 + (¢ + 3) % 10);
+        s3.record(110 + ¢ % 10);
+      }
+      assertEquals(1, new WelchT(s1, s2).p, 1E-12);
+      assert new WelchT(s1, s3).p < 1E-6;
+      assert new WelchT(s1, s3).t < 0;
+      assert new WelchT(s1, s3).effect < -3;
+    }
+
+    @Test public void degenerate() {
+      assertEquals(1, new WelchT(1, 3, 0, 10, 4, 1).p, 0);
+      assertEquals(0, new WelchT(5, 3, 0, 10, 4, 0).p, 0);
+      assertEquals(1, new WelchT(5, 3, 0, 10, 3, 0).p, 0);
+    }
 
-  /** Empty for now */
-  /** Instantiates this class. @param s1 /** Instantiates this class. @param
-   * s2 */
-  @SuppressWarnings("unused") public WelchT(final Statistics s1, final Statistics s2) {
-    //
+    @Test public void bootstrap() {
+      @NotNull final Random r = new Random(1);
+      @NotNull final double[] xs = new double[50], ys = new double[50];
+      for (int ¢ = 0; ¢ < xs.length; ++¢) {
+        xs[¢] = 100 + r.nextGaussian();
+        ys[¢] = 150 + r.nextGaussian();
+      }
+      @NotNull final double[] $ = WelchT.bootstrap(xs, ys, 1000, 0.95, r);
+      assert $[0] <= $[1];
+      assert $[0] > 1.45 && $[1] < 1.55;
+      assert WelchT.bootstrap(xs, xs, 1000, 0.95, r)[0] <= 1;
+      assert WelchT.bootstrap(xs, xs, 1000, 0.95, r)[1] >= 1;
+    }
   }
 }
@@ -27,10 +27,11 @@ public abstract class Bencheon extends NamedOperation {
   }
 
   public long netRunTime(final int runs) {
+    @NotNull final Blackhole b = Blackhole.local();
     final long $ = beforeEachMethodTime(runs), begin = System.nanoTime();
     for (int ¢ = 0; ¢ < runs; ++¢) {
       beforeEachRun();
-      call();
+      b.consume(call());
     }
     return System.nanoTime() - $ - begin;
   }
@@ -38,8 +39,9 @@ public abstract class Bencheon extends NamedOperation {
   @Override @NotNull public final Stopwatch netTime(@NotNull final Stopwatch netTime) {
     beforeAllRuns();
     beforeEachRun();
+    @NotNull final Blackhole b = Blackhole.local();
     netTime.start();
-    call();
+    b.consume(call());
     netTime.stop();
     return netTime;
   }
@@ -54,9 +56,10 @@ public abstract class Bencheon extends NamedOperation {
   }
 
   public final void run(final int runs) {
+    @NotNull final Blackhole b = Blackhole.local();
     for (int ¢ = 0; ¢ < runs; ++¢) {
       beforeEachRun();
-      call();
+      b.consume(call());
     }
   }
 
@@ -81,9 +84,10 @@ public abstract class Bencheon extends NamedOperation {
     }
 
     @Override public long netRunTime(final int runs) {
+      @NotNull final Blackhole b = Blackhole.local();
       final long $ = System.nanoTime();
       for (int ¢ = 0; ¢ < runs; ++¢)
-        call();
+        b.consume(call());
       return System.nanoTime() - $;
     }
 
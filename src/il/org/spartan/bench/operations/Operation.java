@@ -9,7 +9,10 @@ import il.org.spartan.bench.*;
 /** A typed procedure with no arguments, which is also suitable for time
  * measurement, i.e., its execution time is sufficiently greater than the time
  * granularity of loop execution, function calls, and the other instructions
- * required for timing. */
+ * required for timing. The measurement loops of this class and its
+ * descendants pass the result of each {@link #call()} to a {@link Blackhole},
+ * so that the JIT compiler cannot eliminate the computation of a result which
+ * is never used. */
 public abstract class Operation implements Callable<Object> {
   /** The body of this operation; to be filled in by sub-classes.
    * @return whatever */
@@ -29,15 +32,17 @@ public abstract class Operation implements Callable<Object> {
   }
 
   @NotNull public Stopwatch netTime(@NotNull final Stopwatch netTime) {
+    @NotNull final Blackhole b = Blackhole.local();
     netTime.start();
-    call();
+    b.consume(call());
     return netTime.stop();
   }
 
   @NotNull public Stopwatch netTime(@NotNull final Stopwatch $, final int runs) {
+    @NotNull final Blackhole b = Blackhole.local();
     $.start();
     for (int ¢ = 0; ¢ < runs; ++¢)
-      call();
+      b.consume(call());
     return $.stop();
   }
 }
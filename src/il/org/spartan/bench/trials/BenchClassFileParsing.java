@@ -0,0 +1,107 @@
+package il.org.spartan.bench.trials;
+
+import java.io.*;
+import java.net.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.bench.*;
+import il.org.spartan.bench.operations.*;
+import il.org.spartan.classfiles.*;
+import il.org.spartan.classfiles.reify.*;
+
+/** Measures the throughput of {@link ClassInfo.Builder} over all class files
+ * of the running JDK, i.e., the <tt>jrt:/</tt> file system of its modules
+ * where available, and the JRE archives otherwise. Class files are loaded into
+ * memory beforehand, so that only parsing is timed, first with an eagerly read
+ * constants' pool, and then with a lazily decoded one. */
+public class BenchClassFileParsing {
+  private static final String DOT_CLASS = ".class";
+  private static final int warmups = 2;
+  private static final int trials = 5;
+
+  public static void main(final String args[]) throws IOException {
+    @NotNull final List<byte[]> classes = jdkClassFiles();
+    System.err.println("Loaded " + classes.size() + " class files; " + failures(classes) + " could not be parsed");
+    @NotNull final LogBook.Mutable l = new LogBook.Mutable(BenchClassFileParsing.class);
+    go(l, "eager", classes, new Operation() {
+      @Override public Object call() {
+        int $ = 0;
+        for (@NotNull final byte[] ¢ : classes)
+          $ += ClassInfo.make(new ByteArrayInputStream(¢)) == null ? 0 : 1;
+        return Integer.valueOf($);
+      }
+    });
+    go(l, "lazy", classes, new Operation() {
+      @Override public Object call() {
+        int $ = 0;
+        for (@NotNull final byte[] ¢ : classes)
+          $ += ClassInfo.make(¢) == null ? 0 : 1;
+        return Integer.valueOf($);
+      }
+    });
+  }
+
+  /** Time whole passes over all class files; parsing allocates, so
+   * {@link BenchingPolicy}, which discards runs with garbage collection
+   * cycles, is not applicable here.
+   * @param l where to record the time per class file
+   * @param name name of the measured operation
+   * @param classes contents of class files
+   * @param o a single pass over these */
+  private static void go(@NotNull final LogBook.Mutable l, final String name, @NotNull final List<byte[]> classes,
+      @NotNull final Operation o) {
+    l.set("operation", name).set("size", classes.size());
+    for (int ¢ = 0; ¢ < warmups; ++¢)
+      o.call();
+    for (int ¢ = 0; ¢ < trials; ++¢)
+      l.record(o.netTime(), classes.size());
+    System.err.println(l.currentEntry().format("A D I X"));
+  }
+
+  /** @param classes contents of class files
+   * @return how many of these could not be parsed, either eagerly or lazily */
+  private static int failures(@NotNull final List<byte[]> classes) {
+    int $ = 0;
+    for (@NotNull final byte[] ¢ : classes)
+      try {
+        if (ClassInfo.make(new ByteArrayInputStream(¢)) == null || ClassInfo.make(¢) == null)
+          ++$;
+      } catch (@NotNull final RuntimeException __) {
+        ++$;
+      }
+    return $;
+  }
+
+  @NotNull private static List<byte[]> jdkClassFiles() throws IOException {
+    try {
+      @NotNull final Path modules = FileSystems.getFileSystem(URI.create("jrt:/")).getPath("/modules");
+      try (Stream<Path> ps = Files.walk(modules)) {
+        @NotNull final List<byte[]> $ = new ArrayList<>();
+        for (@NotNull final Path ¢ : (Iterable<Path>) ps.filter(λ -> λ.toString().endsWith(DOT_CLASS))::iterator)
+          $.add(Files.readAllBytes(¢));
+        return $;
+      }
+    } catch (@NotNull final ProviderNotFoundException | FileSystemNotFoundException __) {
+      // No modules before Java 9; fall back to the JRE archives
+    }
+    @NotNull final List<byte[]> $ = new ArrayList<>();
+    for (@NotNull final String className : new ClassRepository.JRE())
+      try (InputStream s = CLASSFILES.open(className)) {
+        if (s != null)
+          $.add(read(s));
+      }
+    return $;
+  }
+
+  @NotNull private static byte[] read(@NotNull final InputStream s) throws IOException {
+    @NotNull final ByteArrayOutputStream $ = new ByteArrayOutputStream();
+    @NotNull final byte[] buffer = new byte[1 << 12];
+    for (int n = s.read(buffer); n >= 0; n = s.read(buffer))
+      $.write(buffer, 0, n);
+    return $.toByteArray();
+  }
+}
@@ -0,0 +1,205 @@
+package il.org.spartan.bench.trials;
+
+import java.io.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.bench.*;
+import il.org.spartan.bench.LogBook.*;
+import il.org.spartan.bench.operations.*;
+import il.org.spartan.collections.*;
+
+/** Compares {@link IntegersMap}, with its quadratic probes and parallel arrays,
+ * {@link PackedIntegersMap}, and {@link HashMap}, on tables of one to a hundred
+ * million keys: looking up keys which are in the table, keys which are not,
+ * and removing keys and putting them back. Each run is of a batch of
+ * {@link #BATCH} operations on random keys.
+ * <p>
+ * Table sizes may be given on the command line; large tables require a large
+ * heap, e.g., <code>-Xmx16g</code> for a {@link HashMap} of a hundred million
+ * keys. */
+public class BenchIntegersMap {
+  public static final int BATCH = 1 << 10;
+  @Nullable private static Table cached;
+
+  public static void main(final String args[]) throws IOException {
+    @NotNull final Object[] sizes = args.length == 0 ? new Object[] { Integer.valueOf(1_000_000), Integer.valueOf(10_000_000),
+        Integer.valueOf(100_000_000) } : new Object[args.length];
+    for (int ¢ = 0; ¢ < args.length; ++¢)
+      sizes[¢] = Integer.valueOf(args[¢]);
+    @NotNull final LogBook.Mutable l = new LogBook.Mutable(BenchIntegersMap.class);
+    new Sweep().axis("table", "quadratic", "packed", "HashMap").axis("keys", sizes).axis("workload", "hit", "miss", "churn").run(l,
+        λ -> new Batch((String) λ[0], ((Integer) λ[1]).intValue(), (String) λ[2]));
+    l.printBy(Consolidation.LIST, "table", "keys", "workload");
+  }
+
+  /** A bijection of the integers, mapping only <code>0</code> to itself, by
+   * the finalizer of MurmurHash3 */
+  static int key(final int i) {
+    int $ = i;
+    $ ^= $ >>> 16;
+    $ *= 0x85EBCA6B;
+    $ ^= $ >>> 13;
+    $ *= 0xC2B2AE35;
+    return $ ^ $ >>> 16;
+  }
+
+  @NotNull static Table table(@NotNull final String name, final int size) {
+    if (cached != null && cached.name.equals(name) && cached.size == size)
+      return cached;
+    cached = null;
+    return cached = name.equals("quadratic") ? new Quadratic(size) : name.equals("packed") ? new Packed(size) : new Boxed(size);
+  }
+
+  /** A batch of operations of a kind on a table */
+  static final class Batch extends Bencheon {
+    @NotNull private final String table;
+    private final int keys;
+    @NotNull private final String operation;
+    @NotNull private final Random random = new Random(1);
+    @NotNull private final int[] batch = new int[BATCH];
+    @Nullable private Table t;
+
+    Batch(@NotNull final String table, final int keys, @NotNull final String operation) {
+      super(table + "/" + operation, BATCH);
+      this.table = table;
+      this.keys = keys;
+      this.operation = operation;
+    }
+
+    @Override public void beforeAllRuns() {
+      t = table(table, keys);
+    }
+
+    @Override public void beforeEachRun() {
+      for (int ¢ = 0; ¢ < BATCH; ++¢)
+        batch[¢] = key(operation.equals("miss") ? keys + 1 + random.nextInt(Integer.MAX_VALUE - keys) : 1 + random.nextInt(keys));
+    }
+
+    @Override @NotNull public Object call() {
+      assert t != null;
+      return Integer.valueOf(operation.equals("hit") ? t.get(batch) : operation.equals("miss") ? t.contains(batch) : t.churn(batch));
+    }
+  }
+
+  abstract static class Table {
+    @NotNull final String name;
+    final int size;
+
+    Table(@NotNull final String name, final int size) {
+      this.name = name;
+      this.size = size;
+    }
+
+    /** @return the number of keys found */
+    abstract int contains(@NotNull int[] keys);
+
+    /** Removes keys and puts them back
+     * @return the size of the table */
+    abstract int churn(@NotNull int[] keys);
+
+    /** @return the sum of the values of the keys */
+    abstract int get(@NotNull int[] keys);
+  }
+
+  static final class Boxed extends Table {
+    @NotNull private final HashMap<Integer, Integer> map;
+
+    Boxed(final int size) {
+      super("HashMap", size);
+      map = new HashMap<>();
+      for (int ¢ = 1; ¢ <= size; ++¢)
+        map.put(Integer.valueOf(key(¢)), Integer.valueOf(¢));
+    }
+
+    @Override int churn(@NotNull final int[] keys) {
+      for (final int ¢ : keys)
+        map.put(Integer.valueOf(¢), map.remove(Integer.valueOf(¢)));
+      return map.size();
+    }
+
+    @Override int contains(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        if (map.containsKey(Integer.valueOf(¢)))
+          ++$;
+      return $;
+    }
+
+    @Override int get(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        $ += map.get(Integer.valueOf(¢)).intValue();
+      return $;
+    }
+  }
+
+  static final class Packed extends Table {
+    @NotNull private final PackedIntegersMap map;
+
+    Packed(final int size) {
+      super("packed", size);
+      map = new PackedIntegersMap();
+      for (int ¢ = 1; ¢ <= size; ++¢)
+        map.put(key(¢), ¢);
+    }
+
+    @Override int churn(@NotNull final int[] keys) {
+      for (final int ¢ : keys) {
+        final int value = map.get(¢);
+        map.remove(¢).put(¢, value);
+      }
+      return map.size();
+    }
+
+    @Override int contains(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        if (map.contains(¢))
+          ++$;
+      return $;
+    }
+
+    @Override int get(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        $ += map.get(¢);
+      return $;
+    }
+  }
+
+  static final class Quadratic extends Table {
+    @NotNull private final IntegersMap map;
+
+    Quadratic(final int size) {
+      super("quadratic", size);
+      map = new IntegersMap();
+      for (int ¢ = 1; ¢ <= size; ++¢)
+        map.put(key(¢), ¢);
+    }
+
+    @Override int churn(@NotNull final int[] keys) {
+      for (final int ¢ : keys) {
+        final int value = map.get(¢);
+        map.remove(¢).put(¢, value);
+      }
+      return map.size();
+    }
+
+    @Override int contains(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        if (map.contains(¢))
+          ++$;
+      return $;
+    }
+
+    @Override int get(@NotNull final int[] keys) {
+      int $ = 0;
+      for (final int ¢ : keys)
+        $ += map.get(¢);
+      return $;
+    }
+  }
+}
@@ -3,8 +3,8 @@ package il.org.spartan.classfiles;
 import static il.org.spartan.utils.___.*;
 
 import java.io.*;
+import java.nio.*;
 import java.util.*;
-import java.util.zip.*;
 
 import org.jetbrains.annotations.*;
 
@@ -12,12 +12,21 @@ import il.org.spartan.streotypes.*;
 import il.org.spartan.utils.*;
 
 /** A utility class, serving as a façade to {@link CLASSPATH}, {@link JRE},
- * {@link EXTENSIONPATH}, {@link ZipFile} and {@link File} providing a unified
- * repository of all locations where Java binaries may be found.
+ * {@link EXTENSIONPATH}, {@link java.util.zip.ZipFile} and {@link File}
+ * providing a unified repository of all locations where Java binaries may be
+ * found.
+ * <p>
+ * Lookups are served by a {@link ClassFilesIndex}, computed lazily from
+ * {@link #asFiles()}, and then read without locking. The index is recomputed
+ * whenever the {@linkplain CLASSPATH#get() class path} differs from the one it
+ * was computed for, and class files added to directories of the search path
+ * after the index was computed are still found; call {@link #reset()} to
+ * close the archives held open by the index.
  * @author Yossi Gil */
 @Utility public enum CLASSFILES {
   ;
-  @NotNull static final Set<ZipFile> zipsInUse = new HashSet<>();
+  /** The index, and the class path it was computed for */
+  @Nullable private static volatile Indexed indexed;
 
   /** Where are all Java class files found
    * @return the list of directories and ZIP archives in the current search
@@ -29,6 +38,19 @@ import il.org.spartan.utils.*;
     return $;
   }
 
+  /** Given the full name of a class, return the content of its class file,
+   * without the copying incurred by {@link #open(String)}.
+   * @param fullClassName the full class name, in the format returned by method
+   *        {@link java.lang.Class#getName()}
+   * @return a read only buffer with the content of the <tt>.class</tt> file
+   *         of this class, or <code><b>null</b></code> if it could not be
+   *         found
+   * @see ClassFilesIndex#buffer(String) */
+  @Nullable public static ByteBuffer buffer(@NotNull final String fullClassName) {
+    nonnull(fullClassName);
+    return index().buffer(fullClassName);
+  }
+
   /** Given the full name of a class, return a textual representation of the
    * location where the appropriate <tt>.class</tt> can be found.
    * @param className the full class name, where the inner- and anonymous- class
@@ -41,12 +63,7 @@ import il.org.spartan.utils.*;
    *         corresponding <tt>.class</tt> file could not be found. */
   public static String location(@NotNull final String className) {
     nonnull(className);
-    for (@NotNull final File where : asFiles()) {
-      @Nullable final String $ = location(where, className);
-      if ($ != null)
-        return $;
-    }
-    return null;
+    return index().location(className);
   }
 
   /** Exercise this class by printing the result of its principal function.
@@ -86,29 +103,32 @@ import il.org.spartan.utils.*;
    *         file could not be found. */
   public static InputStream open(@NotNull final String fullClassName) {
     nonnull(fullClassName);
-    for (@NotNull final File f : asFiles()) {
-      @Nullable final InputStream $ = open(f, fullClassName);
-      if ($ != null)
-        try {
-          $.available();
-        } catch (@NotNull final IOException ¢) {
-          ¢.printStackTrace();
-        }
-      if ($ != null)
-        return $;
-    }
-    return null;
+    return index().open(fullClassName);
   }
 
-  public static void reset() {
-    for (@NotNull final ZipFile z : zipsInUse)
-      try {
-        z.close();
-      } catch (@NotNull final IOException __) {
-        // Absorb (we do not care about errors)
-        __.printStackTrace();
-      }
-    zipsInUse.clear();
+  /** Close all archives held open, and discard the index, so that it is
+   * recomputed, e.g., after class files were added to the search path. */
+  public static synchronized void reset() {
+    @Nullable final Indexed $ = indexed;
+    indexed = null;
+    if ($ != null)
+      $.index.close();
+  }
+
+  /** @return an index of the search path, computed on first use, and again
+   *         once the class path changes */
+  @NotNull static ClassFilesIndex index() {
+    @Nullable final Indexed $ = indexed;
+    return $ != null && $.classPath.equals(CLASSPATH.get()) ? $.index : compute();
+  }
+
+  @NotNull private static synchronized ClassFilesIndex compute() {
+    @Nullable final Indexed $ = indexed;
+    final String classPath = CLASSPATH.get();
+    if ($ != null && $.classPath.equals(classPath))
+      return $.index;
+    reset();
+    return (indexed = new Indexed(classPath, new ClassFilesIndex(asFiles()))).index;
   }
 
   private static void add(@NotNull final ArrayList<File> ds, @NotNull final String[]... directoryNamesArray) {
@@ -121,48 +141,13 @@ import il.org.spartan.utils.*;
       ds.add(new File(directory));
   }
 
-  @NotNull private static String canonicalFileName(@NotNull final String className) {
-    return className.replace('.', File.separatorChar) + ".class";
-  }
-
-  @NotNull private static String class2ZipFileName(@NotNull final String className) {
-    return className.replace('.', '/') + ".class";
-  }
-
-  private static String location(@NotNull final File where, @NotNull final String className) {
-    return where.isDirectory() ? searchDirectory(where, className) == null ? null : where.getName()
-        : searchZip(where, class2ZipFileName(className)) == null ? null : where.getName();
-  }
-
-  @Nullable private static InputStream open(@NotNull final File where, @NotNull final String className) {
-    return where.isDirectory() ? searchDirectory(where, className) : searchZip(where, class2ZipFileName(className));
-  }
-
-  private static InputStream searchDirectory(final File where, @NotNull final String className) {
-    @NotNull final File $ = new File(where, canonicalFileName(className));
-    try {
-      return !$.exists() ? null : new FileInputStream($);
-    } catch (@NotNull final FileNotFoundException __) {
-      return null;
-    }
-  }
+  private static final class Indexed {
+    @NotNull final String classPath;
+    @NotNull final ClassFilesIndex index;
 
-  private static InputStream searchZip(@NotNull final File where, @NotNull final String fileName) {
-    try {
-      @NotNull final ZipFile $ = new ZipFile(where.getAbsoluteFile());
-      final ZipEntry e = $.getEntry(fileName);
-      if (e == null) {
-        $.close();
-        return null;
-      }
-      zipsInUse.add($);
-      return $.getInputStream(e);
-      /* for (final ZipEntry e : IterableAdapter.make(z.entries())) if
-       * (e.getName().equals(fileName)) { zipsInUse.add(z); return
-       * z.getInputStream(e); } z.close(); */
-    } catch (@NotNull final IOException __) {
-      // Absorb (we do not care about errors)
+    Indexed(@NotNull final String classPath, @NotNull final ClassFilesIndex index) {
+      this.classPath = classPath;
+      this.index = index;
     }
-    return null;
   }
 }
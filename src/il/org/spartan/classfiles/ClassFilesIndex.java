@@ -0,0 +1,335 @@
+package il.org.spartan.classfiles;
+
+import static il.org.spartan.utils.___.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.streotypes.*;
+
+/** An index of all <tt>.class</tt> files found in a sequence of roots, i.e.,
+ * directories and ZIP archives, mapping each fully qualified class name to the
+ * first root in which it occurs. The index is computed once, on construction,
+ * so that each subsequent {@link #open(String)} or {@link #location(String)}
+ * costs a single hash lookup, instead of a search through all roots. A class
+ * which is not in the index is still looked up in the directories among the
+ * roots, since class files may be added to these later.
+ * <p>
+ * Archives are accessed through a bounded pool of open {@link ZipFile}s; when
+ * the pool is full, the least recently used archive is evicted, and closed as
+ * soon as no thread is reading from it. Entries are read outside of the lock
+ * of the pool, and the streams returned by {@link #open(String)} are detached
+ * from the underlying archive.
+ * <p>
+ * Method {@link #buffer(String)} offers a copy free alternative: archive
+ * entries are inflated directly into a buffer of their exact size, and class
+ * files in directories are read into a buffer of their exact size, or, if
+ * larger than {@link #MAP_THRESHOLD}, memory mapped. */
+@Instantiable public final class ClassFilesIndex implements Closeable {
+  /** Default maximal number of archives kept open simultaneously */
+  public static final int DEFAULT_POOL_SIZE = 32;
+  /** Files smaller than this are read rather than mapped, since a process may
+   * only hold a limited number of mappings */
+  public static final int MAP_THRESHOLD = 1 << 16;
+  private static final String DOT_CLASS = ".class";
+
+  @NotNull static String class2ZipFileName(@NotNull final String className) {
+    return className.replace('.', '/') + DOT_CLASS;
+  }
+
+  @NotNull static String canonicalFileName(@NotNull final String className) {
+    return className.replace('.', File.separatorChar) + DOT_CLASS;
+  }
+
+  @NotNull private static byte[] read(@NotNull final InputStream s) throws IOException {
+    @NotNull final ByteArrayOutputStream $ = new ByteArrayOutputStream();
+    @NotNull final byte[] buffer = new byte[1 << 12];
+    for (int n = s.read(buffer); n >= 0; n = s.read(buffer))
+      $.write(buffer, 0, n);
+    return $.toByteArray();
+  }
+
+  /** @param f an existing file
+   * @return a read only buffer mapping the entire content of this file
+   * @throws IOException in case the file could not be mapped */
+  @NotNull public static ByteBuffer map(@NotNull final File f) throws IOException {
+    try (FileChannel $ = FileChannel.open(f.toPath())) {
+      return $.map(FileChannel.MapMode.READ_ONLY, 0, $.size());
+    }
+  }
+
+  /** @param f an existing file
+   * @return a buffer with the entire content of this file, read into the heap,
+   *         or, if its size is at least {@link #MAP_THRESHOLD}, memory mapped
+   * @throws IOException in case the file could not be read */
+  @NotNull public static ByteBuffer read(@NotNull final File f) throws IOException {
+    try (FileChannel c = FileChannel.open(f.toPath())) {
+      final long size = c.size();
+      if (size >= MAP_THRESHOLD)
+        return c.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      @NotNull final ByteBuffer $ = ByteBuffer.allocate((int) size);
+      while ($.hasRemaining())
+        if (c.read($) < 0)
+          throw new EOFException(f + "");
+      $.flip();
+      return $;
+    }
+  }
+
+  /** @param s a stream, e.g., of an archive entry
+   * @param size the number of bytes remaining in this stream, or a negative
+   *        number if unknown
+   * @return a buffer holding these bytes
+   * @throws IOException in case of a read error, or if the stream ends
+   *         prematurely */
+  @NotNull public static ByteBuffer read(@NotNull final InputStream s, final long size) throws IOException {
+    if (size < 0)
+      return ByteBuffer.wrap(read(s));
+    @NotNull final byte[] $ = new byte[(int) size];
+    for (int n = 0, read; n < $.length; n += read)
+      if ((read = s.read($, n, $.length - n)) < 0)
+        throw new EOFException();
+    return ByteBuffer.wrap($);
+  }
+
+  @NotNull private final List<File> roots = new ArrayList<>();
+  @NotNull private final Map<String, File> class2root = new HashMap<>();
+  @NotNull private final Pool pool;
+
+  /** Instantiate this class, using the {@link #DEFAULT_POOL_SIZE default}
+   * archive pool size.
+   * @param roots the directories and archives to index, in search order */
+  public ClassFilesIndex(@NotNull final Iterable<File> roots) {
+    this(roots, DEFAULT_POOL_SIZE);
+  }
+
+  /** Instantiate this class
+   * @param roots the directories and archives to index, in search order
+   * @param poolSize maximal number of archives kept open simultaneously */
+  public ClassFilesIndex(@NotNull final Iterable<File> roots, final int poolSize) {
+    positive(poolSize);
+    pool = new Pool(poolSize);
+    for (@NotNull final File ¢ : roots) {
+      this.roots.add(¢);
+      index(¢);
+    }
+  }
+
+  /** @param className a fully qualified class name, in the format returned by
+   *        {@link Class#getName()}
+   * @return a read only buffer with the content of the <tt>.class</tt> file
+   *         of this class, see {@link #read(File)}, or
+   *         <code><b>null</b></code> if this class was not found in any root
+   * @throws UncheckedIOException in case the class file was found, but could
+   *         not be read */
+  @Nullable public ByteBuffer buffer(@NotNull final String className) {
+    nonnull(className);
+    @Nullable final File where = root(className);
+    if (where == null)
+      return null;
+    try {
+      @Nullable final ByteBuffer $ = where.isDirectory() ? read(new File(where, canonicalFileName(className)))
+          : pool.buffer(where, class2ZipFileName(className));
+      return $ == null ? null : $.asReadOnlyBuffer();
+    } catch (@NotNull final IOException ¢) {
+      throw new UncheckedIOException(¢);
+    }
+  }
+
+  /** Close all archives currently held open by this index; the index itself
+   * remains usable, and archives are reopened on demand. */
+  @Override public void close() {
+    pool.clear();
+  }
+
+  /** @param className a fully qualified class name, in the format returned by
+   *        {@link Class#getName()}
+   * @return the name of the root in which the <tt>.class</tt> file of this
+   *         class was found, or <code><b>null</b></code> if there is no such
+   *         root */
+  @Nullable public String location(@NotNull final String className) {
+    @Nullable final File $ = root(className);
+    return $ == null ? null : $.getName();
+  }
+
+  /** @param className a fully qualified class name, in the format returned by
+   *        {@link Class#getName()}
+   * @return an {@link InputStream} to the <tt>.class</tt> file of this class,
+   *         or <code><b>null</b></code> if this class was not found in any
+   *         root. */
+  @Nullable public InputStream open(@NotNull final String className) {
+    nonnull(className);
+    @Nullable final File where = root(className);
+    if (where == null)
+      return null;
+    try {
+      if (where.isDirectory())
+        return new FileInputStream(new File(where, canonicalFileName(className)));
+      return pool.open(where, class2ZipFileName(className));
+    } catch (@NotNull final IOException __) {
+      // Absorb (we do not care about errors)
+      return null;
+    }
+  }
+
+  /** @param className a fully qualified class name, in the format returned by
+   *        {@link Class#getName()}
+   * @return the first root in which the <tt>.class</tt> file of this class
+   *         was found, or <code><b>null</b></code> if there is no such root */
+  @Nullable public File root(@NotNull final String className) {
+    @Nullable final File $ = class2root.get(className);
+    if ($ != null)
+      return $;
+    for (@NotNull final File ¢ : roots)
+      if (¢.isDirectory() && new File(¢, canonicalFileName(className)).isFile())
+        return ¢;
+    return null;
+  }
+
+  /** @return the roots of this index, in search order */
+  @NotNull public List<File> roots() {
+    return Collections.unmodifiableList(roots);
+  }
+
+  /** @return the number of distinct classes in this index */
+  public int size() {
+    return class2root.size();
+  }
+
+  private void add(@NotNull final String className, @NotNull final File root) {
+    if (!class2root.containsKey(className))
+      class2root.put(className, root);
+  }
+
+  private void index(@NotNull final File root) {
+    if (root.isDirectory())
+      indexDirectory(root, root, "");
+    else if (root.exists())
+      indexArchive(root);
+  }
+
+  private void indexArchive(@NotNull final File root) {
+    try {
+      @NotNull final Archive a = pool.acquire(root);
+      try {
+        for (final Enumeration<? extends ZipEntry> es = a.zip.entries(); es.hasMoreElements();) {
+          final String name = es.nextElement().getName();
+          if (name.endsWith(DOT_CLASS))
+            add(name.substring(0, name.length() - DOT_CLASS.length()).replace('/', '.'), root);
+        }
+      } finally {
+        pool.release(a);
+      }
+    } catch (@NotNull final IOException __) {
+      // Absorb (we do not care about errors)
+    }
+  }
+
+  private void indexDirectory(@NotNull final File root, @NotNull final File directory, @NotNull final String prefix) {
+    @Nullable final String[] children = directory.list();
+    if (children != null)
+      for (@NotNull final String ¢ : children) {
+        @NotNull final File f = new File(directory, ¢);
+        if (f.isDirectory())
+          indexDirectory(root, f, prefix + ¢ + ".");
+        else if (¢.endsWith(DOT_CLASS))
+          add(prefix + ¢.substring(0, ¢.length() - DOT_CLASS.length()), root);
+      }
+  }
+
+  /** An open archive of a {@link Pool}, with the number of threads reading
+   * from it; all fields are guarded by the lock of the pool */
+  private static final class Archive {
+    @NotNull final ZipFile zip;
+    int users;
+    boolean evicted;
+
+    Archive(@NotNull final ZipFile zip) {
+      this.zip = zip;
+    }
+
+    /** Close this archive as soon as it has no users */
+    void evict() {
+      evicted = true;
+      if (users == 0)
+        Pool.close(zip);
+    }
+  }
+
+  /** A bounded pool of open archives, evicting the least recently used archive
+   * when full. The lock of the pool is held only while an archive is looked
+   * up, opened, or released, and not while it is read. */
+  private static final class Pool {
+    @NotNull private final LinkedHashMap<File, Archive> archives;
+
+    Pool(final int capacity) {
+      archives = new LinkedHashMap<File, Archive>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override protected boolean removeEldestEntry(final Map.Entry<File, Archive> eldest) {
+          if (size() <= capacity)
+            return false;
+          eldest.getValue().evict();
+          return true;
+        }
+      };
+    }
+
+    private static void close(@NotNull final ZipFile ¢) {
+      try {
+        ¢.close();
+      } catch (@NotNull final IOException __) {
+        // Absorb (we do not care about errors)
+      }
+    }
+
+    /** @return the archive of a file, opened if necessary, which must be
+     *         {@link #release(Archive) released} when done */
+    @NotNull synchronized Archive acquire(@NotNull final File where) throws IOException {
+      @Nullable Archive $ = archives.get(where);
+      if ($ == null)
+        archives.put(where, $ = new Archive(new ZipFile(where.getAbsoluteFile())));
+      ++$.users;
+      return $;
+    }
+
+    /** Inflate an archive entry into a buffer of its exact size, if this size
+     * is recorded in the archive. */
+    @Nullable ByteBuffer buffer(@NotNull final File where, @NotNull final String entryName) throws IOException {
+      @NotNull final Archive a = acquire(where);
+      try {
+        @Nullable final ZipEntry e = a.zip.getEntry(entryName);
+        if (e == null)
+          return null;
+        try (InputStream $ = a.zip.getInputStream(e)) {
+          return read($, e.getSize());
+        }
+      } finally {
+        release(a);
+      }
+    }
+
+    synchronized void clear() {
+      for (@NotNull final Archive ¢ : archives.values())
+        ¢.evict();
+      archives.clear();
+    }
+
+    /** Read an archive entry in full, so that the returned stream remains
+     * valid even after its archive is evicted from the pool. */
+    @Nullable InputStream open(@NotNull final File where, @NotNull final String entryName) throws IOException {
+      @Nullable final ByteBuffer $ = buffer(where, entryName);
+      return $ == null ? null : new ByteArrayInputStream($.array(), $.arrayOffset() + $.position(), $.remaining());
+    }
+
+    synchronized void release(@NotNull final Archive ¢) {
+      if (--¢.users == 0 && ¢.evicted)
+        close(¢.zip);
+    }
+  }
+}
@@ -5,6 +5,8 @@ import static il.org.spartan.azzert.*;
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
 import java.util.zip.*;
 
 import org.jetbrains.annotations.*;
@@ -24,11 +26,22 @@ import il.org.spatan.iteration.*;
  * repository. The enumerated classes are represented as a collection of
  * {@link String}, where each string is the fully-qualified Java name of a
  * class, in the same format as required for {@link Class#forName(String)}.
+ * <p>
+ * Enumeration is carried out in parallel over the directories and archives
+ * of the roots, see {@link #stream()}. The listing of each directory is
+ * cached, and is recomputed only when the directory's modification time
+ * changes, i.e., when entries are added to it or removed from it; the list of
+ * classes in each archive is cached, and is recomputed only when the
+ * archive's modification time or size change.
  * @author Itay Maman July 6, 2006 */
 public class ClassRepository implements Iterable<String> {
   private static final String DOT_CLASS = ".class";
   private static final String DOT_JAR = ".jar";
   private static final String DOT_ZIP = ".zip";
+  /** Classes found in archives, keyed by the archive's absolute path */
+  @NotNull private static final ConcurrentMap<File, Snapshot> archives = new ConcurrentHashMap<>();
+  /** Listings of directories, keyed by the directory's absolute path */
+  @NotNull private static final ConcurrentMap<File, Listing> directories = new ConcurrentHashMap<>();
 
   /** Obtain the CLASSPATH (as a list of files) from the class loaders of the
    * given classes.
@@ -80,29 +93,52 @@ public class ClassRepository implements Iterable<String> {
   }
 
   public static void main(final String[] args) {
-    @NotNull final ClassRepository r = new ClassRepository.DEFAULT();
-    System.out.println("Size is " + r.getClasses().size());
-    @NotNull final List<String> list = r.getClasses();
+    @NotNull final List<String> list = new ClassRepository.DEFAULT().getClasses();
+    System.out.println("Size is " + list.size());
     for (int ¢ = 0; ¢ < list.size(); ++¢)
       System.out.println(¢ + " " + list.get(¢));
   }
 
-  /** Adding all classes residing in archive to cache
-   * @param jarFile fill path to a jar file
-   * @param result List where scanned files are stored */
-  private static void addFromArchive(@NotNull final String jarFile, @NotNull final ArrayList<String> result) {
-    try {
-      if (!new File(jarFile).exists())
-        return;
-      for (final Enumeration<? extends ZipEntry> entries = new ZipFile(jarFile).entries(); entries.hasMoreElements();) {
+  /** @param jarFile an archive
+   * @return all classes residing in this archive, cached until it changes */
+  @NotNull private static List<String> archive(@NotNull final File jarFile) {
+    @NotNull final File f = jarFile.getAbsoluteFile();
+    if (!f.exists())
+      return Collections.emptyList();
+    @Nullable final Snapshot cached = archives.get(f);
+    if (cached != null && cached.isFresh(f))
+      return cached.classes;
+    final long lastModified = f.lastModified(), length = f.length();
+    @NotNull final Snapshot $ = new Snapshot(lastModified, length, scanArchive(f.getPath()));
+    archives.put(f, $);
+    return $.classes;
+  }
+
+  /** @param directory a directory
+   * @return the entries of this directory, cached until it changes */
+  @NotNull private static Listing listing(@NotNull final File directory) {
+    final long lastModified = directory.lastModified();
+    @Nullable final Listing cached = directories.get(directory);
+    if (cached != null && cached.lastModified == lastModified)
+      return cached;
+    @NotNull final Listing $ = new Listing(lastModified, directory);
+    directories.put(directory, $);
+    return $;
+  }
+
+  @NotNull private static List<String> scanArchive(@NotNull final String jarFile) {
+    @NotNull final List<String> $ = new ArrayList<>();
+    try (ZipFile z = new ZipFile(jarFile)) {
+      for (final Enumeration<? extends ZipEntry> entries = z.entries(); entries.hasMoreElements();) {
         final ZipEntry ze = entries.nextElement();
         @NotNull final NameDotSuffix nds = new NameDotSuffix(ze);
         if (nds.suffixIs(DOT_CLASS))
-          result.add(nds.name);
+          $.add(nds.name);
       }
     } catch (@NotNull final IOException ¢) {
       throw new RuntimeException("Damaged zip file: " + jarFile, ¢);
     }
+    return Collections.unmodifiableList($);
   }
 
   @NotNull private static String concat(@Nullable final String path, final String name) {
@@ -133,6 +169,29 @@ public class ClassRepository implements Iterable<String> {
     return false;
   }
 
+  /** Collect the classes of a root, as a stream per directory and per
+   * archive, so that these are scanned in parallel
+   * @param f a root, or a directory below it
+   * @param path relative path (dot-separated) from the root
+   * @param $ where the streams are collected */
+  private static void parts(@NotNull final File f, @NotNull final String path, @NotNull final List<Stream<String>> $) {
+    if (!f.isDirectory()) {
+      @NotNull final NameDotSuffix nds = new NameDotSuffix(f);
+      if (nds.suffixIs(DOT_JAR) || nds.suffixIs(DOT_ZIP))
+        $.add(Stream.of(f).flatMap(λ -> archive(λ).stream()));
+      else if (nds.suffixIs(DOT_CLASS))
+        $.add(Stream.of(concat(path, nds.name)));
+      return;
+    }
+    @NotNull final Listing l = listing(f);
+    if (!l.classes.isEmpty())
+      $.add(l.classes.stream().map(λ -> concat(path, λ)));
+    for (@NotNull final String ¢ : l.archives)
+      $.add(Stream.of(new File(f, ¢)).flatMap(λ -> archive(λ).stream()));
+    for (@NotNull final String ¢ : l.directories)
+      parts(new File(f, ¢), concat(path, ¢), $);
+  }
+
   @NotNull private static File[] toFile(@NotNull final String[] paths) {
     @NotNull final File[] $ = new File[paths.length];
     int i = 0;
@@ -184,10 +243,7 @@ public class ClassRepository implements Iterable<String> {
   /** Find all classes on the CLASSPATH represented by the receiver
    * @return List of fully qualified names of all such classes */
   @NotNull public ArrayList<String> getClasses() {
-    @NotNull final ArrayList<String> $ = new ArrayList<>();
-    for (@NotNull final File ¢ : files)
-      addFromDirectory(0, ¢, ¢.getAbsolutePath(), $, "");
-    return $;
+    return stream().collect(Collectors.toCollection(ArrayList::new));
   }
 
   /** Obtain all starting point of the underlying class path
@@ -207,32 +263,25 @@ public class ClassRepository implements Iterable<String> {
   }
 
   public final int size() {
-    return getClasses().size();
+    return (int) stream().count();
   }
 
-  @Override @NotNull public String toString() {
-    return Separate.by(files, File.pathSeparator);
+  /** Enumerate all classes on the CLASSPATH represented by the receiver.
+   * Directories and archives are scanned in parallel, on the common
+   * {@link ForkJoinPool}; the order of the stream is that of
+   * {@link #getClasses()}: root by root, and in each directory, its classes,
+   * then its archives, and then its sub-directories.
+   * @return a parallel {@link Stream} of the fully qualified names of all such
+   *         classes */
+  @NotNull public Stream<String> stream() {
+    @NotNull final List<Stream<String>> $ = new ArrayList<>();
+    for (@NotNull final File ¢ : files)
+      parts(¢, "", $);
+    return $.parallelStream().flatMap(λ -> λ);
   }
 
-  /** Recursively adding all classes residing in specified directory into cache.
-   * @param depth 0-based depth inside the directory tree
-   * @param dirOrFile file or directory
-   * @param root the root directory
-   * @param result List where results are stored
-   * @param path Relative path (dot-separated) from the starting point */
-  private void addFromDirectory(final int depth, @NotNull final File dirOrFile, final String root, @NotNull final ArrayList<String> result,
-      final String path) {
-    if (dirOrFile.isDirectory()) {
-      @Nullable final String[] children = dirOrFile.list();
-      for (@NotNull final String ¢ : children)
-        addFromDirectory(depth + 1, new File(dirOrFile, ¢), root, result, depth == 0 ? "" : concat(path, dirOrFile.getName()));
-      return;
-    }
-    @NotNull final NameDotSuffix nds = new NameDotSuffix(dirOrFile);
-    if (nds.suffixIs(DOT_JAR) || nds.suffixIs(DOT_ZIP))
-      addFromArchive(dirOrFile.getPath(), result);
-    else if (nds.suffixIs(DOT_CLASS))
-      result.add(concat(path, nds.name));
+  @Override @NotNull public String toString() {
+    return Separate.by(files, File.pathSeparator);
   }
 
   /** A specialized version of {@link ClassRepository} which contains the entire
@@ -255,6 +304,20 @@ public class ClassRepository implements Iterable<String> {
   }
 
   @SuppressWarnings("static-method") public static class TEST {
+    @Test public void directoryRootSeesNewClasses() throws IOException {
+      @NotNull final File root = File.createTempFile("root", "");
+      root.delete();
+      new File(root, "a/b").mkdirs();
+      root.deleteOnExit();
+      new File(root, "a/b/C.class").createNewFile();
+      @NotNull final ClassRepository r = new ClassRepository(root);
+      azzert.that(r.getClasses(), is(Arrays.asList("a.b.C")));
+      new File(root, "a/D.class").createNewFile();
+      azzert.that(r.getClasses(), is(Arrays.asList("a.D", "a.b.C")));
+      new File(root, "a/b/C.class").delete();
+      azzert.that(r.getClasses(), is(Arrays.asList("a.D")));
+    }
+
     @Test public void empty() {
       azzert.that(new ClassRepository().getClasses().size(), is(0));
     }
@@ -282,6 +345,64 @@ public class ClassRepository implements Iterable<String> {
     @Test public void getClassesObject() {
       assert new ClassRepository.JRE().getClasses().contains("java.lang.Object");
     }
+
+    @Test public void repeatedEnumerationIsStable() {
+      @NotNull final ClassRepository r = new ClassRepository.JRE();
+      azzert.that(r.getClasses(), is(r.getClasses()));
+    }
+
+    @Test public void streamAgreesWithGetClasses() {
+      @NotNull final ClassRepository r = new ClassRepository.JRE();
+      azzert.that(r.stream().collect(Collectors.toCollection(ArrayList::new)), is(r.getClasses()));
+      azzert.that(r.size(), is(r.getClasses().size()));
+    }
+  }
+
+  /** The entries of a directory, along with its modification time when it was
+   * listed. */
+  private static class Listing {
+    /** Names of the classes in the directory */
+    @NotNull public final List<String> classes = new ArrayList<>();
+    /** Names of the archives in the directory */
+    @NotNull public final List<String> archives = new ArrayList<>();
+    /** Names of the sub-directories of the directory */
+    @NotNull public final List<String> directories = new ArrayList<>();
+    public final long lastModified;
+
+    public Listing(final long lastModified, @NotNull final File directory) {
+      this.lastModified = lastModified;
+      @Nullable final String[] children = directory.list();
+      if (children != null)
+        for (@NotNull final String ¢ : children) {
+          if (new File(directory, ¢).isDirectory()) {
+            directories.add(¢);
+            continue;
+          }
+          @NotNull final NameDotSuffix nds = new NameDotSuffix(¢);
+          if (nds.suffixIs(DOT_JAR) || nds.suffixIs(DOT_ZIP))
+            archives.add(¢);
+          else if (nds.suffixIs(DOT_CLASS))
+            classes.add(nds.name);
+        }
+    }
+  }
+
+  /** The classes found in an archive, along with the modification time and
+   * size of the archive when it was scanned. */
+  private static class Snapshot {
+    @NotNull public final List<String> classes;
+    public final long lastModified;
+    public final long length;
+
+    public Snapshot(final long lastModified, final long length, @NotNull final List<String> classes) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.classes = classes;
+    }
+
+    public boolean isFresh(@NotNull final File ¢) {
+      return lastModified == ¢.lastModified() && length == ¢.length();
+    }
   }
 
   private static class NameDotSuffix {
@@ -57,6 +57,11 @@ public class RobustReader {
       }
   }
 
+  /** @return the errors encountered so far, in the order they occurred */
+  @NotNull public final List<Exception> errors() {
+    return Collections.unmodifiableList(errors);
+  }
+
   public final boolean hasErrors() {
     return !errors.isEmpty();
   }
@@ -133,8 +138,14 @@ public class RobustReader {
   }
 
   public final void skipBytes(final int i) {
-    for (int ¢ = 0; ¢ < i; ++¢)
-      readUnsignedByte();
+    if (inner == null)
+      return;
+    try {
+      if (inner.skipBytes(i) != i)
+        recordError(new EOFException());
+    } catch (@NotNull final IOException ¢) {
+      recordError(¢);
+    }
   }
 
   @NotNull protected final byte[] readBytes(@NotNull final byte[] $) {
@@ -1,19 +1,25 @@
 package il.org.spartan.classfiles.reify;
 
-import java.io.*;
+import java.nio.*;
 
 import org.jetbrains.annotations.*;
 
 public class AttributeInfo {
   public final String name;
-  final byte[] data;
+  /** The content of this attribute; when the class file was read from a
+   * {@link ByteBuffer}, a slice of this buffer rather than a copy */
+  @NotNull final ByteBuffer data;
 
-  public AttributeInfo(final String name, final byte[] data) {
+  public AttributeInfo(final String name, @NotNull final byte[] data) {
+    this(name, ByteBuffer.wrap(data));
+  }
+
+  public AttributeInfo(final String name, @NotNull final ByteBuffer data) {
     this.name = name;
     this.data = data;
   }
 
   @NotNull final ConstantPoolReader reader(final ConstantPool ¢) {
-    return new ConstantPoolReader(new DataInputStream(new ByteArrayInputStream(data)), ¢);
+    return new ConstantPoolReader(new BufferDataInputStream(data), ¢);
   }
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package il.org.spartan.classfiles.reify;
 
 import java.io.*;
+import java.nio.*;
 
 import org.jetbrains.annotations.*;
 
@@ -16,6 +17,10 @@ public final class BufferDataInputStream extends DataInputStream {
     this(new BufferInputStream(bytes));
   }
 
+  public BufferDataInputStream(@NotNull final ByteBuffer ¢) {
+    this(new BufferInputStream(¢));
+  }
+
   public void align4() {
     if (position() % 4 != 0)
       skip(4 - position() % 4);
@@ -33,6 +38,14 @@ public final class BufferDataInputStream extends DataInputStream {
     return inner.read();
   }
 
+  /** @param n how many bytes to consume
+   * @return a buffer sharing its content with the next <code>n</code> bytes
+   *         of this stream
+   * @see BufferInputStream#slice(int) */
+  @NotNull public ByteBuffer slice(final int n) {
+    return inner.slice(n);
+  }
+
   @Override public long skip(final long ¢) {
     final long $ = inner.skip(¢);
     if ($ != ¢)
@@ -17,22 +17,33 @@
 package il.org.spartan.classfiles.reify;
 
 import java.io.*;
+import java.nio.*;
 
 import org.jetbrains.annotations.*;
 
 import il.org.spartan.utils.*;
 
-/** A sane re-implementation of {@link ByteArrayInputStream}.
+/** A sane re-implementation of {@link ByteArrayInputStream}, over either an
+ * array or a {@link ByteBuffer}, e.g., a memory mapped file. Positions are
+ * relative to the beginning of the stream, i.e., to the position of the
+ * buffer at the time this stream was created.
  * @author Yossi Gil */
 public class BufferInputStream extends InputStream {
-  @NotNull protected final byte[] bytes;
+  @NotNull protected final ByteBuffer buffer;
   protected int position;
   protected int mark;
   protected final int length;
 
   public BufferInputStream(@NotNull final byte bytes[]) {
-    this.bytes = bytes;
-    length = bytes.length;
+    this(ByteBuffer.wrap(bytes));
+  }
+
+  /** Instantiate this class over the remaining bytes of a buffer; the
+   * position and limit of the buffer are not affected by reading.
+   * @param buffer where to read bytes from */
+  public BufferInputStream(@NotNull final ByteBuffer buffer) {
+    this.buffer = buffer.slice();
+    length = this.buffer.limit();
   }
 
   @Override public synchronized int available() {
@@ -64,7 +75,7 @@ public class BufferInputStream extends InputStream {
   }
 
   @Override public synchronized int read() {
-    return done() ? -1 : bytes[position++] & 0xff;
+    return done() ? -1 : buffer.get(position++) & 0xff;
   }
 
   @Override public synchronized int read(final byte bs[], final int offset, final int len) {
@@ -77,7 +88,7 @@ public class BufferInputStream extends InputStream {
     if (len <= 0)
       return 0;
     final int $ = len + position <= length ? len : length - position;
-    System.arraycopy(bytes, position, bs, offset, $);
+    ((ByteBuffer) buffer.duplicate().position(position)).get(bs, offset, $);
     position += $;
     return $;
   }
@@ -86,6 +97,20 @@ public class BufferInputStream extends InputStream {
     position = mark;
   }
 
+  /** Consume bytes from this stream without copying them.
+   * @param n how many bytes to consume
+   * @return a buffer sharing its content with the next <code>n</code> bytes
+   *         of this stream
+   * @throws BufferUnderflowException in case fewer than <code>n</code> bytes
+   *         are available */
+  @NotNull public synchronized ByteBuffer slice(final int n) {
+    if (n < 0 || n > available())
+      throw new BufferUnderflowException();
+    @NotNull final ByteBuffer $ = ((ByteBuffer) buffer.duplicate().position(position).limit(position + n)).slice();
+    position += n;
+    return $;
+  }
+
   @Override public synchronized long skip(long ¢) {
     if (¢ + position > length)
       ¢ = length - position;
@@ -0,0 +1,202 @@
+package il.org.spartan.classfiles.reify;
+
+import static il.org.spartan.utils.___.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+import java.util.zip.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.classfiles.*;
+import il.org.spartan.classfiles.reify.ClassInfo.*;
+import il.org.spartan.streotypes.*;
+
+/** Reifies all class files found in a sequence of roots, i.e., directories and
+ * ZIP archives, in parallel.
+ * <p>
+ * Each root is scanned by a task of a {@link ForkJoinPool}, which reads the
+ * class files of this root, and forks a task parsing each of these. Parsing
+ * tasks are stolen by idle workers, so that throughput scales with the number
+ * of cores, even when roots differ in size. The number of class files read
+ * but not yet parsed is bounded, so that memory consumption does not depend on
+ * the size of the input.
+ * <p>
+ * Class files that could not be parsed do not abort the process; instead, the
+ * errors found while parsing them are recorded in the returned {@link Report}.
+ * Note that every class file is parsed, even if a class with the same name
+ * occurs in an earlier root. */
+@Instantiable public final class BulkBuilder {
+  private static final String DOT_CLASS = ".class";
+  /** Maximal number of workers */
+  public final int parallelism;
+  /** Maximal number of class files read but not yet parsed */
+  public final int capacity;
+
+  /** Instantiate this class, with a worker for each available processor, and
+   * a few class files in flight for each worker. */
+  public BulkBuilder() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /** @param parallelism maximal number of workers */
+  public BulkBuilder(final int parallelism) {
+    this(parallelism, 4 * parallelism);
+  }
+
+  /** @param parallelism maximal number of workers
+   * @param capacity maximal number of class files read but not yet parsed */
+  public BulkBuilder(final int parallelism, final int capacity) {
+    positive(parallelism);
+    positive(capacity);
+    this.parallelism = parallelism;
+    this.capacity = capacity;
+  }
+
+  /** Reify all class files in a sequence of roots.
+   * @param roots directories and ZIP archives
+   * @param c where to send each {@link ClassInfo}; invoked from the workers,
+   *        but never concurrently, so it does not need to be thread safe
+   * @return a report of this execution */
+  @NotNull public Report go(@NotNull final Iterable<File> roots, @NotNull final Consumer<? super ClassInfo> c) {
+    @NotNull final Execution $ = new Execution(c);
+    @NotNull final ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      @NotNull final List<ForkJoinTask<?>> scans = new ArrayList<>();
+      for (@NotNull final File ¢ : roots)
+        scans.add(pool.submit(() -> $.scan(¢)));
+      for (@NotNull final ForkJoinTask<?> ¢ : scans)
+        ¢.join();
+      pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.DAYS);
+    } finally {
+      pool.shutdownNow();
+    }
+    return $.report;
+  }
+
+  /** The outcome of a {@link BulkBuilder#go(Iterable, Consumer)} */
+  public static final class Report {
+    @NotNull final AtomicInteger successes = new AtomicInteger();
+    @NotNull final Map<String, List<Exception>> failures = new ConcurrentSkipListMap<>();
+
+    /** @return the errors found in each class file that could not be parsed,
+     *         or root that could not be scanned, by its path */
+    @NotNull public Map<String, List<Exception>> failures() {
+      return Collections.unmodifiableMap(failures);
+    }
+
+    /** @return how many class files were successfully parsed */
+    public int successes() {
+      return successes.get();
+    }
+
+    @Override @NotNull public String toString() {
+      return successes() + " class files parsed, " + failures.size() + " failures";
+    }
+
+    void fail(@NotNull final String path, @NotNull final List<Exception> errors) {
+      failures.put(path, errors.isEmpty() ? Collections.singletonList(new CorruptClassFile(path)) : new ArrayList<>(errors));
+    }
+  }
+
+  /** The state of a single {@link BulkBuilder#go(Iterable, Consumer)} */
+  private final class Execution {
+    @NotNull final Report report = new Report();
+    @NotNull final Consumer<? super ClassInfo> consumer;
+    /** Permits for class files read but not yet parsed */
+    @NotNull final Semaphore inFlight = new Semaphore(capacity);
+
+    Execution(@NotNull final Consumer<? super ClassInfo> consumer) {
+      this.consumer = consumer;
+    }
+
+    void scan(@NotNull final File root) {
+      try {
+        if (root.isDirectory())
+          scanDirectory(root);
+        else if (root.exists())
+          scanArchive(root);
+      } catch (@NotNull final IOException ¢) {
+        report.fail(root.getPath(), Collections.singletonList(¢));
+      }
+    }
+
+    private void acquire() {
+      try {
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+          @Override public boolean block() throws InterruptedException {
+            inFlight.acquire();
+            return true;
+          }
+
+          @Override public boolean isReleasable() {
+            return inFlight.tryAcquire();
+          }
+        });
+      } catch (@NotNull final InterruptedException ¢) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException(¢ + "");
+      }
+    }
+
+    private void parse(@NotNull final String path, @Nullable final String jar, @NotNull final ByteBuffer content) {
+      acquire();
+      ForkJoinTask.adapt(() -> {
+        try {
+          parse(path, jar, new Builder(content));
+        } catch (@NotNull final RuntimeException ¢) {
+          report.fail(path, Collections.singletonList(¢));
+        } finally {
+          inFlight.release();
+        }
+      }).fork();
+    }
+
+    private void parse(@NotNull final String path, @Nullable final String jar, @NotNull final Builder b) {
+      @Nullable final ClassInfo $ = b.go();
+      if ($ == null) {
+        report.fail(path, b.errors());
+        return;
+      }
+      $.setClassFileName(path);
+      if (jar != null)
+        $.setContainingJar(jar);
+      report.successes.incrementAndGet();
+      synchronized (consumer) {
+        consumer.accept($);
+      }
+    }
+
+    private void scanDirectory(@NotNull final File directory) {
+      @Nullable final File[] children = directory.listFiles();
+      if (children != null)
+        for (@NotNull final File ¢ : children)
+          if (¢.isDirectory())
+            scanDirectory(¢);
+          else if (¢.getName().endsWith(DOT_CLASS))
+            try {
+              parse(¢.getPath(), null, ClassFilesIndex.read(¢));
+            } catch (@NotNull final IOException e) {
+              report.fail(¢.getPath(), Collections.singletonList(e));
+            }
+    }
+
+    private void scanArchive(@NotNull final File root) throws IOException {
+      try (ZipFile z = new ZipFile(root)) {
+        for (final Enumeration<? extends ZipEntry> es = z.entries(); es.hasMoreElements();) {
+          @NotNull final ZipEntry e = es.nextElement();
+          if (e.getName().endsWith(DOT_CLASS))
+            try (InputStream s = z.getInputStream(e)) {
+              parse(root.getPath() + "!/" + e.getName(), root.getPath(), ClassFilesIndex.read(s, e.getSize()));
+            } catch (@NotNull final IOException ¢) {
+              report.fail(root.getPath() + "!/" + e.getName(), Collections.singletonList(¢));
+            }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package il.org.spartan.classfiles.reify;
+
+import java.nio.*;
+import java.util.function.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.streotypes.*;
+
+/** Streaming decoding of bytecode, directly over its bytes: instructions are
+ * passed to a {@link Visitor} by their offset and {@link OpCode}, without
+ * allocating an {@link OpCode.Instruction} for each. Visitors interested in
+ * operands read them from the code, e.g., with {@link #branch16(ByteBuffer,
+ * int)}. */
+@Utility public enum Bytecode {
+  ;
+  private static final OpCode[] opCodes = OpCode.values();
+
+  /** @param code bytecode, starting at index 0
+   * @param offset the offset of a branch instruction with a two bytes operand
+   * @return the signed offset of this branch */
+  public static int branch16(@NotNull final ByteBuffer code, final int offset) {
+    return code.getShort(offset + 1);
+  }
+
+  /** @param code bytecode, starting at index 0
+   * @param offset the offset of a branch instruction with a four bytes operand
+   * @return the signed offset of this branch */
+  public static int branch32(@NotNull final ByteBuffer code, final int offset) {
+    return code.getInt(offset + 1);
+  }
+
+  /** @param code bytecode, starting at index 0
+   * @param offset the offset of an instruction
+   * @return the offset of the following instruction
+   * @throws CorruptClassFile in case the instruction is invalid */
+  public static int next(@NotNull final ByteBuffer code, final int offset) {
+    @NotNull final OpCode o = opCode(code, offset);
+    switch (o) {
+      case TABLESWITCH:
+        return table(offset) + 12 + 4 * (code.getInt(table(offset) + 8) - code.getInt(table(offset) + 4) + 1);
+      case LOOKUPSWITCH:
+        return table(offset) + 8 + 8 * code.getInt(table(offset) + 4);
+      case WIDE:
+        return offset + (opCode(code, offset + 1) == OpCode.IINC ? 6 : 4);
+      default:
+        return offset + 1 + o.size;
+    }
+  }
+
+  /** @param code bytecode, starting at index 0
+   * @param offset the offset of an instruction
+   * @return the {@link OpCode} of this instruction
+   * @throws CorruptClassFile in case the instruction is invalid */
+  @NotNull public static OpCode opCode(@NotNull final ByteBuffer code, final int offset) {
+    @NotNull final OpCode $ = opCodes[code.get(offset) & 0xFF];
+    if ($.invalid())
+      throw new CorruptClassFile("Invalid opcode " + $ + " at offset " + offset);
+    return $;
+  }
+
+  /** Pass all instructions of a bytecode to a visitor, in order. Wide
+   * instructions are passed by the {@link OpCode} they widen.
+   * @param codes a buffer whose remaining bytes are bytecode; its position is
+   *        not affected
+   * @param v an arbitrary visitor
+   * @return the number of instructions in the code
+   * @throws CorruptClassFile in case the code contains an invalid or a
+   *         truncated instruction */
+  public static int scan(@NotNull final ByteBuffer codes, @NotNull final Visitor v) {
+    @NotNull final ByteBuffer code = codes.slice();
+    int $ = 0;
+    try {
+      for (int offset = 0, next; offset < code.limit(); offset = next, ++$) {
+        next = next(code, offset);
+        if (next <= offset || next > code.limit())
+          throw new CorruptClassFile("Truncated instruction at offset " + offset);
+        @NotNull final OpCode o = opCode(code, offset);
+        v.visit(code, offset, o != OpCode.WIDE ? o : opCode(code, offset + 1), next);
+      }
+    } catch (@NotNull final IndexOutOfBoundsException ¢) {
+      throw new CorruptClassFile(¢);
+    }
+    return $;
+  }
+
+  /** Pass all targets of a switch instruction to a consumer, starting with its
+   * default target.
+   * @param code bytecode, starting at index 0
+   * @param offset the offset of a <code>tableswitch</code> or a
+   *        <code>lookupswitch</code> instruction
+   * @param v where to send the offset of each target */
+  public static void switchTargets(@NotNull final ByteBuffer code, final int offset, @NotNull final IntConsumer v) {
+    final int table = table(offset);
+    v.accept(offset + code.getInt(table));
+    if (opCode(code, offset) == OpCode.TABLESWITCH)
+      for (int ¢ = table + 12, end = next(code, offset); ¢ < end; ¢ += 4)
+        v.accept(offset + code.getInt(¢));
+    else
+      for (int ¢ = table + 12, end = next(code, offset); ¢ < end; ¢ += 8)
+        v.accept(offset + code.getInt(¢));
+  }
+
+  /** @param offset the offset of a switch instruction
+   * @return the offset of its table, i.e., of the four byte aligned default
+   *         target following it */
+  private static int table(final int offset) {
+    return offset + 4 & ~3;
+  }
+
+  /** A visitor of instructions, called by
+   * {@link Bytecode#scan(ByteBuffer, Visitor)} */
+  public interface Visitor {
+    /** @param code the bytecode, starting at index 0
+     * @param offset the offset of the instruction
+     * @param o the {@link OpCode} of this instruction
+     * @param next the offset of the following instruction */
+    void visit(@NotNull ByteBuffer code, int offset, @NotNull OpCode o, int next);
+  }
+}
@@ -1,185 +1,481 @@
 package il.org.spartan.classfiles.reify;
 
+import java.nio.*;
 import java.util.*;
 
 import org.jetbrains.annotations.*;
 
-import il.org.spartan.classfiles.reify.OpCode.*;
 import il.org.spartan.collections.*;
 import il.org.spartan.graph.*;
 import il.org.spartan.graph.Graph.*;
 
+/** The control flow graph of the bytecode of a method, whose vertices are its
+ * basic blocks, numbered in the order of their offsets, the entry block being
+ * block number 0.
+ * <p>
+ * The graph is computed in a single {@link Bytecode#scan} of the instructions,
+ * which may be shared with other metrics (see {@link Scanner}), followed by a
+ * pass over arrays: each offset of the code is mapped to its block by an
+ * <code>int[]</code> table, and edges are kept in compressed rows of
+ * <code>int</code>s, i.e., the successors of block <code>b</code> are found in
+ * {@link #successors} between {@link #first}<code>[b]</code> and
+ * {@link #first}<code>[b+1]</code>. Construction is therefore linear in the
+ * size of the code. Exception handlers are not represented.
+ * <p>
+ * Dominators are computed on demand with the iterative algorithm of Cooper,
+ * Harvey and Kennedy, over the same compact representation, and are the basis
+ * of detecting natural loops. */
 public class CFG {
-  @SuppressWarnings("boxing") private static BasicBlock offset2block(@NotNull final Set<BasicBlock> bs, final Long offset) {
-    for (@NotNull final BasicBlock $ : bs)
-      if ($.startOffset <= offset && $.endOffset >= offset)
-        return $;
-    return null;
+  /** The block of each offset of the code */
+  private int[] offset2block;
+  /** The offset of the first instruction of each block, followed by the code
+   * size */
+  private int[] starts;
+  /** Where the successors of each block begin in {@link #successors}; the
+   * last entry is the number of edges */
+  private int[] first;
+  /** The successors of all blocks, block after block */
+  private int[] successors;
+  /** Where the predecessors of each block begin in {@link #predecessors} */
+  private int[] firstIn;
+  /** The predecessors of all blocks, block after block */
+  private int[] predecessors;
+  /** The immediate dominator of each block, or -1 for blocks unreachable
+   * from the entry; <code><b>null</b></code> until first needed */
+  @Nullable private int[] dominators;
+  @Nullable private Graph<BasicBlock> g;
+
+  public CFG(@NotNull final byte[] codes) {
+    this(ByteBuffer.wrap(codes));
   }
 
-  private static long unsigned2signed(final long i) {
-    return i & 0xffff;
+  public CFG(@NotNull final ByteBuffer codes) {
+    this(Scanner.scan(codes));
   }
 
-  private static long unsigned2signed_w(final long i) {
-    return i & 0xfffffff;
+  /** @param s a scanner which visited all instructions of the code */
+  CFG(@NotNull final Scanner s) {
+    @NotNull final int[] lasts = makeBlocks(s.leaders.length - 1, s.leaders, s.instructions);
+    @NotNull final IntsArray froms = new IntsArray(), tos = new IntsArray();
+    for (int ¢ = 0; ¢ < s.jumps.length(); ++¢) {
+      froms.push(offset2block[s.jumps.get(¢)]);
+      tos.push(offset2block[s.targets.get(¢)]);
+    }
+    for (int ¢ = 1; ¢ < blocks(); ++¢)
+      if (!s.transfers[lasts[¢ - 1]]) {
+        froms.push(¢ - 1);
+        tos.push(¢);
+      }
+    makeEdges(froms, tos);
   }
 
-  private final byte[] codes;
-  private Graph<BasicBlock> g;
+  /** @param offset an offset in the code
+   * @return the number of the block containing this offset */
+  public int block(final int offset) {
+    return offset2block[offset];
+  }
 
-  public CFG(final byte[] codes) {
-    this.codes = codes;
-    generateGraph();
+  /** @return the number of basic blocks in this graph */
+  public int blocks() {
+    return starts.length - 1;
   }
 
+  /** The cyclomatic complexity of McCabe, computed as if all blocks leaving
+   * the method were connected to a single exit block.
+   * @return the cyclomatic complexity of the code */
   public int cyclomaticComplexity() {
-    return g.countEdges() - g.vertices().size() + 1;
+    if (blocks() == 0)
+      return 0;
+    int exits = 0;
+    for (int ¢ = 0; ¢ < blocks(); ++¢)
+      if (first[¢] == first[¢ + 1])
+        ++exits;
+    return edges() + exits - blocks() + 1;
   }
 
-  public void generateGraph() {
-    @NotNull final MultiMap<Long, Long> jumps2targets = new MultiMap<>();
-    @NotNull final Map<Long, Set<Long>> subroutine2rets = new HashMap<>();
-    // first stage - mark jump instructions, target instructions and end
-    // instructions
-    findJumpsAndTargets(jumps2targets, subroutine2rets);
-    // second phase - create control flow graph - nodes only
-    @NotNull final Graph.Builder<BasicBlock> builder = new Builder<>();
-    @NotNull final Set<BasicBlock> basicBlocks = generateBasicBlocks(jumps2targets, builder);
-    // third phase - add edges to the graph
-    for (final Long jump : jumps2targets.keySet())
-      for (final Long target : jumps2targets.get(jump))
-        builder.newEdge(offset2block(basicBlocks, jump), offset2block(basicBlocks, target));
-    for (final Long sub : subroutine2rets.keySet())
-      for (final Long ret : subroutine2rets.get(sub))
-        builder.newEdge(offset2block(basicBlocks, sub), offset2block(basicBlocks, ret));
-    g = builder.build();
+  /** @param dominator a block number
+   * @param b a block number
+   * @return whether every path from the entry to the second block goes
+   *         through the first; <code><b>false</b></code> if the second block
+   *         is unreachable */
+  public boolean dominates(final int dominator, final int b) {
+    @NotNull final int[] idom = idom();
+    if (idom[b] < 0)
+      return false;
+    for (int $ = b;; $ = idom[$]) {
+      if ($ == dominator)
+        return true;
+      if ($ == 0)
+        return false;
+    }
+  }
+
+  /** @return the immediate dominator of each block, where the entry block is
+   *         its own immediate dominator, and blocks unreachable from the entry
+   *         have -1 */
+  @NotNull public int[] dominators() {
+    return Arrays.copyOf(idom(), blocks());
+  }
+
+  /** @return the number of edges in this graph */
+  public int edges() {
+    return first[blocks()];
+  }
+
+  /** @param b a block number
+   * @return the offset just past the last instruction of this block */
+  public int end(final int b) {
+    return starts[b + 1];
+  }
+
+  /** @deprecated the graph is generated on construction, and this method
+   *             does nothing */
+  @Deprecated public void generateGraph() {
+    // Nothing here.
+  }
+
+  /** @return the numbers of all blocks which are the target of a back edge,
+   *         i.e., an edge whose target dominates its source, in ascending
+   *         order */
+  @NotNull public int[] loopHeaders() {
+    @NotNull final IntsArray $ = new IntsArray();
+    for (int h = 0; h < blocks(); ++h)
+      for (final int ¢ : predecessors(h))
+        if (dominates(h, ¢)) {
+          $.push(h);
+          break;
+        }
+    return $.toArray();
+  }
+
+  /** @param header the header of a loop
+   * @return the blocks of the natural loop of this header, i.e., the header,
+   *         and all blocks from which a back edge into the header can be
+   *         reached without going through it, in ascending order */
+  @NotNull public int[] loop(final int header) {
+    @NotNull final boolean[] in = new boolean[blocks()];
+    in[header] = true;
+    @NotNull final IntsArray pending = new IntsArray();
+    for (final int ¢ : predecessors(header))
+      if (dominates(header, ¢) && !in[¢]) {
+        in[¢] = true;
+        pending.push(¢);
+      }
+    while (pending.length() > 0)
+      for (final int ¢ : predecessors(pending.pop()))
+        if (!in[¢] && idom()[¢] >= 0) {
+          in[¢] = true;
+          pending.push(¢);
+        }
+    @NotNull final IntsArray $ = new IntsArray();
+    for (int ¢ = 0; ¢ < in.length; ++¢)
+      if (in[¢])
+        $.push(¢);
+    return $.toArray();
+  }
+
+  /** @param b a block number
+   * @return the numbers of the blocks with an edge into this block, in
+   *         ascending order */
+  @NotNull public int[] predecessors(final int b) {
+    return Arrays.copyOfRange(predecessors, firstIn[b], firstIn[b + 1]);
+  }
+
+  /** @param b a block number
+   * @return the offset of the first instruction of this block */
+  public int start(final int b) {
+    return starts[b];
+  }
+
+  /** @param b a block number
+   * @return the numbers of the blocks to which there is an edge from this
+   *         block, in ascending order */
+  @NotNull public int[] successors(final int b) {
+    return Arrays.copyOfRange(successors, first[b], first[b + 1]);
   }
 
   @Override @NotNull public String toString() {
-    @NotNull String $ = "";
-    for (@NotNull final Vertex<BasicBlock> ¢ : vertices())
-      $ += "basic block: " + ¢.e().startOffset + ", " + ¢.e().endOffset + "\n";
-    for (@NotNull final Vertex<BasicBlock> v : vertices())
-      for (@NotNull final Vertex<BasicBlock> v2 : v.outgoing())
-        $ += "edge: " + v.e().endOffset + ", " + v2.e().startOffset + "\n";
-    return $;
+    @NotNull final StringBuilder $ = new StringBuilder();
+    for (int ¢ = 0; ¢ < blocks(); ++¢)
+      $.append("basic block: ").append(start(¢)).append(", ").append(end(¢) - 1).append("\n");
+    for (int b = 0; b < blocks(); ++b)
+      for (final int ¢ : successors(b))
+        $.append("edge: ").append(end(b) - 1).append(", ").append(start(¢)).append("\n");
+    return $ + "";
   }
 
   @NotNull public ImmutableArrayList<Vertex<BasicBlock>> vertices() {
-    return g.vertices();
-  }
-
-  @SuppressWarnings("boxing") private void findJumpsAndTargets(@NotNull final MultiMap<Long, Long> jumps2targets,
-      @NotNull final Map<Long, Set<Long>> subroutine2rets) {
-    long offset = 0;
-    for (@NotNull final BufferDataInputStream r = new BufferDataInputStream(codes);;) {
-      @Nullable final Instruction i = OpCode.read(r);
-      if (i == null)
-        break;
-      if (i.invalid())
-        throw new RuntimeException();
-      long targetOffset;
-      switch (i.opCode) {
-        case IFEQ:
-        case IFGE:
-        case IFGT:
-        case IFLE:
-        case IFLT:
-        case IFNE:
-        case IFNONNULL:
-        case IFNULL:
-        case IF_ACMPEQ:
-        case IF_ACMPNE:
-        case IF_ICMPEQ:
-        case IF_ICMPGE:
-        case IF_ICMPGT:
-        case IF_ICMPLE:
-        case IF_ICMPLT:
-        case IF_ICMPNE:
-          targetOffset = unsigned2signed(offset + (i.args()[1] | i.args()[0] << 8));
-          jumps2targets.put(offset, targetOffset);
-          jumps2targets.put(offset, offset + 1 + i.size());
-          break;
+    return graph().vertices();
+  }
+
+  @NotNull private int[] computeDominators() {
+    @NotNull final int[] order = reversePostorder();
+    @NotNull final int[] rank = new int[blocks()];
+    Arrays.fill(rank, -1);
+    for (int ¢ = 0; ¢ < order.length; ++¢)
+      rank[order[¢]] = ¢;
+    @NotNull final int[] $ = new int[blocks()];
+    Arrays.fill($, -1);
+    if (blocks() == 0)
+      return $;
+    $[0] = 0;
+    for (boolean changed = true; changed;) {
+      changed = false;
+      for (int i = 1; i < order.length; ++i) {
+        final int b = order[i];
+        int idom = -1;
+        for (int ¢ = firstIn[b]; ¢ < firstIn[b + 1]; ++¢)
+          if ($[predecessors[¢]] >= 0)
+            idom = idom < 0 ? predecessors[¢] : intersect($, rank, predecessors[¢], idom);
+        if ($[b] != idom) {
+          $[b] = idom;
+          changed = true;
+        }
+      }
+    }
+    return $;
+  }
+
+  @NotNull private int[] idom() {
+    if (dominators == null)
+      dominators = computeDominators();
+    return dominators;
+  }
+
+  @NotNull private Graph<BasicBlock> graph() {
+    if (g != null)
+      return g;
+    @NotNull final Graph.Builder<BasicBlock> builder = new Builder<>();
+    @NotNull final BasicBlock[] bs = new BasicBlock[blocks()];
+    for (int ¢ = 0; ¢ < bs.length; ++¢) {
+      bs[¢] = new BasicBlock();
+      bs[¢].startOffset = start(¢);
+      bs[¢].endOffset = end(¢) - 1;
+      builder.newVertex(bs[¢]);
+    }
+    for (int b = 0; b < bs.length; ++b)
+      for (final int ¢ : successors(b))
+        builder.newEdge(bs[b], bs[¢]);
+    return g = builder.build();
+  }
+
+  private static int intersect(@NotNull final int[] idom, @NotNull final int[] rank, final int b1, final int b2) {
+    int $ = b1;
+    for (int ¢ = b2; $ != ¢;) {
+      while (rank[$] > rank[¢])
+        $ = idom[$];
+      while (rank[¢] > rank[$])
+        ¢ = idom[¢];
+    }
+    return $;
+  }
+
+  static boolean isTransfer(@NotNull final OpCode ¢) {
+    switch (¢) {
+      case IFEQ:
+      case IFGE:
+      case IFGT:
+      case IFLE:
+      case IFLT:
+      case IFNE:
+      case IFNONNULL:
+      case IFNULL:
+      case IF_ACMPEQ:
+      case IF_ACMPNE:
+      case IF_ICMPEQ:
+      case IF_ICMPGE:
+      case IF_ICMPGT:
+      case IF_ICMPLE:
+      case IF_ICMPLT:
+      case IF_ICMPNE:
+      case GOTO:
+      case GOTO_W:
+      case JSR:
+      case JSR_W:
+      case LOOKUPSWITCH:
+      case TABLESWITCH:
+      case IRETURN:
+      case LRETURN:
+      case FRETURN:
+      case DRETURN:
+      case ARETURN:
+      case RETURN:
+      case ATHROW:
+      case RET:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** A stable counting sort
+   * @param keys a key in the range <code>[0,range)</code> of each item
+   * @param range the number of distinct keys
+   * @param order items, by their index in the keys
+   * @return the items, sorted by their keys */
+  @NotNull private static int[] sort(@NotNull final IntsArray keys, final int range, @NotNull final int[] order) {
+    @NotNull final int[] next = new int[range + 1];
+    for (int ¢ = 0; ¢ < keys.length(); ++¢)
+      ++next[keys.get(¢) + 1];
+    for (int ¢ = 0; ¢ < range; ++¢)
+      next[¢ + 1] += next[¢];
+    @NotNull final int[] $ = new int[order.length];
+    for (final int ¢ : order)
+      $[next[keys.get(¢)]++] = ¢;
+    return $;
+  }
+
+  /** @return the offset of the last instruction of each block */
+  @NotNull private int[] makeBlocks(final int n, @NotNull final boolean[] leaders, @NotNull final IntsArray instructions) {
+    offset2block = new int[n];
+    @NotNull final IntsArray $ = new IntsArray(), lasts = new IntsArray();
+    for (int i = 0, b = -1; i < instructions.length(); ++i) {
+      final int from = instructions.get(i), to = i + 1 < instructions.length() ? instructions.get(i + 1) : n;
+      if (b < 0 || leaders[from]) {
+        if (b >= 0)
+          lasts.push(instructions.get(i - 1));
+        $.push(from);
+        ++b;
+      }
+      Arrays.fill(offset2block, from, to, b);
+    }
+    if (instructions.length() > 0)
+      lasts.push(instructions.get(instructions.length() - 1));
+    $.push(n);
+    starts = $.toArray();
+    return lasts.toArray();
+  }
+
+  /** Store the distinct edges in compressed rows, sorting them by two passes
+   * of a counting sort
+   * @param froms the source block of each edge
+   * @param tos the target block of each edge */
+  private void makeEdges(@NotNull final IntsArray froms, @NotNull final IntsArray tos) {
+    @NotNull final int[] identity = new int[froms.length()];
+    for (int ¢ = 0; ¢ < identity.length; ++¢)
+      identity[¢] = ¢;
+    @NotNull final int[] edges = sort(froms, blocks(), sort(tos, blocks(), identity));
+    first = new int[blocks() + 1];
+    @NotNull final IntsArray $ = new IntsArray();
+    for (int ¢ = 0; ¢ < edges.length; ++¢)
+      if (¢ == 0 || froms.get(edges[¢]) != froms.get(edges[¢ - 1]) || tos.get(edges[¢]) != tos.get(edges[¢ - 1])) {
+        ++first[froms.get(edges[¢]) + 1];
+        $.push(tos.get(edges[¢]));
+      }
+    for (int ¢ = 0; ¢ < blocks(); ++¢)
+      first[¢ + 1] += first[¢];
+    successors = $.toArray();
+    firstIn = new int[blocks() + 1];
+    for (final int ¢ : successors)
+      ++firstIn[¢ + 1];
+    for (int ¢ = 0; ¢ < blocks(); ++¢)
+      firstIn[¢ + 1] += firstIn[¢];
+    predecessors = new int[successors.length];
+    @NotNull final int[] next = Arrays.copyOf(firstIn, blocks());
+    for (int from = 0; from < blocks(); ++from)
+      for (int ¢ = first[from]; ¢ < first[from + 1]; ++¢)
+        predecessors[next[successors[¢]]++] = from;
+  }
+
+  /** @return all blocks reachable from the entry, in reverse postorder */
+  @NotNull private int[] reversePostorder() {
+    @NotNull final IntsArray $ = new IntsArray();
+    if (blocks() == 0)
+      return $.toArray();
+    @NotNull final boolean[] visited = new boolean[blocks()];
+    @NotNull final int[] next = new int[blocks()];
+    @NotNull final IntsArray stack = new IntsArray();
+    stack.push(0);
+    visited[0] = true;
+    while (stack.length() > 0) {
+      final int b = stack.get(stack.length() - 1);
+      if (first[b] + next[b] < first[b + 1]) {
+        final int ¢ = successors[first[b] + next[b]++];
+        if (!visited[¢]) {
+          visited[¢] = true;
+          stack.push(¢);
+        }
+      } else
+        $.push(stack.pop());
+    }
+    @NotNull final int[] postorder = $.toArray();
+    for (int i = 0, j = postorder.length - 1; i < j; ++i, --j) {
+      final int t = postorder[i];
+      postorder[i] = postorder[j];
+      postorder[j] = t;
+    }
+    return postorder;
+  }
+
+  /** Collects, while visiting the instructions of the code, all that is
+   * needed for building its graph, so that this can be done in the same pass
+   * as computing other metrics of the code. */
+  static final class Scanner implements Bytecode.Visitor {
+    @NotNull static Scanner scan(@NotNull final ByteBuffer codes) {
+      @NotNull final Scanner $ = new Scanner(codes.remaining());
+      Bytecode.scan(codes, $);
+      return $;
+    }
+
+    /** Whether each offset, and the end of the code, starts a block */
+    @NotNull final boolean[] leaders;
+    /** Whether the instruction at each offset transfers control */
+    @NotNull final boolean[] transfers;
+    /** The offset of each instruction */
+    @NotNull final IntsArray instructions = new IntsArray();
+    /** The offset of the instruction of each jump */
+    @NotNull final IntsArray jumps = new IntsArray();
+    /** The target offset of each jump */
+    @NotNull final IntsArray targets = new IntsArray();
+
+    /** @param n the number of bytes in the code */
+    Scanner(final int n) {
+      leaders = new boolean[n + 1];
+      transfers = new boolean[n];
+    }
+
+    @Override public void visit(@NotNull final ByteBuffer code, final int offset, @NotNull final OpCode o, final int next) {
+      instructions.push(offset);
+      if (!isTransfer(o))
+        return;
+      transfers[offset] = leaders[next] = true;
+      switch (o) {
         case GOTO:
-          targetOffset = unsigned2signed(offset + (i.args()[1] | i.args()[0] << 8));
-          jumps2targets.put(offset, targetOffset);
-          break;
-        case JSR:
-          targetOffset = unsigned2signed(offset + (i.args()[1] | i.args()[0] << 8));
-          jumps2targets.put(offset, targetOffset);
-          Set<Long> retsFromSubroutine;
-          if (subroutine2rets.containsKey(targetOffset))
-            retsFromSubroutine = subroutine2rets.get(targetOffset);
-          else {
-            retsFromSubroutine = new HashSet<>();
-            subroutine2rets.put(targetOffset, retsFromSubroutine);
-          }
-          retsFromSubroutine.add(offset + i.size());
+          jump(offset, offset + Bytecode.branch16(code, offset));
           break;
         case GOTO_W:
-          targetOffset = unsigned2signed_w(offset + (i.args()[3] | i.args()[2] << 8 | i.args()[0] << 24 | i.args()[1] << 16));
-          jumps2targets.put(offset, targetOffset);
+          jump(offset, offset + Bytecode.branch32(code, offset));
           break;
         case JSR_W:
-          targetOffset = unsigned2signed_w(offset + (i.args()[3] | i.args()[2] << 8 | i.args()[0] << 24 | i.args()[1] << 16));
-          jumps2targets.put(offset, targetOffset);
-          if (subroutine2rets.containsKey(targetOffset))
-            retsFromSubroutine = subroutine2rets.get(targetOffset);
-          else {
-            retsFromSubroutine = new HashSet<>();
-            subroutine2rets.put(targetOffset, retsFromSubroutine);
-          }
-          retsFromSubroutine.add(offset + i.size());
+          jump(offset, offset + Bytecode.branch32(code, offset));
+          jump(offset, next);
           break;
         case LOOKUPSWITCH:
         case TABLESWITCH:
-          jumps2targets.put(offset, unsigned2signed_w(offset + i.defaultOffset));
-          for (final int o : i.offsets)
-            jumps2targets.put(offset, unsigned2signed_w(offset + o));
+          Bytecode.switchTargets(code, offset, λ -> jump(offset, λ));
           break;
-        default:
+        case IRETURN:
+        case LRETURN:
+        case FRETURN:
+        case DRETURN:
+        case ARETURN:
+        case RETURN:
+        case ATHROW:
+        case RET:
           break;
+        default: // Conditional branches, and JSR
+          jump(offset, offset + Bytecode.branch16(code, offset));
+          jump(offset, next);
       }
-      offset = r.position();
-    }
-  }
-
-  @NotNull @SuppressWarnings("boxing") private Set<BasicBlock> generateBasicBlocks(@NotNull final MultiMap<Long, Long> jumps2targets,
-      @NotNull final Graph.Builder<BasicBlock> b) {
-    @NotNull final Set<BasicBlock> $ = new HashSet<>();
-    long offset = 0;
-    @Nullable BasicBlock currBlock = null;
-    for (@NotNull final BufferDataInputStream r = new BufferDataInputStream(codes);;) {
-      @Nullable final Instruction i = OpCode.read(r);
-      if (i == null)
-        break;
-      if (i.invalid())
-        throw new RuntimeException();
-      if (currBlock != null && jumps2targets.values().contains(offset)) {
-        currBlock.endOffset = offset - 1;
-        b.newVertex(currBlock);
-        $.add(currBlock);
-        currBlock = null;
-      }
-      if (currBlock == null) {
-        currBlock = new BasicBlock();
-        currBlock.startOffset = offset;
-      }
-      if (jumps2targets.keySet().contains(offset)) {
-        currBlock.endOffset = offset + i.size();
-        b.newVertex(currBlock);
-        $.add(currBlock);
-        currBlock = null;
-      }
-      offset = r.position();
     }
-    if (currBlock == null)
-      return $;
-    currBlock.endOffset = offset;
-    b.newVertex(currBlock);
-    $.add(currBlock);
-    return $;
+
+    private void jump(final int from, final int to) {
+      if (to < 0 || to >= leaders.length - 1)
+        throw new CorruptClassFile("Jump from offset " + from + " to " + to + ", outside of the code");
+      leaders[to] = true;
+      jumps.push(from);
+      targets.push(to);
+    }
   }
 
   class BasicBlock {
@@ -2,7 +2,9 @@ package il.org.spartan.classfiles.reify;
 
 import java.io.*;
 import java.lang.reflect.*;
+import java.nio.*;
 import java.util.*;
+import java.util.function.*;
 
 import org.jetbrains.annotations.*;
 
@@ -17,6 +19,33 @@ public final class ClassInfo extends ConstantPoolEntity {
     return make(CLASSFILES.open(¢));
   }
 
+  /** Reify a class from its class file content, decoding its constants' pool
+   * lazily.
+   * @param ¢ the content of a class file
+   * @return a {@link ClassInfo} of this class file, or
+   *         <code><b>null</b></code> if it could not be processed */
+  @Nullable public static ClassInfo make(@NotNull final byte[] ¢) {
+    try {
+      return new Builder(¢).go();
+    } catch (@NotNull final CorruptClassFile __) {
+      return null;
+    }
+  }
+
+  /** Reify a class from a buffer, e.g., a memory mapped class file, without
+   * copying it: the constants' pool is decoded lazily, and attributes and
+   * bytecode are slices of this buffer.
+   * @param ¢ a buffer whose remaining bytes are the content of a class file
+   * @return a {@link ClassInfo} of this class file, or
+   *         <code><b>null</b></code> if it could not be processed */
+  @Nullable public static ClassInfo make(@NotNull final ByteBuffer ¢) {
+    try {
+      return new Builder(¢).go();
+    } catch (@NotNull final CorruptClassFile __) {
+      return null;
+    }
+  }
+
   @SuppressWarnings("synthetic-access") @Nullable public static AttributedEntity make(final DataInputStream ¢) {
     return new Builder(¢).go();
   }
@@ -33,6 +62,25 @@ public final class ClassInfo extends ConstantPoolEntity {
     return new Builder(fileName).go();
   }
 
+  /** Reify, in parallel, all class files found in a directory or a ZIP
+   * archive.
+   * @param root a directory or an archive
+   * @param c where to send each {@link ClassInfo}
+   * @return a report of the class files that could not be reified
+   * @see BulkBuilder */
+  @NotNull public static BulkBuilder.Report makeAll(@NotNull final File root, @NotNull final Consumer<? super ClassInfo> c) {
+    return new BulkBuilder().go(Collections.singletonList(root), c);
+  }
+
+  /** Reify, in parallel, all class files of a {@link ClassRepository}.
+   * @param r an arbitrary repository
+   * @param c where to send each {@link ClassInfo}
+   * @return a report of the class files that could not be reified
+   * @see BulkBuilder */
+  @NotNull public static BulkBuilder.Report makeAll(@NotNull final ClassRepository r, @NotNull final Consumer<? super ClassInfo> c) {
+    return new BulkBuilder().go(Arrays.asList(r.getRoots()), c);
+  }
+
   private static void addLinkComponents(@NotNull final int[] target, @Nullable final int[] addition) {
     if (addition != null)
       for (int ¢ = 0; ¢ < target.length; ++¢)
@@ -537,6 +585,8 @@ public final class ClassInfo extends ConstantPoolEntity {
   public static class Builder extends RobustReader {
     /** Magic number identifying Java class files */
     static final int MAGIC = 0xCAFEBABE;
+    /** Number of bytes preceding the constants' pool in a class file */
+    static final int HEADER_SIZE = 8;
     final int majorVersion;
     final int minorVersion;
     @NotNull final ConstantPool constantPool;
@@ -580,18 +630,45 @@ public final class ClassInfo extends ConstantPoolEntity {
       this(new File(fileName));
     }
 
+    /** Instantiate this class from the content of a class file, laying a
+     * lazy {@link ConstantPool} over this content.
+     * @param bytes a non-<code><b>null</b></code> array containing a valid
+     *        <tt>.class</tt>
+     * @throws CorruptClassFile in case the constants' pool could not be
+     *         parsed */
+    public Builder(@NotNull final byte[] bytes) {
+      this(ByteBuffer.wrap(bytes));
+    }
+
+    /** Instantiate this class from a buffer, laying a lazy
+     * {@link ConstantPool} over it, and slicing attributes off it.
+     * @param buffer a non-<code><b>null</b></code> buffer whose remaining
+     *        bytes are a valid <tt>.class</tt>; its position is not affected
+     * @throws CorruptClassFile in case the constants' pool could not be
+     *         parsed */
+    public Builder(@NotNull final ByteBuffer buffer) {
+      this(new BufferDataInputStream(buffer), buffer.slice());
+    }
+
     /** Extracts the constant pool from the specified data stream of a class
      * file.
      * @param s a non-<code><b>null</b></code> providing a stream of a class
      *        file starting at the first byte. @ * in case of reading errors or
      *        invalid class file. */
     private Builder(final DataInputStream s) {
+      this(s, null);
+    }
+
+    /** @param s a stream of a class file starting at the first byte
+     * @param bytes the entire content of this stream, if the constants' pool
+     *        is to be decoded lazily, <code><b>null</b></code> otherwise */
+    private Builder(final DataInputStream s, @Nullable final ByteBuffer bytes) {
       super(s);
       if (readInt() != MAGIC)
         recordError(new Exception("Not a class file: bad magic number."));
       minorVersion = readUnsignedShort();
       majorVersion = readUnsignedShort();
-      constantPool = new ConstantPool(this);
+      constantPool = bytes == null ? new ConstantPool(this) : skipped(new ConstantPool(bytes, HEADER_SIZE));
       @NotNull final ConstantPoolReader r = new ConstantPoolReader(s, constantPool);
       accessFlags = readUnsignedShort();
       final int classIndex = readUnsignedShort();
@@ -629,6 +706,14 @@ public final class ClassInfo extends ConstantPoolEntity {
       return constantPool.getReferencedStrings();
     }
 
+    /** Skip over a lazily decoded constants' pool
+     * @param $ a pool laid over the bytes of this stream
+     * @return the parameter */
+    @NotNull private ConstantPool skipped(@NotNull final ConstantPool $) {
+      skipBytes($.end() - HEADER_SIZE);
+      return $;
+    }
+
     @Nullable public ClassInfo go() {
       try {
         close();
@@ -639,7 +724,8 @@ public final class ClassInfo extends ConstantPoolEntity {
         return null;
       try {
         return new ClassInfo(this);
-      } catch (@NotNull final CorruptClassFile e) {
+      } catch (@NotNull final CorruptClassFile ¢) {
+        recordError(¢);
         return null;
       }
     }
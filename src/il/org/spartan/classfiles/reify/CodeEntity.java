@@ -1,5 +1,7 @@
 package il.org.spartan.classfiles.reify;
 
+import java.nio.*;
+
 import org.jetbrains.annotations.*;
 
 /** @author Yossi Gil
@@ -7,25 +9,69 @@ import org.jetbrains.annotations.*;
 public class CodeEntity {
   public int maxStack;
   public int maxLocals;
-  public final byte[] codes;
-  @NotNull public final SimplifiedCode simplifiedCode;
+  /** The bytecode of this method; a slice of the class file content when this
+   * was read from a {@link ByteBuffer}. Readers should not move its position,
+   * but rather read a {@link ByteBuffer#duplicate()} of it. */
+  @NotNull public final ByteBuffer codes;
+  /** The instructions of this method of interest to dependency analysis,
+   * which are decoded only when first needed
+   * @deprecated use {@link #simplifiedCode()} */
+  @Deprecated @NotNull public final SimplifiedCode simplifiedCode;
+  /** The number of instructions of this method, or -1 if the metrics of this
+   * method were not computed yet */
+  private int instructionsCount = -1;
+  private int throwCount;
+  private int cyclomaticComplexity;
+
+  public CodeEntity(final int maxStack, final int maxLocals, @NotNull final byte[] codes) {
+    this(maxStack, maxLocals, ByteBuffer.wrap(codes));
+  }
 
-  public CodeEntity(final int maxStack, final int maxLocals, final byte[] codes) {
+  public CodeEntity(final int maxStack, final int maxLocals, @NotNull final ByteBuffer codes) {
     this.maxStack = maxStack;
     this.maxLocals = maxLocals;
     this.codes = codes;
     simplifiedCode = new SimplifiedCode(codes);
   }
 
+  /** @return the number of bytes in the bytecode of this method */
+  public int codeSize() {
+    return codes.remaining();
+  }
+
   public int cyclomaticComplexity() {
-    return simplifiedCode.cyclomaticComplexity();
+    measure();
+    return cyclomaticComplexity;
   }
 
   public int instructionsCount() {
-    return simplifiedCode.instructionsCount();
+    measure();
+    return instructionsCount;
+  }
+
+  /** @return the instructions of this method of interest to dependency
+   *         analysis */
+  @NotNull public SimplifiedCode simplifiedCode() {
+    return simplifiedCode;
   }
 
   public int throwCount() {
-    return simplifiedCode.throwCount();
+    measure();
+    return throwCount;
+  }
+
+  /** Compute all metrics of this method in a single scan of its bytecode,
+   * which also collects what is needed for its {@link CFG} */
+  private synchronized void measure() {
+    if (instructionsCount >= 0)
+      return;
+    @NotNull final CFG.Scanner s = new CFG.Scanner(codeSize());
+    final int $ = Bytecode.scan(codes, (code, offset, o, next) -> {
+      s.visit(code, offset, o, next);
+      if (o == OpCode.ATHROW)
+        ++throwCount;
+    });
+    cyclomaticComplexity = new CFG(s).cyclomaticComplexity();
+    instructionsCount = $;
   }
 }
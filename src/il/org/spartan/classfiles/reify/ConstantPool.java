@@ -3,6 +3,7 @@ package il.org.spartan.classfiles.reify;
 import static nano.ly.box.*;
 import static nano.ly.unbox.*;
 
+import java.nio.*;
 import java.util.*;
 
 import org.jetbrains.annotations.*;
@@ -11,6 +12,10 @@ import il.org.spartan.classfiles.*;
 import il.org.spartan.collections.*;
 
 /** A representation of an entry in the constant pool array.
+ * <p>
+ * A pool is either read eagerly from a stream, or, in <em>lazy</em> mode, laid
+ * over the raw bytes of a class file, recording only the offset of each entry,
+ * and decoding entries on first access.
  * @author Yossi Gil */
 public final class ConstantPool {
   @NotNull private static UTF8 asUTF8(@NotNull final Constant $) {
@@ -21,47 +26,200 @@ public final class ConstantPool {
     }
   }
 
-  @NotNull private final Constant[] pool;
+  private static final int //
+  CONSTANT_UTF8 = 1, //
+      CONSTANT_INTEGER = 3, //
+      CONSTANT_FLOAT = 4, //
+      CONSTANT_LONG = 5, //
+      CONSTANT_DOUBLE = 6, //
+      CONSTANT_CLASS = 7, //
+      CONSTANT_STRING = 8, //
+      CONSTANT_FIELDREF = 9, //
+      CONSTANT_METHODREF = 10, //
+      CONSTANT_INTERFACE_METHODREF = 11, //
+      CONSTANT_NAME_AND_TYPE = 12, //
+      CONSTANT_METHOD_HANDLE = 15, //
+      CONSTANT_METHOD_TYPE = 16, //
+      CONSTANT_DYNAMIC = 17, //
+      CONSTANT_INVOKE_DYNAMIC = 18, //
+      CONSTANT_MODULE = 19, //
+      CONSTANT_PACKAGE = 20; //
+
+  /** How many bytes follow the tag of a constant pool entry?
+   * @param tag the tag of this entry
+   * @param bs the class file bytes
+   * @param o offset of the first byte following the tag
+   * @return the number of bytes in the entry, excluding its tag */
+  private static int length(final int tag, @NotNull final ByteBuffer bs, final int o) {
+    switch (tag) {
+      case CONSTANT_UTF8:
+        return 2 + u2(bs, o);
+      case CONSTANT_CLASS:
+      case CONSTANT_STRING:
+      case CONSTANT_METHOD_TYPE:
+      case CONSTANT_MODULE:
+      case CONSTANT_PACKAGE:
+        return 2;
+      case CONSTANT_METHOD_HANDLE:
+        return 3;
+      case CONSTANT_INTEGER:
+      case CONSTANT_FLOAT:
+      case CONSTANT_FIELDREF:
+      case CONSTANT_METHODREF:
+      case CONSTANT_INTERFACE_METHODREF:
+      case CONSTANT_NAME_AND_TYPE:
+      case CONSTANT_DYNAMIC:
+      case CONSTANT_INVOKE_DYNAMIC:
+        return 4;
+      case CONSTANT_LONG:
+      case CONSTANT_DOUBLE:
+        return 8;
+      default:
+        throw new CorruptClassFile("Unfamiliar constant pool tag = " + tag);
+    }
+  }
+
+  private static int s4(@NotNull final ByteBuffer bs, final int o) {
+    return bs.getInt(o);
+  }
+
+  private static long s8(@NotNull final ByteBuffer bs, final int o) {
+    return bs.getLong(o);
+  }
+
+  private static int u1(@NotNull final ByteBuffer bs, final int o) {
+    return bs.get(o) & 0xFF;
+  }
+
+  private static int u2(@NotNull final ByteBuffer bs, final int o) {
+    return bs.getShort(o) & 0xFFFF;
+  }
+
+  /** Decode a string stored in the <em>modified UTF-8</em> format of class
+   * files.
+   * @param bs the class file bytes
+   * @param from offset of the first byte of the string
+   * @param length number of bytes in the encoded string
+   * @return the decoded string */
+  @NotNull private static String utf8(@NotNull final ByteBuffer bs, final int from, final int length) {
+    @NotNull final char[] $ = new char[length];
+    int n = 0;
+    for (int ¢ = from, to = from + length; ¢ < to;) {
+      final int b = u1(bs, ¢++);
+      if (b < 0x80)
+        $[n++] = (char) b;
+      else if ((b & 0xE0) == 0xC0)
+        $[n++] = (char) ((b & 0x1F) << 6 | bs.get(¢++) & 0x3F);
+      else
+        $[n++] = (char) ((b & 0x0F) << 12 | (bs.get(¢++) & 0x3F) << 6 | bs.get(¢++) & 0x3F);
+    }
+    return new String($, 0, n);
+  }
 
+  /** Entries of this pool; in lazy mode, an entry is <code><b>null</b></code>
+   * until first accessed. */
+  @NotNull private final Constant[] pool;
+  /** The tag of each entry, as found in the class file */
+  @NotNull private final byte[] tags;
+  /** In lazy mode, the raw class file bytes; <code><b>null</b></code>
+   * otherwise */
+  @Nullable private final ByteBuffer bytes;
+  /** In lazy mode, the offset in {@link #bytes} of the first byte following
+   * the tag of each entry; <code><b>null</b></code> otherwise */
+  @Nullable private final int[] offsets;
+  /** In lazy mode, the offset in {@link #bytes} just past this pool */
+  private final int end;
+
+  /** Instantiate this class, reading and decoding all entries of the
+   * constants' pool from a given stream.
+   * @param reader a stream positioned at the constants' pool count */
   public ConstantPool(@NotNull final RobustReader reader) {
     pool = new Constant[reader.readUnsignedShort()];
+    tags = new byte[pool.length];
+    bytes = null;
+    offsets = null;
+    end = -1;
     for (int ¢ = 1; ¢ < pool.length; ++¢)
-      if ((pool[¢] = readConstant(reader)).isDoubleLength())
+      if ((pool[¢] = readConstant(tags[¢] = (byte) reader.readUnsignedByte(), reader)).isDoubleLength())
         pool[++¢] = Empty.$$;
   }
 
+  /** Instantiate this class in <em>lazy</em> mode: only the offset of each
+   * entry is recorded; entries are decoded when first accessed.
+   * @param bytes the content of a class file
+   * @param offset location in the parameter of the constants' pool count */
+  public ConstantPool(@NotNull final byte[] bytes, final int offset) {
+    this(ByteBuffer.wrap(bytes), offset);
+  }
+
+  /** Instantiate this class in <em>lazy</em> mode over a buffer, e.g., a
+   * memory mapped class file, which must not be modified as long as this
+   * pool is in use.
+   * @param bytes the content of a class file, starting at index 0 of this
+   *        buffer, regardless of its position
+   * @param offset location in the parameter of the constants' pool count */
+  public ConstantPool(@NotNull final ByteBuffer bytes, final int offset) {
+    this.bytes = bytes;
+    try {
+      pool = new Constant[u2(bytes, offset)];
+      tags = new byte[pool.length];
+      offsets = new int[pool.length];
+      int o = offset + 2;
+      for (int ¢ = 1; ¢ < pool.length; ++¢) {
+        final int tag = tags[¢] = bytes.get(o);
+        offsets[¢] = ++o;
+        o += length(tag, bytes, o);
+        if (tag == CONSTANT_LONG || tag == CONSTANT_DOUBLE)
+          pool[++¢] = Empty.$$;
+      }
+      end = o;
+    } catch (@NotNull final IndexOutOfBoundsException ¢) {
+      throw new CorruptClassFile(¢);
+    }
+  }
+
+  /** @return in lazy mode, the offset in the underlying bytes just past this
+   *         pool; -1 if this pool was read from a stream. */
+  public int end() {
+    return end;
+  }
+
   /** @param classIndex
    * @return name of class stored in this location */
   @Nullable public String getClassName(final int classIndex) {
-    return ((ClassConstant) pool[classIndex]).getClassName();
+    return ((ClassConstant) constant(classIndex)).getClassName();
   }
 
   @NotNull public FieldReference getFieldReference(final int classIndex) {
-    return (FieldReference) pool[classIndex];
+    return (FieldReference) constant(classIndex);
+  }
+
+  @NotNull public InvokeDynamic getInvokeDynamic(final int index) {
+    return (InvokeDynamic) constant(index);
   }
 
   @NotNull public MemberReference getMemberReference(final int classIndex) {
-    return (MemberReference) pool[classIndex];
+    return (MemberReference) constant(classIndex);
   }
 
   @Nullable public String getPackage(final int classIndex) {
-    return ((ClassConstant) pool[classIndex]).getPackage();
+    return ((ClassConstant) constant(classIndex)).getPackage();
   }
 
   /** Which other classes does this class refer to?
    * @return an array with names of all classes that this class uses */
   public String[] getReferencedClasses() {
     @NotNull final ArrayList<String> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof ClassConstant && ¢ + "" != null)
-        $.add(¢ + "");
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_CLASS)
+        $.add(constant(¢) + "");
     return $.toArray(new String[$.size()]);
   }
 
   public int[] getReferencedClassesIndices() {
     @NotNull final IntsArray $ = new IntsArray();
     for (int ¢ = 0; ¢ < pool.length; ++¢)
-      if (pool[¢] instanceof ClassConstant && pool[¢] + "" != null)
+      if (tags[¢] == CONSTANT_CLASS)
         $.push(¢);
     return $.toArray();
   }
@@ -71,9 +229,9 @@ public final class ConstantPool {
    * @return an array with <code><b>double</b></code>s that this class uses. */
   @NotNull public double[] getReferencedDoubles() {
     @NotNull final ArrayList<Double> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof DoubleLiteral)
-        $.add(box(((DoubleLiteral) ¢).value));
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_DOUBLE)
+        $.add(box(((DoubleLiteral) constant(¢)).value));
     return unbox($.toArray(new Double[$.size()]));
   }
 
@@ -82,9 +240,9 @@ public final class ConstantPool {
    * @return an array with <code><b>float</b></code>s that this class uses. */
   @NotNull public float[] getReferencedFloats() {
     @NotNull final ArrayList<Float> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof FloatLiteral)
-        $.add(box(((FloatLiteral) ¢).value));
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_FLOAT)
+        $.add(box(((FloatLiteral) constant(¢)).value));
     return unbox($.toArray(new Float[$.size()]));
   }
 
@@ -92,9 +250,9 @@ public final class ConstantPool {
    * @return an array with <code><b>int</b></code>s that this class uses. */
   @NotNull public int[] getReferencedInts() {
     @NotNull final ArrayList<Integer> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof IntLiteral)
-        $.add(box(((IntLiteral) ¢).value));
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_INTEGER)
+        $.add(box(((IntLiteral) constant(¢)).value));
     return unbox($.toArray(new Integer[$.size()]));
   }
 
@@ -102,17 +260,21 @@ public final class ConstantPool {
    * @return an array with <code><b>long</b></code>s that this class uses. */
   @NotNull public long[] getReferencedLongs() {
     @NotNull final ArrayList<Long> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof LongLiteral)
-        $.add(box(((LongLiteral) ¢).value));
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_LONG)
+        $.add(box(((LongLiteral) constant(¢)).value));
     return unbox($.toArray(new Long[$.size()]));
   }
 
   public String[] getReferencedMethods() {
     @NotNull final ArrayList<String> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof MethodReference && !"<init>".equals(((MethodReference) ¢).getNameAndType().getName()) && ¢ + "" != null)
-        $.add(((MethodReference) ¢).getClassConstant().getClassName() + ":" + ((MethodReference) ¢).getNameAndType().getName());
+    for (int i = 0; i < pool.length; ++i) {
+      if (tags[i] != CONSTANT_METHODREF)
+        continue;
+      @NotNull final MethodReference ¢ = (MethodReference) constant(i);
+      if (!"<init>".equals(¢.getNameAndType().getName()))
+        $.add(¢.getClassConstant().getClassName() + ":" + ¢.getNameAndType().getName());
+    }
     return $.toArray(new String[$.size()]);
   }
 
@@ -120,9 +282,9 @@ public final class ConstantPool {
    * @return an array with all {@link String}s that this class uses */
   public String[] getReferencedStrings() {
     @NotNull final ArrayList<String> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof StringConstant)
-        $.add(¢ + "");
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_STRING)
+        $.add(constant(¢) + "");
     return $.toArray(new String[$.size()]);
   }
 
@@ -130,42 +292,95 @@ public final class ConstantPool {
    * @return an array with <code><b>UTF8</b></code>s that this class uses. */
   public String[] getReferencedUTF8() {
     @NotNull final ArrayList<String> $ = new ArrayList<>();
-    for (final Constant ¢ : pool)
-      if (¢ instanceof UTF8)
-        $.add(((UTF8) ¢).value);
+    for (int ¢ = 0; ¢ < pool.length; ++¢)
+      if (tags[¢] == CONSTANT_UTF8)
+        $.add(((UTF8) constant(¢)).value);
     return $.toArray(new String[$.size()]);
   }
 
   @Nullable public String getShortClassName(final int classIndex) {
-    return ((ClassConstant) pool[classIndex]).getShortClassName();
+    return ((ClassConstant) constant(classIndex)).getShortClassName();
   }
 
   public String getUTF8(final int a) {
-    return asUTF8(pool[a]).value;
+    return asUTF8(constant(a)).value;
+  }
+
+  /** @return <code><b>true</b></code> <i>iff</i> entries of this pool are
+   *         decoded on first access */
+  public boolean isLazy() {
+    return offsets != null;
+  }
+
+  /** How many entries are there in this pool?
+   * @return the constants' pool count, as stored in the class file */
+  public int size() {
+    return pool.length;
   }
 
   @NotNull ClassConstant getClassConstant(final int classIndex) {
-    return (ClassConstant) pool[classIndex];
+    return (ClassConstant) constant(classIndex);
+  }
+
+  /** @param ¢ index of an entry in this pool
+   * @return the entry at this index, decoding it if necessary */
+  @Nullable Constant constant(final int ¢) {
+    final Constant $ = pool[¢];
+    return $ != null || offsets == null ? $ : (pool[¢] = decode(¢));
+  }
+
+  /** Decode an entry in lazy mode
+   * @param ¢ index of an entry in this pool
+   * @return the decoded entry */
+  @Nullable private Constant decode(final int ¢) {
+    assert bytes != null && offsets != null;
+    final int o = offsets[¢];
+    switch (tags[¢]) {
+      case CONSTANT_CLASS:
+        return new ClassConstant(u2(bytes, o));
+      case CONSTANT_FIELDREF:
+        return new FieldReference(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_METHODREF:
+        return new MethodReference(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_INTERFACE_METHODREF:
+        return new InterfaceMethodReference(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_STRING:
+        return new StringConstant(u2(bytes, o));
+      case CONSTANT_INTEGER:
+        return new IntLiteral(s4(bytes, o));
+      case CONSTANT_FLOAT:
+        return new FloatLiteral(Float.intBitsToFloat(s4(bytes, o)));
+      case CONSTANT_LONG:
+        return new LongLiteral(s8(bytes, o));
+      case CONSTANT_DOUBLE:
+        return new DoubleLiteral(Double.longBitsToDouble(s8(bytes, o)));
+      case CONSTANT_NAME_AND_TYPE:
+        return new NameAndTypeConstant(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_UTF8:
+        return new UTF8(utf8(bytes, o + 2, u2(bytes, o)));
+      case CONSTANT_METHOD_HANDLE:
+        return new MethodHandleConstant(u1(bytes, o), u2(bytes, o + 1));
+      case CONSTANT_METHOD_TYPE:
+        return new MethodTypeConstant(u2(bytes, o));
+      case CONSTANT_DYNAMIC:
+        return new DynamicConstant(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_INVOKE_DYNAMIC:
+        return new InvokeDynamic(u2(bytes, o), u2(bytes, o + 2));
+      case CONSTANT_MODULE:
+        return new ModuleConstant(u2(bytes, o));
+      case CONSTANT_PACKAGE:
+        return new PackageConstant(u2(bytes, o));
+      default:
+        return null;
+    }
   }
 
   /** Read the next constant pool entry from a given stream
-   * @param r
+   * @param tag the tag of this entry, which was already read
+   * @param $ a stream positioned just after this tag
    * @return the next constant pool entry found in the given stream */
-  private Constant readConstant(@NotNull final RobustReader $) {
-    final int//
-    CONSTANT_UTF8 = 1, //
-        CONSTANT_INTEGER = 3, //
-        CONSTANT_FLOAT = 4, //
-        CONSTANT_LONG = 5, //
-        CONSTANT_DOUBLE = 6, //
-        CONSTANT_CLASS = 7, //
-        CONSTANT_STRING = 8, //
-        CONSTANT_FIELDREF = 9, //
-        CONSTANT_METHODREF = 10, //
-        CONSTANT_INTERFACE_METHODREF = 11, //
-        CONSTANT_NAME_AND_TYPE = 12; //
-    int b;
-    switch (b = $.readUnsignedByte()) {
+  private Constant readConstant(final int tag, @NotNull final RobustReader $) {
+    switch (tag) {
       case CONSTANT_CLASS:
         return new ClassConstant($.readUnsignedShort());
       case CONSTANT_FIELDREF:
@@ -188,9 +403,50 @@ public final class ConstantPool {
         return new NameAndTypeConstant($.readUnsignedShort(), $.readUnsignedShort());
       case CONSTANT_UTF8:
         return new UTF8($.readUTF());
+      case CONSTANT_METHOD_HANDLE:
+        return new MethodHandleConstant($.readUnsignedByte(), $.readUnsignedShort());
+      case CONSTANT_METHOD_TYPE:
+        return new MethodTypeConstant($.readUnsignedShort());
+      case CONSTANT_DYNAMIC:
+        return new DynamicConstant($.readUnsignedShort(), $.readUnsignedShort());
+      case CONSTANT_INVOKE_DYNAMIC:
+        return new InvokeDynamic($.readUnsignedShort(), $.readUnsignedShort());
+      case CONSTANT_MODULE:
+        return new ModuleConstant($.readUnsignedShort());
+      case CONSTANT_PACKAGE:
+        return new PackageConstant($.readUnsignedShort());
       default:
-        System.out.print("Unfamiliar field identifier = " + b);
-        return null;
+        throw new CorruptClassFile("Unfamiliar constant pool tag = " + tag);
+    }
+  }
+
+  /** A representation of an entry in the constants' pool computed by a
+   * bootstrap method, i.e., either a dynamically computed constant, or the
+   * call site of an <code>invokedynamic</code> instruction. */
+  public abstract class BootstrapReference extends Constant {
+    /** Where, in the <code>BootstrapMethods</code> attribute, is the bootstrap
+     * method of this entry? */
+    public final int bootstrapMethodIndex;
+    /** Where are the name and type descriptor of this entry stored? */
+    public final int nameAndTypeIndex;
+
+    /** Instantiate this class
+     * @param bootstrapMethodIndex index into the <code>BootstrapMethods</code>
+     *        attribute
+     * @param nameAndTypeIndex index of {@link NameAndTypeConstant} */
+    public BootstrapReference(final int bootstrapMethodIndex, final int nameAndTypeIndex) {
+      this.bootstrapMethodIndex = bootstrapMethodIndex;
+      this.nameAndTypeIndex = nameAndTypeIndex;
+    }
+
+    /** @return the name-and-type constant. */
+    @NotNull public NameAndTypeConstant getNameAndType() {
+      return (NameAndTypeConstant) constant(nameAndTypeIndex);
+    }
+
+    @Override @NotNull public final String toString() {
+      return "Bootstrap = " + bootstrapMethodIndex + ", Name = " + getNameAndType().getName() + ", Descriptor = "
+          + getNameAndType().getDescriptor();
     }
   }
 
@@ -255,6 +511,22 @@ public final class ConstantPool {
     @NotNull public abstract String typeName();
   }
 
+  /** A representation of a dynamically computed constant in the constants'
+   * pool */
+  public final class DynamicConstant extends BootstrapReference {
+    /** Instantiate with a given bootstrap method and name,type pair
+     * @param bootstrapMethodIndex which bootstrap method computes this
+     *        constant?
+     * @param nameAndTypeIndex what is the name and type of this constant? */
+    public DynamicConstant(final int bootstrapMethodIndex, final int nameAndTypeIndex) {
+      super(bootstrapMethodIndex, nameAndTypeIndex);
+    }
+
+    @Override @NotNull public String typeName() {
+      return "DYNAMIC";
+    }
+  }
+
   /** A representation of a <code><b>long</b></code> literal in the constants'
    * pool
    * @author Yossi Gil */
@@ -359,6 +631,22 @@ public final class ConstantPool {
     }
   }
 
+  /** A representation of the call site of an <code>invokedynamic</code>
+   * instruction in the constants' pool */
+  public final class InvokeDynamic extends BootstrapReference {
+    /** Instantiate with a given bootstrap method and name,type pair
+     * @param bootstrapMethodIndex which bootstrap method links this call site?
+     * @param nameAndTypeIndex what is the name and type of the invoked
+     *        method? */
+    public InvokeDynamic(final int bootstrapMethodIndex, final int nameAndTypeIndex) {
+      super(bootstrapMethodIndex, nameAndTypeIndex);
+    }
+
+    @Override @NotNull public String typeName() {
+      return "INVOKE DYNAMIC";
+    }
+  }
+
   /** A representation of an <code><b>int</b></code> literal in the constants'
    * pool
    * @author Yossi Gil */
@@ -433,13 +721,13 @@ public final class ConstantPool {
     /** @return the class constant. */
     @NotNull @SuppressWarnings("synthetic-access") //
     public ClassConstant getClassConstant() {
-      return (ClassConstant) pool[classIndex];
+      return (ClassConstant) constant(classIndex);
     }
 
     /** @return the name-and-type constant. */
     @NotNull @SuppressWarnings("synthetic-access") //
     public NameAndTypeConstant getNameAndType() {
-      return (NameAndTypeConstant) pool[nameAndTypeIndex];
+      return (NameAndTypeConstant) constant(nameAndTypeIndex);
     }
 
     @Override @NotNull public final String toString() {
@@ -448,6 +736,36 @@ public final class ConstantPool {
     }
   }
 
+  /** A representation of a method handle constant in the constants' pool */
+  public final class MethodHandleConstant extends Constant {
+    /** The kind of this handle, e.g., <code>REF_invokeStatic</code>, as
+     * defined by the JVM specification */
+    public final int kind;
+    /** Where is the field or method reference of this handle stored? */
+    public final int referenceIndex;
+
+    /** Instantiate with a given kind and a member reference
+     * @param kind the kind of this handle
+     * @param referenceIndex index of a {@link MemberReference} */
+    public MethodHandleConstant(final int kind, final int referenceIndex) {
+      this.kind = kind;
+      this.referenceIndex = referenceIndex;
+    }
+
+    /** @return the field or method this handle refers to */
+    @NotNull public MemberReference getReference() {
+      return (MemberReference) constant(referenceIndex);
+    }
+
+    @Override @NotNull public String toString() {
+      return "Kind = " + kind + ", " + getReference();
+    }
+
+    @Override @NotNull public String typeName() {
+      return "METHOD HANDLE";
+    }
+  }
+
   /** A representation of a method reference constant in the constants' pool
    * @author Yossi Gil */
   public final class MethodReference extends MemberReference {
@@ -463,6 +781,33 @@ public final class ConstantPool {
     }
   }
 
+  /** A representation of a method type constant in the constants' pool */
+  public final class MethodTypeConstant extends Reference {
+    /** Instantiate with a given method descriptor
+     * @param descriptorIndex index of an {@link UTF8} holding a method
+     *        descriptor */
+    public MethodTypeConstant(final int descriptorIndex) {
+      super(descriptorIndex);
+    }
+
+    @Override @NotNull public String typeName() {
+      return "METHOD TYPE";
+    }
+  }
+
+  /** A representation of a module constant in the constants' pool */
+  public final class ModuleConstant extends Reference {
+    /** Instantiate with a given module name
+     * @param nameIndex index of an {@link UTF8} holding the module name */
+    public ModuleConstant(final int nameIndex) {
+      super(nameIndex);
+    }
+
+    @Override @NotNull public String typeName() {
+      return "MODULE";
+    }
+  }
+
   /** A representation of a name&type constant in the constants' pool
    * @author Yossi Gil */
   public class NameAndTypeConstant extends Reference {
@@ -498,6 +843,20 @@ public final class ConstantPool {
     }
   }
 
+  /** A representation of a package constant in the constants' pool */
+  public final class PackageConstant extends Reference {
+    /** Instantiate with a given package name
+     * @param nameIndex index of an {@link UTF8} holding the package name, in
+     *        internal form */
+    public PackageConstant(final int nameIndex) {
+      super(nameIndex);
+    }
+
+    @Override @NotNull public String typeName() {
+      return "PACKAGE";
+    }
+  }
+
   /** An entry in the constant pool which is represented as a reference to
    * another such entry.
    * @author Yossi Gil */
@@ -521,7 +880,8 @@ public final class ConstantPool {
      * @return a UTF8 representation of the content of this entry */
     @SuppressWarnings("synthetic-access") //
     final String getUTF8(final int ¢) {
-      return !(pool[¢] instanceof UTF8) ? null : ((UTF8) pool[¢]).value;
+      final Constant $ = constant(¢);
+      return !($ instanceof UTF8) ? null : ((UTF8) $).value;
     }
   }
 
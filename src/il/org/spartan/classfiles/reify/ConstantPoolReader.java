@@ -1,6 +1,7 @@
 package il.org.spartan.classfiles.reify;
 
 import java.io.*;
+import java.nio.*;
 
 import org.jetbrains.annotations.*;
 
@@ -11,10 +12,14 @@ import il.org.spartan.classfiles.reify.ConstantPool.*;
  * @since 26 November 2011 */
 public class ConstantPoolReader extends RobustReader {
   private final ConstantPool constantPool;
+  /** The stream of this reader, if attributes can be sliced off it rather
+   * than copied; <code><b>null</b></code> otherwise */
+  @Nullable private final BufferDataInputStream buffer;
 
   public ConstantPoolReader(final DataInputStream inner, final ConstantPool constantPool) {
     super(inner);
     this.constantPool = constantPool;
+    buffer = inner instanceof BufferDataInputStream ? (BufferDataInputStream) inner : null;
   }
 
   @Nullable public String classPackage(final int classIndex) {
@@ -36,6 +41,21 @@ public class ConstantPoolReader extends RobustReader {
     return readBytes(new byte[readInt()]);
   }
 
+  /** Read a length prefixed sequence of bytes, without copying it if this
+   * reader is laid over a {@link ByteBuffer}.
+   * @return a buffer whose remaining bytes are the bytes read */
+  @NotNull public ByteBuffer readBytesSlice() {
+    if (buffer == null)
+      return ByteBuffer.wrap(readBytesArrray());
+    final int length = readInt();
+    try {
+      return buffer.slice(length);
+    } catch (@NotNull final BufferUnderflowException ¢) {
+      recordError(¢);
+      return ByteBuffer.allocate(0);
+    }
+  }
+
   @NotNull public ClassConstant readClassConstant() {
     return constantPool.getClassConstant(readUnsignedShort());
   }
@@ -67,6 +87,6 @@ public class ConstantPoolReader extends RobustReader {
   }
 
   @NotNull private AttributeInfo readAttribute() {
-    return new AttributeInfo(readStringConstant(), readBytesArrray());
+    return new AttributeInfo(readStringConstant(), readBytesSlice());
   }
 }
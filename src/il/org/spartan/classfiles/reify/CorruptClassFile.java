@@ -5,6 +5,10 @@ package il.org.spartan.classfiles.reify;
 public class CorruptClassFile extends RuntimeException {
   private static final long serialVersionUID = 1;
 
+  public CorruptClassFile(final String message) {
+    super(message);
+  }
+
   public CorruptClassFile(final Exception e) {
     super(e);
     fillInStackTrace();
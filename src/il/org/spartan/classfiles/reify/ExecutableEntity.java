@@ -44,7 +44,7 @@ public class ExecutableEntity extends TypedEntity {
   }
 
   public int codeSize() {
-    return code == null ? 0 : code.codes.length;
+    return code == null ? 0 : code.codeSize();
   }
 
   public int cyclomaticComplexity() {
@@ -59,8 +59,8 @@ public class ExecutableEntity extends TypedEntity {
     @NotNull final Set<String> $ = new HashSet<>();
     if (code == null)
       return $;
-    for (int index = 0; index < code.simplifiedCode.instructions().size(); ++index) {
-      final Instruction i = code.simplifiedCode.instructions().get(index);
+    for (int index = 0; index < code.simplifiedCode().instructions().size(); ++index) {
+      final Instruction i = code.simplifiedCode().instructions().get(index);
       int cpIndex;
       if (!i.isInvokeInstruction())
         continue;
@@ -75,8 +75,8 @@ public class ExecutableEntity extends TypedEntity {
     @NotNull final Set<String> $ = new HashSet<>();
     if (code == null)
       return $;
-    for (int index = 0; index < code.simplifiedCode.instructions().size(); ++index) {
-      final Instruction i = code.simplifiedCode.instructions().get(index);
+    for (int index = 0; index < code.simplifiedCode().instructions().size(); ++index) {
+      final Instruction i = code.simplifiedCode().instructions().get(index);
       if (i.opCode == OpCode.GETFIELD || i.opCode == OpCode.PUTFIELD) {
         @NotNull final FieldReference fr = constantPool.getFieldReference(i.args()[1] | i.args()[0] << 8);
         $.add(fr.getClassConstant().getClassName() + ":" + fr.getNameAndType());
@@ -92,8 +92,8 @@ public class ExecutableEntity extends TypedEntity {
   public boolean isAccessed(@NotNull final TypedEntity e, @NotNull final String thisClassName) {
     if (code == null)
       return false;
-    for (int index = 0; index < code.simplifiedCode.instructions().size(); ++index) {
-      final Instruction i = code.simplifiedCode.instructions().get(index);
+    for (int index = 0; index < code.simplifiedCode().instructions().size(); ++index) {
+      final Instruction i = code.simplifiedCode().instructions().get(index);
       if (i.isFieldAccessInstruction() && !i.isInvokeInstruction() && isAccessed(e, thisClassName, i))
         return true;
     }
@@ -146,7 +146,7 @@ public class ExecutableEntity extends TypedEntity {
 
   @NotNull private CodeEntity readCodeAttribute(@NotNull final AttributeInfo ¢) {
     @NotNull final ConstantPoolReader $ = ¢.reader(constantPool);
-    return new CodeEntity($.readUnsignedShort(), $.readUnsignedShort(), $.readBytesArrray());
+    return new CodeEntity($.readUnsignedShort(), $.readUnsignedShort(), $.readBytesSlice());
   }
 
   @NotNull private ClassConstant[] readExceptions() {
@@ -159,8 +159,8 @@ public class ExecutableEntity extends TypedEntity {
     for (final TypeInfo ¢ : type.components())
       ++getClassRefsByComponents(¢ + "")[LinkComponents.MethodDeclaration.ordinal()];
     if (code != null)
-      for (int index = 0; index < code.simplifiedCode.instructions().size(); ++index) {
-        final Instruction i = code.simplifiedCode.instructions().get(index);
+      for (int index = 0; index < code.simplifiedCode().instructions().size(); ++index) {
+        final Instruction i = code.simplifiedCode().instructions().get(index);
         final int cpIndex = i.args()[1] | i.args()[0] << 8;
         int component = -1;
         switch (i.opCode) {
@@ -177,6 +177,9 @@ public class ExecutableEntity extends TypedEntity {
             component = LinkComponents.FieldAccess.ordinal();
             break;
           case INVOKEDYNAMIC:
+            for (final TypeInfo ¢ : decode(constantPool.getInvokeDynamic(cpIndex).getNameAndType().getDescriptor()).components())
+              ++getClassRefsByComponents(¢ + "")[LinkComponents.MethodInvocation.ordinal()];
+            continue;
           case INVOKEINTERFACE:
           case INVOKESPECIAL:
           case INVOKEVIRTUAL:
@@ -0,0 +1,299 @@
+package il.org.spartan.classfiles.reify;
+
+import static il.org.spartan.utils.___.*;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.streotypes.*;
+
+/** A persistent store of the {@link Attribute} metrics of {@link ClassInfo},
+ * keyed by the digest of the class file they were computed from, so that
+ * unchanged class files need not be parsed again.
+ * <p>
+ * The store is a single file, made of a header, listing the names of the
+ * metrics, followed by fixed size records, each made of a
+ * {@value #DIGEST_LENGTH} bytes SHA-1 digest, and a vector of <code>int</code>
+ * metrics, in the order of {@link #METRICS}. Records are only ever appended;
+ * a record cut short, e.g., by a crash, is discarded when the store is opened.
+ * The file is memory mapped, in chunks of {@value #CHUNK} records, each mapped
+ * once, when complete; records past the last complete chunk are also kept on
+ * the heap. The store is indexed by an open addressing hash table of the first
+ * eight bytes of each digest, so that opening a store of millions of records
+ * costs a single pass over the mapped file.
+ * <p>
+ * A store whose header lists different metrics than those of the current
+ * {@link ClassInfo} is discarded when opened. */
+@Instantiable public final class MetricsStore implements Closeable {
+  /** Number of bytes in the digest of a class file */
+  public static final int DIGEST_LENGTH = 20;
+  /** Number of records in each mapping of the file */
+  static final int CHUNK = 1 << 14;
+  /** The names of all <code>int</code> {@link Attribute} methods of
+   * {@link ClassInfo}, in the order they are stored */
+  @NotNull public static final List<String> METRICS;
+  private static final int MAGIC = 0x53504D43;
+  /** Incremented whenever the computation of some metric changes */
+  private static final int VERSION = 2;
+  private static final Method[] methods;
+  private static final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (@NotNull final NoSuchAlgorithmException ¢) {
+      throw new IllegalStateException(¢);
+    }
+  });
+  static {
+    @NotNull final List<Method> ms = new ArrayList<>();
+    for (@NotNull final Method ¢ : ClassInfo.class.getMethods())
+      if (¢.getAnnotation(Attribute.class) != null && ¢.getReturnType() == int.class && ¢.getParameterCount() == 0)
+        ms.add(¢);
+    ms.sort(Comparator.comparing(Method::getName));
+    methods = ms.toArray(new Method[ms.size()]);
+    @NotNull final List<String> names = new ArrayList<>();
+    for (@NotNull final Method ¢ : methods)
+      names.add(¢.getName());
+    METRICS = Collections.unmodifiableList(names);
+  }
+
+  /** @param classFile a buffer whose remaining bytes are a class file; its
+   *        position is not affected
+   * @return the digest of these bytes */
+  @NotNull public static byte[] digest(@NotNull final ByteBuffer classFile) {
+    @NotNull final MessageDigest $ = sha1.get();
+    $.update(classFile.duplicate());
+    return $.digest();
+  }
+
+  /** @param c an arbitrary class
+   * @return the values of all {@link #METRICS} of this class */
+  @NotNull public static int[] metrics(@NotNull final ClassInfo c) {
+    @NotNull final int[] $ = new int[methods.length];
+    for (int ¢ = 0; ¢ < $.length; ++¢)
+      try {
+        $[¢] = ((Integer) methods[¢].invoke(c)).intValue();
+      } catch (@NotNull final IllegalAccessException e) {
+        throw new IllegalStateException(e);
+      } catch (@NotNull final InvocationTargetException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+      }
+    return $;
+  }
+
+  private static long key(@NotNull final byte[] digest) {
+    return ByteBuffer.wrap(digest).getLong();
+  }
+
+  @NotNull private static ByteBuffer header() {
+    @NotNull final ByteArrayOutputStream $ = new ByteArrayOutputStream();
+    try (DataOutputStream s = new DataOutputStream($)) {
+      s.writeInt(MAGIC);
+      s.writeInt(VERSION);
+      s.writeInt(METRICS.size());
+      for (@NotNull final String ¢ : METRICS)
+        s.writeUTF(¢);
+    } catch (@NotNull final IOException ¢) {
+      throw new IllegalStateException(¢);
+    }
+    return ByteBuffer.wrap($.toByteArray());
+  }
+
+  @NotNull private final FileChannel channel;
+  /** Number of bytes preceding the first record */
+  private final int headerSize;
+  /** Number of bytes in each record */
+  private final int recordSize = DIGEST_LENGTH + 4 * METRICS.size();
+  /** Read only mappings of the complete chunks of the file, in order */
+  @NotNull private final List<MappedByteBuffer> chunks = new ArrayList<>();
+  /** The records following the last complete chunk */
+  @NotNull private final ByteBuffer tail;
+  /** Number of records in the store */
+  private int size;
+  /** The first eight bytes of the digest of each record in {@link #records} */
+  @NotNull private long[] keys = new long[16];
+  /** One more than the number of the record of each slot; 0 if the slot is
+   * empty */
+  @NotNull private int[] records = new int[16];
+
+  /** Open a store, creating it if it does not exist.
+   * @param f the file of this store
+   * @throws IOException in case this file could not be opened */
+  public MetricsStore(@NotNull final File f) throws IOException {
+    channel = FileChannel.open(f.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    @NotNull final ByteBuffer header = header();
+    headerSize = header.remaining();
+    if (!hasHeader(header)) {
+      channel.truncate(0);
+      channel.write(header, 0);
+    }
+    channel.truncate(headerSize + (channel.size() - headerSize) / recordSize * recordSize);
+    final int n = (int) ((channel.size() - headerSize) / recordSize);
+    while ((chunks.size() + 1) * CHUNK <= n)
+      map();
+    tail = ByteBuffer.allocate(CHUNK * recordSize);
+    while (channel.read(tail, offset(chunks.size() * CHUNK) + tail.position()) > 0)
+      ;
+    while (size < n)
+      index(digestAt(size), size++);
+  }
+
+  /** Close this store; its mappings are released once no longer
+   * referenced */
+  @Override public synchronized void close() throws IOException {
+    chunks.clear();
+    channel.close();
+  }
+
+  /** @param digest the digest of a class file
+   * @return the metrics stored for this class file, or
+   *         <code><b>null</b></code> if there are none */
+  @Nullable public synchronized int[] get(@NotNull final byte[] digest) {
+    final int record = find(digest);
+    if (record < 0)
+      return null;
+    @NotNull final ByteBuffer b = buffer(record);
+    @NotNull final int[] $ = new int[METRICS.size()];
+    for (int ¢ = 0, o = position(record) + DIGEST_LENGTH; ¢ < $.length; ++¢, o += 4)
+      $[¢] = b.getInt(o);
+    return $;
+  }
+
+  /** Retrieve the metrics of a class file from this store, parsing the class
+   * file and storing its metrics only if these are not found.
+   * @param classFile a buffer whose remaining bytes are a class file
+   * @return the metrics of this class file, or <code><b>null</b></code> if it
+   *         could not be parsed
+   * @throws IOException in case the store could not be written */
+  @Nullable public int[] metrics(@NotNull final ByteBuffer classFile) throws IOException {
+    @NotNull final byte[] digest = digest(classFile);
+    @Nullable final int[] $ = get(digest);
+    if ($ != null)
+      return $;
+    @Nullable final ClassInfo c = ClassInfo.make(classFile);
+    if (c == null)
+      return null;
+    @NotNull final int[] fresh = metrics(c);
+    put(digest, fresh);
+    return fresh;
+  }
+
+  /** Append the metrics of a class file to this store, unless already
+   * present.
+   * @param digest the digest of a class file
+   * @param metrics the values of all {@link #METRICS} of this class file
+   * @throws IOException in case the store could not be written */
+  public synchronized void put(@NotNull final byte[] digest, @NotNull final int[] metrics) throws IOException {
+    require(digest.length == DIGEST_LENGTH);
+    require(metrics.length == METRICS.size());
+    if (find(digest) >= 0)
+      return;
+    @NotNull final ByteBuffer record = ByteBuffer.allocate(recordSize);
+    record.put(digest);
+    for (final int ¢ : metrics)
+      record.putInt(¢);
+    record.flip();
+    for (long o = offset(size); record.hasRemaining();)
+      o += channel.write(record, o);
+    tail.put((ByteBuffer) record.rewind());
+    index(digest, size++);
+    if (tail.hasRemaining())
+      return;
+    map();
+    tail.clear();
+  }
+
+  /** @return the number of class files in this store */
+  public synchronized int size() {
+    return size;
+  }
+
+  /** @param record a record number
+   * @return a buffer in which this record is found at
+   *         {@link #position(int)} */
+  @NotNull private ByteBuffer buffer(final int record) {
+    return record / CHUNK < chunks.size() ? chunks.get(record / CHUNK) : tail;
+  }
+
+  @NotNull private byte[] digestAt(final int record) {
+    @NotNull final byte[] $ = new byte[DIGEST_LENGTH];
+    ((ByteBuffer) buffer(record).duplicate().position(position(record))).get($);
+    return $;
+  }
+
+  /** @param digest the digest of a class file
+   * @return the number of the record of this class file, or -1 if there is
+   *         no such record */
+  private int find(@NotNull final byte[] digest) {
+    final long key = key(digest);
+    for (int ¢ = slot(key);; ¢ = ¢ + 1 & records.length - 1) {
+      if (records[¢] == 0)
+        return -1;
+      if (keys[¢] == key && Arrays.equals(digest, digestAt(records[¢] - 1)))
+        return records[¢] - 1;
+    }
+  }
+
+  private boolean hasHeader(@NotNull final ByteBuffer header) throws IOException {
+    if (channel.size() < header.remaining())
+      return false;
+    @NotNull final ByteBuffer $ = ByteBuffer.allocate(header.remaining());
+    while ($.hasRemaining() && channel.read($, $.position()) > 0)
+      ;
+    $.flip();
+    return $.equals(header);
+  }
+
+  private void index(@NotNull final byte[] digest, final int record) {
+    if (2 * (size + 1) > records.length)
+      rehash();
+    final long key = key(digest);
+    int ¢ = slot(key);
+    while (records[¢] != 0)
+      ¢ = ¢ + 1 & records.length - 1;
+    keys[¢] = key;
+    records[¢] = record + 1;
+  }
+
+  /** Map the chunk following the last mapped chunk */
+  private void map() throws IOException {
+    chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, offset(chunks.size() * CHUNK), (long) CHUNK * recordSize));
+  }
+
+  /** @param record a record number
+   * @return the offset of this record in the file */
+  private long offset(final int record) {
+    return headerSize + (long) record * recordSize;
+  }
+
+  /** @param record a record number
+   * @return the offset of this record in its {@link #buffer(int)} */
+  private int position(final int record) {
+    return record % CHUNK * recordSize;
+  }
+
+  private void rehash() {
+    @NotNull final long[] oldKeys = keys;
+    @NotNull final int[] oldRecords = records;
+    keys = new long[2 * oldKeys.length];
+    records = new int[2 * oldRecords.length];
+    for (int i = 0; i < oldRecords.length; ++i)
+      if (oldRecords[i] != 0) {
+        int ¢ = slot(oldKeys[i]);
+        while (records[¢] != 0)
+          ¢ = ¢ + 1 & records.length - 1;
+        keys[¢] = oldKeys[i];
+        records[¢] = oldRecords[i];
+      }
+  }
+
+  private int slot(final long key) {
+    return (int) (key ^ key >>> 32) & records.length - 1;
+  }
+}
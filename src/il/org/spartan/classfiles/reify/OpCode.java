@@ -240,10 +240,9 @@ public enum OpCode {
   MONITOREXIT, // 195 (0xC3)
   WIDE { // 196 (0xC4)
     @Override @Nullable Instruction readContent(@NotNull final BufferDataInputStream $) {
-      if (OpCode.values()[$.read()] != IINC)
-        return readContent($);
-      $.skip(4);
-      return new Instruction(IINC, null);
+      @NotNull final OpCode o = OpCode.values()[$.read()];
+      $.skip(o == IINC ? 4 : 2);
+      return new Instruction(o, null);
     }
   },
   MULTIANEWARRAY(3), // 197 (0xC5)
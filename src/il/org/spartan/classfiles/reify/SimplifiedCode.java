@@ -1,14 +1,18 @@
 package il.org.spartan.classfiles.reify;
 
+import java.nio.*;
 import java.util.*;
 
 import org.jetbrains.annotations.*;
 
 import il.org.spartan.classfiles.reify.OpCode.*;
 
+/** The instructions of the bytecode of a method which matter for dependency
+ * analysis; metrics of the code are found in {@link CodeEntity}, which computes
+ * them without decoding instructions. */
 public class SimplifiedCode {
-  private static boolean isRelevant(@NotNull final Instruction ¢) {
-    switch (¢.opCode) {
+  private static boolean isRelevant(@NotNull final OpCode ¢) {
+    switch (¢) {
       case GETFIELD:
       case GETSTATIC:
       case INVOKEDYNAMIC:
@@ -25,47 +29,55 @@ public class SimplifiedCode {
     }
   }
 
-  final List<Instruction> instructions = new ArrayList<>();
-  int instructionsCount;
-  int throwCount;
-  private final byte[] codes;
+  @Nullable private List<Instruction> instructions;
+  @NotNull private final ByteBuffer codes;
+  /** Computes the metrics of the code, for the deprecated methods which
+   * report them; <code><b>null</b></code> until first needed */
+  @Nullable private CodeEntity metrics;
 
-  public SimplifiedCode(final byte[] codes) {
+  public SimplifiedCode(@NotNull final byte[] codes) {
+    this(ByteBuffer.wrap(codes));
+  }
+
+  public SimplifiedCode(@NotNull final ByteBuffer codes) {
     this.codes = codes;
   }
 
-  public int cyclomaticComplexity() {
-    return new CFG(codes).cyclomaticComplexity();
+  /** @deprecated use {@link CodeEntity#cyclomaticComplexity()} */
+  @Deprecated public int cyclomaticComplexity() {
+    return metrics().cyclomaticComplexity();
   }
 
-  @NotNull public List<Instruction> instructions() {
-    parse();
-    return instructions;
+  /** @deprecated use {@link CodeEntity#instructionsCount()} */
+  @Deprecated public int instructionsCount() {
+    return metrics().instructionsCount();
   }
 
-  public int instructionsCount() {
-    parse();
-    return instructionsCount;
+  /** @deprecated use {@link CodeEntity#throwCount()} */
+  @Deprecated public int throwCount() {
+    return metrics().throwCount();
   }
 
-  public int throwCount() {
-    parse();
-    return throwCount;
+  @NotNull private synchronized CodeEntity metrics() {
+    if (metrics == null)
+      metrics = new CodeEntity(0, 0, codes);
+    return metrics;
   }
 
-  private void parse() {
-    if (instructionsCount == 0)
-      for (@NotNull final BufferDataInputStream r = new BufferDataInputStream(codes);;) {
-        @Nullable final Instruction i = OpCode.read(r);
-        if (i == null)
-          return;
-        if (i.invalid())
-          throw new RuntimeException();
-        if (i.opCode == OpCode.ATHROW)
-          ++throwCount;
-        if (isRelevant(i))
-          instructions.add(i);
-        ++instructionsCount;
-      }
+  /** @return the instructions of the code which access fields, invoke
+   *         methods, or create objects, in order, decoded on first call */
+  @NotNull public synchronized List<Instruction> instructions() {
+    if (instructions != null)
+      return instructions;
+    @NotNull final List<Instruction> $ = new ArrayList<>();
+    Bytecode.scan(codes, (code, offset, o, next) -> {
+      if (!isRelevant(o))
+        return;
+      @NotNull final short[] args = new short[o.size];
+      for (int ¢ = 0; ¢ < args.length; ++¢)
+        args[¢] = (short) (code.get(offset + 1 + ¢) & 0xFF);
+      $.add(o.new Instruction(o, args));
+    });
+    return instructions = $;
   }
 }
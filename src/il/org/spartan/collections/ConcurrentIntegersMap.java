@@ -0,0 +1,382 @@
+/* Part of the "Spartan Blog"; mutate the rest / but leave this line as is */
+package il.org.spartan.collections;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.jetbrains.annotations.*;
+
+/** An unsorted map of integers, which, unlike {@link IntegersMap}, may be
+ * updated by many threads at once, e.g., for counting occurrences in a
+ * parallel scan, without locks.
+ * <p>
+ * Implementation is with a linear hash table, with linear probes, as in
+ * {@link PackedIntegers}, but with keys and values kept in two separate atomic
+ * arrays: a key is set once, by a compare-and-set from <code>0</code>, and is
+ * never removed, whereas a value is updated by a compare-and-set of a
+ * <code><b>long</b></code>, whose upper bits tell its state: absent, present,
+ * frozen, i.e., being copied into a larger table, or moved. When the table
+ * fills beyond {@link #MAX_LOAD}, a table of twice the capacity is made; each
+ * thread which runs into the resize helps by copying chunks of slots into the
+ * new table; a frozen slot may still be read, but not updated, and an update
+ * of a moved slot is carried out in the new table.
+ * <p>
+ * Keys whose compare-and-set fails repeatedly, because many threads increment
+ * them at once, are made <i>hot</i>: their increments are thereafter
+ * accumulated in a {@link LongAdder}, which keeps a separate cell for each
+ * contending thread, and are added to the value in the table when read.
+ * <p>
+ * Reads are exact when no updates are in progress; {@link #keys()},
+ * {@link #sortedKeys()} and {@link #size()} are snapshots, which may or may not
+ * reflect concurrent updates. */
+public final class ConcurrentIntegersMap {
+  public static final float MAX_LOAD = 0.75f;
+  public static final int MIN_CAPACITY = 16;
+  /** Number of failed compare-and-set operations, in a single increment of a
+   * key, which make it hot */
+  public static final int CONTENTION = 8;
+  /** Number of slots a thread claims at once when copying a table */
+  static final int CHUNK = 1 << 10;
+  private static final int ADD = 0, SET = 1, COPY = 2;
+  private static final long PRESENT = 1L << 32;
+  private static final long FROZEN = 1L << 33;
+  private static final long MOVED = 1L << 34;
+
+  private static int value(final long ¢) {
+    return (int) ¢;
+  }
+
+  @NotNull private final AtomicReference<Table> root;
+  /** The value of key <code>0</code>, which marks empty slots */
+  @NotNull private final AtomicLong zero = new AtomicLong();
+  @NotNull private final AtomicReference<Hot[]> hots = new AtomicReference<>(new Hot[0]);
+  @NotNull private final LongAdder size = new LongAdder();
+
+  /** Instantiate this class */
+  public ConcurrentIntegersMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /** Instantiate this class, using a given size for the hash table.
+   * @param initialCapacity suggests a hash table size, will be rounded up to
+   *        the next power of two. */
+  public ConcurrentIntegersMap(final int initialCapacity) {
+    root = new AtomicReference<>(new Table(Math.max(MIN_CAPACITY, PackedIntegers.roundUp(initialCapacity))));
+  }
+
+  /** Add a number to the value associated with a key, where keys not in the
+   * map are associated with <code>0</code>
+   * @param key an arbitrary integer
+   * @param delta an arbitrary integer
+   * @return the new value; for a hot key, an estimate of it */
+  public int add(final int key, final int delta) {
+    final Hot $ = cell(key);
+    if ($ == null)
+      return key == 0 ? zero(ADD, delta) : apply(root.get(), key, delta, ADD);
+    $.adder.add(delta);
+    return get(key);
+  }
+
+  /** What's the underlying table size?
+   * @return the hash table size (always a power of two) */
+  public int capacity() {
+    return root.get().length;
+  }
+
+  /** Determine whether a given key is in this map.
+   * @param key an arbitrary integer
+   * @return <code><b>true</b></code> if, and only if, the parameter is a key
+   *         of this map. */
+  public boolean contains(final int key) {
+    return (read(key) & PRESENT) != 0;
+  }
+
+  /** @param key an arbitrary integer
+   * @return the value associated with this key, or <code>0</code> if there is
+   *         no such value */
+  public int get(final int key) {
+    final Hot $ = cell(key);
+    return value(read(key)) + ($ == null ? 0 : (int) $.adder.sum());
+  }
+
+  /** Make a key hot, i.e., accumulate its increments in a separate cell for
+   * each contending thread. Keys are also made hot when their increments
+   * contend.
+   * @param key an arbitrary integer
+   * @return <code><b>this</b></code> */
+  @NotNull public ConcurrentIntegersMap hot(final int key) {
+    promote(key);
+    return this;
+  }
+
+  /** Increment the value associated with a key, where keys not in the map are
+   * associated with <code>0</code>
+   * @param key an arbitrary integer
+   * @return the incremented value; for a hot key, an estimate of it */
+  public int increment(final int key) {
+    return add(key, 1);
+  }
+
+  /** What are all keys stored in this object?
+   * @return an array of all keys in this map. */
+  @NotNull public int[] keys() {
+    for (;;) {
+      @NotNull final Table t = quiesce();
+      @NotNull final int[] $ = new int[t.length + 1];
+      int n = (zero.get() & PRESENT) != 0 ? 1 : 0;
+      boolean moved = false;
+      for (int ¢ = 0; ¢ < t.length; ++¢) {
+        final long v = t.values.get(¢);
+        if (v == MOVED)
+          moved = true;
+        else if ((v & PRESENT) != 0)
+          $[n++] = t.keys.get(¢);
+      }
+      if (!moved)
+        return Arrays.copyOf($, n);
+    }
+  }
+
+  /** Associate a value with a key
+   * @param key an arbitrary integer
+   * @param value an arbitrary integer
+   * @return <code><b>this</b></code> */
+  @NotNull public ConcurrentIntegersMap put(final int key, final int value) {
+    final Hot h = cell(key);
+    final int $ = h == null ? value : value - (int) h.adder.sum();
+    if (key == 0)
+      zero(SET, $);
+    else
+      apply(root.get(), key, $, SET);
+    return this;
+  }
+
+  /** How many keys are there in this map?
+   * @return the number of keys in the map. */
+  public int size() {
+    return size.intValue();
+  }
+
+  @NotNull public int[] sortedKeys() {
+    @NotNull final int[] $ = keys();
+    Arrays.sort($);
+    return $;
+  }
+
+  /** Carry out an operation on a key, in a table, or in a table it was copied
+   * to.
+   * @param key a non-zero integer
+   * @param operand a number to add, a value to set, or a value to copy
+   * @param mode one of {@link #ADD}, {@link #SET} and {@link #COPY}; copying
+   *        sets a value, unless the key already has one
+   * @return the new value */
+  private int apply(@NotNull final Table table, final int key, final int operand, final int mode) {
+    Table t = table;
+    for (int contention = 0;;) {
+      if (t.next.get() != null)
+        migrate(t);
+      final int i = claim(t, key);
+      if (i < 0) {
+        t = resize(t);
+        continue;
+      }
+      final long v = t.values.get(i);
+      if (v == MOVED) {
+        t = t.next.get();
+        continue;
+      }
+      if ((v & FROZEN) != 0) {
+        copy(t, i, v);
+        t = t.next.get();
+        continue;
+      }
+      if (mode == COPY && v != 0)
+        return value(v);
+      final long $ = PRESENT | (mode == ADD ? value(v) + operand : operand) & 0xFFFFFFFFL;
+      if (t.values.compareAndSet(i, v, $)) {
+        if (v == 0 && mode != COPY)
+          size.increment();
+        return value($);
+      }
+      if (mode == ADD && operand != 0 && ++contention == CONTENTION) {
+        promote(key).adder.add(operand);
+        return get(key);
+      }
+    }
+  }
+
+  /** @return the index of the key in the table, which is claimed for it if
+   *         it is not there, or -1 if the table is full */
+  private int claim(@NotNull final Table t, final int key) {
+    for (int $ = PackedIntegers.hash(key, t.shift), n = 0; n < t.length; $ = $ + 1 & t.mask, ++n) {
+      final int k = t.keys.get($);
+      if (k == key)
+        return $;
+      if (k != 0)
+        continue;
+      if (t.keys.compareAndSet($, 0, key)) {
+        if (t.claimed.incrementAndGet() > MAX_LOAD * t.length)
+          resize(t);
+        return $;
+      }
+      if (t.keys.get($) == key)
+        return $;
+    }
+    return -1;
+  }
+
+  /** Copy a frozen slot into the next table, and mark it as moved */
+  private void copy(@NotNull final Table t, final int i, final long frozen) {
+    apply(t.next.get(), t.keys.get(i), value(frozen), COPY);
+    if (t.values.compareAndSet(i, frozen, MOVED))
+      moved(t);
+  }
+
+  @Nullable private Hot cell(final int key) {
+    for (@NotNull final Hot $ : hots.get())
+      if ($.key == key)
+        return $;
+    return null;
+  }
+
+  /** Help copying a table, until all of its slots are claimed by copying
+   * threads */
+  private void migrate(@NotNull final Table t) {
+    for (int from; (from = t.cursor.getAndAdd(CHUNK)) < t.length;)
+      for (int ¢ = from; ¢ < Math.min(from + CHUNK, t.length); ++¢)
+        move(t, ¢);
+  }
+
+  private void move(@NotNull final Table t, final int i) {
+    for (;;) {
+      final long v = t.values.get(i);
+      if (v == MOVED)
+        return;
+      if (v == 0) {
+        if (!t.values.compareAndSet(i, 0, MOVED))
+          continue;
+        moved(t);
+        return;
+      }
+      if ((v & FROZEN) != 0) {
+        copy(t, i, v);
+        return;
+      }
+      t.values.compareAndSet(i, v, v | FROZEN);
+    }
+  }
+
+  /** Record that a slot was moved, and, if it was the last, make the next
+   * table the root */
+  private void moved(@NotNull final Table t) {
+    if (t.moved.incrementAndGet() < t.length)
+      return;
+    for (Table r = root.get(); r.next.get() != null && r.moved.get() == r.length; r = root.get())
+      root.compareAndSet(r, r.next.get());
+  }
+
+  @NotNull private Hot promote(final int key) {
+    for (;;) {
+      @NotNull final Hot[] hs = hots.get();
+      for (@NotNull final Hot $ : hs)
+        if ($.key == key)
+          return $;
+      if (key == 0)
+        zero(ADD, 0);
+      else
+        apply(root.get(), key, 0, ADD);
+      @NotNull final Hot[] $ = Arrays.copyOf(hs, hs.length + 1);
+      $[hs.length] = new Hot(key);
+      if (hots.compareAndSet(hs, $))
+        return $[hs.length];
+    }
+  }
+
+  /** @return the latest table, after helping to complete copying earlier
+   *         tables */
+  @NotNull private Table quiesce() {
+    for (Table $ = root.get();; $ = root.get()) {
+      if ($.next.get() == null)
+        return $;
+      migrate($);
+      Thread.yield();
+    }
+  }
+
+  /** @return the state and value of a key */
+  private long read(final int key) {
+    if (key == 0)
+      return zero.get();
+    for (Table t = root.get();;) {
+      long v = 0;
+      int i = PackedIntegers.hash(key, t.shift);
+      for (int n = 0; n < t.length; i = i + 1 & t.mask, ++n) {
+        final int k = t.keys.get(i);
+        if (k == key || k == 0) {
+          v = t.values.get(i);
+          break;
+        }
+      }
+      final Table next = t.next.get();
+      if (v != MOVED && (v != 0 || next == null))
+        return v & ~FROZEN;
+      if (next == null)
+        return 0;
+      t = next;
+    }
+  }
+
+  /** @return the table to which a table is copied, after helping to copy
+   *         it */
+  @NotNull private Table resize(@NotNull final Table t) {
+    if (t.next.get() == null)
+      t.next.compareAndSet(null, new Table(t.length << 1));
+    migrate(t);
+    return t.next.get();
+  }
+
+  private int zero(final int mode, final int operand) {
+    for (;;) {
+      final long v = zero.get(), $ = PRESENT | (mode == ADD ? value(v) + operand : operand) & 0xFFFFFFFFL;
+      if (zero.compareAndSet(v, $)) {
+        if (v == 0)
+          size.increment();
+        return value($);
+      }
+    }
+  }
+
+  /** A key whose increments are accumulated separately */
+  private static final class Hot {
+    final int key;
+    @NotNull final LongAdder adder = new LongAdder();
+
+    Hot(final int key) {
+      this.key = key;
+    }
+  }
+
+  private static final class Table {
+    final int length;
+    final int mask;
+    final int shift;
+    @NotNull final AtomicIntegerArray keys;
+    @NotNull final AtomicLongArray values;
+    /** Number of keys claimed */
+    @NotNull final AtomicInteger claimed = new AtomicInteger();
+    /** The table this one is copied to, if any */
+    @NotNull final AtomicReference<Table> next = new AtomicReference<>();
+    /** Next slot to be copied */
+    @NotNull final AtomicInteger cursor = new AtomicInteger();
+    /** Number of slots copied */
+    @NotNull final AtomicInteger moved = new AtomicInteger();
+
+    Table(final int length) {
+      this.length = length;
+      mask = length - 1;
+      shift = Integer.numberOfLeadingZeros(length) + 1;
+      keys = new AtomicIntegerArray(length);
+      values = new AtomicLongArray(length);
+    }
+  }
+}
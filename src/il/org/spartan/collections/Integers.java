@@ -69,7 +69,7 @@ public class Integers {
     if (i < 0)
       return this;
     data[i] = n;
-    occupied[i] = true;
+    occupy(i);
     if (++size > MAX_LOAD * capacity())
       rehash(data.length << 1);
     return this;
@@ -184,7 +184,7 @@ public class Integers {
         $ = $ < 0 ? ¢ : $;
       if (!occupied[¢])
         return $;
-      if (i == data[¢])
+      if (!placeholder[¢] && i == data[¢])
         return -1;
     }
   }
@@ -196,7 +196,8 @@ public class Integers {
   protected Integers rehash(final int newCapacity) {
     assert (newCapacity & newCapacity - 1) == 0;
     assert newCapacity >= MIN_CAPACITY;
-    return reset(newCapacity).add(entries());
+    @NotNull final int[] $ = entries();
+    return reset(newCapacity).add($);
   }
 
   protected final Integers reset(final int capacity) {
@@ -239,6 +240,16 @@ public class Integers {
     }
   }
 
+  /** Mark a slot as occupied, reclaiming it if it held a removed element
+   * @param ¢ index of a slot */
+  private void occupy(final int ¢) {
+    occupied[¢] = true;
+    if (!placeholder[¢])
+      return;
+    placeholder[¢] = false;
+    --removed;
+  }
+
   /** Find the index in the hash table of the parameter
    * @param i some integer
    * @return index of the element if the parameter is in the table, otherwise,
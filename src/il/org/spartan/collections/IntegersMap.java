@@ -114,7 +114,7 @@ public final class IntegersMap {
     final int find = find(key);
     data[find] = key;
     values[find] = 1;
-    occupied[find] = true;
+    occupy(find);
     if (++size > MAX_LOAD * capacity())
       rehash(data.length << 1);
     return 1;
@@ -130,7 +130,7 @@ public final class IntegersMap {
       final int find = find(key);
       data[find] = key;
       values[find] = 0;
-      occupied[find] = true;
+      occupy(find);
     }
     if (++size > MAX_LOAD * capacity())
       rehash(data.length << 1);
@@ -157,7 +157,7 @@ public final class IntegersMap {
       final int find = find(key);
       data[find] = key;
       values[find] = value;
-      occupied[find] = true;
+      occupy(find);
     }
     if (++size > MAX_LOAD * capacity())
       rehash(data.length << 1);
@@ -217,7 +217,7 @@ public final class IntegersMap {
         $ = $ < 0 ? ¢ : $;
       if (!occupied[¢])
         return $;
-      if (data[¢] == i)
+      if (!placeholder[¢] && data[¢] == i)
         return -1;
     }
   }
@@ -236,6 +236,16 @@ public final class IntegersMap {
     }
   }
 
+  /** Mark a slot as occupied, reclaiming it if it held a removed element
+   * @param ¢ index of a slot */
+  private void occupy(final int ¢) {
+    occupied[¢] = true;
+    if (!placeholder[¢])
+      return;
+    placeholder[¢] = false;
+    --removed;
+  }
+
   /** resize internal storage to the specified capacity, which must be a power
    * of two.
    * @param newCapacity new initialCapacity for the internal array
@@ -0,0 +1,519 @@
+/* Part of the "Spartan Blog"; mutate the rest / but leave this line as is */
+package il.org.spartan.collections;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+/** An unsorted map of strings to integers, which, unlike {@link ToIntegers},
+ * keeps its keys, and its hash table, off the heap, so that a dictionary of
+ * tens of millions of keys costs the garbage collector next to nothing.
+ * <p>
+ * Keys are appended, in UTF-8, each preceded by its length, to an
+ * <i>arena</i> of direct, or memory mapped, blocks of {@value #SEGMENT} bytes;
+ * a key never spans two blocks. The hash table is an array of slots of
+ * {@value #SLOT} bytes, in blocks of the same size, each made of the position
+ * of a key in the arena plus one (<code>0</code> in an empty slot), the hash of
+ * the key, and its value. Probes are linear, and, since hashes are kept in the
+ * table, the arena is not touched when the table is doubled, nor by probes of
+ * other keys, except for the rare collision of full hashes. The arena being
+ * append only, keys are never removed.
+ * <p>
+ * A dictionary is {@link #save(File) saved} to a file which is an image of its
+ * hash table followed by its arena, and {@link #open(File) opened} by mapping
+ * this file as is, with no rehashing; pages are read when first probed, and
+ * updates are private to the process. A {@link String} key, and the array of
+ * bytes of its UTF-8 encoding, are the same key; strings which have no such
+ * encoding, i.e., with an unpaired surrogate, are rejected.
+ * <p>
+ * The memory of a map is freed when it is {@linkplain #close() closed}, rather
+ * than when it is garbage collected. */
+public final class OffHeapToIntegers implements AutoCloseable {
+  public static final float MAX_LOAD = 0.75f;
+  public static final int MIN_CAPACITY = 16;
+  /** Base two logarithm of the number of bytes in a block of memory */
+  static final int SHIFT = 24;
+  /** Number of bytes in a block of memory */
+  static final int SEGMENT = 1 << SHIFT;
+  /** Number of bytes in a slot of the hash table */
+  static final int SLOT = 16;
+  private static final int HEADER = 32;
+  private static final int MAGIC = 0x53504F48;
+  private static final int VERSION = 1;
+
+  /** @param bytes an array of bytes
+   * @param length number of bytes to hash in this array
+   * @return the FNV-1a hash of these bytes */
+  static int hash(@NotNull final byte[] bytes, final int length) {
+    int $ = 0x811C9DC5;
+    for (int ¢ = 0; ¢ < length; ++¢)
+      $ = ($ ^ bytes[¢]) * 0x01000193;
+    return $ ^ $ >>> 15;
+  }
+
+  /** Open a dictionary saved by {@link #save(File)}, mapping it into memory
+   * @param f a file written by {@link #save(File)}
+   * @return the dictionary saved in this file
+   * @throws IOException in case the file could not be read, or is not a saved
+   *         dictionary */
+  @NotNull public static OffHeapToIntegers open(@NotNull final File f) throws IOException {
+    try (FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      @NotNull final ByteBuffer h = ByteBuffer.allocate(HEADER);
+      while (h.hasRemaining() && c.read(h, h.position()) > 0)
+        ;
+      if (h.hasRemaining() || h.getInt(0) != MAGIC || h.getInt(4) != VERSION || h.getInt(8) != SHIFT)
+        throw new IOException(f + ": not a saved dictionary");
+      final int size = h.getInt(12), capacity = h.getInt(16);
+      final long end = h.getLong(24), table = (long) capacity * SLOT;
+      if (c.size() != HEADER + table + end)
+        throw new IOException(f + ": expected " + (HEADER + table + end) + " bytes, found " + c.size());
+      return new OffHeapToIntegers(Memory.map(c, HEADER, table), Memory.map(c, HEADER + table, end), capacity, size, end);
+    }
+  }
+
+  @NotNull private final Memory arena;
+  /** Number of bytes used in {@link #arena} */
+  private long end;
+  @NotNull private Memory table;
+  private int capacity;
+  private int shift;
+  private int size;
+  @NotNull private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+  /** The UTF-8 encoding of the last {@link String} key */
+  @NotNull private ByteBuffer scratch = ByteBuffer.allocate(64);
+
+  /** Instantiate this class */
+  public OffHeapToIntegers() {
+    this(MIN_CAPACITY);
+  }
+
+  /** Instantiate this class, using a given size for the hash table.
+   * @param initialCapacity suggests a hash table size, will be rounded up to
+   *        the next power of two. */
+  public OffHeapToIntegers(final int initialCapacity) {
+    this(null, new Memory(), Math.max(MIN_CAPACITY, PackedIntegers.roundUp(initialCapacity)), 0, 0);
+  }
+
+  private OffHeapToIntegers(@Nullable final Memory table, @NotNull final Memory arena, final int capacity, final int size, final long end) {
+    this.table = table != null ? table : Memory.allocate((long) capacity * SLOT);
+    this.arena = arena;
+    this.capacity = capacity;
+    shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    this.size = size;
+    this.end = end;
+  }
+
+  /** How many bytes do the keys take?
+   * @return the number of bytes used in the arena, including the length of
+   *         each key, and the unused tail of each full block */
+  public long arena() {
+    return end;
+  }
+
+  /** What's the underlying table size?
+   * @return the hash table size (always a power of two) */
+  public int capacity() {
+    return capacity;
+  }
+
+  /** Free the memory of this map, and unmap the file it was
+   * {@linkplain #open(File) opened} from; this map cannot be used anymore */
+  @Override public void close() {
+    table.release();
+    arena.release();
+  }
+
+  /** Determine whether a given key is in this map.
+   * @param key an array of bytes
+   * @return <code><b>true</b></code> if, and only if, the parameter is a key
+   *         of this map. */
+  public boolean contains(@NotNull final byte[] key) {
+    return locate(key, key.length, hash(key, key.length)) >= 0;
+  }
+
+  /** Determine whether a given key is in this map.
+   * @param key an arbitrary string
+   * @return <code><b>true</b></code> if, and only if, the parameter is a key
+   *         of this map. */
+  public boolean contains(@NotNull final String key) {
+    final int n = encode(key);
+    return locate(scratch.array(), n, hash(scratch.array(), n)) >= 0;
+  }
+
+  /** @param key an array of bytes
+   * @return the value associated with this key, or <code>0</code> if there is
+   *         no such value */
+  public int get(@NotNull final byte[] key) {
+    return get(key, key.length);
+  }
+
+  /** @param key an arbitrary string
+   * @return the value associated with this key, or <code>0</code> if there is
+   *         no such value */
+  public int get(@NotNull final String key) {
+    return get(scratch.array(), encode(key));
+  }
+
+  /** Increment the value associated with a key, where keys not in the map are
+   * associated with <code>0</code>
+   * @param key an array of bytes
+   * @return the incremented value */
+  public int increment(@NotNull final byte[] key) {
+    return increment(key, key.length);
+  }
+
+  /** Increment the value associated with a key, where keys not in the map are
+   * associated with <code>0</code>
+   * @param key an arbitrary string
+   * @return the incremented value */
+  public int increment(@NotNull final String key) {
+    return increment(scratch.array(), encode(key));
+  }
+
+  /** Intern a key, i.e., associate it with the number of keys preceding it, if
+   * it is not in the map
+   * @param key an array of bytes
+   * @return the value associated with this key */
+  public int intern(@NotNull final byte[] key) {
+    return intern(key, key.length);
+  }
+
+  /** Intern a key, i.e., associate it with the number of keys preceding it, if
+   * it is not in the map
+   * @param key an arbitrary string
+   * @return the value associated with this key */
+  public int intern(@NotNull final String key) {
+    return intern(scratch.array(), encode(key));
+  }
+
+  /** What are all keys stored in this object?
+   * @return an array of the bytes of all keys in this map. */
+  @NotNull public byte[][] keyBytes() {
+    @NotNull final byte[][] $ = new byte[size][];
+    for (int ¢ = 0, j = 0; ¢ < capacity; ++¢) {
+      final long p = table.getLong((long) ¢ * SLOT);
+      if (p != 0)
+        $[j++] = key(p - 1);
+    }
+    return $;
+  }
+
+  /** What are all keys stored in this object?
+   * @return an array of all keys in this map, decoded from UTF-8
+   * @throws IllegalStateException in case a key was stored as an array of
+   *         bytes which is not UTF-8, and can therefore only be retrieved by
+   *         {@link #keyBytes()} */
+  @NotNull public String[] keys() {
+    @NotNull final CharsetDecoder d = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+        .onUnmappableCharacter(CodingErrorAction.REPORT);
+    @NotNull final byte[][] keys = keyBytes();
+    @NotNull final String[] $ = new String[keys.length];
+    for (int ¢ = 0; ¢ < keys.length; ++¢)
+      try {
+        $[¢] = d.decode(ByteBuffer.wrap(keys[¢])) + "";
+      } catch (@NotNull final CharacterCodingException e) {
+        throw new IllegalStateException("Key " + Arrays.toString(keys[¢]) + " is not UTF-8", e);
+      }
+    return $;
+  }
+
+  /** Associate a value with a key
+   * @param key an array of bytes
+   * @param value an arbitrary integer
+   * @return <code><b>this</b></code> */
+  @NotNull public OffHeapToIntegers put(@NotNull final byte[] key, final int value) {
+    return put(key, key.length, value);
+  }
+
+  /** Associate a value with a key
+   * @param key an arbitrary string
+   * @param value an arbitrary integer
+   * @return <code><b>this</b></code> */
+  @NotNull public OffHeapToIntegers put(@NotNull final String key, final int value) {
+    return put(scratch.array(), encode(key), value);
+  }
+
+  /** Save this map to a file, which may then be {@link #open(File) opened}.
+   * The file is written aside, and then moved into place, so that a file of
+   * this, or of any other map, may be overwritten while mapped.
+   * @param f an arbitrary file
+   * @throws IOException in case the file could not be written */
+  public void save(@NotNull final File f) throws IOException {
+    @NotNull final Path target = f.getAbsoluteFile().toPath(), temporary = Files.createTempFile(target.getParent(), f.getName(), ".tmp");
+    try (FileChannel c = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+      @NotNull final ByteBuffer h = ByteBuffer.allocate(HEADER);
+      h.putInt(MAGIC).putInt(VERSION).putInt(SHIFT).putInt(size).putInt(capacity).putInt(0).putLong(end).flip();
+      for (long o = 0; h.hasRemaining();)
+        o += c.write(h, o);
+      arena.write(c, table.write(c, HEADER, (long) capacity * SLOT), end);
+    } catch (@NotNull final IOException ¢) {
+      Files.deleteIfExists(temporary);
+      throw ¢;
+    }
+    Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** How many keys are there in this map?
+   * @return the number of keys in the map. */
+  public int size() {
+    return size;
+  }
+
+  /** Insert a key into the table, appending it to the arena
+   * @param slot an empty slot in the probe sequence of the key
+   * @return the value */
+  private int add(final int slot, @NotNull final byte[] key, final int length, final int hash, final int value) {
+    final int n = 4 + length;
+    if (n > SEGMENT)
+      throw new IllegalArgumentException("Key of " + length + " bytes exceeds " + (SEGMENT - 4));
+    if (Memory.offset(end) + n > SEGMENT)
+      end = (end >>> SHIFT) + 1 << SHIFT;
+    arena.ensure(end + n);
+    @NotNull final ByteBuffer b = arena.segment(end);
+    b.putInt(Memory.offset(end), length);
+    ((ByteBuffer) b.duplicate().position(Memory.offset(end) + 4)).put(key, 0, length);
+    set((long) slot * SLOT, end + 1, hash, value);
+    end += n;
+    if (++size > MAX_LOAD * capacity)
+      rehash(capacity << 1);
+    return value;
+  }
+
+  /** @return the number of bytes of the UTF-8 encoding of the key, which are
+   *         at the beginning of {@link #scratch}
+   * @throws IllegalArgumentException in case the key has no such encoding */
+  private int encode(@NotNull final String key) {
+    if (scratch.capacity() < 3 * key.length())
+      scratch = ByteBuffer.allocate(3 * key.length());
+    scratch.clear();
+    encoder.reset();
+    @NotNull final CharBuffer in = CharBuffer.wrap(key);
+    final CoderResult $ = encoder.encode(in, scratch, true);
+    if ($.isError())
+      throw new IllegalArgumentException("Key has no UTF-8 encoding, at index " + in.position() + ": " + $);
+    encoder.flush(scratch);
+    return scratch.position();
+  }
+
+  /** @param position the position of a key in the arena
+   * @return whether this is the key of the given bytes */
+  private boolean equal(final long position, @NotNull final byte[] key, final int length) {
+    @NotNull final ByteBuffer b = arena.segment(position);
+    final int o = Memory.offset(position);
+    if (b.getInt(o) != length)
+      return false;
+    for (int ¢ = 0; ¢ < length; ++¢)
+      if (b.get(o + 4 + ¢) != key[¢])
+        return false;
+    return true;
+  }
+
+  private int get(@NotNull final byte[] key, final int length) {
+    final int $ = locate(key, length, hash(key, length));
+    return $ < 0 ? 0 : table.getInt((long) $ * SLOT + 12);
+  }
+
+  private int increment(@NotNull final byte[] key, final int length) {
+    final int hash = hash(key, length), $ = locate(key, length, hash);
+    if ($ < 0)
+      return add(-$ - 1, key, length, hash, 1);
+    final long at = (long) $ * SLOT + 12;
+    final int value = table.getInt(at) + 1;
+    table.putInt(at, value);
+    return value;
+  }
+
+  private int intern(@NotNull final byte[] key, final int length) {
+    final int hash = hash(key, length), $ = locate(key, length, hash);
+    return $ >= 0 ? table.getInt((long) $ * SLOT + 12) : add(-$ - 1, key, length, hash, size);
+  }
+
+  /** @param position the position of a key in the arena
+   * @return the bytes of this key */
+  @NotNull private byte[] key(final long position) {
+    @NotNull final ByteBuffer b = arena.segment(position);
+    @NotNull final byte[] $ = new byte[b.getInt(Memory.offset(position))];
+    ((ByteBuffer) b.duplicate().position(Memory.offset(position) + 4)).get($);
+    return $;
+  }
+
+  /** Find the slot of a key in the hash table
+   * @return the index of the slot of the key, if it is in the table;
+   *         otherwise, minus one minus the index of the empty slot which ends
+   *         its probe sequence */
+  private int locate(@NotNull final byte[] key, final int length, final int hash) {
+    for (int $ = PackedIntegers.hash(hash, shift);; $ = $ + 1 & capacity - 1) {
+      final long p = table.getLong((long) $ * SLOT);
+      if (p == 0)
+        return -$ - 1;
+      if (table.getInt((long) $ * SLOT + 8) == hash && equal(p - 1, key, length))
+        return $;
+    }
+  }
+
+  @NotNull private OffHeapToIntegers put(@NotNull final byte[] key, final int length, final int value) {
+    final int hash = hash(key, length), $ = locate(key, length, hash);
+    if ($ < 0)
+      add(-$ - 1, key, length, hash, value);
+    else
+      table.putInt((long) $ * SLOT + 12, value);
+    return this;
+  }
+
+  /** Double the hash table; the arena is not touched */
+  private void rehash(final int newCapacity) {
+    @NotNull final Memory old = table;
+    final int oldCapacity = capacity;
+    table = Memory.allocate((long) newCapacity * SLOT);
+    capacity = newCapacity;
+    shift = Integer.numberOfLeadingZeros(newCapacity) + 1;
+    for (int ¢ = 0; ¢ < oldCapacity; ++¢) {
+      final long at = (long) ¢ * SLOT, p = old.getLong(at);
+      if (p == 0)
+        continue;
+      final int hash = old.getInt(at + 8);
+      int $ = PackedIntegers.hash(hash, shift);
+      while (table.getLong((long) $ * SLOT) != 0)
+        $ = $ + 1 & capacity - 1;
+      set((long) $ * SLOT, p, hash, old.getInt(at + 12));
+    }
+    old.release();
+  }
+
+  private void set(final long at, final long position, final int hash, final int value) {
+    table.putLong(at, position);
+    table.putInt(at + 8, hash);
+    table.putInt(at + 12, value);
+  }
+
+  /** A sequence of direct, or mapped, blocks of {@value #SEGMENT} bytes each,
+   * except for the last, addressed by a <code><b>long</b></code> position */
+  private static final class Memory {
+    /** Frees a direct, or mapped, buffer, if the JVM allows it; <code><b>null</b></code> otherwise */
+    @Nullable private static final Method free = free();
+
+    @NotNull static Memory allocate(final long bytes) {
+      @NotNull final Memory $ = new Memory();
+      for (long ¢ = 0; ¢ < bytes; ¢ += SEGMENT)
+        $.segments.add(ByteBuffer.allocateDirect((int) Math.min(SEGMENT, bytes - ¢)));
+      return $;
+    }
+
+    /** Map a region of a file, in blocks, privately, so that updates are not
+     * written to the file */
+    @NotNull static Memory map(@NotNull final FileChannel c, final long from, final long bytes) throws IOException {
+      @NotNull final Memory $ = new Memory();
+      for (long ¢ = 0; ¢ < bytes; ¢ += SEGMENT)
+        $.segments.add(c.map(FileChannel.MapMode.PRIVATE, from + ¢, Math.min(SEGMENT, bytes - ¢)));
+      return $;
+    }
+
+    static int offset(final long position) {
+      return (int) position & SEGMENT - 1;
+    }
+
+    /** @return <code>Unsafe.invokeCleaner(ByteBuffer)</code>, made accessible,
+     *         or <code><b>null</b></code> if there is no such method, as
+     *         before Java 9 */
+    @Nullable private static Method free() {
+      try {
+        return Class.forName("sun.misc.Unsafe").getMethod("invokeCleaner", ByteBuffer.class);
+      } catch (@NotNull final ReflectiveOperationException | RuntimeException ____) {
+        return null;
+      }
+    }
+
+    /** @return the instance of <code>sun.misc.Unsafe</code> */
+    private static Object unsafe() throws ReflectiveOperationException {
+      @NotNull final Field $ = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+      $.setAccessible(true);
+      return $.get(null);
+    }
+
+    @NotNull final List<ByteBuffer> segments = new ArrayList<>();
+
+    /** Make room for a given number of bytes, doubling the last block until it
+     * is full */
+    void ensure(final long bytes) {
+      for (;;) {
+        final int n = segments.size();
+        final long available = ((long) n - 1 << SHIFT) + (n == 0 ? SEGMENT : segments.get(n - 1).capacity());
+        if (n > 0 && available >= bytes)
+          return;
+        if (n == 0 || segments.get(n - 1).capacity() == SEGMENT) {
+          segments.add(ByteBuffer.allocateDirect(Math.min(SEGMENT, Math.max(1 << 12, (int) (bytes - ((long) n << SHIFT))))));
+          continue;
+        }
+        @NotNull final ByteBuffer old = segments.get(n - 1);
+        @NotNull final ByteBuffer $ = ByteBuffer.allocateDirect((int) Math.min(SEGMENT, Math.max(2L * old.capacity(), bytes - ((long) n - 1 << SHIFT))));
+        $.put((ByteBuffer) old.duplicate().clear());
+        segments.set(n - 1, $);
+        release(old);
+      }
+    }
+
+    int getInt(final long position) {
+      return segment(position).getInt(offset(position));
+    }
+
+    long getLong(final long position) {
+      return segment(position).getLong(offset(position));
+    }
+
+    /** Free a block now, rather than when it is collected, where the JVM
+     * allows it */
+    private static void release(@NotNull final ByteBuffer b) {
+      try {
+        if (free != null) {
+          free.invoke(unsafe(), b);
+          return;
+        }
+        @NotNull final Method cleaner = b.getClass().getMethod("cleaner");
+        cleaner.setAccessible(true);
+        @Nullable final Object $ = cleaner.invoke(b);
+        if ($ != null)
+          $.getClass().getMethod("clean").invoke($);
+      } catch (@NotNull final ReflectiveOperationException | RuntimeException ____) {
+        // Freed when collected
+      }
+    }
+
+    /** Free all blocks now; this memory is empty afterwards */
+    void release() {
+      segments.forEach(Memory::release);
+      segments.clear();
+    }
+
+    void putInt(final long position, final int value) {
+      segment(position).putInt(offset(position), value);
+    }
+
+    void putLong(final long position, final long value) {
+      segment(position).putLong(offset(position), value);
+    }
+
+    @NotNull ByteBuffer segment(final long position) {
+      return segments.get((int) (position >>> SHIFT));
+    }
+
+    /** Write a prefix of this memory to a file
+     * @return the offset in the file following the written bytes */
+    long write(@NotNull final FileChannel c, final long offset, final long bytes) throws IOException {
+      long $ = offset;
+      for (long ¢ = 0; ¢ < bytes; ¢ += SEGMENT) {
+        @NotNull final ByteBuffer b = (ByteBuffer) segments.get((int) (¢ >>> SHIFT)).duplicate().clear();
+        b.limit((int) Math.min(SEGMENT, bytes - ¢));
+        while (b.hasRemaining())
+          $ += c.write(b, $);
+      }
+      return $;
+    }
+  }
+}
@@ -0,0 +1,240 @@
+/* Part of the "Spartan Blog"; mutate the rest / but leave this line as is */
+package il.org.spartan.collections;
+
+import static org.hamcrest.Matchers.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.*;
+import il.org.spartan.utils.___.*;
+
+/** An unsorted set of integers, which, unlike {@link Integers}, keeps its
+ * elements in a single array, with no parallel arrays of flags.
+ * <p>
+ * Implementation is with a linear hash table, with linear probes, in which an
+ * empty slot is marked by <code>0</code>; whether <code>0</code> itself is in
+ * the set is recorded separately. A removed element is not marked, but rather
+ * replaced by a later element of its probe sequence, which is in turn replaced,
+ * and so on, so that probe sequences never run through removed elements. Array
+ * capacity is always a power of two, and is doubled when the load goes above
+ * {@link #MAX_LOAD}; capacity is halved when the load drops below
+ * {@value #MIN_LOAD}. */
+public final class PackedIntegers {
+  public static final float MAX_LOAD = 0.75f;
+  public static final int MIN_CAPACITY = 4;
+  public static final float MIN_LOAD = 0.25f;
+
+  /** @param key an arbitrary integer
+   * @param shift 32 minus the base two logarithm of the table size
+   * @return the first slot in the probe sequence of the key, by Fibonacci
+   *         hashing */
+  static int hash(final int key, final int shift) {
+    return key * 0x9E3779B9 >>> shift;
+  }
+
+  static int roundUp(final int ¢) {
+    int $ = MIN_CAPACITY;
+    while ($ < ¢)
+      $ <<= 1;
+    return $;
+  }
+
+  private int[] data;
+  private int shift;
+  private int size;
+  private boolean zero;
+
+  /** Instantiates this class */
+  public PackedIntegers() {
+    this(MIN_CAPACITY);
+  }
+
+  /** Instantiate this class, using a given size for the hash table.
+   * @param initialCapacity suggests a hash table size, will be rounded up to
+   *        the next power of two. */
+  public PackedIntegers(final int initialCapacity) {
+    reset(roundUp(initialCapacity));
+  }
+
+  /** Add an integer to the set, if it is not already there.
+   * @param n an arbitrary integer
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegers add(final int n) {
+    if (n == 0) {
+      if (!zero) {
+        zero = true;
+        ++size;
+      }
+      return this;
+    }
+    final int mask = data.length - 1;
+    for (int ¢ = hash(n, shift);; ¢ = ¢ + 1 & mask) {
+      if (data[¢] == n)
+        return this;
+      if (data[¢] == 0) {
+        data[¢] = n;
+        return ++size <= MAX_LOAD * capacity() ? this : rehash(capacity() << 1);
+      }
+    }
+  }
+
+  /** Add an array of integers to this set, if they are not already in it.
+   * @param is an arbitrary array of integers; must not be
+   *        <code><b>null</b></code>.
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegers add(@NotNull final int... is) {
+    for (final int ¢ : is)
+      add(¢);
+    return this;
+  }
+
+  /** What's the underlying table size?
+   * @return hash table size (always a power of two) */
+  public int capacity() {
+    return data.length;
+  }
+
+  /** Remove all elements from this set, preserving capacity.
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegers clear() {
+    return reset(capacity());
+  }
+
+  /** Determine whether a given value is in this set.
+   * @param ¢ an arbitrary integer
+   * @return <code><b>true</b></code> if, and only if, the parameter is
+   *         contained in this set. */
+  public boolean contains(final int ¢) {
+    return ¢ == 0 ? zero : location(¢) >= 0;
+  }
+
+  /** Check whether an array of integers is contained in this set.
+   * @param is an array of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>true</b></code> if, and only if, all elements in the array
+   *         are contained in this set */
+  public boolean contains(@NotNull final int... is) {
+    for (final int ¢ : is)
+      if (!contains(¢))
+        return false;
+    return true;
+  }
+
+  /** Check whether this object is disjoint from an array of integers
+   * @param is an array of of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>true</b></code> if, and only if, this object is disjoint
+   *         from the set of elements in the parameter */
+  public boolean disjoint(@NotNull final int... is) {
+    for (final int ¢ : is)
+      if (contains(¢))
+        return false;
+    return true;
+  }
+
+  /** What are all values stored in this object?
+   * @return an array of all elements in this set. */
+  @NotNull public int[] entries() {
+    @NotNull final int[] $ = new int[size];
+    int j = zero ? 1 : 0;
+    for (final int ¢ : data)
+      if (¢ != 0)
+        $[j++] = ¢;
+    return $;
+  }
+
+  /** Remove an element from this set, it is in it
+   * @param n some integer to be removed from the set
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegers remove(final int n) {
+    if (n == 0) {
+      if (!zero)
+        return this;
+      zero = false;
+      return shrink();
+    }
+    int i = location(n);
+    if (i < 0)
+      return this;
+    final int mask = data.length - 1;
+    for (int j = i + 1 & mask; data[j] != 0; j = j + 1 & mask)
+      if ((j - hash(data[j], shift) & mask) >= (j - i & mask)) {
+        data[i] = data[j];
+        i = j;
+      }
+    data[i] = 0;
+    return shrink();
+  }
+
+  /** Remove an array of integers to this set, if they are in it.
+   * @param is an array of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegers remove(@NotNull final int... is) {
+    for (final int ¢ : is)
+      remove(¢);
+    return this;
+  }
+
+  /** How many elements are there in this set?
+   * @return number of values in the set. */
+  public int size() {
+    return size;
+  }
+
+  /** Find the index in the hash table of the parameter
+   * @param n some non-zero integer
+   * @return index of the element if the parameter is in the table, otherwise,
+   *         -1; */
+  int location(final int n) {
+    final int mask = data.length - 1;
+    for (int $ = hash(n, shift);; $ = $ + 1 & mask) {
+      if (data[$] == n)
+        return $;
+      if (data[$] == 0)
+        return -1;
+    }
+  }
+
+  @NotNull private PackedIntegers rehash(final int newCapacity) {
+    assert (newCapacity & newCapacity - 1) == 0;
+    assert newCapacity >= MIN_CAPACITY;
+    @NotNull final int[] old = data;
+    final boolean hadZero = zero;
+    reset(newCapacity);
+    for (final int ¢ : old)
+      if (¢ != 0)
+        add(¢);
+    if (hadZero)
+      add(0);
+    return this;
+  }
+
+  @NotNull private PackedIntegers reset(final int capacity) {
+    data = new int[capacity];
+    shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    size = 0;
+    zero = false;
+    return this;
+  }
+
+  @NotNull private PackedIntegers shrink() {
+    return --size >= MIN_LOAD * capacity() || capacity() <= MIN_CAPACITY ? this : rehash(capacity() >> 1);
+  }
+
+  @SuppressWarnings({ "synthetic-access", "boxing" }) //
+  public final class INVARIANT implements Invariantable {
+    @Override public void check() {
+      azzert.that(capacity(), greaterThanOrEqualTo(MIN_CAPACITY));
+      azzert.that(Integer.bitCount(capacity()), comparesEqualTo(1));
+      azzert.that(size, lessThanOrEqualTo((int) (MAX_LOAD * capacity())));
+      int count = zero ? 1 : 0;
+      final int mask = data.length - 1;
+      for (int ¢ = 0; ¢ < capacity(); ++¢) {
+        if (data[¢] == 0)
+          continue;
+        ++count;
+        for (int j = hash(data[¢], shift); j != ¢; j = j + 1 & mask)
+          assert data[j] != 0;
+      }
+      azzert.that(size, comparesEqualTo(count));
+    }
+  }
+}
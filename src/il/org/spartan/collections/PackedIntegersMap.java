@@ -0,0 +1,284 @@
+/* Part of the "Spartan Blog"; mutate the rest / but leave this line as is */
+package il.org.spartan.collections;
+
+import static org.hamcrest.Matchers.*;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+import il.org.spartan.*;
+import il.org.spartan.utils.___.*;
+
+/** An unsorted map of integers, which, unlike {@link IntegersMap}, keeps each
+ * key together with its value, in a single <code><b>long</b></code>, so that a
+ * probe touches a single cache line.
+ * <p>
+ * Implementation is that of {@link PackedIntegers}: a linear hash table, with
+ * linear probes, in which an empty slot is one whose key is <code>0</code>;
+ * the value of key <code>0</code>, if any, is kept separately. Removed keys are
+ * replaced by later keys of their probe sequence, leaving no marks. Array
+ * capacity is always a power of two, and is doubled when the load goes above
+ * {@link #MAX_LOAD}; capacity is halved when the load drops below
+ * {@value #MIN_LOAD}. */
+public final class PackedIntegersMap {
+  public static final float MAX_LOAD = PackedIntegers.MAX_LOAD;
+  public static final int MIN_CAPACITY = PackedIntegers.MIN_CAPACITY;
+  public static final float MIN_LOAD = PackedIntegers.MIN_LOAD;
+
+  private static int key(final long ¢) {
+    return (int) (¢ >>> 32);
+  }
+
+  private static long slot(final int key, final int value) {
+    return (long) key << 32 | value & 0xFFFFFFFFL;
+  }
+
+  private static int value(final long ¢) {
+    return (int) ¢;
+  }
+
+  private long[] slots;
+  private int shift;
+  private int size;
+  private boolean zero;
+  private int zeroValue;
+
+  /** Instantiate this class */
+  public PackedIntegersMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /** Instantiate this class, using a given size for the hash table.
+   * @param initialCapacity suggests a hash table size, will be rounded up to
+   *        the next power of two. */
+  public PackedIntegersMap(final int initialCapacity) {
+    reset(PackedIntegers.roundUp(initialCapacity));
+  }
+
+  /** What's the underlying table size?
+   * @return the hash table size (always a power of two) */
+  public int capacity() {
+    return slots.length;
+  }
+
+  /** Remove all elements from this map, preserving capacity.
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegersMap clear() {
+    return reset(capacity());
+  }
+
+  /** Determine whether a given key is in this map.
+   * @param ¢ an arbitrary integer
+   * @return <code><b>true</b></code> if, and only if, the parameter is a key
+   *         of this map. */
+  public boolean contains(final int ¢) {
+    return ¢ == 0 ? zero : location(¢) >= 0;
+  }
+
+  /** Check whether an array of integers are all keys of this map.
+   * @param is an array of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>true</b></code> if, and only if, all elements in the array
+   *         are keys of this map */
+  public boolean contains(@NotNull final int... is) {
+    for (final int ¢ : is)
+      if (!contains(¢))
+        return false;
+    return true;
+  }
+
+  /** Check whether the keys of this map are disjoint from an array of integers
+   * @param is an array of of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>true</b></code> if, and only if, no element of the
+   *         parameter is a key of this map */
+  public boolean disjoint(@NotNull final int... is) {
+    for (final int ¢ : is)
+      if (contains(¢))
+        return false;
+    return true;
+  }
+
+  @NotNull public int[] get(@NotNull final int keys[]) {
+    @NotNull final int[] $ = new int[keys.length];
+    for (int ¢ = 0; ¢ < keys.length; ++¢)
+      $[¢] = get(keys[¢]);
+    return $;
+  }
+
+  /** @param key an arbitrary integer
+   * @return the value associated with this key, or <code>0</code> if there is
+   *         no such value */
+  public int get(final int key) {
+    if (key == 0)
+      return zeroValue;
+    final int $ = location(key);
+    return $ < 0 ? 0 : value(slots[$]);
+  }
+
+  /** Increment the value associated with a key, where keys not in the map are
+   * associated with <code>0</code>
+   * @param key an arbitrary integer
+   * @return the incremented value */
+  public int increment(final int key) {
+    if (key == 0)
+      return put(0, zeroValue + 1).zeroValue;
+    final int mask = slots.length - 1;
+    for (int ¢ = PackedIntegers.hash(key, shift);; ¢ = ¢ + 1 & mask) {
+      final long s = slots[¢];
+      if (key(s) == key) {
+        slots[¢] = slot(key, value(s) + 1);
+        return value(s) + 1;
+      }
+      if (key(s) == 0) {
+        slots[¢] = slot(key, 1);
+        grow();
+        return 1;
+      }
+    }
+  }
+
+  /** @param key an arbitrary integer
+   * @return <code>this</code> */
+  @NotNull public PackedIntegersMap init(final int key) {
+    return put(key, 0);
+  }
+
+  /** What are all keys stored in this object?
+   * @return an array of all keys in this map. */
+  @NotNull public int[] keys() {
+    @NotNull final int[] $ = new int[size];
+    int j = zero ? 1 : 0;
+    for (final long ¢ : slots)
+      if (key(¢) != 0)
+        $[j++] = key(¢);
+    return $;
+  }
+
+  @NotNull public PackedIntegersMap put(final int key, final int value) {
+    if (key == 0) {
+      if (!zero) {
+        zero = true;
+        ++size;
+      }
+      zeroValue = value;
+      return this;
+    }
+    final int mask = slots.length - 1;
+    for (int ¢ = PackedIntegers.hash(key, shift);; ¢ = ¢ + 1 & mask) {
+      final int k = key(slots[¢]);
+      if (k == key || k == 0) {
+        slots[¢] = slot(key, value);
+        return k == key ? this : grow();
+      }
+    }
+  }
+
+  /** Remove an array of keys from this map, if they are in it.
+   * @param is an array of integers; must not be <code><b>null</b></code>.
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegersMap remove(@NotNull final int... is) {
+    for (final int ¢ : is)
+      remove(¢);
+    return this;
+  }
+
+  /** Remove a key from this map, if it is in it
+   * @param n some integer to be removed from the map
+   * @return <code><b>this</b></code> */
+  @NotNull public PackedIntegersMap remove(final int n) {
+    if (n == 0) {
+      if (!zero)
+        return this;
+      zero = false;
+      zeroValue = 0;
+      return shrink();
+    }
+    int i = location(n);
+    if (i < 0)
+      return this;
+    final int mask = slots.length - 1;
+    for (int j = i + 1 & mask; key(slots[j]) != 0; j = j + 1 & mask)
+      if ((j - PackedIntegers.hash(key(slots[j]), shift) & mask) >= (j - i & mask)) {
+        slots[i] = slots[j];
+        i = j;
+      }
+    slots[i] = 0;
+    return shrink();
+  }
+
+  /** How many keys are there in this map?
+   * @return the number of keys in the map. */
+  public int size() {
+    return size;
+  }
+
+  @NotNull public int[] sortedKeys() {
+    @NotNull final int[] $ = keys();
+    Arrays.sort($);
+    return $;
+  }
+
+  /** Find the index in the hash table of a key
+   * @param key some non-zero integer
+   * @return index of the key if it is in the table, otherwise, -1; */
+  int location(final int key) {
+    final int mask = slots.length - 1;
+    for (int $ = PackedIntegers.hash(key, shift);; $ = $ + 1 & mask) {
+      final int k = key(slots[$]);
+      if (k == key)
+        return $;
+      if (k == 0)
+        return -1;
+    }
+  }
+
+  @NotNull private PackedIntegersMap grow() {
+    return ++size <= MAX_LOAD * capacity() ? this : rehash(capacity() << 1);
+  }
+
+  @NotNull private PackedIntegersMap rehash(final int newCapacity) {
+    assert (newCapacity & newCapacity - 1) == 0;
+    assert newCapacity >= MIN_CAPACITY;
+    @NotNull final long[] old = slots;
+    final boolean hadZero = zero;
+    final int oldZeroValue = zeroValue;
+    reset(newCapacity);
+    for (final long ¢ : old)
+      if (key(¢) != 0)
+        put(key(¢), value(¢));
+    if (hadZero)
+      put(0, oldZeroValue);
+    return this;
+  }
+
+  @NotNull private PackedIntegersMap reset(final int capacity) {
+    slots = new long[capacity];
+    shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    size = zeroValue = 0;
+    zero = false;
+    return this;
+  }
+
+  @NotNull private PackedIntegersMap shrink() {
+    return --size >= MIN_LOAD * capacity() || capacity() <= MIN_CAPACITY ? this : rehash(capacity() >> 1);
+  }
+
+  @SuppressWarnings({ "synthetic-access", "boxing" }) //
+  public final class INVARIANT implements Invariantable {
+    @Override public void check() {
+      azzert.that(capacity(), greaterThanOrEqualTo(MIN_CAPACITY));
+      azzert.that(Integer.bitCount(capacity()), comparesEqualTo(1));
+      azzert.that(size, lessThanOrEqualTo((int) (MAX_LOAD * capacity())));
+      int count = zero ? 1 : 0;
+      final int mask = slots.length - 1;
+      for (int ¢ = 0; ¢ < capacity(); ++¢) {
+        if (key(slots[¢]) == 0)
+          continue;
+        ++count;
+        for (int j = PackedIntegers.hash(key(slots[¢]), shift); j != ¢; j = j + 1 & mask)
+          assert key(slots[j]) != 0;
+      }
+      azzert.that(size, comparesEqualTo(count));
+    }
+  }
+}
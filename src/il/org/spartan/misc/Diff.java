@@ -0,0 +1,373 @@
+/* Part of the "Spartan Blog"; mutate the rest / but leave this line as is */
+package il.org.spartan.misc;
+
+import static il.org.spartan.azzert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+import il.org.spartan.text.*;
+
+/** Myers' <i>O((N+M)D)</i> difference algorithm, over the same hashed lines
+ * representation as {@link LCS}, where <i>N</i> and <i>M</i> are the lengths
+ * of the compared sequences, and <i>D</i> is the size of their minimal edit
+ * script, i.e., the number of deleted and inserted elements. For
+ * nearly identical files, which are the common case in comparing revisions,
+ * <i>D</i> is small, and the computation is hence much faster than that of
+ * {@link LCS}.
+ * <p>
+ * {@link #distance(int[], int[], int)} runs the greedy algorithm in
+ * <i>O(D)</i> space, giving up once <i>D</i> exceeds a threshold. The edit
+ * script itself is computed by the linear space refinement, which finds the
+ * middle snake of an optimal path by searching from both ends at once, and
+ * recurses on both sides of it. Edits are reported in order, merged into
+ * {@link Run}s, as soon as they are found, so that huge inputs, hashed line by
+ * line by {@link #lines(Reader)}, are compared in memory proportional to their
+ * number of lines. */
+public final class Diff {
+  /** @param as JD
+   * @param bs JD
+   * @param max largest edit distance of interest
+   * @return the number of elements to delete from <code>as</code> and insert
+   *         into it to obtain <code>bs</code>, or <code>-1</code> if this
+   *         number exceeds <code>max</code> */
+  public static int distance(@NotNull final int[] as, @NotNull final int[] bs, final int max) {
+    int from = 0, aTo = as.length, bTo = bs.length;
+    while (from < aTo && from < bTo && as[from] == bs[from])
+      ++from;
+    while (aTo > from && bTo > from && as[aTo - 1] == bs[bTo - 1]) {
+      --aTo;
+      --bTo;
+    }
+    final int n = aTo - from, m = bTo - from, limit = Math.min(max, n + m), offset = limit + 1;
+    if (limit < 0)
+      return -1;
+    @NotNull final int[] v = new int[2 * limit + 3];
+    for (int d = 0; d <= limit; ++d)
+      for (int k = -d; k <= d; k += 2) {
+        int x = k == -d || k != d && v[offset + k - 1] < v[offset + k + 1] ? v[offset + k + 1] : v[offset + k - 1] + 1;
+        for (int y = x - k; x < n && y < m && as[from + x] == bs[from + y]; ++y)
+          ++x;
+        if (x >= n && x - k >= m)
+          return d;
+        v[offset + k] = x;
+      }
+    return -1;
+  }
+
+  /** @param s1 JD
+   * @param s2 JD
+   * @param max largest edit distance of interest
+   * @return the edit distance of the lines of these two texts, or
+   *         <code>-1</code> if it exceeds <code>max</code> */
+  public static int distance(@NotNull final String s1, @NotNull final String s2, final int max) {
+    return distance(LCS.hash(Lines.scatter(s1)), LCS.hash(Lines.scatter(s2)), max);
+  }
+
+  /** Hashes the lines of a text, as done by {@link LCS}, without keeping them
+   * @param r a text
+   * @return the hash of every line of this text
+   * @throws IOException in case the text could not be read */
+  @NotNull public static int[] lines(@NotNull final Reader r) throws IOException {
+    @NotNull final BufferedReader in = r instanceof BufferedReader ? (BufferedReader) r : new BufferedReader(r);
+    int[] $ = new int[1024];
+    int n = 0;
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      if (n == $.length)
+        $ = Arrays.copyOf($, 2 * n);
+      $[n++] = LCS.hash(line);
+    }
+    return Arrays.copyOf($, n);
+  }
+
+  /** The length of the LCS, by Myers' algorithm if the sequences are similar,
+   * and by {@link LCS#length(int[], int[])} otherwise
+   * @param as JD
+   * @param bs JD
+   * @return the length of the longest common subsequence of the
+   *         parameters */
+  public static int lcs(@NotNull final int[] as, @NotNull final int[] bs) {
+    final int $ = distance(as, bs, Math.min(as.length, bs.length) / 64 + 16);
+    return $ >= 0 ? (as.length + bs.length - $) / 2 : LCS.length(as, bs);
+  }
+
+  /** @param as JD
+   * @param bs JD
+   * @return a minimal edit script which turns <code>as</code> into
+   *         <code>bs</code> */
+  @NotNull public static List<Run> script(@NotNull final int[] as, @NotNull final int[] bs) {
+    @NotNull final List<Run> $ = new ArrayList<>();
+    new Diff(as, bs, $::add).go();
+    return $;
+  }
+
+  /** @param as JD
+   * @param bs JD
+   * @param max largest edit distance of interest
+   * @param c receives the runs of a minimal edit script which turns
+   *        <code>as</code> into <code>bs</code>, in order, as soon as they are
+   *        found
+   * @return whether the edit distance is within <code>max</code>; otherwise,
+   *         nothing is reported */
+  public static boolean script(@NotNull final int[] as, @NotNull final int[] bs, final int max, @NotNull final Consumer<Run> c) {
+    if (distance(as, bs, max) < 0)
+      return false;
+    new Diff(as, bs, c).go();
+    return true;
+  }
+
+  @NotNull private final int[] as;
+  @NotNull private final int[] bs;
+  @NotNull private final Consumer<Run> consumer;
+  @Nullable private Operation operation;
+  private int a;
+  private int b;
+  private int length;
+
+  private Diff(@NotNull final int[] as, @NotNull final int[] bs, @NotNull final Consumer<Run> consumer) {
+    this.as = as;
+    this.bs = bs;
+    this.consumer = consumer;
+  }
+
+  /** Searches for an optimal path from both corners of the edit graph at
+   * once, until the two searches overlap, and then recurses on both sides of
+   * the point of overlap; each search keeps the furthest point reached on
+   * every diagonal, and stops extending diagonals which left the graph. */
+  private void bisect(final int aFrom, final int aTo, final int bFrom, final int bTo) {
+    final int n = aTo - aFrom, m = bTo - bFrom, max = (n + m + 1) / 2, offset = max, delta = n - m;
+    final boolean odd = (delta & 1) != 0;
+    @NotNull final int[] forward = new int[2 * max + 2], backward = new int[2 * max + 2];
+    Arrays.fill(forward, -1);
+    Arrays.fill(backward, -1);
+    forward[offset + 1] = backward[offset + 1] = 0;
+    int forwardStart = 0, forwardEnd = 0, backwardStart = 0, backwardEnd = 0;
+    for (int d = 0; d < max; ++d) {
+      for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+        int x = k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1] ? forward[offset + k + 1] : forward[offset + k - 1] + 1,
+            y = x - k;
+        for (; x < n && y < m && as[aFrom + x] == bs[bFrom + y]; ++y)
+          ++x;
+        forward[offset + k] = x;
+        if (x > n)
+          forwardEnd += 2;
+        else if (y > m)
+          forwardStart += 2;
+        else if (odd) {
+          final int other = offset + delta - k;
+          if (other >= 0 && other < backward.length && backward[other] != -1 && x >= n - backward[other]) {
+            split(aFrom, aTo, bFrom, bTo, aFrom + x, bFrom + y);
+            return;
+          }
+        }
+      }
+      for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+        int x = k == -d || k != d && backward[offset + k - 1] < backward[offset + k + 1] ? backward[offset + k + 1] : backward[offset + k - 1] + 1,
+            y = x - k;
+        for (; x < n && y < m && as[aTo - 1 - x] == bs[bTo - 1 - y]; ++y)
+          ++x;
+        backward[offset + k] = x;
+        if (x > n)
+          backwardEnd += 2;
+        else if (y > m)
+          backwardStart += 2;
+        else if (!odd) {
+          final int other = offset + delta - k;
+          if (other >= 0 && other < forward.length && forward[other] != -1 && forward[other] >= n - x) {
+            split(aFrom, aTo, bFrom, bTo, aFrom + forward[other], bFrom + forward[other] - (delta - k));
+            return;
+          }
+        }
+      }
+    }
+    emit(Operation.DELETE, n);
+    emit(Operation.INSERT, m);
+  }
+
+  private void compare(int aFrom, int aTo, int bFrom, int bTo) {
+    int prefix = 0, suffix = 0;
+    while (aFrom + prefix < aTo && bFrom + prefix < bTo && as[aFrom + prefix] == bs[bFrom + prefix])
+      ++prefix;
+    emit(Operation.KEEP, prefix);
+    aFrom += prefix;
+    bFrom += prefix;
+    while (aTo - suffix > aFrom && bTo - suffix > bFrom && as[aTo - 1 - suffix] == bs[bTo - 1 - suffix])
+      ++suffix;
+    aTo -= suffix;
+    bTo -= suffix;
+    if (aFrom == aTo)
+      emit(Operation.INSERT, bTo - bFrom);
+    else if (bFrom == bTo)
+      emit(Operation.DELETE, aTo - aFrom);
+    else
+      bisect(aFrom, aTo, bFrom, bTo);
+    emit(Operation.KEEP, suffix);
+  }
+
+  private void emit(@NotNull final Operation o, final int n) {
+    if (n == 0)
+      return;
+    if (o != operation) {
+      flush();
+      operation = o;
+    }
+    length += n;
+  }
+
+  private void flush() {
+    if (operation == null || length == 0)
+      return;
+    consumer.accept(new Run(operation, a, b, length));
+    a += operation == Operation.INSERT ? 0 : length;
+    b += operation == Operation.DELETE ? 0 : length;
+    length = 0;
+  }
+
+  private void go() {
+    compare(0, as.length, 0, bs.length);
+    flush();
+  }
+
+  private void split(final int aFrom, final int aTo, final int bFrom, final int bTo, final int aMiddle, final int bMiddle) {
+    compare(aFrom, aMiddle, bFrom, bMiddle);
+    compare(aMiddle, aTo, bMiddle, bTo);
+  }
+
+  /** Kinds of edits */
+  public enum Operation {
+    /** Elements common to both sequences */
+    KEEP('='),
+    /** Elements of the first sequence only */
+    DELETE('-'),
+    /** Elements of the second sequence only */
+    INSERT('+');
+    final char symbol;
+
+    Operation(final char symbol) {
+      this.symbol = symbol;
+    }
+  }
+
+  /** Consecutive elements subject to the same {@link Operation} */
+  public static final class Run {
+    /** What is done with these elements */
+    @NotNull public final Operation operation;
+    /** Index of the first of these elements in the first sequence, or, for
+     * {@link Operation#INSERT}, of the element they precede */
+    public final int a;
+    /** Index of the first of these elements in the second sequence, or, for
+     * {@link Operation#DELETE}, of the element they precede */
+    public final int b;
+    /** Number of elements in this run */
+    public final int length;
+
+    Run(@NotNull final Operation operation, final int a, final int b, final int length) {
+      this.operation = operation;
+      this.a = a;
+      this.b = b;
+      this.length = length;
+    }
+
+    @Override @NotNull public String toString() {
+      return operation.symbol + "" + length;
+    }
+  }
+
+  @SuppressWarnings("static-method") public static class TEST {
+    @NotNull private static int[] apply(@NotNull final int[] as, @NotNull final int[] bs, @NotNull final List<Run> rs) {
+      @NotNull final int[] $ = new int[bs.length];
+      int n = 0;
+      for (@NotNull final Run r : rs)
+        switch (r.operation) {
+          case KEEP:
+            for (int ¢ = 0; ¢ < r.length; ++¢)
+              $[n++] = as[r.a + ¢];
+            break;
+          case INSERT:
+            for (int ¢ = 0; ¢ < r.length; ++¢)
+              $[n++] = bs[r.b + ¢];
+            break;
+          default:
+            break;
+        }
+      azzert.that(n, is(bs.length));
+      return $;
+    }
+
+    private static int cost(@NotNull final List<Run> rs) {
+      int $ = 0;
+      for (@NotNull final Run ¢ : rs)
+        $ += ¢.operation == Operation.KEEP ? 0 : ¢.length;
+      return $;
+    }
+
+    @NotNull private static int[] random(@NotNull final Random r, final int n, final int alphabet) {
+      @NotNull final int[] $ = new int[n];
+      for (int ¢ = 0; ¢ < n; ++¢)
+        $[¢] = r.nextInt(alphabet);
+      return $;
+    }
+
+    @Test public void abcabba() {
+      @NotNull final int[] as = { 'A', 'B', 'C', 'A', 'B', 'B', 'A' }, bs = { 'C', 'B', 'A', 'B', 'A', 'C' };
+      azzert.that(distance(as, bs, 100), is(5));
+      azzert.that(cost(script(as, bs)), is(5));
+      assert Arrays.equals(bs, apply(as, bs, script(as, bs)));
+    }
+
+    @Test public void random() {
+      @NotNull final Random r = new Random(1);
+      for (int ¢ = 0; ¢ < 500; ++¢) {
+        @NotNull final int[] as = random(r, r.nextInt(100), 1 + r.nextInt(6)), bs = random(r, r.nextInt(100), 1 + r.nextInt(6));
+        final int $ = as.length + bs.length - 2 * LCS.length(as, bs);
+        azzert.that(distance(as, bs, Integer.MAX_VALUE), is($));
+        @NotNull final List<Run> rs = script(as, bs);
+        azzert.that(cost(rs), is($));
+        assert Arrays.equals(bs, apply(as, bs, rs));
+        for (int i = 1; i < rs.size(); ++i)
+          assert rs.get(i).operation != rs.get(i - 1).operation;
+        azzert.that(lcs(as, bs), is(LCS.length(as, bs)));
+      }
+    }
+
+    @Test public void cutoff() {
+      @NotNull final int[] as = { 1, 2, 3, 4, 5 }, bs = { 1, 9, 3, 9, 5 };
+      azzert.that(distance(as, bs, 4), is(4));
+      azzert.that(distance(as, bs, 3), is(-1));
+      assert !script(as, bs, 3, λ -> azzert.fail());
+      assert script(as, bs, 4, λ -> {
+        // Runs are consumed
+      });
+    }
+
+    @Test public void empty() {
+      azzert.that(script(new int[0], new int[0]).size(), is(0));
+      azzert.that(script(new int[0], new int[] { 1, 2 }) + "", is("[+2]"));
+      azzert.that(script(new int[] { 1, 2 }, new int[0]) + "", is("[-2]"));
+      azzert.that(distance(new int[0], new int[0], 0), is(0));
+    }
+
+    @Test public void lines() throws IOException {
+      @NotNull final String text = "a b\nC\n\nd";
+      assert Arrays.equals(LCS.hash(Lines.scatter(text)), Diff.lines(new StringReader(text)));
+      azzert.that(distance("a\nb\nc", "a\nB\nc\nd", 10), is(1));
+    }
+
+    @Test public void nearlyIdentical() {
+      @NotNull final Random r = new Random(2);
+      @NotNull final int[] as = random(r, 1_000_000, Integer.MAX_VALUE), bs = as.clone();
+      for (int ¢ = 0; ¢ < 100; ++¢)
+        bs[r.nextInt(bs.length)] = -1;
+      final int $ = distance(as, bs, 1000);
+      assert $ > 0 && $ <= 200;
+      @NotNull final List<Run> rs = script(as, bs);
+      azzert.that(cost(rs), is($));
+      assert Arrays.equals(bs, apply(as, bs, rs));
+    }
+  }
+}
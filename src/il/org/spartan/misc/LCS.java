@@ -13,6 +13,7 @@ import org.junit.runners.*;
 
 import il.org.spartan.*;
 import il.org.spartan.text.*;
+import nano.ly.*;
 
 /** Utility functions for computing the "Longest Common Subsequence" for two
  * textual files. Similar to the famous "diff" utility, particularly when used
@@ -20,6 +21,14 @@ import il.org.spartan.text.*;
  * line and then converting it to lower case; further, we use the hashCode of
  * the line, so that in certain cases, the LCS may be a bit inaccurate. These
  * case are extremely rare.
+ * <p>
+ * The length of the LCS is computed by the bit-parallel algorithm of Allison
+ * and Dix, as formulated by Hyyr&ouml;, in <i>O(nm/w)</i> time and
+ * <i>O(n+m)</i> space, where <i>w</i> is the number of bits in a
+ * <code><b>long</b></code>; {@link #alignment(int[], int[])} recovers the LCS
+ * itself, by Hirschberg's divide and conquer, in linear space as well. The
+ * memoizing recursion over the full dynamic programming matrix is kept for
+ * reference only; its matrix is allocated on first use.
  * @author Yossi Gil
  * @since 2014-06-17 */
 public class LCS {
@@ -41,24 +50,288 @@ public class LCS {
     return new LCS(ssa, ssb).length();
   }
 
+  /** @param as JD
+   * @param bs JD
+   * @return an array, in which the cell of every element of <code>as</code>
+   *         which is in the LCS holds the index of the element of
+   *         <code>bs</code> it is matched with, while all other cells hold
+   *         <code>-1</code> */
+  @NotNull public static int[] alignment(@NotNull final int[] as, @NotNull final int[] bs) {
+    @NotNull final int[] $ = new int[as.length];
+    Arrays.fill($, -1);
+    @NotNull final int[][] ids = ids(as, bs);
+    hirschberg(ids[0], 0, as.length, ids[1], 0, bs.length, $, new int[as.length][], new long[as.length][]);
+    return $;
+  }
+
+  /** Bit-parallel computation of the length of the LCS, see
+   * {@link #bitParallel(int[], int, int, int[], int, int, boolean, int[], int[][], long[][])}
+   * @param as JD
+   * @param bs JD
+   * @return the length of the LCS of these two arrays */
+  static int bitParallel(@NotNull final int[] as, @NotNull final int[] bs) {
+    @NotNull final int[][] ids = ids(as, bs);
+    return bitParallel(ids[0], 0, as.length, ids[1], 0, bs.length, false, null, new int[as.length][], new long[as.length][]);
+  }
+
+  /** Dynamic programming, keeping only two rows of the matrix
+   * @param as JD
+   * @param bs JD
+   * @return the length of the LCS of these two arrays */
+  static int twoRows(@NotNull final int[] as, @NotNull final int[] bs) {
+    @NotNull final int[] $ = new int[bs.length + 1];
+    lengths(as, 0, as.length, bs, 0, bs.length, $);
+    return $[bs.length];
+  }
+
   static double distance(@NotNull final String s1, @NotNull final String s2) {
-    return 2. * LCS.length(s1, s2) / (s1.length() + s2.length());
+    return 2. * Diff.lcs(hash(Lines.scatter(s1)), hash(Lines.scatter(s2))) / (s1.length() + s2.length());
   }
 
-  private static int hash(@NotNull final String ¢) {
+  static int hash(@NotNull final String ¢) {
     return ¢.replaceAll("\\s+", "").toLowerCase().hashCode();
   }
 
-  @NotNull private static int[] hash(@NotNull final String[] ss) {
+  @NotNull static int[] hash(@NotNull final String[] ss) {
     @NotNull final int @NonNull [] $ = new int @NonNull [ss.length];
     for (int ¢ = 0; ¢ < $.length; ++¢)
       $[¢] = hash(ss[¢]);
     return $;
   }
 
+  /** Hirschberg's algorithm: the LCS of a range of <code>as</code> and a range
+   * of <code>bs</code> is made of the LCS of the first half of the range of
+   * <code>as</code> with a prefix of the range of <code>bs</code>, and of the
+   * LCS of the second half with the rest of the range of <code>bs</code>; the
+   * split point of <code>bs</code> is found by a forward pass over the first
+   * half, and a backward pass over the second half. Common prefixes and
+   * suffixes are matched directly. Recursion depth is logarithmic. */
+  private static void hirschberg(@NotNull final int[] as, int aFrom, int aTo, @NotNull final int[] bs, int bFrom, int bTo,
+      @NotNull final int[] $, @NotNull final int[][] positions, @NotNull final long[][] masks) {
+    for (; aFrom < aTo && bFrom < bTo && as[aFrom] == bs[bFrom]; ++aFrom, ++bFrom)
+      $[aFrom] = bFrom;
+    for (; aFrom < aTo && bFrom < bTo && as[aTo - 1] == bs[bTo - 1]; --aTo, --bTo)
+      $[aTo - 1] = bTo - 1;
+    if (aFrom >= aTo || bFrom >= bTo)
+      return;
+    if (aTo - aFrom == 1) {
+      for (int ¢ = bFrom; ¢ < bTo; ++¢)
+        if (bs[¢] == as[aFrom]) {
+          $[aFrom] = ¢;
+          return;
+        }
+      return;
+    }
+    final int aMiddle = (aFrom + aTo) >>> 1;
+    @NotNull final int[] forward = new int[bTo - bFrom + 1], backward = new int[bTo - bFrom + 1];
+    bitParallel(as, aFrom, aMiddle, bs, bFrom, bTo, false, forward, positions, masks);
+    bitParallel(as, aMiddle, aTo, bs, bFrom, bTo, true, backward, positions, masks);
+    int split = 0;
+    for (int ¢ = 1; ¢ <= bTo - bFrom; ++¢)
+      if (forward[¢] + backward[¢] > forward[split] + backward[split])
+        split = ¢;
+    hirschberg(as, aFrom, aMiddle, bs, bFrom, bFrom + split, $, positions, masks);
+    hirschberg(as, aMiddle, aTo, bs, bFrom + split, bTo, $, positions, masks);
+  }
+
+  /** Fills <code>$[j]</code> with the length of the LCS of a range of
+   * <code>as</code> and the first <code>j</code> elements of a range of
+   * <code>bs</code>, using one row and a few scalars */
+  private static void lengths(@NotNull final int[] as, final int aFrom, final int aTo, @NotNull final int[] bs, final int bFrom, final int bTo,
+      @NotNull final int[] $) {
+    Arrays.fill($, 0, bTo - bFrom + 1, 0);
+    for (int i = aFrom; i < aTo; ++i)
+      for (int j = 1, diagonal = 0; j <= bTo - bFrom; ++j) {
+        final int up = $[j];
+        $[j] = as[i] == bs[bFrom + j - 1] ? diagonal + 1 : Math.max(up, $[j - 1]);
+        diagonal = up;
+      }
+  }
+
+  /** The bit-parallel algorithm of Allison and Dix, as formulated by Hyyr&ouml;:
+   * bit <i>i</i> of a vector is cleared once the LCS of the part of the text
+   * scanned so far with the first <i>i+1</i> elements of the pattern is longer
+   * than that with the first <i>i</i> elements, so the length of the LCS is
+   * the number of cleared bits. An element of the text which occurs in the
+   * pattern at least once per word of the vector updates all words, with a
+   * vector of its matches, made on first use. Any other element sets, and then
+   * clears, its matches from the list of its positions in the pattern, and
+   * updates only the words of its matches, and those where its carries stop: a
+   * word without matches changes only if a carry reaches it, and even then not
+   * if it is all ones, in which case the carry goes through it. Long patterns
+   * whose elements are mostly distinct are therefore scanned in about linear
+   * time.
+   * @param as the pattern is the range <code>as[aFrom]...as[aTo-1]</code>, of
+   *        ids, as made by {@link #ids(int[], int[])}
+   * @param bs the text is the range <code>bs[bFrom]...bs[bTo-1]</code>, of
+   *        ids, as made by {@link #ids(int[], int[])}
+   * @param backward whether both the pattern and the text are reversed
+   * @param $ if not <code><b>null</b></code>, filled, as in
+   *        {@link #lengths(int[], int, int, int[], int, int, int[])}, with the
+   *        length of the LCS of the pattern with every prefix of the text, or,
+   *        if backward, with every suffix, indexed by its first element
+   * @param positions indexed by id, for the positions of each id in the
+   *        pattern, as the number of its occurrences followed by their
+   *        positions; all numbers of occurrences are 0, or the array is
+   *        missing, on entry and on exit
+   * @param masks indexed by id, for the vector of matches of each id which
+   *        occurs often in the pattern; all missing on entry and on exit
+   * @return the length of the LCS of the pattern and the text */
+  private static int bitParallel(@NotNull final int[] as, final int aFrom, final int aTo, @NotNull final int[] bs, final int bFrom, final int bTo,
+      final boolean backward, final int[] $, @NotNull final int[][] positions, @NotNull final long[][] masks) {
+    final int m = aTo - aFrom, n = bTo - bFrom;
+    if ($ != null)
+      $[backward ? n : 0] = 0;
+    if (m <= 0)
+      return 0;
+    for (int ¢ = aFrom; ¢ < aTo; ++¢) {
+      int[] ps = positions[as[¢]];
+      if (ps == null)
+        positions[as[¢]] = ps = new int[2];
+      else if (ps[0] + 1 == ps.length)
+        positions[as[¢]] = ps = Arrays.copyOf(ps, 2 * ps.length);
+      ps[++ps[0]] = backward ? aTo - 1 - ¢ : ¢ - aFrom;
+    }
+    @NotNull final long[] v = new long[(m + 63) >>> 6], match = new long[v.length], changed = new long[(v.length + 63) >>> 6];
+    Arrays.fill(v, -1L);
+    int count = 0;
+    for (int k = 0; k < n; ++k) {
+      final int id = bs[backward ? bTo - 1 - k : bFrom + k];
+      final int[] ps = id < 0 ? null : positions[id];
+      if (ps != null && ps[0] > 0)
+        count += ps[0] < v.length ? step(v, changed, match, ps, backward)
+            : step(v, changed, masks[id] != null ? masks[id] : (masks[id] = mask(ps, v.length)));
+      if ($ != null)
+        $[backward ? n - 1 - k : k + 1] = count;
+    }
+    for (int ¢ = aFrom; ¢ < aTo; ++¢) {
+      positions[as[¢]][0] = 0;
+      masks[as[¢]] = null;
+    }
+    return count;
+  }
+
+  /** Add, with a carry, the matched bits of a word of the vector of
+   * {@link #bitParallel(int[], int, int, int[], int, int, boolean, int[], int[][], long[][])}
+   * to it, keeping track of the words which are not all ones
+   * @param v the vector
+   * @param changed bit <i>w</i> is set if word <i>w</i> of the vector is not
+   *        all ones
+   * @param ¢ index of a word of the vector
+   * @param match the matched bits of this word
+   * @param carry 0 or 1
+   * @return the carry out of this word */
+  private static long add(@NotNull final long[] v, @NotNull final long[] changed, final int ¢, final long match, final long carry) {
+    final long old = v[¢], sum = old + (old & match), $ = sum + carry;
+    v[¢] = $ | old & ~match;
+    if (v[¢] != -1L)
+      changed[¢ >>> 6] |= 1L << ¢;
+    else
+      changed[¢ >>> 6] &= ~(1L << ¢);
+    return Long.compareUnsigned(sum, old) < 0 || Long.compareUnsigned($, sum) < 0 ? 1 : 0;
+  }
+
+  /** @param ps the number of positions, followed by positions
+   * @param length number of words
+   * @return a vector of this length, whose bits at these positions are set */
+  @NotNull private static long[] mask(@NotNull final int[] ps, final int length) {
+    @NotNull final long[] $ = new long[length];
+    for (int ¢ = 1; ¢ <= ps[0]; ++¢)
+      $[ps[¢] >>> 6] |= 1L << ps[¢];
+    return $;
+  }
+
+  /** A step of
+   * {@link #bitParallel(int[], int, int, int[], int, int, boolean, int[], int[][], long[][])}
+   * with an element of the text which occurs often in the pattern, updating
+   * all words
+   * @return the number of bits of the vector cleared by this step */
+  private static int step(@NotNull final long[] v, @NotNull final long[] changed, @NotNull final long[] match) {
+    int $ = 0;
+    for (int ¢ = 0, carry = 0; ¢ < v.length; ++¢) {
+      $ += Long.bitCount(v[¢]);
+      carry = (int) add(v, changed, ¢, match[¢], carry);
+      $ -= Long.bitCount(v[¢]);
+    }
+    return $;
+  }
+
+  /** A step of
+   * {@link #bitParallel(int[], int, int, int[], int, int, boolean, int[], int[][], long[][])}
+   * with an element of the text which occurs rarely in the pattern, updating
+   * only the words of its matches, and those where its carries stop
+   * @param match all zeros, on entry and on exit
+   * @param ps the positions of the element in the pattern, as in
+   *        {@link #word(int[], int, boolean)}
+   * @return the number of bits of the vector cleared by this step */
+  private static int step(@NotNull final long[] v, @NotNull final long[] changed, @NotNull final long[] match, @NotNull final int[] ps,
+      final boolean backward) {
+    for (int ¢ = 1; ¢ <= ps[0]; ++¢)
+      match[ps[¢] >>> 6] |= 1L << ps[¢];
+    int $ = 0;
+    for (int ¢ = word(ps, 0, backward), j = 1, carry = 0;;) {
+      $ += Long.bitCount(v[¢]);
+      carry = (int) add(v, changed, ¢, match[¢], carry);
+      $ -= Long.bitCount(v[¢]);
+      for (; j < ps[0] && word(ps, j, backward) <= ¢; ++j)
+        ; // Matches in this word
+      final int next = j < ps[0] ? word(ps, j, backward) : Integer.MAX_VALUE;
+      if ((¢ = carry == 0 ? next : Math.min(next, next(changed, ¢ + 1))) == Integer.MAX_VALUE)
+        break;
+    }
+    for (int ¢ = 1; ¢ <= ps[0]; ++¢)
+      match[ps[¢] >>> 6] = 0;
+    return $;
+  }
+
+  /** @param bits a bit set
+   * @param from a bit index
+   * @return the index of the first set bit from this index onward, or
+   *         {@link Integer#MAX_VALUE} if there is none */
+  private static int next(@NotNull final long[] bits, final int from) {
+    for (int ¢ = from >>> 6; ¢ < bits.length; ++¢) {
+      final long $ = ¢ == from >>> 6 ? bits[¢] & -1L << from : bits[¢];
+      if ($ != 0)
+        return ¢ << 6 | Long.numberOfTrailingZeros($);
+    }
+    return Integer.MAX_VALUE;
+  }
+
+  /** @param ps the number of positions, followed by positions, in ascending
+   *        order, or, if backward, in descending order
+   * @param j an index into these positions, in ascending order
+   * @return the word of the <code>j</code>th smallest position */
+  private static int word(@NotNull final int[] ps, final int j, final boolean backward) {
+    return (backward ? ps[ps[0] - j] : ps[1 + j]) >>> 6;
+  }
+
+  /** Replace the elements of two arrays by dense ids, so that elements of the
+   * first are replaced by ids in the range <code>0...as.length-1</code>, equal
+   * for equal elements, and elements of the second are replaced by the id of
+   * an equal element of the first, or by -1 if there is none
+   * @param as JD
+   * @param bs JD
+   * @return the ids of <code>as</code>, followed by those of
+   *         <code>bs</code> */
+  @NotNull private static int[][] ids(@NotNull final int[] as, @NotNull final int[] bs) {
+    @NotNull final int[] values = as.clone();
+    Arrays.sort(values);
+    int distinct = 0;
+    for (int ¢ = 0; ¢ < values.length; ++¢)
+      if (¢ == 0 || values[¢] != values[¢ - 1])
+        values[distinct++] = values[¢];
+    @NotNull final int[][] $ = { new int[as.length], new int[bs.length] };
+    for (int ¢ = 0; ¢ < as.length; ++¢)
+      $[0][¢] = Arrays.binarySearch(values, 0, distinct, as[¢]);
+    for (int ¢ = 0; ¢ < bs.length; ++¢)
+      $[1][¢] = Math.max(-1, Arrays.binarySearch(values, 0, distinct, bs[¢]));
+    return $;
+  }
+
   @NotNull private final int[] A_s;
   @NotNull private final int[] B_s;
-  @NotNull private final int[][] length;
+  /** Memoization matrix of {@link #length(int, int)}, allocated on demand */
+  private int[][] length;
 
   /** Instantiates this class.
    * @param as JD
@@ -66,9 +339,6 @@ public class LCS {
   public LCS(@NotNull final int[] as, @NotNull final int[] bs) {
     A_s = as;
     B_s = bs;
-    length = new int @NonNull [as.length][];
-    for (int ¢ = 0; ¢ < as.length; ++¢)
-      Arrays.fill(length[¢] = new int[bs.length], -1);
   }
 
   /** Instantiates this class.
@@ -89,8 +359,13 @@ public class LCS {
     return i < 0 || j < 0 ? 0 : threeWayDynamicProgramingStep(i, j);
   }
 
+  /** @return the indices of the LCS, see {@link #alignment(int[], int[])} */
+  @NotNull public int[] alignment() {
+    return alignment(A_s, B_s);
+  }
+
   private int length() {
-    return A_s.length <= 0 || B_s.length <= 0 ? 0 : length(A_s.length - 1, B_s.length - 1); //
+    return bitParallel(A_s, B_s);
   }
 
   /** Returns the length of the LCS of two prefixes of the current strings,
@@ -104,6 +379,11 @@ public class LCS {
   }
 
   private int obtainLength(final int i, final int j) {
+    if (length == null) {
+      length = new int @NonNull [A_s.length][];
+      for (int ¢ = 0; ¢ < A_s.length; ++¢)
+        Arrays.fill(length[¢] = new int[B_s.length], -1);
+    }
     return length[i][j] != -1 ? length[i][j] : (length[i][j] = compute(i, j));
   }
 
@@ -111,7 +391,6 @@ public class LCS {
     return max(length(i - 1, j), length(i, j - 1), length(i - 1, j - 1) + as.bit(A_s[i] == B_s[j]));
   }
 
-
   @SuppressWarnings({ "static-method", "synthetic-access" }) //
   public static class TEST {
     /** Dumb implementation, yeah, I know. --yg. */
@@ -122,6 +401,71 @@ public class LCS {
       return Lines.scatter(as.string($));
     }
 
+    @NotNull private static int[] random(final Random r, final int n, final int alphabet) {
+      @NotNull final int[] $ = new int[n];
+      for (int ¢ = 0; ¢ < n; ++¢)
+        $[¢] = r.nextInt(alphabet);
+      return $;
+    }
+
+    private static void validAlignment(@NotNull final int[] as, @NotNull final int[] bs, final int length) {
+      @NotNull final int[] $ = alignment(as, bs);
+      int n = 0;
+      for (int i = 0, previous = -1; i < as.length; ++i)
+        if ($[i] != -1) {
+          assert $[i] > previous;
+          azzert.that(bs[$[i]], is(as[i]));
+          previous = $[i];
+          ++n;
+        }
+      azzert.that(n, is(length));
+    }
+
+    @Test public void randomAgreesWithReference() {
+      @NotNull final Random r = new Random(1);
+      for (int ¢ = 0; ¢ < 300; ++¢) {
+        @NotNull final int[] as = random(r, r.nextInt(150), 1 + r.nextInt(8)), bs = random(r, r.nextInt(150), 1 + r.nextInt(8));
+        final int $ = new LCS(as, bs).length(as.length - 1, bs.length - 1);
+        azzert.that(twoRows(as, bs), is($));
+        azzert.that(bitParallel(as, bs), is($));
+        azzert.that(length(as, bs), is($));
+        validAlignment(as, bs, $);
+      }
+    }
+
+    @Test public void wordBoundaries() {
+      @NotNull final Random r = new Random(2);
+      for (final int n : new int[] { 63, 64, 65, 127, 128, 129 }) {
+        @NotNull final int[] as = random(r, n, 3), bs = random(r, 200, 3);
+        azzert.that(bitParallel(as, bs), is(twoRows(as, bs)));
+        azzert.that(bitParallel(bs, as), is(twoRows(as, bs)));
+      }
+    }
+
+    @Test public void skewedAgreesWithTwoRows() {
+      @NotNull final Random r = new Random(4);
+      for (int i = 0; i < 10; ++i) {
+        @NotNull final int[] as = new int[1000 + r.nextInt(2000)], bs = new int[1000 + r.nextInt(2000)];
+        for (int ¢ = 0; ¢ < as.length; ++¢)
+          as[¢] = r.nextBoolean() ? r.nextInt(4) : r.nextInt(5000);
+        for (int ¢ = 0; ¢ < bs.length; ++¢)
+          bs[¢] = r.nextBoolean() ? r.nextInt(4) : r.nextInt(5000);
+        final int $ = twoRows(as, bs);
+        azzert.that(bitParallel(as, bs), is($));
+        validAlignment(as, bs, $);
+      }
+    }
+
+    @Test public void largeInputs() {
+      @NotNull final Random r = new Random(3);
+      @NotNull final int[] as = random(r, 100_000, 100_000), bs = as.clone();
+      for (int ¢ = 0; ¢ < 1000; ++¢)
+        bs[r.nextInt(bs.length)] = -1;
+      final int $ = length(as, bs);
+      assert $ >= as.length - 1000;
+      validAlignment(as, bs, $);
+    }
+
     @Test public void chars2LinesSanity() {
       azzert.that(chars2Lines("").length, is(0));
     }
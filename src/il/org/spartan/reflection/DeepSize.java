@@ -5,8 +5,53 @@ import java.util.*;
 
 import org.jetbrains.annotations.*;
 
-/** This class computes the deep size of any object. */
+/** This class computes the deep size of any object, i.e., the sum of the
+ * {@linkplain ShallowSize shallow sizes} of all objects reachable from it,
+ * each counted once. Objects are told apart by identity, never by
+ * {@link Object#equals(Object)}, and the object graph is traversed with an
+ * explicit stack, so that long linked structures are sized as well as wide
+ * ones. The reference fields of each class are found once, and cached.
+ * <p>
+ * The size of each object is computed by a {@link MemoryModel}, which is, by
+ * default, that of {@link ShallowSize}. */
 public class DeepSize {
+  /** @param ¢ an arbitrary object
+   * @return the number of instances, and the total size, of the objects of each
+   *         class reachable from this object, ordered by decreasing size */
+  @NotNull public static Map<Class<?>, Tally> byClass(@Nullable final Object ¢) {
+    return byClass(¢, MemoryModel.FIXED);
+  }
+
+  /** @param o an arbitrary object
+   * @param m how the size of each object is computed
+   * @return the number of instances, and the total size, of the objects of each
+   *         class reachable from this object, ordered by decreasing size */
+  @NotNull public static Map<Class<?>, Tally> byClass(@Nullable final Object o, @NotNull final MemoryModel m) {
+    @NotNull final Visitor v = new Visitor(m);
+    v.tallies = new HashMap<>();
+    v.size(o);
+    @NotNull final List<Map.Entry<Class<?>, Tally>> es = new ArrayList<>(v.tallies.entrySet());
+    es.sort((λ1, λ2) -> Long.compare(λ2.getValue().bytes, λ1.getValue().bytes));
+    @NotNull final Map<Class<?>, Tally> $ = new LinkedHashMap<>();
+    for (@NotNull final Map.Entry<Class<?>, Tally> e : es)
+      $.put(e.getKey(), e.getValue());
+    return $;
+  }
+
+  /** @param ¢ an arbitrary object
+   * @return the sum of sizes of all objects reachable from this object */
+  public static long bytes(@Nullable final Object ¢) {
+    return new Visitor().size(¢);
+  }
+
+  /** @param o an arbitrary object
+   * @param m how the size of each object is computed, e.g.,
+   *        {@link MemoryModel#current()}
+   * @return the sum of sizes of all objects reachable from this object */
+  public static long bytes(@Nullable final Object o, @NotNull final MemoryModel m) {
+    return new Visitor(m).size(o);
+  }
+
   public static int of(@NotNull final boolean it[]) {
     return ShallowSize.of(it);
   }
@@ -35,24 +80,66 @@ public class DeepSize {
     return ShallowSize.of(it);
   }
 
-  public static int of(final Object ¢) {
-    return new Visitor().size(¢);
+  /** @param ¢ an arbitrary object
+   * @return the sum of sizes of all objects reachable from this object, or
+   *         {@link Integer#MAX_VALUE} if it is greater
+   * @deprecated use {@link #bytes(Object)}, which does not overflow */
+  @Deprecated public static int of(final Object ¢) {
+    return (int) Math.min(Integer.MAX_VALUE, bytes(¢));
   }
 
   public static int of(@NotNull final short it[]) {
     return ShallowSize.of(it);
   }
 
-  static class Visitor {
-    @NotNull private static Class<?>[] nonReference = new Class<?>[] { //
-        boolean.class, char.class, void.class, //
-        boolean[].class, char[].class, //
-        byte.class, short.class, int.class, long.class, //
-        byte[].class, short[].class, int[].class, long[].class, //
-        float.class, double.class, //
-        float[].class, double[].class,//
+  /** Instances and bytes of a class, as found by {@link DeepSize#byClass} */
+  public static final class Tally {
+    /** Number of instances */
+    public long instances;
+    /** Sum of the shallow sizes of these instances */
+    public long bytes;
+
+    @Override @NotNull public String toString() {
+      return instances + " instances, " + bytes + " bytes";
+    }
+  }
+
+  /** What the traversal needs to know about a class: the type of its
+   * elements, if it is an array, and its instance fields which hold references;
+   * fields are made accessible once */
+  static final class Layout {
+    private static final ClassValue<Layout> layouts = new ClassValue<Layout>() {
+      @Override @NotNull protected Layout computeValue(@NotNull final Class<?> ¢) {
+        return new Layout(¢);
+      }
     };
 
+    @NotNull static Layout of(@NotNull final Class<?> ¢) {
+      return layouts.get(¢);
+    }
+
+    /** Type of array elements, or <code><b>null</b></code> if the class is not
+     * an array */
+    @Nullable final Class<?> component;
+    /** Whether the class is an array of references */
+    final boolean references;
+    @NotNull final Field[] fields;
+
+    private Layout(@NotNull final Class<?> c) {
+      component = c.getComponentType();
+      references = component != null && !component.isPrimitive();
+      @NotNull final List<Field> $ = new ArrayList<>();
+      if (component == null)
+        for (@NotNull final Field ¢ : Visitor.getAllFields(c))
+          if (!Modifier.isStatic(¢.getModifiers()) && !¢.getType().isPrimitive()) {
+            ¢.setAccessible(true);
+            $.add(¢);
+          }
+      fields = $.toArray(new Field[$.size()]);
+    }
+  }
+
+  static class Visitor {
     @NotNull static ArrayList<Field> getAllFields(final Class<?> c) {
       @NotNull final ArrayList<Field> $ = new ArrayList<>();
       for (Class<?> p = c; p != null; p = p.getSuperclass())
@@ -62,7 +149,6 @@ public class DeepSize {
     }
 
     private static Object get(@NotNull final Field $, final Object o) {
-      $.setAccessible(true);
       try {
         return $.get(o);
       } catch (@NotNull final IllegalAccessException | IllegalArgumentException ¢) {
@@ -70,42 +156,63 @@ public class DeepSize {
       }
     }
 
-    private static boolean isReference(@NotNull final Field f) {
-      final Class<?> c = f.getType();
-      for (final Class<?> p : nonReference)
-        if (p == c)
-          return false;
-      return true;
+    final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+    @NotNull private final ArrayDeque<Object> pending = new ArrayDeque<>();
+    @Nullable Map<Class<?>, Tally> tallies;
+    @NotNull private final MemoryModel model;
+
+    Visitor() {
+      this(MemoryModel.FIXED);
+    }
+
+    Visitor(@NotNull final MemoryModel model) {
+      this.model = model;
     }
 
-    final Set<Object> seen = new HashSet<>();
+    public long size(@Nullable final Object ¢) {
+      push(¢);
+      return drain();
+    }
 
-    public int size(@Nullable final Object ¢) {
-      if (seen.contains(¢))
+    long size(final Object o, @NotNull final Class<?> c) {
+      if (c.isArray())
+        return size(c.getComponentType().isPrimitive() ? o : Object[].class.cast(o));
+      if (!seen.add(o))
         return 0;
-      seen.add(¢);
-      return ¢ == null ? 0 : size(¢, ¢.getClass());
+      final long $ = count(o, Layout.of(o.getClass()));
+      for (@NotNull final Field ¢ : Layout.of(c).fields)
+        push(get(¢, o));
+      return $ + drain();
     }
 
-    int size(final Object o, @NotNull final Class<?> c) {
-      if (c.isArray())
-        return size(Object[].class.cast(o));
-      int $ = ShallowSize.of(o);
-      for (@NotNull final Field ¢ : getAllFields(c))
-        $ += size(o, ¢);
-      // System.out.println("$ is:" + $);
+    private long count(@NotNull final Object o, @NotNull final Layout l) {
+      final long $ = l.component == null ? model.instance(o.getClass()) : model.array(l.component, Array.getLength(o));
+      if (tallies != null) {
+        final Tally t = tallies.computeIfAbsent(o.getClass(), λ -> new Tally());
+        ++t.instances;
+        t.bytes += $;
+      }
       return $;
     }
 
-    private int size(final Object o, @NotNull final Field f) {
-      return Modifier.isStatic(f.getModifiers()) || !isReference(f) ? 0 : size(get(f, o));
+    private long drain() {
+      long $ = 0;
+      while (!pending.isEmpty()) {
+        @NotNull final Object o = pending.pop();
+        @NotNull final Layout l = Layout.of(o.getClass());
+        $ += count(o, l);
+        if (l.references)
+          for (final Object ¢ : (Object[]) o)
+            push(¢);
+        for (@NotNull final Field ¢ : l.fields)
+          push(get(¢, o));
+      }
+      return $;
     }
 
-    private int size(@NotNull final Object[] os) {
-      int $ = ShallowSize.of(os);
-      for (final Object ¢ : os)
-        $ += size(¢);
-      return $;
+    private void push(@Nullable final Object ¢) {
+      if (¢ != null && seen.add(¢))
+        pending.push(¢);
     }
   }
 }
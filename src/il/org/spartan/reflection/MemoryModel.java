@@ -0,0 +1,482 @@
+package il.org.spartan.reflection;
+
+import java.lang.annotation.*;
+import java.lang.management.*;
+import java.lang.reflect.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+
+import com.sun.management.*;
+
+/** A strategy for computing the shallow size of objects, as used by
+ * {@link DeepSize}.
+ * <p>
+ * {@link #FIXED} is the simple model of {@link ShallowSize}, while
+ * {@link #current()} is a model of the layout of objects by the running
+ * HotSpot JVM, taking into account its word size, whether references and class
+ * pointers are compressed, the alignment of objects, and the order in which
+ * fields are packed. */
+public interface MemoryModel {
+  /** The model of {@link ShallowSize} */
+  MemoryModel FIXED = new MemoryModel() {
+    private final ClassValue<Integer> sizes = new ClassValue<Integer>() {
+      @Override @NotNull protected Integer computeValue(@NotNull final Class<?> ¢) {
+        return Integer.valueOf(ShallowSize.of(¢));
+      }
+    };
+
+    @Override public long array(@NotNull final Class<?> component, final int length) {
+      return ShallowSize.arraySize(length, ShallowSize.size(component));
+    }
+
+    @Override public long instance(@NotNull final Class<?> ¢) {
+      return sizes.get(¢).intValue();
+    }
+  };
+
+  /** @return a model of the running JVM */
+  @NotNull static MemoryModel current() {
+    return HotSpot.CURRENT;
+  }
+
+  /** @param component type of the elements of an array
+   * @param length number of elements of an array
+   * @return the size of such an array */
+  long array(@NotNull Class<?> component, int length);
+
+  /** @param c a class, which is neither an array, nor an interface, nor a
+   *        primitive type
+   * @return the size of instances of this class */
+  long instance(@NotNull Class<?> c);
+
+  /** @param ¢ an arbitrary object
+   * @return the shallow size of this object */
+  default long of(@Nullable final Object ¢) {
+    return ¢ == null ? 0 : !¢.getClass().isArray() ? instance(¢.getClass()) : array(¢.getClass().getComponentType(), Array.getLength(¢));
+  }
+
+  /** Layout of objects by HotSpot: an object starts with a mark word, followed
+   * by a class pointer, which is four bytes if compressed; arrays add four
+   * bytes of length. Objects are padded to the object alignment.
+   * <p>
+   * Up to JDK 14, fields of each class in the hierarchy follow those of its
+   * superclass, ordered by decreasing size, with references last; if a long or
+   * a double must be aligned, the gap before it is filled with smaller fields.
+   * A few core classes, whose field offsets are known to the JVM, put references
+   * first, and leave gaps unfilled; fields which the JVM hides from reflection
+   * are accounted for only in {@link Throwable}.
+   * <p>
+   * From JDK 15 on, fields are {@linkplain #fillsHoles placed} one by one,
+   * primitives by decreasing size, and then references, each in the smallest
+   * gap it fits, including gaps left by superclasses, or else at the end. From
+   * JDK 21 on, fields which the JVM injects into {@link Thread} are accounted
+   * for as well. */
+  final class HotSpot implements MemoryModel {
+    /** The configuration of the running JVM */
+    @NotNull public static final HotSpot CURRENT = detect();
+    /** Padding around groups of contended fields */
+    private static final int CONTENDED_PADDING = 128;
+    private static final Set<String> referencesFirst = new HashSet<>(Arrays.asList( //
+        "java.lang.AssertionStatusDirectives", "java.lang.Class", "java.lang.ClassLoader", "java.lang.ref.Reference",
+        "java.lang.ref.SoftReference", "java.lang.StackTraceElement", "java.lang.String", "java.lang.Throwable", "java.lang.Boolean",
+        "java.lang.Character", "java.lang.Float", "java.lang.Double", "java.lang.Byte", "java.lang.Short", "java.lang.Integer",
+        "java.lang.Long"));
+    /** References which core classes hold before their other fields, and which
+     * some versions of the JVM hide from reflection */
+    private static final Map<String, String> hiddenReferences = Collections.singletonMap("java.lang.Throwable", "backtrace");
+    /** Types of the fields which the JVM, from JDK 21 on, injects into
+     * {@link Thread}, where a pointer is a <code><b>long</b></code> */
+    private static final List<Class<?>> injected = Arrays.asList(long.class, int.class, boolean.class, short.class);
+
+    /** @return the configuration of the running JVM, as reported by its
+     *         diagnostic bean; if none is found, a 64 bits JVM, with compressed
+     *         references, is assumed */
+    @NotNull public static HotSpot detect() {
+      final boolean fillsHoles = version() >= 15;
+      final int wordSize = "32".equals(System.getProperty("sun.arch.data.model")) ? 4 : 8;
+      if (wordSize == 4)
+        return new HotSpot(4, false, false, 8, fillsHoles);
+      try {
+        @NotNull final HotSpotDiagnosticMXBean b = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+        final boolean compressedOops = Boolean.parseBoolean(b.getVMOption("UseCompressedOops").getValue()),
+            compressedClassPointers = Boolean.parseBoolean(b.getVMOption("UseCompressedClassPointers").getValue());
+        return new HotSpot(8, compressedOops, compressedClassPointers && (compressedOops || fillsHoles),
+            Integer.parseInt(b.getVMOption("ObjectAlignmentInBytes").getValue()), fillsHoles);
+      } catch (@NotNull final RuntimeException | LinkageError ¢) {
+        return new HotSpot(8, true, true, 8, fillsHoles);
+      }
+    }
+
+    /** @return the feature version of the running JVM, e.g., 8, 11 or 17 */
+    static int version() {
+      final String $ = System.getProperty("java.specification.version", "1.8");
+      try {
+        return Integer.parseInt($.startsWith("1.") ? $.substring(2) : $);
+      } catch (@NotNull final NumberFormatException __) {
+        return 8;
+      }
+    }
+
+    private static int align(final int size, final int alignment) {
+      return (size + alignment - 1) / alignment * alignment;
+    }
+
+    /** Size of a machine word, i.e., 4 or 8 */
+    public final int wordSize;
+    /** Size of a reference */
+    public final int referenceSize;
+    /** Size of the header of objects, which are not arrays */
+    public final int headerSize;
+    /** Objects are padded to a multiple of this */
+    public final int alignment;
+    /** Whether fields are laid out as from JDK 15 on, i.e., each in the
+     * smallest gap it fits, including gaps left by superclasses */
+    public final boolean fillsHoles;
+    @NotNull private final ClassValue<Layout> layouts = new ClassValue<Layout>() {
+      @Override @NotNull protected Layout computeValue(@NotNull final Class<?> ¢) {
+        return new Layout(¢);
+      }
+    };
+
+    /** Instantiates this class.
+     * @param wordSize size of a machine word, i.e., 4 or 8
+     * @param compressedOops whether references are compressed to 4 bytes
+     * @param compressedClassPointers whether class pointers are compressed to 4
+     *        bytes
+     * @param alignment objects are padded to a multiple of this */
+    public HotSpot(final int wordSize, final boolean compressedOops, final boolean compressedClassPointers, final int alignment) {
+      this(wordSize, compressedOops, compressedClassPointers, alignment, false);
+    }
+
+    /** Instantiates this class.
+     * @param wordSize size of a machine word, i.e., 4 or 8
+     * @param compressedOops whether references are compressed to 4 bytes
+     * @param compressedClassPointers whether class pointers are compressed to 4
+     *        bytes
+     * @param alignment objects are padded to a multiple of this
+     * @param fillsHoles whether fields are laid out as from JDK 15 on */
+    public HotSpot(final int wordSize, final boolean compressedOops, final boolean compressedClassPointers, final int alignment,
+        final boolean fillsHoles) {
+      this.wordSize = wordSize;
+      referenceSize = compressedOops ? 4 : wordSize;
+      headerSize = wordSize + (compressedClassPointers ? 4 : wordSize);
+      this.alignment = alignment;
+      this.fillsHoles = fillsHoles;
+    }
+
+    @Override public long array(@NotNull final Class<?> component, final int length) {
+      final int size = size(component);
+      return (align(align(headerSize + 4, wordSize), size) + (long) size * length + alignment - 1) / alignment * alignment;
+    }
+
+    @Override public long instance(@NotNull final Class<?> ¢) {
+      return layouts.get(¢).size;
+    }
+
+    /** @param ¢ an instance field of a class
+     * @return the offset of this field in instances of this class */
+    public int offset(@NotNull final Field ¢) {
+      return layouts.get(¢.getDeclaringClass()).offsets.get(¢).intValue();
+    }
+
+    @Override @NotNull public String toString() {
+      return String.format("HotSpot: %d bits, %d bytes references, %d bytes header, %d bytes alignment%s", Integer.valueOf(8 * wordSize),
+          Integer.valueOf(referenceSize), Integer.valueOf(headerSize), Integer.valueOf(alignment), fillsHoles ? ", holes filled" : "");
+    }
+
+    /** @param ¢ a field
+     * @return the group of the field, if it is annotated as contended, and
+     *         <code><b>null</b></code> otherwise */
+    @Nullable private static String contention(@NotNull final Field ¢) {
+      for (@NotNull final Annotation $ : ¢.getDeclaredAnnotations())
+        if ("Contended".equals($.annotationType().getSimpleName()))
+          return group($ + "");
+      return null;
+    }
+
+    /** @param annotation the string representation of a contended annotation,
+     *         e.g., <code>@Contended(value=tlr)</code>, or, from JDK 14 on,
+     *         <code>@Contended("tlr")</code>; the value of the annotation is
+     *         not read reflectively, since the annotation is not exported from
+     *         its module
+     * @return the group of this annotation */
+    @NotNull static String group(@NotNull final String annotation) {
+      final int from = annotation.indexOf('('), to = annotation.lastIndexOf(')');
+      if (from < 0 || to <= from)
+        return "";
+      final String $ = annotation.substring(from + 1, to).replaceFirst("^value=", "");
+      return $.length() >= 2 && $.startsWith("\"") && $.endsWith("\"") ? $.substring(1, $.length() - 1) : $;
+    }
+
+    /** @return the number of references which the JVM hides from reflection
+     *         in instances of this class */
+    private static int hidden(@NotNull final Class<?> c) {
+      final String $ = hiddenReferences.get(c.getName());
+      if ($ == null)
+        return 0;
+      for (@NotNull final Field ¢ : c.getDeclaredFields())
+        if (¢.getName().equals($))
+          return 0;
+      return 1;
+    }
+
+    private int size(@NotNull final Class<?> type) {
+      return type.isPrimitive() ? ShallowSize.size(type) : referenceSize;
+    }
+
+    /** A field to be placed: either declared, or injected by the JVM */
+    private static final class Member {
+      @Nullable final Field field;
+      @NotNull final Class<?> type;
+
+      Member(@NotNull final Field field) {
+        this.field = field;
+        type = field.getType();
+      }
+
+      Member(@NotNull final Class<?> type) {
+        field = null;
+        this.type = type;
+      }
+    }
+
+    /** A range of bytes in an object: the header, a field, padding, or a gap
+     * which may be filled */
+    private static final class Block {
+      int offset;
+      int size;
+      @NotNull final Kind kind;
+
+      Block(final int offset, final int size, @NotNull final Kind kind) {
+        this.offset = offset;
+        this.size = size;
+        this.kind = kind;
+      }
+
+      boolean fits(final int size) {
+        return kind == Kind.EMPTY && this.size >= size + (size - offset % size) % size;
+      }
+
+      enum Kind {
+        EMPTY, USED, PADDING
+      }
+    }
+
+    /** Offsets of the fields declared in a class, and where they end */
+    private final class Layout {
+      @NotNull final Map<Field, Integer> offsets = new HashMap<>();
+      /** Offset past the fields of this class, rounded up to the size of a
+       * reference; fields of subclasses start here */
+      final int end;
+      final int size;
+      /** From JDK 15 on: size of the header and of each field of this class or
+       * its superclasses, by offset */
+      @NotNull final SortedMap<Integer, Integer> occupied = new TreeMap<>();
+      /** Whether this class, or a superclass, has contended fields */
+      final boolean contended;
+
+      Layout(@NotNull final Class<?> c) {
+        final Class<?> parent = c.getSuperclass();
+        if (fillsHoles) {
+          @NotNull final List<Member> primitives = new ArrayList<>(), references = new ArrayList<>();
+          @NotNull final Map<String, List<Member>> groups = new LinkedHashMap<>();
+          for (@NotNull final Field ¢ : c.getDeclaredFields())
+            if (Modifier.isStatic(¢.getModifiers()))
+              continue;
+            else if (c.getClassLoader() == null && contention(¢) != null)
+              groups.computeIfAbsent(contention(¢).isEmpty() ? ¢.getName() + "\0" : contention(¢), λ -> new ArrayList<>()).add(new Member(¢));
+            else
+              (¢.getType().isPrimitive() ? primitives : references).add(new Member(¢));
+          if (c == Thread.class && version() >= 21)
+            for (@NotNull final Class<?> ¢ : injected)
+              primitives.add(new Member(¢ == long.class ? wordSize == 8 ? long.class : int.class : ¢));
+          end = holesFilled(parent == null ? null : layouts.get(parent), primitives, references, groups.values());
+          contended = !groups.isEmpty() || parent != null && layouts.get(parent).contended;
+          size = align(align(end, wordSize), alignment);
+          return;
+        }
+        contended = false;
+        final int start = parent == null ? headerSize : layouts.get(parent).end;
+        @NotNull final List<List<Field>> bySize = new ArrayList<>();
+        for (int ¢ = 0; ¢ <= 8; ++¢)
+          bySize.add(new ArrayList<>());
+        @NotNull final List<Field> references = new ArrayList<>();
+        @NotNull final Map<String, List<Field>> contended = new LinkedHashMap<>();
+        for (@NotNull final Field ¢ : c.getDeclaredFields())
+          if (Modifier.isStatic(¢.getModifiers()))
+            continue;
+          else if (c.getClassLoader() == null && contention(¢) != null)
+            contended.computeIfAbsent(contention(¢), λ -> new ArrayList<>()).add(¢);
+          else
+            (¢.getType().isPrimitive() ? bySize.get(size(¢.getType())) : references).add(¢);
+        final int unaligned = padded(c.getClassLoader() != null || !referencesFirst.contains(c.getName()) ? referencesLast(start, bySize, references)
+            : referencesFirst(start + referenceSize * hidden(c), bySize, references),
+            contended);
+        end = align(unaligned, referenceSize);
+        size = align(align(unaligned, wordSize), alignment);
+      }
+
+      /** Place fields as from JDK 15 on: starting with the blocks of the
+       * superclass, primitive fields, by decreasing size, and then references,
+       * are each placed in the smallest gap it fits, the last such gap if
+       * there are several, or else at the end; groups of contended fields
+       * follow, each preceded by padding. If the superclass has contended
+       * fields, its gaps are not filled.
+       * @return the offset past the last field */
+      private int holesFilled(@Nullable final Layout parent, @NotNull final List<Member> primitives, @NotNull final List<Member> references,
+          @NotNull final Collection<List<Member>> groups) {
+        @NotNull final List<Block> blocks = new ArrayList<>();
+        if (parent == null)
+          blocks.add(new Block(0, headerSize, Block.Kind.USED));
+        else
+          for (@NotNull final Map.Entry<Integer, Integer> ¢ : parent.occupied.entrySet()) {
+            final int offset = ¢.getKey().intValue(), gap = blocks.isEmpty() ? 0 : offset - last(blocks).offset - last(blocks).size;
+            if (gap > 0)
+              blocks.add(new Block(offset - gap, gap, parent.contended ? Block.Kind.PADDING : Block.Kind.EMPTY));
+            blocks.add(new Block(offset, ¢.getValue().intValue(), Block.Kind.USED));
+          }
+        if (parent != null && parent.contended)
+          blocks.add(new Block(last(blocks).offset + last(blocks).size, CONTENDED_PADDING, Block.Kind.PADDING));
+        blocks.add(new Block(last(blocks).offset + last(blocks).size, Integer.MAX_VALUE, Block.Kind.EMPTY));
+        final boolean append = parent != null && parent.contended && parent.occupied.size() > 1;
+        place(blocks, append, bySize(primitives));
+        place(blocks, append, references);
+        for (@NotNull final List<Member> ms : groups) {
+          pad(blocks);
+          @NotNull final List<Member> sorted = new ArrayList<>();
+          for (@NotNull final Member ¢ : ms)
+            if (¢.type.isPrimitive())
+              sorted.add(¢);
+          sorted.sort(Comparator.comparingInt(λ -> -size(λ.type)));
+          for (@NotNull final Member ¢ : ms)
+            if (!¢.type.isPrimitive())
+              sorted.add(¢);
+          place(blocks, true, sorted);
+        }
+        if (!groups.isEmpty())
+          pad(blocks);
+        for (@NotNull final Block ¢ : blocks)
+          if (¢.kind == Block.Kind.USED)
+            occupied.put(Integer.valueOf(¢.offset), Integer.valueOf(¢.size));
+        return last(blocks).offset;
+      }
+
+      @NotNull private List<Member> bySize(@NotNull final List<Member> ms) {
+        @NotNull final List<Member> $ = new ArrayList<>(ms);
+        $.sort(Comparator.comparingInt(λ -> -size(λ.type)));
+        return $;
+      }
+
+      @NotNull private Block last(@NotNull final List<Block> bs) {
+        return bs.get(bs.size() - 1);
+      }
+
+      private void pad(@NotNull final List<Block> blocks) {
+        @NotNull final Block $ = last(blocks);
+        blocks.add(blocks.size() - 1, new Block($.offset, CONTENDED_PADDING, Block.Kind.PADDING));
+        $.offset += CONTENDED_PADDING;
+      }
+
+      /** Place fields one by one, each in the smallest gap it fits; a field
+       * whose size is that of the previous field, for which no gap was found,
+       * is placed at the end without searching
+       * @param append whether to place all fields at the end */
+      private void place(@NotNull final List<Block> blocks, final boolean append, @NotNull final List<Member> ms) {
+        int lastSize = 0;
+        boolean found = false;
+        for (@NotNull final Member m : ms) {
+          final int size = size(m.type);
+          int $ = blocks.size() - 1;
+          if (!append && (size != lastSize || found)) {
+            lastSize = size;
+            found = false;
+            for (int ¢ = blocks.size() - 2; ¢ > 0; --¢)
+              if (blocks.get(¢).fits(size) && (!found || blocks.get(¢).size < blocks.get($).size)) {
+                $ = ¢;
+                found = true;
+              }
+          }
+          insert(blocks, $, m, size);
+        }
+      }
+
+      private void insert(@NotNull final List<Block> blocks, final int i, @NotNull final Member m, final int size) {
+        int at = i;
+        @NotNull final Block slot = blocks.get(at);
+        if (slot.offset % size != 0) {
+          final int adjustment = size - slot.offset % size;
+          blocks.add(at++, new Block(slot.offset, adjustment, Block.Kind.EMPTY));
+          slot.offset += adjustment;
+          slot.size -= adjustment;
+        }
+        blocks.add(at++, new Block(slot.offset, size, Block.Kind.USED));
+        if (m.field != null)
+          offsets.put(m.field, Integer.valueOf(slot.offset));
+        slot.offset += size;
+        slot.size -= size;
+        if (slot.size == 0)
+          blocks.remove(at);
+      }
+
+      /** Fields annotated as contended, which the JVM honors only in core
+       * classes, are laid out after all others, in groups separated by
+       * padding */
+      private int padded(final int offset, @NotNull final Map<String, List<Field>> contended) {
+        if (contended.isEmpty())
+          return offset;
+        int $ = offset + CONTENDED_PADDING;
+        for (@NotNull final Map.Entry<String, List<Field>> e : contended.entrySet()) {
+          for (@NotNull final Field ¢ : e.getValue()) {
+            final int size = size(¢.getType());
+            $ = align($, size);
+            offsets.put(¢, Integer.valueOf($));
+            $ += size;
+          }
+          if (!e.getKey().isEmpty())
+            $ += CONTENDED_PADDING;
+        }
+        return $;
+      }
+
+      private int place(final int offset, @NotNull final List<Field> fs, final int size) {
+        int $ = offset;
+        for (@NotNull final Field ¢ : fs) {
+          offsets.put(¢, Integer.valueOf($));
+          $ += size;
+        }
+        return $;
+      }
+
+      private int primitives(final int offset, @NotNull final List<List<Field>> bySize) {
+        int $ = offset;
+        for (int ¢ = 8; ¢ > 0; ¢ /= 2)
+          $ = place($, bySize.get(¢), ¢);
+        return $;
+      }
+
+      private int referencesFirst(final int start, @NotNull final List<List<Field>> bySize, @NotNull final List<Field> references) {
+        final int $ = place(start, references, referenceSize);
+        return primitives(bySize.get(8).isEmpty() ? $ : align($, 8), bySize);
+      }
+
+      private int referencesLast(final int start, @NotNull final List<List<Field>> bySize, @NotNull final List<Field> references) {
+        int $ = start;
+        @NotNull final List<Field> rest = new ArrayList<>(references);
+        if (!bySize.get(8).isEmpty() && $ % 8 != 0) {
+          int gap = align($, 8) - $;
+          for (int ¢ = 4; ¢ > 0; ¢ /= 2)
+            while (gap >= ¢ && !bySize.get(¢).isEmpty()) {
+              offsets.put(bySize.get(¢).remove(0), Integer.valueOf($));
+              $ += ¢;
+              gap -= ¢;
+            }
+          if (gap >= referenceSize && !rest.isEmpty())
+            offsets.put(rest.remove(0), Integer.valueOf($));
+          $ = align(start, 8);
+        }
+        return place(align(primitives($, bySize), referenceSize), rest, referenceSize);
+      }
+    }
+  }
+}
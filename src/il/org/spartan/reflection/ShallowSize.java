@@ -51,7 +51,10 @@ import org.jetbrains.annotations.*;
  *     -> align result up to a multiple of 8
  * </pre>
  * </ol>
-*/
+ * These rules ignore compressed references, headers of 12 or 16 bytes, and the
+ * packing of fields; for a model of the running JVM, see
+ * {@link MemoryModel#current()}.
+ */
 public class ShallowSize {
   public static int arraySize(final int length) {
     return arraySize(length, referenceSize());
@@ -107,7 +110,7 @@ public class ShallowSize {
   }
 
   static int align(final int ¢) {
-    return 8 * (¢ - 1) / 8 + 8;
+    return 8 * ((¢ - 1) / 8) + 8;
   }
 
   static int arraySize(final int length, final int size) {
@@ -134,9 +137,10 @@ public class ShallowSize {
   }
 
   static int size(@NotNull final Field ¢) {
-    if (Modifier.isStatic(¢.getModifiers()))
-      return 0;
-    final Class<?> $ = ¢.getType();
+    return Modifier.isStatic(¢.getModifiers()) ? 0 : size(¢.getType());
+  }
+
+  static int size(@NotNull final Class<?> $) {
     return $ == byte.class || $ == boolean.class ? 1
         : $ == short.class || $ == char.class ? 2
             : $ == int.class || $ == float.class ? 4 : $ == long.class || $ == double.class ? 8 : referenceSize();
@@ -15,6 +15,12 @@ import nano.ly.*;
 
 /** Provides services for computing the Kendall's tau metric for similarity
  * between rankings.
+ * <p>
+ * Coefficients are computed by the <i>O(n log n)</i> algorithm of Knight
+ * (1966), see {@link Knight}; the quadratic definitions,
+ * {@link #computeS(double[], double[], int)} and its variants, are kept as a
+ * reference. Values which are {@link Double#NaN} are ignored, along with their
+ * counterparts in the other ranking.
  * @author Yossi Gil
  * @since Dec 6, 2009 */
 @Utility public enum Kendall {
@@ -36,7 +42,7 @@ import nano.ly.*;
   /** [[SuppressWarningsSpartan]] */
   public static double tau(@NotNull final double[] xs, @NotNull final double[] ys) {
     ___.require(xs.length == ys.length);
-    return computeS(xs, ys, xs.length) / (double) pairs(xs.length);
+    return new Knight(xs, ys).s() / (double) allPairs(xs.length);
   }
 
   /** Compute Kendall's tau coefficient for a ranking of the integers 0,...,n
@@ -53,13 +59,16 @@ import nano.ly.*;
 
   public static double tauB(@NotNull final double[] xs, @NotNull final double[] ys) {
     ___.require(xs.length == ys.length);
-    @NotNull final List<Double> $ = new ArrayList<>(), Ys = new ArrayList<>();
-    for (int ¢ = 0; ¢ < xs.length; ++¢)
-      if (!Double.isNaN(xs[¢]) && !Double.isNaN(ys[¢])) {
-        $.add(box.it(xs[¢]));
-        Ys.add(box.it(ys[¢]));
-      }
-    return tauB_pruned(Iterables.toArray($), Iterables.toArray(Ys));
+    return new Knight(xs, ys).tauB();
+  }
+
+  /** Compute Kendall's tau-b coefficient of two rankings of integers
+   * @param xs arbitrary values of the first ranking
+   * @param ys arbitrary values of the second ranking, in the same order
+   * @return the Kendall tau-b coefficient of these two rankings. */
+  public static double tauB(@NotNull final int[] xs, @NotNull final int[] ys) {
+    ___.require(xs.length == ys.length);
+    return new Knight(asDoubles(xs), asDoubles(ys)).tauB();
   }
 
   /** [[SuppressWarningsSpartan]] */
@@ -90,6 +99,13 @@ import nano.ly.*;
     return $;
   }
 
+  /** @param n a non-negative integer
+   * @return the number of unordered pairs of <code>n</code> items, computed
+   *         without overflow */
+  static long allPairs(final long n) {
+    return n * (n - 1) / 2;
+  }
+
   static int pairs(final int ¢) {
     ___.nonnegative(¢);
     return ¢ * (¢ - 1) / 2;
@@ -117,7 +133,13 @@ import nano.ly.*;
     return $;
   }
 
-  private static int computeS(final double[] xs, final double[] ys, final int n) {
+  /** Quadratic reference implementation of {@link Knight#s()}
+   * @param xs arbitrary values of the first ranking
+   * @param ys arbitrary values of the second ranking
+   * @param n number of values to consider
+   * @return the number of concordant pairs minus the number of discordant
+   *         pairs */
+  static int computeS(final double[] xs, final double[] ys, final int n) {
     int $ = 0, nd = 0;
     for (int i = 0; i < n; ++i)
       for (int j = i + 1; j < n; ++j)
@@ -128,12 +150,21 @@ import nano.ly.*;
     return $ - nd;
   }
 
-  private static double tauB_pruned(@NotNull final double[] xs, @NotNull final double[] ys) {
+  /** Quadratic reference implementation of {@link Knight#tauB()}, for values
+   * which are not {@link Double#NaN} */
+  static double tauB_pruned(@NotNull final double[] xs, @NotNull final double[] ys) {
     ___.require(xs.length == ys.length);
     final int $ = xs.length, pairs = pairs($);
     return computeS(xs, ys, $) / Math.sqrt(1. * (pairs - sigma(xs)) * (pairs - sigma(ys)));
   }
 
+  @NotNull private static double[] asDoubles(@NotNull final int[] is) {
+    @NotNull final double[] $ = new double[is.length];
+    for (int ¢ = 0; ¢ < is.length; ++¢)
+      $[¢] = is[¢];
+    return $;
+  }
+
   public static class Charectristics {
     private static int valid(@NotNull final double[] xs, final double[] ys) {
       int $ = 0;
@@ -160,4 +191,110 @@ import nano.ly.*;
       z = 3 * n * tau * (n - 1) / 2 / Math.sqrt(n * (n - 1.0) * (2.0 * n + 5) / 2);
     }
   }
+
+  /** Knight's algorithm for counting concordant and discordant pairs of two
+   * rankings in <i>O(n log n)</i>: values are sorted by the first ranking,
+   * breaking ties by the second, and then merge sorted by the second
+   * ranking; the number of swaps made by the merge sort is the number of
+   * discordant pairs. Ties are counted along the way, in linear passes over
+   * the sorted values. */
+  static final class Knight {
+    /** Number of pairs of values, neither of which is {@link Double#NaN} */
+    final long pairs;
+    /** Number of pairs tied in the first ranking */
+    final long tiedX;
+    /** Number of pairs tied in the second ranking */
+    final long tiedY;
+    /** Number of pairs tied in both rankings */
+    final long tiedXY;
+    /** Number of discordant pairs */
+    final long swaps;
+    @NotNull private final double[] xs;
+    @NotNull private final double[] ys;
+
+    /** @param xs arbitrary values of the first ranking
+     * @param ys arbitrary values of the second ranking, in the same order */
+    Knight(@NotNull final double[] xs, @NotNull final double[] ys) {
+      int n = 0;
+      for (int ¢ = 0; ¢ < xs.length; ++¢)
+        n += as.bit(!Double.isNaN(xs[¢]) && !Double.isNaN(ys[¢]));
+      this.xs = new double[n];
+      this.ys = new double[n];
+      for (int ¢ = 0, i = 0; ¢ < xs.length; ++¢)
+        if (!Double.isNaN(xs[¢]) && !Double.isNaN(ys[¢])) {
+          // Adding zero turns -0.0 into 0.0, which compares equal with ==
+          this.xs[i] = xs[¢] + 0.0;
+          this.ys[i++] = ys[¢] + 0.0;
+        }
+      pairs = allPairs(n);
+      @NotNull final int[] is = new int[n];
+      for (int ¢ = 0; ¢ < n; ++¢)
+        is[¢] = ¢;
+      sort(is, this.xs, this.ys);
+      tiedX = ties(is, this.xs, null);
+      tiedXY = ties(is, this.xs, this.ys);
+      swaps = sort(is, this.ys, null);
+      tiedY = ties(is, this.ys, null);
+    }
+
+    /** @return the number of concordant pairs minus the number of discordant
+     *         pairs */
+    long s() {
+      return pairs - tiedX - tiedY + tiedXY - 2 * swaps;
+    }
+
+    /** @return Kendall's tau-b, i.e., {@link #s()} normalized by the number of
+     *         pairs not tied in each of the rankings */
+    double tauB() {
+      return s() / Math.sqrt(1. * (pairs - tiedX) * (pairs - tiedY));
+    }
+
+    private static int compare(final int i, final int j, @NotNull final double[] primary, @Nullable final double[] secondary) {
+      final int $ = Double.compare(primary[i], primary[j]);
+      return $ != 0 || secondary == null ? $ : Double.compare(secondary[i], secondary[j]);
+    }
+
+    /** Bottom up, stable, merge sort of indices by their values
+     * @param is indices into the value arrays
+     * @param primary values by which indices are sorted
+     * @param secondary values by which ties in the primary values are broken,
+     *        or <code><b>null</b></code>
+     * @return the number of pairs of indices whose order was reversed */
+    private static long sort(@NotNull final int[] is, @NotNull final double[] primary, @Nullable final double[] secondary) {
+      long $ = 0;
+      int[] from = is, to = new int[is.length];
+      for (int width = 1; width < is.length; width *= 2) {
+        for (int low = 0; low < is.length; low += 2 * width) {
+          final int middle = Math.min(low + width, is.length), high = Math.min(low + 2 * width, is.length);
+          for (int i = low, j = middle, ¢ = low; ¢ < high; ++¢)
+            if (j >= high || i < middle && compare(from[i], from[j], primary, secondary) <= 0)
+              to[¢] = from[i++];
+            else {
+              to[¢] = from[j++];
+              $ += middle - i;
+            }
+        }
+        @NotNull final int[] t = from;
+        from = to;
+        to = t;
+      }
+      if (from != is)
+        System.arraycopy(from, 0, is, 0, is.length);
+      return $;
+    }
+
+    /** @param is indices, sorted by the given values
+     * @param primary arbitrary values
+     * @param secondary more values, or <code><b>null</b></code>
+     * @return the number of pairs of indices which agree on these values */
+    private static long ties(@NotNull final int[] is, @NotNull final double[] primary, @Nullable final double[] secondary) {
+      long $ = 0;
+      for (int i = 0, j; i < is.length; i = j) {
+        for (j = i + 1; j < is.length && compare(is[i], is[j], primary, secondary) == 0;)
+          ++j;
+        $ += allPairs(j - i);
+      }
+      return $;
+    }
+  }
 }
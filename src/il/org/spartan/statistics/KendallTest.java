@@ -4,6 +4,8 @@ import static il.org.spartan.azzert.*;
 import static il.org.spatan.iteration.Iterables.*;
 import static org.junit.Assert.assertEquals;
 
+import java.util.*;
+
 import org.jetbrains.annotations.*;
 import org.junit.*;
 
@@ -158,4 +160,43 @@ import il.org.spartan.*;
   @Test public void testZ() {
     assertEquals(2.88, new Kendall.Charectristics(11, 0.6727).z, 0.001);
   }
+
+  @Test public void knightAgreesWithQuadratic() {
+    @NotNull final Random r = new Random(1);
+    for (int n = 0; n < 60; ++n) {
+      @NotNull final double[] xs = new double[n], ys = new double[n];
+      @NotNull final int[] is = new int[n], js = new int[n];
+      for (int ¢ = 0; ¢ < n; ++¢) {
+        xs[¢] = is[¢] = r.nextInt(1 + n / 3);
+        ys[¢] = js[¢] = r.nextInt(1 + n / 2);
+      }
+      azzert.that(new Kendall.Knight(xs, ys).s(), is((long) Kendall.computeS(xs, ys, n)));
+      azzert.that(new Kendall.Knight(xs, ys).s(), is((long) Kendall.compueS(is, js)));
+      if (n > 1)
+        assertEquals(Kendall.tauB_pruned(xs, ys), Kendall.tauB(xs, ys), 1E-12);
+      if (n > 1)
+        assertEquals(Kendall.tauB(xs, ys), Kendall.tauB(is, js), 1E-12);
+    }
+  }
+
+  @Test public void knightIgnoresNaN() {
+    @NotNull final double[] xs = { 1, Double.NaN, 3, 2, 5 }, ys = { 2, 7, Double.NaN, 1, 3 };
+    assertEquals(Kendall.tauB_pruned(new double[] { 1, 2, 5 }, new double[] { 2, 1, 3 }), Kendall.tauB(xs, ys), 1E-12);
+    assertEquals(Kendall.computeS(xs, ys, xs.length) / 10.0, Kendall.tau(xs, ys), 1E-12);
+  }
+
+  @Test public void knightTreatsZerosAlike() {
+    azzert.that(new Kendall.Knight(new double[] { 0.0, -0.0, 1 }, new double[] { 1, 2, 3 }).tiedX, is(1L));
+  }
+
+  @Test public void knightIsFastAndExact() {
+    final int n = 300_000;
+    @NotNull final double[] xs = new double[n], ys = new double[n];
+    for (int ¢ = 0; ¢ < n; ++¢) {
+      xs[¢] = ¢;
+      ys[¢] = -2 * ¢;
+    }
+    assertEquals(1, Kendall.tau(xs, xs), 1E-12);
+    assertEquals(-1, Kendall.tauB(xs, ys), 1E-12);
+  }
 }
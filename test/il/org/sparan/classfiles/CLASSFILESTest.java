@@ -1,5 +1,7 @@
 package il.org.sparan.classfiles;
 
+import static il.org.spartan.azzert.*;
+
 import java.io.*;
 
 import org.jetbrains.annotations.*;
@@ -89,10 +91,47 @@ import il.org.spartan.utils.*;
     azzert.isNull(CLASSFILES.open(void.class));
   }
 
+  @Test public void testClassFileAddedToRoot() throws IOException {
+    @NotNull final File root = root();
+    final String path = CLASSPATH.get();
+    try {
+      CLASSPATH.append(root.getPath());
+      azzert.isNull(CLASSFILES.location("later.Added"));
+      write(new File(root, "later/Added.class"));
+      assert CLASSFILES.location("later.Added") != null;
+    } finally {
+      CLASSPATH.set(path);
+    }
+  }
+
+  @Test public void testIndexedStreamIsClassFile() throws IOException {
+    try (DataInputStream $ = new DataInputStream(CLASSFILES.open(String.class))) {
+      azzert.that($.readInt(), is(0xCAFEBABE));
+    }
+  }
+
+  @Test public void testIndexSurvivesEviction() {
+    @NotNull final ClassFilesIndex $ = new ClassFilesIndex(CLASSFILES.asFiles(), 1);
+    for (int ¢ = 0; ¢ < 3; ++¢) {
+      assert $.open(Object.class.getName()) != null;
+      assert $.open(Test.class.getName()) != null;
+    }
+    $.close();
+    assert $.open(Object.class.getName()) != null;
+  }
+
   @Test public void testIOException() {
     assert CLASSFILES.open(IOException.class) != null;
   }
 
+  @Test public void testLocationMissing() {
+    azzert.isNull(CLASSFILES.location("no.such.Clazz"));
+  }
+
+  @Test public void testLocationObject() {
+    assert CLASSFILES.location(Object.class.getName()) != null;
+  }
+
   @Test public void testMeArray() {
     azzert.isNull(CLASSFILES.open(CLASSFILESTest[].class));
   }
@@ -101,6 +140,35 @@ import il.org.spartan.utils.*;
     assert CLASSFILES.open(Separate.class) != null;
   }
 
+  @Test public void testRootAddedToClassPath() throws IOException {
+    @NotNull final File root = root();
+    write(new File(root, "added/Root.class"));
+    azzert.isNull(CLASSFILES.location("added.Root"));
+    final String path = CLASSPATH.get();
+    try {
+      CLASSPATH.append(root.getPath());
+      assert CLASSFILES.location("added.Root") != null;
+    } finally {
+      CLASSPATH.set(path);
+    }
+    azzert.isNull(CLASSFILES.location("added.Root"));
+  }
+
+  @NotNull private static File root() throws IOException {
+    @NotNull final File $ = File.createTempFile("root", "");
+    $.delete();
+    $.mkdir();
+    $.deleteOnExit();
+    return $;
+  }
+
+  private static void write(@NotNull final File ¢) throws IOException {
+    ¢.getParentFile().mkdirs();
+    try (DataOutputStream $ = new DataOutputStream(new FileOutputStream(¢))) {
+      $.writeInt(0xCAFEBABE);
+    }
+  }
+
   @interface Annotation {
     // Empty
   }
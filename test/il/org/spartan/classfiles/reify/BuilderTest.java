@@ -1,5 +1,13 @@
 package il.org.spartan.classfiles.reify;
 
+import static java.util.Arrays.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.stream.*;
+
+import org.jetbrains.annotations.*;
 import org.junit.*;
 
 import il.org.spartan.classfiles.*;
@@ -8,6 +16,117 @@ import il.org.spartan.classfiles.reify.ClassInfo.*;
 /** @author Yossi Gil
  * @since 25 November 2011 */
 @SuppressWarnings("static-method") public class BuilderTest {
+  static final String NON_ASCII = "\u0000¢λ\uFFFF";
+  /** A constants' pool with module, package, dynamic, invokedynamic, method
+   * type and method handle entries */
+  static final byte[] MODERN_POOL = { //
+      0, 13, //
+      1, 0, 1, 'm', // #1 UTF8 "m"
+      19, 0, 1, // #2 Module #1
+      20, 0, 1, // #3 Package #1
+      1, 0, 3, '(', ')', 'V', // #4 UTF8 "()V"
+      12, 0, 1, 0, 4, // #5 NameAndType #1 #4
+      17, 0, 0, 0, 5, // #6 Dynamic 0 #5
+      18, 0, 1, 0, 5, // #7 InvokeDynamic 1 #5
+      16, 0, 4, // #8 MethodType #4
+      1, 0, 1, 'C', // #9 UTF8 "C"
+      7, 0, 9, // #10 Class #9
+      10, 0, 10, 0, 5, // #11 Methodref #10 #5
+      15, 6, 0, 11, // #12 MethodHandle REF_invokeStatic #11
+  };
+
+  @NotNull static byte[] bytes(@NotNull final Class<?> c) throws IOException {
+    @NotNull final ByteArrayOutputStream $ = new ByteArrayOutputStream();
+    try (InputStream s = CLASSFILES.open(c)) {
+      for (int b = s.read(); b >= 0; b = s.read())
+        $.write(b);
+    }
+    return $.toByteArray();
+  }
+
+  private static void assertLazyAgreesWithEager(@NotNull final Class<?> c) throws IOException {
+    @NotNull final Builder eager = new Builder(c), lazy = new Builder(bytes(c));
+    assert lazy.constantPool.isLazy();
+    assert !eager.constantPool.isLazy();
+    assertArrayEquals(eager.getReferencedClasses(), lazy.getReferencedClasses());
+    assertArrayEquals(eager.getReferencedStrings(), lazy.getReferencedStrings());
+    assertArrayEquals(eager.getReferencedInts(), lazy.getReferencedInts());
+    assertArrayEquals(eager.getReferencedLongs(), lazy.getReferencedLongs());
+    assertArrayEquals(eager.constantPool.getReferencedUTF8(), lazy.constantPool.getReferencedUTF8());
+    assertArrayEquals(eager.constantPool.getReferencedMethods(), lazy.constantPool.getReferencedMethods());
+    @Nullable final ClassInfo $ = eager.go();
+    assertNotNull($);
+    assertEquals($, lazy.go());
+  }
+
+  @Test public void bufferAgreesWithEager() {
+    for (@NotNull final Class<?> ¢ : new Class<?>[] { BuilderTest.class, String.class, Collectors.class }) {
+      @Nullable final ByteBuffer b = CLASSFILES.buffer(¢.getName());
+      assertNotNull(b);
+      assertEquals(ClassInfo.make(¢), ClassInfo.make(b));
+      assertEquals(0, b.position());
+    }
+  }
+
+  @Test public void bufferCodeIsSlice() throws IOException {
+    @NotNull final byte[] bs = bytes(ConstantPool.class);
+    @Nullable final ClassInfo $ = ClassInfo.make(ByteBuffer.wrap(bs));
+    assertNotNull($);
+    int n = 0;
+    for (@NotNull final MethodInfo ¢ : $.methods)
+      if (¢.getCode() != null) {
+        assertSame(bs, ¢.getCode().codes.array());
+        ++n;
+      }
+    assert n > 0;
+    assertEquals(ClassInfo.make(ConstantPool.class).codeSize(), $.codeSize());
+  }
+
+  @Test public void lazyAgreesWithEager() throws IOException {
+    assertLazyAgreesWithEager(BuilderTest.class);
+    assertLazyAgreesWithEager(ClassFileTest.class);
+    assertLazyAgreesWithEager(ConstantPool.class);
+    assertLazyAgreesWithEager(String.class);
+    assertLazyAgreesWithEager(Character.class);
+    assertLazyAgreesWithEager(Collectors.class);
+  }
+
+  @Test public void lambdasReferencesToClasses() {
+    @Nullable final ClassInfo $ = ClassInfo.make(Collectors.class);
+    assertNotNull($);
+    for (@NotNull final MethodInfo ¢ : $.methods)
+      assertNotNull(¢.referencesToAllClasses());
+  }
+
+  @Test public void modernTagsEager() {
+    assertModernTags(new ConstantPool(new RobustReader(new ByteArrayInputStream(MODERN_POOL))));
+  }
+
+  @Test public void modernTagsLazy() {
+    @NotNull final ConstantPool $ = new ConstantPool(MODERN_POOL, 0);
+    assertModernTags($);
+    assertEquals(MODERN_POOL.length, $.end());
+  }
+
+  private static void assertModernTags(@NotNull final ConstantPool $) {
+    assertEquals(13, $.size());
+    assertEquals("m", $.constant(2) + "");
+    assertEquals("MODULE", $.constant(2).typeName());
+    assertEquals("m", $.constant(3) + "");
+    assertEquals("PACKAGE", $.constant(3).typeName());
+    assertEquals(0, ((ConstantPool.DynamicConstant) $.constant(6)).bootstrapMethodIndex);
+    assertEquals(1, $.getInvokeDynamic(7).bootstrapMethodIndex);
+    assertEquals("()V", $.getInvokeDynamic(7).getNameAndType().getDescriptor());
+    assertEquals("()V", $.constant(8) + "");
+    @NotNull final ConstantPool.MethodHandleConstant h = (ConstantPool.MethodHandleConstant) $.constant(12);
+    assertEquals(6, h.kind);
+    assertEquals("C", h.getReference().getClassConstant().getClassName());
+  }
+
+  @Test public void lazyDecodesModifiedUTF8() throws IOException {
+    assert asList(new Builder(bytes(BuilderTest.class)).constantPool.getReferencedUTF8()).contains(NON_ASCII);
+  }
+
   @Test public void classInfoFromBuilder() {
     assert new ClassInfo(new Builder(CLASSFILES.open(ClassFileTest.class))) != null;
   }
@@ -0,0 +1,84 @@
+package il.org.spartan.classfiles.reify;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import il.org.spartan.classfiles.*;
+
+@SuppressWarnings("static-method") public class BulkBuilderTest {
+  private static final byte[] GARBAGE = { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 52, 0, 9, 99 };
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @NotNull private File jar() throws IOException {
+    @NotNull final File $ = folder.newFile("classes.jar");
+    try (ZipOutputStream s = new ZipOutputStream(new FileOutputStream($))) {
+      add(s, BuilderTest.class);
+      add(s, ConstantPool.class);
+      add(s, "a/Garbage.class", GARBAGE);
+      add(s, "META-INF/MANIFEST.MF", new byte[0]);
+    }
+    return $;
+  }
+
+  private static void add(@NotNull final ZipOutputStream s, @NotNull final Class<?> c) throws IOException {
+    add(s, c.getName().replace('.', '/') + ".class", BuilderTest.bytes(c));
+  }
+
+  private static void add(@NotNull final ZipOutputStream s, @NotNull final String name, @NotNull final byte[] content) throws IOException {
+    s.putNextEntry(new ZipEntry(name));
+    s.write(content);
+    s.closeEntry();
+  }
+
+  @Test public void archive() throws IOException {
+    @NotNull final File jar = jar();
+    @NotNull final List<ClassInfo> cs = new ArrayList<>();
+    @NotNull final BulkBuilder.Report $ = new BulkBuilder(3, 1).go(Collections.singletonList(jar), cs::add);
+    assertEquals(2, $.successes());
+    assertEquals(2, cs.size());
+    assertEquals(Collections.singleton(jar.getPath() + "!/a/Garbage.class"), $.failures().keySet());
+    assertFalse($.failures().values().iterator().next().isEmpty());
+    for (@NotNull final ClassInfo ¢ : cs)
+      assertEquals(jar.getPath(), ¢.getContainingJar());
+    assert cs.contains(ClassInfo.make(ConstantPool.class));
+  }
+
+  @Test public void directory() throws IOException {
+    @NotNull final File root = folder.newFolder("classes");
+    @NotNull final File a = new File(root, "a");
+    assertTrue(a.mkdir());
+    Files.write(new File(a, "BuilderTest.class").toPath(), BuilderTest.bytes(BuilderTest.class));
+    Files.write(new File(a, "Truncated.class").toPath(), Arrays.copyOf(BuilderTest.bytes(BuilderTest.class), 100));
+    Files.write(new File(a, "README").toPath(), GARBAGE);
+    @NotNull final List<ClassInfo> cs = new ArrayList<>();
+    @NotNull final BulkBuilder.Report $ = ClassInfo.makeAll(root, cs::add);
+    assertEquals(1, $.successes());
+    assertEquals(ClassInfo.make(BuilderTest.class), cs.get(0));
+    assertEquals(Collections.singleton(new File(a, "Truncated.class").getPath()), $.failures().keySet());
+  }
+
+  @Test public void agreesWithSequential() throws IOException {
+    @NotNull final File jar = jar();
+    @NotNull final Set<String> sequential = new TreeSet<>();
+    for (@NotNull final String ¢ : new ClassRepository(jar))
+      if (!¢.endsWith("Garbage"))
+        sequential.add(¢);
+    @NotNull final Set<String> parallel = new TreeSet<>();
+    ClassInfo.makeAll(new ClassRepository(jar), λ -> parallel.add(λ.name));
+    assertEquals(sequential, parallel);
+  }
+
+  @Test public void missingRoot() {
+    @NotNull final BulkBuilder.Report $ = new BulkBuilder(2).go(Collections.singletonList(new File("/no/such/root")), λ -> fail());
+    assertEquals(0, $.successes());
+    assert $.failures().isEmpty();
+  }
+}
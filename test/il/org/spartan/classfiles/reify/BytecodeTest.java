@@ -0,0 +1,102 @@
+package il.org.spartan.classfiles.reify;
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.classfiles.reify.OpCode.*;
+import il.org.spartan.collections.*;
+
+@SuppressWarnings("static-method") public class BytecodeTest {
+  /** <code>iinc</code>, widened, followed by a widened <code>iload</code> */
+  static final byte[] WIDE = { //
+      (byte) 0xC4, (byte) 0x84, 1, 0, 0, 1, // 0: wide iinc 256 1
+      (byte) 0xC4, 0x15, 1, 0, // 6: wide iload 256
+      (byte) 0xAC, // 10: ireturn
+  };
+  /** <code>switch (x) { case 7: return; case 9: return; } return;</code> */
+  static final byte[] LOOKUP = { //
+      0x1A, // 0: iload_0
+      (byte) 0xAB, 0, 0, // 1: lookupswitch, padded
+      0, 0, 0, 27, // 4: default: 28
+      0, 0, 0, 2, // 8: npairs
+      0, 0, 0, 7, 0, 0, 0, 28, // 12: 7 => 29
+      0, 0, 0, 9, 0, 0, 0, 29, // 20: 9 => 30
+      (byte) 0xB1, // 28: return
+      (byte) 0xB1, // 29: return
+      (byte) 0xB1, // 30: return
+  };
+
+  @NotNull private static IntsArray offsets(@NotNull final byte[] code) {
+    @NotNull final IntsArray $ = new IntsArray();
+    Bytecode.scan(ByteBuffer.wrap(code), (c, offset, o, next) -> $.push(offset));
+    return $;
+  }
+
+  @Test public void wide() {
+    assertArrayEquals(new int[] { 0, 6, 10 }, offsets(WIDE).toArray());
+    @NotNull final List<OpCode> $ = new ArrayList<>();
+    Bytecode.scan(ByteBuffer.wrap(WIDE), (c, offset, o, next) -> $.add(o));
+    assertEquals(Arrays.asList(OpCode.IINC, OpCode.ILOAD, OpCode.IRETURN), $);
+  }
+
+  @Test public void lookupSwitch() {
+    assertArrayEquals(new int[] { 0, 1, 28, 29, 30 }, offsets(LOOKUP).toArray());
+    @NotNull final IntsArray $ = new IntsArray();
+    Bytecode.switchTargets(ByteBuffer.wrap(LOOKUP), 1, $::push);
+    assertArrayEquals(new int[] { 28, 29, 30 }, $.toArray());
+    assertEquals(3, new CFG(LOOKUP).cyclomaticComplexity());
+  }
+
+  @Test public void tableSwitch() {
+    @NotNull final IntsArray $ = new IntsArray();
+    Bytecode.switchTargets(ByteBuffer.wrap(CFGTest.SWITCH), 1, $::push);
+    assertArrayEquals(new int[] { 24, 24, 25 }, $.toArray());
+  }
+
+  @Test(expected = CorruptClassFile.class) public void truncated() {
+    Bytecode.scan(ByteBuffer.wrap(new byte[] { 0x10 }), (c, offset, o, next) -> fail());
+  }
+
+  @Test(expected = CorruptClassFile.class) public void invalid() {
+    Bytecode.scan(ByteBuffer.wrap(new byte[] { (byte) 0xFF }), (c, offset, o, next) -> fail());
+  }
+
+  @Test public void agreesWithDecoding() {
+    for (@NotNull final Class<?> k : new Class<?>[] { ConstantPool.class, CFG.class, OpCode.class }) {
+      @Nullable final ClassInfo c = ClassInfo.make(k);
+      assertNotNull(c);
+      for (@NotNull final MethodInfo m : c.methods) {
+        @Nullable final CodeEntity e = m.getCode();
+        if (e == null)
+          continue;
+        int count = 0, throwCount = 0;
+        for (@NotNull final BufferDataInputStream r = new BufferDataInputStream(e.codes);; ++count) {
+          @Nullable final Instruction i = OpCode.read(r);
+          if (i == null)
+            break;
+          if (i.opCode == OpCode.ATHROW)
+            ++throwCount;
+        }
+        assertEquals(count, e.instructionsCount());
+        assertEquals(throwCount, e.throwCount());
+        assertEquals(new CFG(e.codes).cyclomaticComplexity(), e.cyclomaticComplexity());
+      }
+    }
+  }
+
+  @Test @SuppressWarnings("deprecation") public void deprecated() {
+    @NotNull final CodeEntity e = new CodeEntity(1, 1, LOOKUP);
+    assertSame(e.simplifiedCode(), e.simplifiedCode);
+    assertEquals(e.instructionsCount(), e.simplifiedCode.instructionsCount());
+    assertEquals(e.throwCount(), e.simplifiedCode.throwCount());
+    assertEquals(e.cyclomaticComplexity(), e.simplifiedCode.cyclomaticComplexity());
+    @NotNull final CFG $ = new CFG(LOOKUP);
+    $.generateGraph();
+    assertEquals(4, $.blocks());
+  }
+}
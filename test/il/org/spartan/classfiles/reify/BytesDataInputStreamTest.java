@@ -3,6 +3,7 @@ package il.org.spartan.classfiles.reify;
 import static il.org.spartan.azzert.*;
 
 import java.io.*;
+import java.nio.*;
 
 import org.jetbrains.annotations.*;
 import org.junit.*;
@@ -75,4 +76,34 @@ import il.org.spartan.*;
     azzert.that(b.position(), is(8));
     b.close();
   }
+
+  @Test public void sliceIsNotCopy() throws IOException {
+    @NotNull final byte[] bs = { 0, 1, 2, 3, 4, 5, 6, 7 };
+    @NotNull final BufferDataInputStream b = new BufferDataInputStream(bs);
+    b.read();
+    @NotNull final ByteBuffer $ = b.slice(4);
+    azzert.that(b.position(), is(5));
+    azzert.that($.remaining(), is(4));
+    azzert.that($.get(0), is((byte) 1));
+    bs[1] = 9;
+    azzert.that($.get(0), is((byte) 9));
+    b.close();
+  }
+
+  @Test public void sliceAlignsToItsStart() throws IOException {
+    @NotNull final ByteBuffer whole = ByteBuffer.wrap(new byte[1000]);
+    whole.position(3);
+    @NotNull final BufferDataInputStream b = new BufferDataInputStream(whole);
+    b.read();
+    b.align4();
+    azzert.that(b.position(), is(4));
+    azzert.that(whole.position(), is(3));
+    b.close();
+  }
+
+  @Test(expected = BufferUnderflowException.class) public void sliceBeyondEnd() throws IOException {
+    try (BufferDataInputStream b = new BufferDataInputStream(new byte[4])) {
+      b.slice(5);
+    }
+  }
 }
@@ -0,0 +1,108 @@
+package il.org.spartan.classfiles.reify;
+
+import static il.org.spartan.azzert.*;
+import static org.junit.Assert.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+@SuppressWarnings("static-method") public class CFGTest {
+  /** <code>return 0</code> */
+  static final byte[] STRAIGHT = { //
+      0x03, // 0: iconst_0
+      (byte) 0xAC, // 1: ireturn
+  };
+  /** <code>return x == 0 ? 0 : 1</code>, with two returns */
+  static final byte[] IF = { //
+      0x1A, // 0: iload_0
+      (byte) 0x99, 0, 5, // 1: ifeq 6
+      0x04, // 4: iconst_1
+      (byte) 0xAC, // 5: ireturn
+      0x03, // 6: iconst_0
+      (byte) 0xAC, // 7: ireturn
+  };
+  /** <code>for (int i = 0; i < 10; ++i);</code> */
+  static final byte[] LOOP = { //
+      0x03, // 0: iconst_0
+      0x3B, // 1: istore_0
+      0x1A, // 2: iload_0
+      0x10, 10, // 3: bipush 10
+      (byte) 0xA2, 0, 9, // 5: if_icmpge 14
+      (byte) 0x84, 0, 1, // 8: iinc 0 1
+      (byte) 0xA7, (byte) 0xFF, (byte) 0xF7, // 11: goto 2
+      (byte) 0xB1, // 14: return
+  };
+  /** <code>switch (x) { case 0: case 1: return; } return;</code> */
+  static final byte[] SWITCH = { //
+      0x1A, // 0: iload_0
+      (byte) 0xAA, 0, 0, // 1: tableswitch, padded
+      0, 0, 0, 23, // 4: default: 24
+      0, 0, 0, 0, // 8: low
+      0, 0, 0, 1, // 12: high
+      0, 0, 0, 23, // 16: 0 => 24
+      0, 0, 0, 24, // 20: 1 => 25
+      (byte) 0xB1, // 24: return
+      (byte) 0xB1, // 25: return
+  };
+
+  @Test public void straight() {
+    @NotNull final CFG $ = new CFG(STRAIGHT);
+    azzert.that($.blocks(), is(1));
+    azzert.that($.edges(), is(0));
+    azzert.that($.cyclomaticComplexity(), is(1));
+    assertArrayEquals(new int[0], $.loopHeaders());
+  }
+
+  @Test public void ifWithTwoReturns() {
+    @NotNull final CFG $ = new CFG(IF);
+    azzert.that($.blocks(), is(3));
+    assertArrayEquals(new int[] { 1, 2 }, $.successors(0));
+    assertArrayEquals(new int[0], $.successors(1));
+    azzert.that($.cyclomaticComplexity(), is(2));
+    assertArrayEquals(new int[] { 0, 0, 0 }, $.dominators());
+    azzert.that($.block(5), is(1));
+    azzert.that($.start(2), is(6));
+    azzert.that($.end(2), is(8));
+  }
+
+  @Test public void loop() {
+    @NotNull final CFG $ = new CFG(LOOP);
+    azzert.that($.blocks(), is(4));
+    assertArrayEquals(new int[] { 1 }, $.successors(0));
+    assertArrayEquals(new int[] { 2, 3 }, $.successors(1));
+    assertArrayEquals(new int[] { 1 }, $.successors(2));
+    assertArrayEquals(new int[] { 0, 2 }, $.predecessors(1));
+    azzert.that($.cyclomaticComplexity(), is(2));
+    assertArrayEquals(new int[] { 0, 0, 1, 1 }, $.dominators());
+    assert $.dominates(1, 2);
+    assert !$.dominates(2, 3);
+    assertArrayEquals(new int[] { 1 }, $.loopHeaders());
+    assertArrayEquals(new int[] { 1, 2 }, $.loop(1));
+  }
+
+  @Test public void tableSwitch() {
+    @NotNull final CFG $ = new CFG(SWITCH);
+    azzert.that($.blocks(), is(3));
+    assertArrayEquals(new int[] { 1, 2 }, $.successors(0));
+    azzert.that($.cyclomaticComplexity(), is(2));
+  }
+
+  @Test(expected = CorruptClassFile.class) public void jumpOutside() {
+    new CFG(new byte[] { (byte) 0xA7, 0, 100 });
+  }
+
+  @Test public void realMethods() {
+    @Nullable final ClassInfo c = ClassInfo.make(CFG.class);
+    assertNotNull(c);
+    for (@NotNull final MethodInfo m : c.methods)
+      if (m.getCode() != null) {
+        @NotNull final CFG $ = new CFG(m.getCode().codes);
+        assert $.cyclomaticComplexity() >= 1;
+        azzert.that($.dominators()[0], is(0));
+        for (final int h : $.loopHeaders())
+          azzert.that($.loop(h)[0], is(h));
+      }
+  }
+}
@@ -136,7 +136,7 @@ import nano.ly.*;
   @Test public void byteCodeCount() {
     class __ {
     }
-    assert ClassInfo.make(__.class).methods[0].getCode().codes.length > 0;
+    assert ClassInfo.make(__.class).methods[0].getCode().codeSize() > 0;
   }
 
   @Test public void classInfoFromBadPath() {
@@ -0,0 +1,124 @@
+package il.org.spartan.classfiles.reify;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+@SuppressWarnings("static-method") public class MetricsStoreTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+
+  @NotNull private static ByteBuffer classFile(@NotNull final Class<?> ¢) throws IOException {
+    return ByteBuffer.wrap(BuilderTest.bytes(¢));
+  }
+
+  @Test public void metricsAreAttributes() {
+    assert MetricsStore.METRICS.contains("cyclomaticComplexity");
+    assert MetricsStore.METRICS.contains("lackOfCohesion");
+    @Nullable final ClassInfo c = ClassInfo.make(ConstantPool.class);
+    assertNotNull(c);
+    assertEquals(c.codeSize(), MetricsStore.metrics(c)[MetricsStore.METRICS.indexOf("codeSize")]);
+  }
+
+  @Test public void metricsArePersistent() throws IOException {
+    @NotNull final File f = folder.newFile();
+    @NotNull final ByteBuffer b = classFile(ConstantPool.class);
+    @Nullable final int[] $;
+    try (MetricsStore s = new MetricsStore(f)) {
+      $ = s.metrics(b);
+      assertNotNull($);
+      assertArrayEquals($, s.metrics(b));
+      assertEquals(1, s.size());
+    }
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(1, s.size());
+      assertArrayEquals($, s.get(MetricsStore.digest(b)));
+      assertNull(s.get(MetricsStore.digest(classFile(BuilderTest.class))));
+    }
+  }
+
+  @Test public void manyRecords() throws IOException {
+    @NotNull final File f = folder.newFile();
+    @NotNull final int[] metrics = new int[MetricsStore.METRICS.size()];
+    try (MetricsStore s = new MetricsStore(f)) {
+      for (int ¢ = 0; ¢ < 1000; ++¢) {
+        metrics[0] = ¢;
+        s.put(digest(¢), metrics);
+        assertEquals(¢, s.get(digest(¢))[0]);
+      }
+    }
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(1000, s.size());
+      for (int ¢ = 0; ¢ < 1000; ++¢)
+        assertEquals(¢, s.get(digest(¢))[0]);
+    }
+  }
+
+  @Test public void manyChunks() throws IOException {
+    @NotNull final File f = folder.newFile();
+    @NotNull final int[] metrics = new int[MetricsStore.METRICS.size()];
+    final int n = 2 * MetricsStore.CHUNK + 1000;
+    try (MetricsStore s = new MetricsStore(f)) {
+      for (int ¢ = 0; ¢ < n; ++¢) {
+        metrics[0] = ¢;
+        s.put(spread(¢), metrics);
+        assertEquals(¢, s.get(spread(¢))[0]);
+      }
+      for (int ¢ = 0; ¢ < n; ++¢)
+        assertEquals(¢, s.get(spread(¢))[0]);
+    }
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(n, s.size());
+      for (int ¢ = 0; ¢ < n; ++¢)
+        assertEquals(¢, s.get(spread(¢))[0]);
+      metrics[0] = n;
+      s.put(spread(n), metrics);
+    }
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(n + 1, s.size());
+      assertEquals(n, s.get(spread(n))[0]);
+    }
+  }
+
+  @Test public void truncatedRecordIsDiscarded() throws IOException {
+    @NotNull final File f = folder.newFile();
+    try (MetricsStore s = new MetricsStore(f)) {
+      s.put(digest(1), new int[MetricsStore.METRICS.size()]);
+      s.put(digest(2), new int[MetricsStore.METRICS.size()]);
+    }
+    try (FileChannel c = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+      c.truncate(c.size() - 3);
+    }
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(1, s.size());
+      assertNotNull(s.get(digest(1)));
+      assertNull(s.get(digest(2)));
+    }
+  }
+
+  @Test public void foreignFileIsDiscarded() throws IOException {
+    @NotNull final File f = folder.newFile();
+    Files.write(f.toPath(), "not a metrics store, clearly".getBytes());
+    try (MetricsStore s = new MetricsStore(f)) {
+      assertEquals(0, s.size());
+    }
+  }
+
+  /** @param ¢ an arbitrary integer
+   * @return a digest made of this integer, with a common prefix */
+  @NotNull private static byte[] digest(final int ¢) {
+    return ByteBuffer.allocate(MetricsStore.DIGEST_LENGTH).putInt(MetricsStore.DIGEST_LENGTH - 4, ¢).array();
+  }
+
+  /** @param ¢ an arbitrary integer
+   * @return a digest made of this integer, with distinct prefixes */
+  @NotNull private static byte[] spread(final int ¢) {
+    return ByteBuffer.allocate(MetricsStore.DIGEST_LENGTH).putInt(0, ¢ * 0x9E3779B9).putInt(MetricsStore.DIGEST_LENGTH - 4, ¢).array();
+  }
+}
@@ -0,0 +1,109 @@
+package il.org.spartan.collections;
+
+import static il.org.spartan.azzert.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+public final class ConcurrentIntegersMapTest {
+  private static final int THREADS = 8;
+
+  /** Runs a task in several threads at once
+   * @param task receives the index of the thread */
+  private static void parallel(@NotNull final IntConsumer task) throws InterruptedException {
+    @NotNull final CountDownLatch start = new CountDownLatch(1);
+    @NotNull final Thread[] ts = new Thread[THREADS];
+    for (int ¢ = 0; ¢ < THREADS; ++¢) {
+      final int id = ¢;
+      ts[¢] = new Thread(() -> {
+        try {
+          start.await();
+        } catch (final InterruptedException ____) {
+          return;
+        }
+        task.accept(id);
+      });
+      ts[¢].start();
+    }
+    start.countDown();
+    for (@NotNull final Thread ¢ : ts)
+      ¢.join();
+  }
+
+  @NotNull private final ConcurrentIntegersMap m = new ConcurrentIntegersMap();
+
+  @Test public void concurrentCounting() throws InterruptedException {
+    parallel(λ -> {
+      for (int i = 0; i < 100; ++i)
+        for (int ¢ = -500; ¢ < 500; ++¢)
+          m.increment(¢);
+    });
+    azzert.that(m.size(), is(1000));
+    for (int ¢ = -500; ¢ < 500; ++¢)
+      azzert.that(m.get(¢), is(100 * THREADS));
+  }
+
+  @Test public void concurrentResize() throws InterruptedException {
+    parallel(λ -> {
+      for (int ¢ = 0; ¢ < 100_000; ++¢)
+        m.add(¢, λ + 1);
+    });
+    azzert.that(m.size(), is(100_000));
+    azzert.that(m.capacity() >= 100_000 / ConcurrentIntegersMap.MAX_LOAD, is(true));
+    for (int ¢ = 0; ¢ < 100_000; ++¢)
+      azzert.that(m.get(¢), is(THREADS * (THREADS + 1) / 2));
+  }
+
+  @Test public void disjointInserts() throws InterruptedException {
+    parallel(λ -> {
+      for (int ¢ = λ; ¢ < 50_000; ¢ += THREADS)
+        m.put(¢, -¢);
+    });
+    @NotNull final int[] keys = m.sortedKeys();
+    azzert.that(keys.length, is(50_000));
+    for (int ¢ = 0; ¢ < 50_000; ++¢) {
+      azzert.that(keys[¢], is(¢));
+      azzert.that(m.get(¢), is(-¢));
+    }
+  }
+
+  @Test public void hot() throws InterruptedException {
+    m.put(7, 3).hot(7).hot(0);
+    parallel(λ -> {
+      for (int ¢ = 0; ¢ < 100_000; ++¢) {
+        m.increment(7);
+        m.increment(0);
+        m.increment(¢ & 15);
+      }
+    });
+    azzert.that(m.get(7), is(3 + THREADS * (100_000 + 100_000 / 16)));
+    azzert.that(m.get(0), is(THREADS * (100_000 + 100_000 / 16)));
+    azzert.that(m.get(1), is(THREADS * 100_000 / 16));
+    azzert.that(m.size(), is(16));
+    m.put(7, 1);
+    azzert.that(m.get(7), is(1));
+  }
+
+  @Test public void sequential() {
+    azzert.that(m.contains(0), is(false));
+    azzert.that(m.increment(0), is(1));
+    azzert.that(m.increment(-1), is(1));
+    azzert.that(m.increment(-1), is(2));
+    m.put(Integer.MIN_VALUE, Integer.MAX_VALUE).put(Integer.MAX_VALUE, Integer.MIN_VALUE);
+    azzert.that(m.get(Integer.MIN_VALUE), is(Integer.MAX_VALUE));
+    azzert.that(m.get(Integer.MAX_VALUE), is(Integer.MIN_VALUE));
+    azzert.that(m.increment(Integer.MAX_VALUE), is(Integer.MIN_VALUE + 1));
+    azzert.that(m.get(5), is(0));
+    azzert.that(m.contains(5), is(false));
+    m.put(5, 0);
+    azzert.that(m.contains(5), is(true));
+    azzert.that(m.size(), is(5));
+    azzert.that(Arrays.equals(m.sortedKeys(), new int[] { Integer.MIN_VALUE, -1, 0, 5, Integer.MAX_VALUE }), is(true));
+  }
+}
@@ -63,6 +63,13 @@ public final class IntegersMapTest {
     assertEquals(40, m.get(30));
   }
 
+  @Test public void removeAndPutBack() {
+    m.put(10, 1).remove(10).put(10, 2);
+    assert m.contains(10);
+    assertEquals(2, m.get(10));
+    assertEquals(1, m.keys().length);
+  }
+
   @Test public void increment1000() {
     for (int ¢ = 0; ¢ < 1000; ++¢)
       m.increment(¢);
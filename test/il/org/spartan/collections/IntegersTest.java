@@ -189,6 +189,14 @@ public final class IntegersTest extends Integers {
     azzert.that(size(), is(0));
   }
 
+  @Test public void removeAndAddBack() {
+    add(10, 20).remove(10).add(10);
+    assert contains(10, 20);
+    azzert.that(size(), is(2));
+    azzert.that(entries().length, is(2));
+    invariant.check();
+  }
+
   @Test public void valuesRange() {
     add(1, 2, 3);
     @NotNull final int[] values = entries();
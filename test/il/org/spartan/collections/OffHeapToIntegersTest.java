@@ -0,0 +1,148 @@
+package il.org.spartan.collections;
+
+import static il.org.spartan.azzert.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+import org.junit.rules.*;
+
+import il.org.spartan.*;
+
+public final class OffHeapToIntegersTest {
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  @NotNull private final OffHeapToIntegers m = new OffHeapToIntegers();
+
+  @After public void close() {
+    m.close();
+  }
+
+  @Test public void bytesAreStrings() {
+    m.put("שלום", 3).put(new byte[] { 1, 2, 3 }, 4);
+    azzert.that(m.get("שלום".getBytes(StandardCharsets.UTF_8)), is(3));
+    azzert.that(m.get(new String(new byte[] { 1, 2, 3 }, StandardCharsets.UTF_8)), is(4));
+    azzert.that(m.contains(""), is(false));
+    m.increment("");
+    azzert.that(m.get(new byte[0]), is(1));
+    azzert.that(m.size(), is(3));
+  }
+
+  @Test public void get1000() {
+    for (int ¢ = 0; ¢ < 1000; ++¢)
+      m.put("key" + ¢, 2 * ¢ + 1);
+    for (int ¢ = 0; ¢ < 1000; ++¢)
+      azzert.that(m.get("key" + ¢), is(2 * ¢ + 1));
+    azzert.that(m.get("key1000"), is(0));
+    azzert.that(m.contains("key1000"), is(false));
+    azzert.that(m.size(), is(1000));
+    azzert.that(m.capacity() >= 1000 / OffHeapToIntegers.MAX_LOAD, is(true));
+  }
+
+  @Test public void hugeKeys() {
+    @NotNull final byte[] key = new byte[OffHeapToIntegers.SEGMENT / 3];
+    for (int ¢ = 0; ¢ < 7; ++¢) {
+      key[0] = (byte) ¢;
+      m.put(key, ¢);
+    }
+    azzert.that(m.arena() > 2L * OffHeapToIntegers.SEGMENT, is(true));
+    for (int ¢ = 0; ¢ < 7; ++¢) {
+      key[0] = (byte) ¢;
+      azzert.that(m.get(key), is(¢));
+    }
+  }
+
+  @Test public void increment() {
+    for (int i = 0; i < 100; ++i)
+      for (int j = 0; j <= i; ++j)
+        azzert.that(m.increment("" + i), is(j + 1));
+    for (int ¢ = 0; ¢ < 100; ++¢)
+      azzert.that(m.get("" + ¢), is(¢ + 1));
+  }
+
+  @Test public void intern() {
+    azzert.that(m.intern("a"), is(0));
+    azzert.that(m.intern("b"), is(1));
+    azzert.that(m.intern("a"), is(0));
+    azzert.that(m.intern("c".getBytes(StandardCharsets.UTF_8)), is(2));
+    azzert.that(m.intern("c"), is(2));
+  }
+
+  @Test public void keyBytes() {
+    m.put(new byte[] { (byte) 0xFF, 0 }, 1).put("a", 2);
+    @NotNull final Set<List<Byte>> $ = new HashSet<>();
+    for (@NotNull final byte[] bs : m.keyBytes()) {
+      @NotNull final List<Byte> l = new ArrayList<>();
+      for (final byte ¢ : bs)
+        l.add(Byte.valueOf(¢));
+      $.add(l);
+    }
+    azzert.that($, is(new HashSet<>(Arrays.asList(Arrays.asList(Byte.valueOf((byte) 0xFF), Byte.valueOf((byte) 0)),
+        Arrays.asList(Byte.valueOf((byte) 'a'))))));
+  }
+
+  @Test(expected = IllegalStateException.class) public void keysNotUTF8() {
+    m.put(new byte[] { (byte) 0xFF }, 1).keys();
+  }
+
+  @Test public void keys() {
+    @NotNull final Set<String> expected = new HashSet<>();
+    for (int ¢ = 0; ¢ < 500; ++¢) {
+      expected.add("κλειδί" + ¢);
+      m.intern("κλειδί" + ¢);
+    }
+    azzert.that(new HashSet<>(Arrays.asList(m.keys())), is(expected));
+  }
+
+  @Test public void saveAndOpen() throws IOException {
+    @NotNull final File f = folder.newFile();
+    for (int ¢ = 0; ¢ < 100_000; ++¢)
+      m.intern("name" + ¢);
+    m.save(f);
+    @NotNull final OffHeapToIntegers opened = OffHeapToIntegers.open(f);
+    azzert.that(opened.size(), is(100_000));
+    azzert.that(opened.capacity(), is(m.capacity()));
+    for (int ¢ = 0; ¢ < 100_000; ++¢)
+      azzert.that(opened.get("name" + ¢), is(¢));
+    for (int ¢ = 100_000; ¢ < 200_000; ++¢)
+      azzert.that(opened.intern("name" + ¢), is(¢));
+    opened.increment("name0");
+    opened.save(f);
+    azzert.that(OffHeapToIntegers.open(f).get("name0"), is(1));
+    azzert.that(OffHeapToIntegers.open(f).get("name199999"), is(199_999));
+    azzert.that(opened.get("name150000"), is(150_000));
+  }
+
+  @Test public void unpairedSurrogate() {
+    m.put("?", 1);
+    for (@NotNull final String ¢ : new String[] { "\uD800", "a\uDC00b" })
+      try {
+        m.put(¢, 2);
+        Assert.fail(¢);
+      } catch (@NotNull final IllegalArgumentException ____) {
+        // Rejected, rather than encoded as "?"
+      }
+    azzert.that(m.get("?"), is(1));
+    azzert.that(m.size(), is(1));
+    m.put("\uD83D\uDE00", 3);
+    azzert.that(m.get("\uD83D\uDE00".getBytes(StandardCharsets.UTF_8)), is(3));
+  }
+
+  @Test public void closeOpened() throws IOException {
+    @NotNull final File f = folder.newFile();
+    m.put("a", 1).save(f);
+    try (OffHeapToIntegers $ = OffHeapToIntegers.open(f)) {
+      azzert.that($.get("a"), is(1));
+    }
+    m.put("b", 2).save(f);
+    try (OffHeapToIntegers $ = OffHeapToIntegers.open(f)) {
+      azzert.that($.get("b"), is(2));
+    }
+  }
+
+  @Test(expected = IOException.class) public void notSaved() throws IOException {
+    OffHeapToIntegers.open(folder.newFile());
+  }
+}
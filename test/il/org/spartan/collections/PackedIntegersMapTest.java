@@ -0,0 +1,88 @@
+package il.org.spartan.collections;
+
+import static il.org.spartan.azzert.*;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+public final class PackedIntegersMapTest {
+  @NotNull private final PackedIntegersMap m = new PackedIntegersMap();
+  @NotNull private final PackedIntegersMap.INVARIANT invariant = m.new INVARIANT();
+
+  @Test public void get1000() {
+    for (int ¢ = 0; ¢ < 1000; ++¢)
+      m.put(¢, 2 * ¢ + 1);
+    for (int ¢ = 0; ¢ < 1000; ++¢)
+      azzert.that(m.get(¢), is(2 * ¢ + 1));
+    azzert.that(m.get(1000), is(0));
+    invariant.check();
+  }
+
+  @Test public void increment() {
+    for (int i = -50; i < 50; ++i)
+      for (int j = -50; j <= i; ++j)
+        m.increment(i);
+    for (int ¢ = -50; ¢ < 50; ++¢)
+      azzert.that(m.get(¢), is(¢ + 51));
+    azzert.that(m.size(), is(100));
+    invariant.check();
+  }
+
+  @Test public void init() {
+    m.put(7, 3).put(0, 4).init(7).init(0);
+    azzert.that(m.get(7), is(0));
+    azzert.that(m.get(0), is(0));
+    azzert.that(m.size(), is(2));
+  }
+
+  @Test public void negativeValues() {
+    m.put(-1, -1).put(Integer.MIN_VALUE, Integer.MAX_VALUE).put(Integer.MAX_VALUE, Integer.MIN_VALUE);
+    azzert.that(m.get(-1), is(-1));
+    azzert.that(m.get(Integer.MIN_VALUE), is(Integer.MAX_VALUE));
+    azzert.that(m.get(Integer.MAX_VALUE), is(Integer.MIN_VALUE));
+  }
+
+  @Test public void random() {
+    @NotNull final Random r = new Random(1);
+    @NotNull final Map<Integer, Integer> reference = new HashMap<>();
+    for (int ¢ = 0; ¢ < 100_000; ++¢) {
+      final int key = r.nextInt(2000) - 1000, value = r.nextInt();
+      switch (r.nextInt(4)) {
+        case 0:
+          m.remove(key);
+          reference.remove(Integer.valueOf(key));
+          break;
+        case 1:
+          m.increment(key);
+          reference.merge(Integer.valueOf(key), Integer.valueOf(1), Integer::sum);
+          break;
+        default:
+          m.put(key, value);
+          reference.put(Integer.valueOf(key), Integer.valueOf(value));
+      }
+      if (¢ % 1000 == 0)
+        invariant.check();
+    }
+    azzert.that(m.size(), is(reference.size()));
+    for (int ¢ = -1000; ¢ < 1000; ++¢) {
+      final Integer $ = reference.get(Integer.valueOf(¢));
+      azzert.that(m.contains(¢), is($ != null));
+      azzert.that(m.get(¢), is($ == null ? 0 : $.intValue()));
+    }
+  }
+
+  @Test public void sortedKeys() {
+    for (int ¢ = 0; ¢ < 10_000; ++¢)
+      m.put(¢, PackedIntegers.hash(¢, 7));
+    @NotNull final int[] keys = m.sortedKeys();
+    for (int ¢ = 0; ¢ < 10_000; ++¢)
+      azzert.that(keys[¢], is(¢));
+    m.remove(keys);
+    azzert.that(m.size(), is(0));
+    invariant.check();
+  }
+}
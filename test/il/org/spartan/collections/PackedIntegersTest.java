@@ -0,0 +1,100 @@
+package il.org.spartan.collections;
+
+import static il.org.spartan.azzert.*;
+
+import java.util.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+
+public final class PackedIntegersTest {
+  @NotNull private final PackedIntegers s = new PackedIntegers();
+  @NotNull private final PackedIntegers.INVARIANT invariant = s.new INVARIANT();
+
+  @Test public void add() {
+    s.add(1);
+    azzert.that(s.size(), is(1));
+    assert s.contains(1);
+    s.add(1);
+    azzert.that(s.size(), is(1));
+    s.add(2);
+    azzert.that(s.size(), is(2));
+    assert s.contains(1, 2);
+    assert s.disjoint(3, 4);
+    invariant.check();
+  }
+
+  @Test public void clear() {
+    s.add(1, 2, 3, 0).clear();
+    azzert.that(s.size(), is(0));
+    assert s.disjoint(0, 1, 2, 3);
+    invariant.check();
+  }
+
+  @Test public void collisions() {
+    final int capacity = 1 << 10, shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    @NotNull final PackedIntegers $ = new PackedIntegers(capacity);
+    @NotNull final List<Integer> colliding = new ArrayList<>();
+    for (int ¢ = 1; colliding.size() < 20; ++¢)
+      if (PackedIntegers.hash(¢, shift) == capacity - 2)
+        colliding.add(Integer.valueOf(¢));
+    for (@NotNull final Integer ¢ : colliding)
+      $.add(¢.intValue());
+    azzert.that($.capacity(), is(capacity));
+    for (int ¢ = 0; ¢ < colliding.size(); ¢ += 2)
+      $.remove(colliding.get(¢).intValue());
+    $.new INVARIANT().check();
+    for (int ¢ = 0; ¢ < colliding.size(); ++¢)
+      azzert.that($.contains(colliding.get(¢).intValue()), is(¢ % 2 == 1));
+  }
+
+  @Test public void entries() {
+    s.add(5, 0, -3, 17);
+    @NotNull final int[] $ = s.entries();
+    Arrays.sort($);
+    azzert.that(Arrays.toString($), is("[-3, 0, 5, 17]"));
+  }
+
+  @Test public void random() {
+    @NotNull final Random r = new Random(1);
+    @NotNull final Set<Integer> reference = new HashSet<>();
+    for (int ¢ = 0; ¢ < 100_000; ++¢) {
+      final int n = r.nextInt(2000) - 1000;
+      if (r.nextInt(3) == 0) {
+        s.remove(n);
+        reference.remove(Integer.valueOf(n));
+      } else {
+        s.add(n);
+        reference.add(Integer.valueOf(n));
+      }
+      if (¢ % 1000 == 0)
+        invariant.check();
+    }
+    azzert.that(s.size(), is(reference.size()));
+    for (int ¢ = -1000; ¢ < 1000; ++¢)
+      azzert.that(s.contains(¢), is(reference.contains(Integer.valueOf(¢))));
+  }
+
+  @Test public void shrinks() {
+    for (int ¢ = 0; ¢ < 10_000; ++¢)
+      s.add(¢);
+    final int capacity = s.capacity();
+    for (int ¢ = 0; ¢ < 10_000; ++¢)
+      s.remove(¢);
+    azzert.that(s.size(), is(0));
+    assert s.capacity() < capacity;
+    invariant.check();
+  }
+
+  @Test public void zero() {
+    assert !s.contains(0);
+    s.add(0);
+    assert s.contains(0);
+    azzert.that(s.size(), is(1));
+    s.remove(0);
+    assert !s.contains(0);
+    azzert.that(s.size(), is(0));
+  }
+}
@@ -2,6 +2,8 @@ package il.org.spartan.reflection;
 
 import static org.junit.Assert.*;
 
+import java.util.*;
+
 import org.junit.*;
 
 import il.org.spartan.reflection.DeepSize.*;
@@ -15,9 +17,22 @@ import il.org.spartan.sequence.*;
     return $;
   }
 
+  @Test public void byClass() {
+    final Object[] os = { new ObjectObject(), new ObjectObject(), new int[3] };
+    final Map<Class<?>, DeepSize.Tally> $ = DeepSize.byClass(os);
+    assertEquals(3, $.size());
+    assertEquals(2, $.get(ObjectObject.class).instances);
+    assertEquals(2 * ShallowSize.of(new ObjectObject()), $.get(ObjectObject.class).bytes);
+    assertEquals(1, $.get(int[].class).instances);
+    long total = 0;
+    for (final DeepSize.Tally ¢ : $.values())
+      total += ¢.bytes;
+    assertEquals(DeepSize.bytes(os), total);
+  }
+
   @Test public void DeepSize_of_Array_non_null() {
     final Object[] os = makeRecursiveArray(83);
-    assertEquals(ShallowSize.align(4 * os.length + 4 + 8), DeepSize.of(os));
+    assertEquals(ShallowSize.align(4 * os.length + 4 + 8), DeepSize.bytes(os));
   }
 
   @Test public void getAllFields_objectByte() {
@@ -38,11 +53,23 @@ import il.org.spartan.sequence.*;
     assertEquals(1, Visitor.getAllFields(ObjectObject.class).size());
   }
 
+  @Test public void identity() {
+    final Object[] os = { new Equal(), new Equal(), new Equal() };
+    assertEquals(ShallowSize.of(os) + 3 * ShallowSize.of(os[0]), DeepSize.bytes(os));
+  }
+
+  @Test public void longList() {
+    ObjectObject o = new ObjectObject(null);
+    for (int ¢ = 1; ¢ < 1_000_000; ++¢)
+      o = new ObjectObject(o);
+    assertEquals(1_000_000L * ShallowSize.of(o), DeepSize.bytes(o));
+  }
+
   @Test public void new_Visitor_ClassWithArray() {
     final ClassWithArray o = new ClassWithArray();
     final Object[] os = makeRecursiveArray(3);
     o.os = os;
-    assertEquals(DeepSize.of(o.os), new DeepSize.Visitor().size(o.os));
+    assertEquals(DeepSize.bytes(o.os), new DeepSize.Visitor().size(o.os));
   }
 
   @Test public void new_Visitor_size_ObjectInt() {
@@ -58,8 +85,12 @@ import il.org.spartan.sequence.*;
     assertEquals(16, new Visitor().size(new ObjectObject(), Object[].class));
   }
 
+  @Test public void new_Visitor_size_primitiveArray() {
+    assertEquals(DeepSize.of(new int[5]), new Visitor().size(new int[5], int[].class));
+  }
+
   @Test public void objectChar() {
-    assertEquals(16, DeepSize.of(new ObjectChar()));
+    assertEquals(16, DeepSize.bytes(new ObjectChar()));
   }
 
   @Test public void objectInt() {
@@ -70,7 +101,7 @@ import il.org.spartan.sequence.*;
         return super.hashCode() ^ __;
       }
     };
-    assertEquals(ShallowSize.of(this) + ShallowSize.of(o), DeepSize.of(o));
+    assertEquals(ShallowSize.of(this) + ShallowSize.of(o), DeepSize.bytes(o));
   }
 
   @Test public void objectSize_ObjectObject() {
@@ -79,7 +110,7 @@ import il.org.spartan.sequence.*;
 
   @Test public void objectSize_ObjectObject_ObjectObject() {
     final Object o = new ObjectObject();
-    assertEquals(ShallowSize.of(o), DeepSize.of(o));
+    assertEquals(ShallowSize.of(o), DeepSize.bytes(o));
   }
 
   @Test public void of_array_0__bytes() {
@@ -92,14 +123,14 @@ import il.org.spartan.sequence.*;
   }
 
   @Test public void of_array_of_nulls() {
-    assertEquals(48, DeepSize.of(new Object[8]));
+    assertEquals(48, DeepSize.bytes(new Object[8]));
   }
 
   @Test public void of_array_of_objects() {
     final Object[] os = new Object[8];
     for (int ¢ = 0; ¢ < os.length; ++¢)
       os[¢] = os;
-    assertEquals(48, DeepSize.of(os));
+    assertEquals(48, DeepSize.bytes(os));
   }
 
   @Test public void of_ClassWithArray() {
@@ -109,25 +140,25 @@ import il.org.spartan.sequence.*;
     for (int ¢ = 0; ¢ < os.length; ++¢)
       if (¢ % 2 == 1)
         os[¢] = o;
-    assertEquals(ShallowSize.of(os) + ShallowSize.of(o), DeepSize.of(o));
+    assertEquals(ShallowSize.of(os) + ShallowSize.of(o), DeepSize.bytes(o));
   }
 
   @Test public void of_ClassWithArray_non_null() {
     final ClassWithArray o = new ClassWithArray();
     final Object[] os = makeRecursiveArray(13);
     o.os = os;
-    assertEquals(DeepSize.of(os) + ShallowSize.of(o), DeepSize.of(o));
+    assertEquals(DeepSize.bytes(os) + ShallowSize.of(o), DeepSize.bytes(o));
   }
 
   @Test public void of_ClassWithArray_null() {
-    assertEquals(16, DeepSize.of(new ClassWithArray()));
+    assertEquals(16, DeepSize.bytes(new ClassWithArray()));
   }
 
   @Test public void of_ClassWithArray_recursive() {
     final ClassWithArray o = new ClassWithArray();
     final Object[] os = makeRecursiveArray(3);
     o.os = os;
-    assertEquals(ShallowSize.of(o) + ShallowSize.of(os), DeepSize.of(o));
+    assertEquals(ShallowSize.of(o) + ShallowSize.of(os), DeepSize.bytes(o));
   }
 
   @Test public void of_ClassWithArrayReursiveArray() {
@@ -139,8 +170,8 @@ import il.org.spartan.sequence.*;
         return os.hashCode();
       }
     };
-    DeepSize.of(o);
-    assertEquals(ShallowSize.of(this) + ShallowSize.of(o) + DeepSize.of(makeRecursiveArray(arraySize)), DeepSize.of(o));
+    DeepSize.bytes(o);
+    assertEquals(ShallowSize.of(this) + ShallowSize.of(o) + DeepSize.bytes(makeRecursiveArray(arraySize)), DeepSize.bytes(o));
   }
 
   @Test public void of_ClassWithObjecReursiveArray() {
@@ -152,15 +183,15 @@ import il.org.spartan.sequence.*;
         return o__.hashCode();
       }
     };
-    assertEquals(ShallowSize.of(this) + ShallowSize.of(o) + DeepSize.of(makeRecursiveArray(arraySize)), DeepSize.of(o));
+    assertEquals(ShallowSize.of(this) + ShallowSize.of(o) + DeepSize.bytes(makeRecursiveArray(arraySize)), DeepSize.bytes(o));
   }
 
   @Test public void of_MyHashMap() {
     final MyHashMap<Object, Object> m = new MyHashMap<>();
     assertEquals(40, ShallowSize.of(m));
-    assertEquals(120, DeepSize.of(m));
+    assertEquals(120, DeepSize.bytes(m));
     m.put(null, null);
-    assertEquals(120 + 16 + ShallowSize.of(new Object()), DeepSize.of(m));
+    assertEquals(120 + 16 + ShallowSize.of(new Object()), DeepSize.bytes(m));
   }
 
   @Test public void of_MyHashMap_DEFAULT_INITIAL_CAPACITY() {
@@ -169,7 +200,7 @@ import il.org.spartan.sequence.*;
 
   @Test public void of_MyHashMap_table() {
     final MyHashMap<Object, Object> m = new MyHashMap<>();
-    assertEquals(ShallowSize.of(m.table) + DeepSize.of(m.keySet), DeepSize.of(m) - ShallowSize.of(m));
+    assertEquals(ShallowSize.of(m.table) + DeepSize.bytes(m.keySet), DeepSize.bytes(m) - ShallowSize.of(m));
   }
 
   @Test public void of_MyHashMap_table_size() {
@@ -182,15 +213,15 @@ import il.org.spartan.sequence.*;
   }
 
   @Test public void of_object() {
-    assertEquals(8, DeepSize.of(new Object()));
+    assertEquals(8, DeepSize.bytes(new Object()));
   }
 
   @Test public void of_Object() {
-    assertEquals(8, DeepSize.of(new Object()));
+    assertEquals(8, DeepSize.bytes(new Object()));
   }
 
   @Test public void of_ObjectBoolean() {
-    assertEquals(16, DeepSize.of(new ObjectBoolean()));
+    assertEquals(16, DeepSize.bytes(new ObjectBoolean()));
   }
 
   @Test public void of_objectByte() {
@@ -201,19 +232,19 @@ import il.org.spartan.sequence.*;
         return super.hashCode() ^ __;
       }
     };
-    assertEquals(ShallowSize.of(this) + ShallowSize.of(o), DeepSize.of(o));
+    assertEquals(ShallowSize.of(this) + ShallowSize.of(o), DeepSize.bytes(o));
   }
 
   @Test public void of_ObjectInt_extends_ObjectInt() {
-    assertEquals(24, DeepSize.of(new ObjectInt_extends_ObjectInt()));
+    assertEquals(24, DeepSize.bytes(new ObjectInt_extends_ObjectInt()));
   }
 
   @Test public void of_ObjectObject() {
-    assertEquals(16, DeepSize.of(new ObjectObject()));
+    assertEquals(16, DeepSize.bytes(new ObjectObject()));
   }
 
   @Test public void of_objectStaticChar() {
-    assertEquals(8, DeepSize.of(new ObjectStaticChar()));
+    assertEquals(8, DeepSize.bytes(new ObjectStaticChar()));
   }
 
   @Test public void shallow_of_MyHashMap() {
@@ -241,6 +272,16 @@ import il.org.spartan.sequence.*;
     Object[] os;
   }
 
+  static class Equal {
+    @Override public boolean equals(final Object ¢) {
+      return ¢ instanceof Equal;
+    }
+
+    @Override public int hashCode() {
+      return 0;
+    }
+  }
+
   static class ObjectBoolean {
     boolean __;
   }
@@ -0,0 +1,149 @@
+package il.org.spartan.reflection;
+
+import static il.org.spartan.azzert.*;
+
+import java.lang.reflect.*;
+import java.math.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.jetbrains.annotations.*;
+import org.junit.*;
+
+import il.org.spartan.*;
+import il.org.spartan.reflection.MemoryModel.*;
+
+@SuppressWarnings("static-method") public class MemoryModelTest {
+  private static final HotSpot compressed = new HotSpot(8, true, true, 8);
+  private static final HotSpot uncompressed = new HotSpot(8, false, false, 8);
+
+  @NotNull private static Unsafe unsafe() throws ReflectiveOperationException {
+    return new Unsafe();
+  }
+
+  @Test public void arrays() throws ReflectiveOperationException {
+    @NotNull final Unsafe u = unsafe();
+    @NotNull final HotSpot m = HotSpot.CURRENT;
+    for (@NotNull final Class<?> ¢ : new Class<?>[] { boolean[].class, byte[].class, char[].class, short[].class, int[].class,
+        float[].class, long[].class, double[].class, Object[].class, String[].class })
+      for (int length = 0; length < 10; ++length)
+        azzert.that(¢ + "", m.array(¢.getComponentType(), length),
+            is((u.arrayBaseOffset(¢) + (long) length * u.arrayIndexScale(¢) + m.alignment - 1) / m.alignment * m.alignment));
+    azzert.that(compressed.array(int.class, 0), is(16L));
+    azzert.that(compressed.array(long.class, 1), is(24L));
+    azzert.that(compressed.array(Object.class, 3), is(32L));
+    azzert.that(uncompressed.array(int.class, 0), is(24L));
+    azzert.that(uncompressed.array(Object.class, 3), is(48L));
+  }
+
+  @Test public void deepSize() {
+    azzert.that(DeepSize.bytes(new Object(), compressed), is(16L));
+    azzert.that(DeepSize.bytes(new Object[] { new Object(), new int[4] }, compressed), is(24L + 16 + 32));
+    azzert.that(DeepSize.byClass(new Object[] { new Object(), new Object() }, compressed).get(Object.class).bytes, is(32L));
+  }
+
+  @Test public void gapFilled() throws NoSuchFieldException {
+    azzert.that(compressed.instance(LongInt.class), is(24L));
+    azzert.that(compressed.offset(LongInt.class.getDeclaredField("i")), is(12));
+    azzert.that(compressed.offset(LongInt.class.getDeclaredField("l")), is(16));
+    azzert.that(compressed.instance(LongBytes.class), is(24L));
+    azzert.that(compressed.offset(LongBytes.class.getDeclaredField("l")), is(16));
+    azzert.that(uncompressed.instance(LongInt.class), is(32L));
+  }
+
+  @Test public void hierarchy() throws NoSuchFieldException {
+    azzert.that(compressed.instance(Int.class), is(16L));
+    azzert.that(compressed.instance(IntInt.class), is(24L));
+    azzert.that(compressed.offset(IntInt.class.getDeclaredField("j")), is(16));
+    azzert.that(compressed.instance(IntReference.class), is(24L));
+  }
+
+  @Test public void objects() {
+    azzert.that(compressed.instance(Object.class), is(16L));
+    azzert.that(uncompressed.instance(Object.class), is(16L));
+    azzert.that(compressed.instance(Int.class), is(16L));
+    azzert.that(uncompressed.instance(Int.class), is(24L));
+    azzert.that(new HotSpot(4, false, false, 8).instance(Object.class), is(8L));
+  }
+
+  /** Compares the offsets computed by the model of the running JVM with the
+   * actual offsets of fields of a sample of classes */
+  @Test public void offsets() throws ReflectiveOperationException {
+    @NotNull final Unsafe u = unsafe();
+    @NotNull final HotSpot m = HotSpot.CURRENT;
+    for (@NotNull final Class<?> c : new Class<?>[] { Object.class, String.class, Integer.class, Long.class, Double.class, Character.class,
+        BigInteger.class, BigDecimal.class, ArrayList.class, LinkedList.class, HashMap.class, LinkedHashMap.class, TreeMap.class,
+        HashSet.class, ArrayDeque.class, StringBuilder.class, Random.class, Exception.class, Thread.class, ConcurrentHashMap.class,
+        Class.forName("java.util.HashMap$Node"), Class.forName("java.util.TreeMap$Entry"), LongInt.class, LongBytes.class, IntInt.class,
+        IntReference.class, Mixed.class })
+      for (Class<?> p = c; p != null; p = p.getSuperclass()) {
+        long end = m.headerSize;
+        for (@NotNull final Field ¢ : p.getDeclaredFields())
+          if (!Modifier.isStatic(¢.getModifiers())) {
+            azzert.that(c + "." + ¢.getName(), (long) m.offset(¢), is(u.objectFieldOffset(¢)));
+            end = Math.max(end, m.offset(¢) + (¢.getType().isPrimitive() ? ShallowSize.size(¢.getType()) : m.referenceSize));
+          }
+        azzert.that(m.instance(c) >= end, is(true));
+      }
+  }
+
+  /** The layout of objects, as reported by <code>sun.misc.Unsafe</code>, which
+   * is reached by reflection, so that the test compiles with no warnings */
+  static final class Unsafe {
+    @NotNull private final Object unsafe;
+    @NotNull private final Method arrayBaseOffset, arrayIndexScale, objectFieldOffset;
+
+    Unsafe() throws ReflectiveOperationException {
+      @NotNull final Class<?> c = Class.forName("sun.misc.Unsafe");
+      @NotNull final Field $ = c.getDeclaredField("theUnsafe");
+      $.setAccessible(true);
+      unsafe = $.get(null);
+      arrayBaseOffset = c.getMethod("arrayBaseOffset", Class.class);
+      arrayIndexScale = c.getMethod("arrayIndexScale", Class.class);
+      objectFieldOffset = c.getMethod("objectFieldOffset", Field.class);
+    }
+
+    int arrayBaseOffset(@NotNull final Class<?> ¢) throws ReflectiveOperationException {
+      return ((Integer) arrayBaseOffset.invoke(unsafe, ¢)).intValue();
+    }
+
+    int arrayIndexScale(@NotNull final Class<?> ¢) throws ReflectiveOperationException {
+      return ((Integer) arrayIndexScale.invoke(unsafe, ¢)).intValue();
+    }
+
+    long objectFieldOffset(@NotNull final Field ¢) throws ReflectiveOperationException {
+      return ((Long) objectFieldOffset.invoke(unsafe, ¢)).longValue();
+    }
+  }
+
+  static class Int {
+    int i;
+  }
+
+  static class IntInt extends Int {
+    int j;
+  }
+
+  static class IntReference extends Int {
+    Object o;
+  }
+
+  static class LongBytes {
+    long l;
+    byte b1, b2;
+  }
+
+  static class LongInt {
+    long l;
+    int i;
+  }
+
+  static class Mixed extends LongInt {
+    Object o;
+    double d;
+    char c;
+    boolean b;
+    short s;
+    float f;
+  }
+}